@@ -38,7 +38,9 @@ public abstract class WeatherDataListAdapter extends AnimatedExpandableListView.
     // Объект для работы с "сырыми" ресурсами проекта.
     private Assets mAssets;
 
-    // Данные для вывода.
+    // Данные для вывода. Список может загружать элементы из БД при обращении к ним,
+    // поэтому элементы запрашиваются только по позиции. Если элемент еще загружается в фоне,
+    // то вместо него возвращается null, и выводится заполнитель.
     private List<WeatherData> mData = new ArrayList<>();
 
     /**
@@ -70,7 +72,8 @@ public abstract class WeatherDataListAdapter extends AnimatedExpandableListView.
      */
     public void setData(List<WeatherData> data) {
         if (data == null) {
-            mData.clear();
+            // Список мог быть получен из кэша БД и быть общим, поэтому не очищается.
+            mData = new ArrayList<>();
         } else {
             mData = data;
         }
@@ -90,7 +93,9 @@ public abstract class WeatherDataListAdapter extends AnimatedExpandableListView.
         }
         convertView.setVisibility(View.VISIBLE);
 
-        WeatherData weather = (WeatherData) getGroup(groupPosition);
+        WeatherData item = (WeatherData) getGroup(groupPosition);
+        // Если элемент еще загружается, то выводится пустое тело, оно будет заполнено после загрузки.
+        WeatherData weather = item == null ? new WeatherData() : item;
 
         TextView humidTextView = (TextView) convertView.findViewById(R.id.main_screen_list_item_humidity_textView);
         String humidText = weather.getHumidity() == null ? mContext.getString(R.string.no_data)
@@ -113,7 +118,7 @@ public abstract class WeatherDataListAdapter extends AnimatedExpandableListView.
         cloudsTextView.setText(cloudsText);
 
         Button forecastButton = (Button) convertView.findViewById(R.id.main_screen_list_item_forecast_button);
-        forecastButton.setOnClickListener(new OnForecastClickedListener(weather));
+        forecastButton.setOnClickListener(new OnForecastClickedListener(item));
         forecastButton.setVisibility(isForecastButtonVisible() ? View.VISIBLE : View.GONE);
 
         return convertView;
@@ -196,9 +201,14 @@ public abstract class WeatherDataListAdapter extends AnimatedExpandableListView.
         convertView.setVisibility(View.VISIBLE);
 
         WeatherData weather = (WeatherData) getGroup(groupPosition);
-
         TextView nameTextView = (TextView) convertView.findViewById(R.id.main_screen_list_item_name_textView);
-        nameTextView.setText(getGroupTitle(weather));
+        if (weather == null) {
+            // Элемент еще загружается в фоне: выводится заполнитель, адаптер обновится после загрузки.
+            nameTextView.setText(mContext.getString(R.string.loading));
+            weather = new WeatherData();
+        } else {
+            nameTextView.setText(getGroupTitle(weather));
+        }
 
         TextView tempTextView = (TextView) convertView.findViewById(R.id.main_screen_list_item_temp_textView);
         String tempText = null;
@@ -24,6 +24,7 @@ import com.deakishin.weatherapp.R;
 import com.deakishin.weatherapp.gui.AnimatedExpandableListView;
 import com.deakishin.weatherapp.model.entities.DataStatus;
 import com.deakishin.weatherapp.model.entities.WeatherData;
+import com.deakishin.weatherapp.model.localdb.ChangeSet;
 import com.deakishin.weatherapp.model.localdb.LocalDb;
 import com.deakishin.weatherapp.model.localdb.QueryListResult;
 import com.deakishin.weatherapp.model.localdb.impl.LocalDbImpl;
@@ -36,7 +37,8 @@ import java.util.Date;
 /**
  * Активность для экрана прогноза погоды для конкретного города.
  * Для выполнения операций синхронизации с сервером запускается служба с помощью
- * {@link RestServiceHelper}.
+ * {@link RestServiceHelper}. Прогноз загружается из БД при открытии экрана
+ * и заново только тогда, когда БД сообщает об изменении прогноза этого города.
  */
 
 public class ForecastScreenActivity extends AppCompatActivity {
@@ -74,6 +76,24 @@ public class ForecastScreenActivity extends AppCompatActivity {
     private int mCityId = -1;
     private String mCityName;
 
+    // Выполняется ли загрузка данных из БД.
+    private boolean mLoading;
+    // Изменились ли данные во время загрузки, так что их нужно загрузить заново.
+    private boolean mReloadNeeded;
+
+    // Наблюдатель изменений прогноза города в БД. Вызывается в потоке записи.
+    private final LocalDb.Observer mObserver = new LocalDb.Observer() {
+        @Override
+        public void onChange(final ChangeSet changes) {
+            runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    applyChanges(changes);
+                }
+            });
+        }
+    };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -97,7 +117,7 @@ public class ForecastScreenActivity extends AppCompatActivity {
         Toolbar toolbar = (Toolbar) findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
 
-        mLocalDb = LocalDbImpl.getInstance(this);
+        mLocalDb = LocalDbImpl.getCachedInstance(this);
 
         mListView = (AnimatedExpandableListView) findViewById(R.id.forecast_screen_listView);
         mStatusTextView = (TextView) findViewById(R.id.forecast_screen_status_textView);
@@ -171,9 +191,31 @@ public class ForecastScreenActivity extends AppCompatActivity {
     // Обновляет данные с локальной БД.
     private void updateData() {
         Log.i(TAG, "Trying to update forecast data from DB.");
+        mLoading = true;
         new LocalDataLoader().executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
     }
 
+    // Применяет изменение прогноза: загружает прогноз заново, если изменились строки, и обновляет статус.
+    private void applyChanges(ChangeSet changes) {
+        if (mLoading) {
+            // Загружаемые данные могли быть прочитаны до изменения.
+            mReloadNeeded = true;
+            return;
+        }
+        if (changes.isDataChanged()) {
+            updateData();
+        } else if (changes.getDataStatus() != null) {
+            applyDataStatus(changes.getDataStatus());
+        }
+    }
+
+    // Обновляет статус данных из БД.
+    private void applyDataStatus(DataStatus dataStatus) {
+        mRefreshing = dataStatus.isRefreshing();
+        mLastUpdate = dataStatus.getLastUpdate();
+        updateStatusViews();
+    }
+
     // Обновляет статус данных.
     private void updateStatusViews() {
         String status = mError ? getString(R.string.status_error) :
@@ -198,13 +240,17 @@ public class ForecastScreenActivity extends AppCompatActivity {
 
         @Override
         protected void onPostExecute(QueryListResult<WeatherData> result) {
+            mLoading = false;
             mListAdapter.setData(result.getData());
 
             DataStatus dataStatus = result.getDataStatus();
             if (dataStatus != null) {
-                mRefreshing = dataStatus.isRefreshing();
-                mLastUpdate = dataStatus.getLastUpdate();
-                updateStatusViews();
+                applyDataStatus(dataStatus);
+            }
+
+            if (mReloadNeeded) {
+                mReloadNeeded = false;
+                updateData();
             }
         }
     }
@@ -217,12 +263,14 @@ public class ForecastScreenActivity extends AppCompatActivity {
         Log.i(TAG, "Registering broadcast receiver. Intent filter: " + mFilter.getAction(0));
         LocalBroadcastManager.getInstance(this).registerReceiver(mBroadcastReceiver, mFilter);
 
+        mLocalDb.observeForecast(mCityId, mObserver);
         updateData();
     }
 
     @Override
     public void onStop() {
         LocalBroadcastManager.getInstance(this).unregisterReceiver(mBroadcastReceiver);
+        mLocalDb.removeObserver(mObserver);
 
         super.onStop();
     }
@@ -243,14 +291,9 @@ public class ForecastScreenActivity extends AppCompatActivity {
 
             switch (methodId) {
                 case RestMethodsContract.Methods.REFRESH_FORECAST:
+                    // Прогноз и время обновления уже пришли через наблюдателя БД, остается только результат запроса.
                     mRefreshing = false;
-                    if (success) {
-                        mError = false;
-                        mLastUpdate = new Date();
-                        updateData();
-                    } else {
-                        mError = true;
-                    }
+                    mError = !success;
                     updateStatusViews();
                     return;
                 default:
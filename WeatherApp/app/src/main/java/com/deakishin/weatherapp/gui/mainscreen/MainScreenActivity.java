@@ -23,19 +23,25 @@ import com.deakishin.weatherapp.gui.AnimatedExpandableListView;
 import com.deakishin.weatherapp.gui.forecastscreen.ForecastScreenActivity;
 import com.deakishin.weatherapp.model.entities.DataStatus;
 import com.deakishin.weatherapp.model.entities.WeatherData;
+import com.deakishin.weatherapp.model.localdb.ChangeSet;
 import com.deakishin.weatherapp.model.localdb.LocalDb;
 import com.deakishin.weatherapp.model.localdb.QueryListResult;
+import com.deakishin.weatherapp.model.localdb.WindowedList;
 import com.deakishin.weatherapp.model.localdb.impl.LocalDbImpl;
 import com.deakishin.weatherapp.model.rest.RestMethodsContract;
 import com.deakishin.weatherapp.model.services.RestService;
 import com.deakishin.weatherapp.model.services.RestServiceHelper;
 
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Активность главного экрана приложения.
  * Для выполнения операций синхронизации с сервером запускается служба с помощью
- * {@link RestServiceHelper}.
+ * {@link RestServiceHelper}. Данные загружаются из БД при открытии экрана,
+ * а затем обновляются по изменениям, о которых сообщает БД.
  */
 public class MainScreenActivity extends AppCompatActivity implements AddCityDialogFragment.OnSuccessCallback{
 
@@ -44,12 +50,17 @@ public class MainScreenActivity extends AppCompatActivity implements AddCityDial
     // Ключи для диалогов
     private static final String DIALOG_ADD_CITY = "dialogAddCity";
 
+    // Количество городов, загружаемых из БД за раз при прокрутке списка.
+    private static final int WINDOW_SIZE = 50;
+
     // Виджеты.
     private AnimatedExpandableListView mListView;
     private TextView mStatusTextView;
 
     // Адаптер списка городов с текущей погодой.
     private MainScreenListAdapter mListAdapter;
+    // Список городов, переданный адаптеру, или null, если он еще не загружен.
+    private List<WeatherData> mData;
 
     // Помощник для работы с Rest через службу.
     private RestServiceHelper mHelper;
@@ -62,6 +73,24 @@ public class MainScreenActivity extends AppCompatActivity implements AddCityDial
     // Дата последнего обновления базы.
     private Date mLastUpdate;
 
+    // Выполняется ли загрузка данных из БД.
+    private boolean mLoading;
+    // Изменились ли данные во время загрузки, так что их нужно загрузить заново.
+    private boolean mReloadNeeded;
+
+    // Наблюдатель изменений текущей погоды в БД. Вызывается в потоке записи.
+    private final LocalDb.Observer mObserver = new LocalDb.Observer() {
+        @Override
+        public void onChange(final ChangeSet changes) {
+            runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    applyChanges(changes);
+                }
+            });
+        }
+    };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -70,7 +99,7 @@ public class MainScreenActivity extends AppCompatActivity implements AddCityDial
         Toolbar toolbar = (Toolbar) findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
 
-        mLocalDb = LocalDbImpl.getInstance(this);
+        mLocalDb = LocalDbImpl.getCachedInstance(this);
 
         mListView = (AnimatedExpandableListView) findViewById(R.id.main_screen_listView);
         mStatusTextView = (TextView) findViewById(R.id.main_screen_status_textView);
@@ -137,9 +166,52 @@ public class MainScreenActivity extends AppCompatActivity implements AddCityDial
     // Обновляет данные с локальной БД.
     private void updateData() {
         Log.i(TAG, "Trying to update data");
+        mLoading = true;
         new LocalDataLoader().executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
     }
 
+    // Применяет изменение текущей погоды. Если добавлены города, то список загружается заново:
+    // загрузка читает только количество строк, а сами строки читаются окнами при прокрутке.
+    // Изменившиеся строки заменяются только в уже загруженных окнах, остальные окна прочитают их из БД.
+    private void applyChanges(ChangeSet changes) {
+        if (mLoading) {
+            // Загружаемые данные могли быть прочитаны до изменения.
+            mReloadNeeded = true;
+            return;
+        }
+        if (changes.isCitiesAdded() || (changes.isDataChanged() && !(mData instanceof WindowedList))) {
+            updateData();
+            return;
+        }
+        if (changes.isDataChanged()) {
+            final Map<Integer, WeatherData> rows = new HashMap<>();
+            for (WeatherData row : changes.getRows()) {
+                rows.put(row.getId(), row);
+            }
+            int updated = ((WindowedList<WeatherData>) mData).update(new WindowedList.Updater<WeatherData>() {
+                @Override
+                public WeatherData update(WeatherData item) {
+                    WeatherData row = rows.get(item.getId());
+                    // Строки изменения общие для всех наблюдателей, поэтому в список кладется копия.
+                    return row == null ? null : new WeatherData(row);
+                }
+            });
+            if (updated > 0) {
+                mListAdapter.notifyDataSetChanged();
+            }
+        }
+        if (changes.getDataStatus() != null) {
+            applyDataStatus(changes.getDataStatus());
+        }
+    }
+
+    // Обновляет статус данных из БД.
+    private void applyDataStatus(DataStatus dataStatus) {
+        mRefreshing = dataStatus.isRefreshing();
+        mLastUpdate = dataStatus.getLastUpdate();
+        updateStatusViews();
+    }
+
     // Обновляет статус данных.
     private void updateStatusViews() {
         String status = mError ? getString(R.string.status_error) :
@@ -153,8 +225,8 @@ public class MainScreenActivity extends AppCompatActivity implements AddCityDial
 
     @Override
     public void onSuccess() {
-        // Город успешно добавлен.
-        updateData();
+        // Город успешно добавлен. Он появится в списке по изменению в БД.
+        Log.i(TAG, "City is added");
     }
 
     /**
@@ -165,18 +237,46 @@ public class MainScreenActivity extends AppCompatActivity implements AddCityDial
         @Override
         protected QueryListResult<WeatherData> doInBackground(Void... params) {
             Log.i(TAG, "Loading data from the local DB.");
-            return mLocalDb.getCurrentWeatherData();
+            QueryListResult<WeatherData> result = mLocalDb.getCurrentWeatherDataWindowed(WINDOW_SIZE);
+            if (!result.getData().isEmpty()) {
+                // Первое окно загружается здесь же, остальные - в фоне при прокрутке.
+                result.getData().get(0);
+            }
+            return result;
         }
 
         @Override
         protected void onPostExecute(QueryListResult<WeatherData> result) {
-            mListAdapter.setData(result.getData());
+            mLoading = false;
+            mData = result.getData();
+            if (mData instanceof WindowedList) {
+                // Остальные окна загружаются в фоне, а пока список выводит заполнители.
+                final WindowedList<WeatherData> data = (WindowedList<WeatherData>) mData;
+                data.setAsyncLoading(AsyncTask.THREAD_POOL_EXECUTOR, new WindowedList.Listener() {
+                    @Override
+                    public void onWindowLoaded(int offset, int count) {
+                        runOnUiThread(new Runnable() {
+                            @Override
+                            public void run() {
+                                // Список мог быть загружен заново, пока загружалось окно.
+                                if (mData == data) {
+                                    mListAdapter.notifyDataSetChanged();
+                                }
+                            }
+                        });
+                    }
+                });
+            }
+            mListAdapter.setData(mData);
 
             DataStatus dataStatus = result.getDataStatus();
             if (dataStatus != null) {
-                mRefreshing = dataStatus.isRefreshing();
-                mLastUpdate = dataStatus.getLastUpdate();
-                updateStatusViews();
+                applyDataStatus(dataStatus);
+            }
+
+            if (mReloadNeeded) {
+                mReloadNeeded = false;
+                updateData();
             }
         }
     }
@@ -189,12 +289,14 @@ public class MainScreenActivity extends AppCompatActivity implements AddCityDial
         Log.i(TAG, "Registering broadcast receiver. Intent filter: " + mFilter.getAction(0));
         LocalBroadcastManager.getInstance(this).registerReceiver(mBroadcastReceiver, mFilter);
 
+        mLocalDb.observeCurrentWeather(mObserver);
         updateData();
     }
 
     @Override
     public void onStop() {
         LocalBroadcastManager.getInstance(this).unregisterReceiver(mBroadcastReceiver);
+        mLocalDb.removeObserver(mObserver);
 
         super.onStop();
     }
@@ -215,14 +317,10 @@ public class MainScreenActivity extends AppCompatActivity implements AddCityDial
 
             switch (methodId) {
                 case RestMethodsContract.Methods.REFRESH_ALL_WEATHERS:
+                case RestMethodsContract.Methods.REFRESH_FAILED_WEATHERS:
+                    // Данные и время обновления уже пришли через наблюдателя БД, остается только результат запроса.
                     mRefreshing = false;
-                    if (success) {
-                        mError = false;
-                        mLastUpdate = new Date();
-                        updateData();
-                    } else {
-                        mError = true;
-                    }
+                    mError = !success;
                     updateStatusViews();
                     return;
                 default:
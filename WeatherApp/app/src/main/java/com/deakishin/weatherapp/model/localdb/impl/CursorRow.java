@@ -0,0 +1,49 @@
+package com.deakishin.weatherapp.model.localdb.impl;
+
+import android.database.Cursor;
+
+import com.deakishin.weatherapp.model.localdb.Row;
+
+/**
+ * Строка результата запроса к БД поверх курсора Android.
+ * Возвращает значения текущей позиции курсора.
+ */
+class CursorRow implements Row {
+
+    // Курсор с результатом запроса.
+    private final Cursor mCursor;
+
+    CursorRow(Cursor cursor) {
+        mCursor = cursor;
+    }
+
+    @Override
+    public int getColumnIndex(String columnName) {
+        return mCursor.getColumnIndex(columnName);
+    }
+
+    @Override
+    public boolean isNull(int index) {
+        return mCursor.isNull(index);
+    }
+
+    @Override
+    public int getInt(int index) {
+        return mCursor.getInt(index);
+    }
+
+    @Override
+    public long getLong(int index) {
+        return mCursor.getLong(index);
+    }
+
+    @Override
+    public double getDouble(int index) {
+        return mCursor.getDouble(index);
+    }
+
+    @Override
+    public String getString(int index) {
+        return mCursor.getString(index);
+    }
+}
@@ -1,22 +1,37 @@
 package com.deakishin.weatherapp.model.localdb.impl;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.util.Log;
 
 import com.deakishin.weatherapp.model.entities.DataStatus;
 import com.deakishin.weatherapp.model.entities.WeatherData;
 import com.deakishin.weatherapp.model.localdb.LocalDb;
+import com.deakishin.weatherapp.model.localdb.LocalDbOptions;
 import com.deakishin.weatherapp.model.localdb.QueryListResult;
+import com.deakishin.weatherapp.model.localdb.Row;
+import com.deakishin.weatherapp.model.localdb.WindowedList;
 
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Синглетон-класс локальной базы данных.
+ * По умолчанию БД открывается в режиме WAL, так что чтение из UI не ждет транзакций записи
+ * из сервиса синхронизации. Параметры можно изменить через {@link #setOptions(LocalDbOptions)}.
+ * Из PRAGMA применяется только synchronous: mmap_size и cache_size действуют на одно соединение,
+ * а соединения для чтения система открывает сама.
+ * Запись идет через основное соединение SQLiteDatabase в потоке очереди записей ({@link GroupCommitQueue}).
+ * Задачи сервиса выполняются последовательно и пишут из одного потока, поэтому очередь не ждет
+ * других записей и объединяет в транзакцию только уже ожидающие, например, запись экрана во время записи
+ * сервиса. Методы записи ждут фиксации.
+ * Чтение из нескольких запросов (данные и их статус) выполняется в одном снимке данных:
+ * оно повторяется, если между запросами была зафиксирована запись ({@link CommitSequence}),
+ * и только после нескольких неудач выполняется в транзакции, ожидая записи. Класс потокобезопасный.
  */
 public class LocalDbImpl implements LocalDb {
 
@@ -26,24 +41,165 @@ public class LocalDbImpl implements LocalDb {
     private LocalDbHelper mDbHelper;
     // Объект для выполнения запросов к БД.
     private SQLiteDatabase mSQLiteDatabase;
+    // Запись через очередь записей с уведомлением наблюдателей.
+    private LocalDbWriter mWriter;
+    // Включен ли режим WAL.
+    private boolean mWriteAheadLogging;
+    // Наблюдатели изменений.
+    private final LocalDbObservers mObservers = new LocalDbObservers();
+    // Счетчик фиксаций записи для согласованного чтения.
+    private final CommitSequence mCommits = new CommitSequence();
+    // Очередь записей.
+    private GroupCommitQueue mWriteQueue;
 
     private static LocalDbImpl sLocalDb;
+    // БД с кэшем в памяти поверх sLocalDb.
+    private static CachingLocalDb sCachingLocalDb;
+    // Параметры, с которыми будет открыта БД.
+    private static LocalDbOptions sOptions = createDefaultOptions();
 
     /**
      * @param context Контекст приложения.
      * @return Объект для работы с локальной базой данных.
      */
-    public static LocalDbImpl getInstance(Context context) {
+    public static synchronized LocalDbImpl getInstance(Context context) {
         if (sLocalDb == null) {
-            sLocalDb = new LocalDbImpl(context);
+            sLocalDb = new LocalDbImpl(context, sOptions);
         }
         return sLocalDb;
     }
 
-    private LocalDbImpl(Context context) {
+    /**
+     * Экраны и сервис синхронизации должны работать с БД через этот объект,
+     * иначе кэш не узнает об их записи.
+     *
+     * @param context Контекст приложения.
+     * @return Объект для работы с локальной базой данных с кэшем в памяти.
+     */
+    public static synchronized LocalDb getCachedInstance(Context context) {
+        if (sCachingLocalDb == null) {
+            sCachingLocalDb = new CachingLocalDb(getInstance(context));
+        }
+        return sCachingLocalDb;
+    }
+
+    /**
+     * Закрывает БД и сбрасывает оба синглетона. Используется в тестах, где каждый тест
+     * получает новый контекст приложения.
+     */
+    static synchronized void resetInstances() {
+        if (sLocalDb != null) {
+            sLocalDb.mWriteQueue.close();
+            sLocalDb.mDbHelper.close();
+        }
+        sLocalDb = null;
+        sCachingLocalDb = null;
+    }
+
+    /**
+     * Задает параметры открытия БД. Действует, только если вызван до первого вызова getInstance().
+     *
+     * @param options Параметры БД.
+     */
+    public static synchronized void setOptions(LocalDbOptions options) {
+        sOptions = options;
+    }
+
+    // Возвращает параметры по умолчанию: режим WAL с синхронизацией с диском только при контрольных точках
+    // и объединение в одну транзакцию только уже ожидающих записей. Окно ожидания не задается: одновременных
+    // записей из нескольких потоков в приложении нет, и окно лишь задерживало бы каждую запись.
+    private static LocalDbOptions createDefaultOptions() {
+        LocalDbOptions options = new LocalDbOptions();
+        options.setWriteAheadLogging(true);
+        options.setSynchronous(LocalDbOptions.Synchronous.NORMAL);
+        options.setMaxWritesPerTransaction(32);
+        options.setGroupCommitWindowMs(0);
+        return options;
+    }
+
+    private LocalDbImpl(Context context, LocalDbOptions options) {
         mDbHelper = new LocalDbHelper(context.getApplicationContext());
 
         mSQLiteDatabase = mDbHelper.getWritableDatabase();
+        if (options.isWriteAheadLogging()) {
+            // В режиме WAL система открывает пул соединений, и запросы из разных потоков
+            // выполняются параллельно с транзакцией записи.
+            mWriteAheadLogging = mSQLiteDatabase.enableWriteAheadLogging();
+        }
+        if (options.getSynchronous() != null) {
+            // synchronous нужен только соединению записи, а им здесь является основное соединение.
+            // PRAGMA возвращает строку, поэтому выполняется как запрос, а не через execSQL().
+            Cursor c = mSQLiteDatabase.rawQuery("PRAGMA synchronous = " + options.getSynchronous(), null);
+            c.moveToFirst();
+            c.close();
+        }
+        if (options.getMmapSizeBytes() >= 0 || options.getCacheSizeKb() > 0) {
+            // Эти PRAGMA действуют на одно соединение, а соединения для чтения в режиме WAL система
+            // открывает сама, без доступа к ним. Примененные к основному соединению, они не ускорили бы
+            // чтение из UI, поэтому не применяются вовсе.
+            Log.w(TAG, "mmap_size and cache_size are not supported on Android and are ignored");
+        }
+        Log.i(TAG, "Local database opened. WAL: " + mWriteAheadLogging + ". Options: " + options);
+        mWriteQueue = new GroupCommitQueue("LocalDb writer", new GroupCommitQueue.Transactions() {
+            @Override
+            public void begin() {
+                beginWriteTransaction();
+            }
+
+            @Override
+            public void end(boolean success) {
+                if (success) {
+                    mSQLiteDatabase.setTransactionSuccessful();
+                }
+                endWriteTransaction();
+            }
+        }, options.getMaxWritesPerTransaction(), options.getGroupCommitWindowMs());
+        // Статус читается в транзакции записи через основное соединение и видит эту запись.
+        mWriter = new LocalDbWriter(mWriteQueue, new WeatherBatchWriter(new SQLiteStatements(mSQLiteDatabase)),
+                mObservers, new LocalDbWriter.DataStatusReader() {
+                    @Override
+                    public DataStatus getDataStatus(int dataId) {
+                        return LocalDbImpl.this.getDataStatus(dataId);
+                    }
+                });
+    }
+
+    // Начинает транзакцию записи. В режиме WAL транзакция не эксклюзивная,
+    // поэтому запросы на чтение из других потоков не ждут ее завершения.
+    private void beginWriteTransaction() {
+        if (mWriteAheadLogging) {
+            mSQLiteDatabase.beginTransactionNonExclusive();
+        } else {
+            mSQLiteDatabase.beginTransaction();
+        }
+    }
+
+    // Завершает транзакцию записи, фиксируя изменения, если для нее вызван setTransactionSuccessful().
+    private void endWriteTransaction() {
+        mCommits.beginCommit();
+        try {
+            mSQLiteDatabase.endTransaction();
+        } finally {
+            mCommits.endCommit();
+        }
+    }
+
+    // Выполняет чтение из нескольких запросов в одном снимке данных. Сначала без блокировок,
+    // а если каждая попытка пересеклась с фиксацией записи, то в транзакции основного соединения.
+    private <T> T readSnapshot(CommitSequence.Read<T> read) {
+        T result = mCommits.readOptimistically(read);
+        if (result != null) {
+            return result;
+        }
+        Log.i(TAG, "Reading in a transaction after concurrent commits");
+        beginWriteTransaction();
+        try {
+            result = read.read();
+            mSQLiteDatabase.setTransactionSuccessful();
+        } finally {
+            mSQLiteDatabase.endTransaction();
+        }
+        return result;
     }
 
     @Override
@@ -51,68 +207,98 @@ public class LocalDbImpl implements LocalDb {
         return getWeathers(false, 0);
     }
 
-    // Возвращает записи по погоде. Если forecast, то возвращаются данные по текущей погоде,
-    // иначе - по прогнозу погоды для города с идентификатором cityId.
-    private QueryListResult<WeatherData> getWeathers(boolean forecast, int cityId) {
+    @Override
+    public QueryListResult<WeatherData> getCurrentWeatherDataWindowed(final int windowSize) {
+        return readSnapshot(new CommitSequence.Read<QueryListResult<WeatherData>>() {
+            @Override
+            public QueryListResult<WeatherData> read() {
+                int count = (int) DatabaseUtils.queryNumEntries(mSQLiteDatabase,
+                        LocalDbContract.Weathers.TABLE_NAME, LocalDbContract.Weathers.COLUMN_NAME_IS_FORECAST + " = 0");
+                Log.i(TAG, "Returning windowed current weather data. Size: " + count
+                        + ". Window size: " + windowSize);
+
+                WindowedList<WeatherData> data = new WindowedList<>(count, windowSize,
+                        new WindowedList.Loader<WeatherData>() {
+                            @Override
+                            public WindowedList.Window<WeatherData> load(int offset, int count) {
+                                return getCurrentWeatherWindow(offset, count);
+                            }
+                        });
+                return new QueryListResult<WeatherData>(data, getDataStatus(false, 0));
+            }
+        });
+    }
+
+    // Возвращает окно из count строк текущей погоды со статусами городов, начиная с позиции offset.
+    // Строки и статусы читаются одним запросом, поэтому окно согласовано без транзакции.
+    private WindowedList.Window<WeatherData> getCurrentWeatherWindow(int offset, int count) {
+        List<WeatherData> dataList = new ArrayList<>(count);
+        Map<Integer, DataStatus> itemStatuses = new HashMap<>();
+        Cursor c = mSQLiteDatabase.query(LocalDbSchema.SQL_WEATHERS_WITH_CITIES, WeatherRowMapper.PROJECTION,
+                LocalDbSchema.CURRENT_WEATHER_WINDOW_SELECTION, new String[]{"" + count, "" + offset},
+                null, null, LocalDbSchema.CURRENT_WEATHER_ORDER_BY);
+        Row row = new CursorRow(c);
+        WeatherRowMapper mapper = new WeatherRowMapper(row);
+        while (c.moveToNext()) {
+            WeatherData data = mapper.map(row, false);
+            itemStatuses.put(data.getId(), mapper.mapItemStatus(row));
+            dataList.add(data);
+        }
+        c.close();
+        return new WindowedList.Window<>(dataList, itemStatuses);
+    }
+
+    // Возвращает записи по погоде и их статус из одного снимка данных.
+    private QueryListResult<WeatherData> getWeathers(final boolean forecast, final int cityId) {
+        return readSnapshot(new CommitSequence.Read<QueryListResult<WeatherData>>() {
+            @Override
+            public QueryListResult<WeatherData> read() {
+                return queryWeathers(forecast, cityId);
+            }
+        });
+    }
+
+    // Возвращает записи по погоде. Если forecast, то возвращаются данные по прогнозу погоды
+    // для города с идентификатором cityId, иначе - по текущей погоде с названиями городов.
+    private QueryListResult<WeatherData> queryWeathers(boolean forecast, int cityId) {
         Log.i(TAG, "Executing query for weather data. Forecast: " + forecast + ". CityId: " + cityId);
 
         QueryListResult<WeatherData> result = new QueryListResult<>();
 
         List<WeatherData> dataList = new ArrayList<>();
+        // Статусы обновления городов. Есть только для текущей погоды.
+        Map<Integer, DataStatus> itemStatuses = forecast ? null : new HashMap<Integer, DataStatus>();
 
         SQLiteDatabase db = mSQLiteDatabase;
 
-        String[] projection = {
-                LocalDbContract.Weathers.COLUMN_NAME_CITY_ID,
-                LocalDbContract.Weathers.COLUMN_NAME_CITY_NAME,
-                LocalDbContract.Weathers.COLUMN_NAME_COUNTRY,
-                LocalDbContract.Weathers.COLUMN_NAME_TEMP,
-                LocalDbContract.Weathers.COLUMN_NAME_HUMIDITY,
-                LocalDbContract.Weathers.COLUMN_NAME_PRESSURE,
-                LocalDbContract.Weathers.COLUMN_NAME_WIND,
-                LocalDbContract.Weathers.COLUMN_NAME_CLOUDS,
-                LocalDbContract.Weathers.COLUMN_NAME_ICON_ID,
-                LocalDbContract.Weathers.COLUMN_NAME_DATE
-        };
-
+        String table;
+        String[] projection;
         String selection = null;
         String[] selectionArgs;
         String orderBy = null;
         if (forecast) {
+            // Названия города в строках прогноза не нужны, поэтому запрос без соединения с таблицей городов.
+            table = LocalDbContract.Weathers.TABLE_NAME;
+            projection = WeatherRowMapper.FORECAST_PROJECTION;
             selection = LocalDbContract.Weathers.COLUMN_NAME_IS_FORECAST + " = ? and "
                     + LocalDbContract.Weathers.COLUMN_NAME_CITY_ID + " = ?";
             selectionArgs = new String[]{"1", "" + cityId};
             orderBy = LocalDbContract.Weathers.COLUMN_NAME_DATE + " ASC";
         } else {
+            table = LocalDbSchema.SQL_WEATHERS_WITH_CITIES;
+            projection = WeatherRowMapper.PROJECTION;
             selection = LocalDbContract.Weathers.COLUMN_NAME_IS_FORECAST + " = ?";
             selectionArgs = new String[]{"0"};
+            orderBy = LocalDbSchema.CURRENT_WEATHER_ORDER_BY;
         }
 
-        Cursor c = db.query(LocalDbContract.Weathers.TABLE_NAME, projection, selection, selectionArgs, null, null, orderBy);
-        int idIdx = c.getColumnIndex(LocalDbContract.Weathers.COLUMN_NAME_CITY_ID);
-        int cityIdx = c.getColumnIndex(LocalDbContract.Weathers.COLUMN_NAME_CITY_NAME);
-        int countryIdx = c.getColumnIndex(LocalDbContract.Weathers.COLUMN_NAME_COUNTRY);
-        int tempIdx = c.getColumnIndex(LocalDbContract.Weathers.COLUMN_NAME_TEMP);
-        int humidIdx = c.getColumnIndex(LocalDbContract.Weathers.COLUMN_NAME_HUMIDITY);
-        int pressIdx = c.getColumnIndex(LocalDbContract.Weathers.COLUMN_NAME_PRESSURE);
-        int windIdx = c.getColumnIndex(LocalDbContract.Weathers.COLUMN_NAME_WIND);
-        int cloudsIdx = c.getColumnIndex(LocalDbContract.Weathers.COLUMN_NAME_CLOUDS);
-        int iconIdx = c.getColumnIndex(LocalDbContract.Weathers.COLUMN_NAME_ICON_ID);
-        int dateIdx = c.getColumnIndex(LocalDbContract.Weathers.COLUMN_NAME_DATE);
-
+        Cursor c = db.query(table, projection, selection, selectionArgs, null, null, orderBy);
+        Row row = new CursorRow(c);
+        WeatherRowMapper mapper = new WeatherRowMapper(row);
         while (c.moveToNext()) {
-            WeatherData data = new WeatherData();
-            data.setId(c.isNull(idIdx) ? -1 : c.getInt(idIdx));
-            data.setCityName(c.getString(cityIdx));
-            data.setCountry(c.getString(countryIdx));
-            data.setTemp(getDoubleValue(c, tempIdx));
-            data.setHumidity(getDoubleValue(c, humidIdx));
-            data.setPressure(getDoubleValue(c, pressIdx));
-            data.setWind(getDoubleValue(c, windIdx));
-            data.setClouds(getDoubleValue(c, cloudsIdx));
-            data.setWeatherIconId(c.getString(iconIdx));
-            if (forecast) {
-                data.setDate(c.isNull(dateIdx) ? null : new Date(c.getLong(dateIdx)));
+            WeatherData data = mapper.map(row, forecast);
+            if (!forecast) {
+                itemStatuses.put(data.getId(), mapper.mapItemStatus(row));
             }
             dataList.add(data);
         }
@@ -121,40 +307,23 @@ public class LocalDbImpl implements LocalDb {
 
         result.setData(dataList);
         result.setDataStatus(getDataStatus(forecast, cityId));
+        result.setItemStatuses(itemStatuses);
 
         Log.i(TAG, "Returning result for query for weather data. Forecast: " + forecast
                 + ". CityId: " + cityId + ". Data size: " + dataList.size());
         return result;
     }
 
-    // Возвращает значение типа Double или null из курсора c по индексу index.
-    private Double getDoubleValue(Cursor c, int index) {
-        return c.isNull(index) ? null : c.getDouble(index);
-    }
-
     // Возвращает статус данных. forecast - данные по прогнозу погоде, cityId - идентификатор города,
     // если данные по прогнозу погоды.
     private DataStatus getDataStatus(boolean forecast, int cityId) {
-        SQLiteDatabase db = mSQLiteDatabase;
-
-        String[] projection = {
-                LocalDbContract.Meta.COLUMN_REFRESHING, LocalDbContract.Meta.COLUMN_LAST_UPDATE
-        };
-
-        String[] selectionArgs = new String[]{"" + getDataId(forecast, cityId)};
-
-        Cursor c = db.query(LocalDbContract.Meta.TABLE_NAME, projection, LocalDbContract.Meta.COLUMN_DATA_ID + " = ?",
-                selectionArgs, null, null, null);
-        int refreshIdx = c.getColumnIndex(LocalDbContract.Meta.COLUMN_REFRESHING);
-        int lastUpdIdx = c.getColumnIndex(LocalDbContract.Meta.COLUMN_LAST_UPDATE);
-
-        DataStatus dataStatus = null;
-        if (c.moveToFirst()) {
-            dataStatus = new DataStatus();
-            dataStatus.setRefreshing(!c.isNull(refreshIdx) && c.getInt(refreshIdx) > 0);
-            dataStatus.setLastUpdate(c.isNull(lastUpdIdx) ? null : new Date(c.getLong(lastUpdIdx)));
-        }
+        return getDataStatus(LocalDbWriter.getDataId(forecast, cityId));
+    }
 
+    // Возвращает статус данных с идентификатором dataId или null, если их нет.
+    private DataStatus getDataStatus(int dataId) {
+        Cursor c = mSQLiteDatabase.rawQuery(LocalDbSchema.SQL_SELECT_DATA_STATUS, new String[]{"" + dataId});
+        DataStatus dataStatus = c.moveToFirst() ? WeatherRowMapper.mapDataStatus(new CursorRow(c)) : null;
         c.close();
         return dataStatus;
     }
@@ -172,7 +341,8 @@ public class LocalDbImpl implements LocalDb {
         String selection = LocalDbContract.Weathers.COLUMN_NAME_IS_FORECAST + " = ?";
         String[] selectionArgs = new String[]{"" + 0};
 
-        Cursor c = db.query(LocalDbContract.Weathers.TABLE_NAME, projection, selection, selectionArgs, null, null, null);
+        Cursor c = db.query(LocalDbContract.Weathers.TABLE_NAME, projection, selection, selectionArgs, null, null,
+                LocalDbSchema.CURRENT_WEATHER_ORDER_BY);
         int idIdx = c.getColumnIndex(LocalDbContract.Weathers.COLUMN_NAME_CITY_ID);
 
         while (c.moveToNext()) {
@@ -188,57 +358,39 @@ public class LocalDbImpl implements LocalDb {
 
     @Override
     public void updateCurrentWeatherData(List<WeatherData> dataList) {
-        updateWeatherData(dataList, false, 0);
+        mWriter.updateWeatherData(dataList, false, 0);
     }
 
-    // Обновляет данные по погоде из списка. forecast - данные по прогнозу погоды для города с cityId,
-    // иначе, данные по текущей погоде.
-    private void updateWeatherData(List<WeatherData> dataList, boolean forecast, int cityId) {
-        SQLiteDatabase db = mSQLiteDatabase;
+    @Override
+    public void updateCurrentWeatherErrors(Map<Integer, String> errors) {
+        mWriter.updateCurrentWeatherErrors(errors);
+    }
 
-        String selection = LocalDbContract.Weathers.COLUMN_NAME_CITY_ID + " = ? and "
-                + LocalDbContract.Weathers.COLUMN_NAME_IS_FORECAST + " = ?";
+    @Override
+    public List<Integer> getFailedCitiesIds() {
+        List<Integer> ids = new ArrayList<>();
 
-        db.beginTransaction();
+        String[] projection = {
+                LocalDbContract.Weathers.COLUMN_NAME_CITY_ID,
+        };
 
-        if (forecast) {
-            db.delete(LocalDbContract.Weathers.TABLE_NAME, selection, new String[]{"" + cityId, "" + 1});
-        }
+        String selection = LocalDbContract.Weathers.COLUMN_NAME_IS_FORECAST + " = ? and "
+                + LocalDbContract.Weathers.COLUMN_NAME_ERROR + " is not null";
+        String[] selectionArgs = new String[]{"" + 0};
+
+        Cursor c = mSQLiteDatabase.query(LocalDbContract.Weathers.TABLE_NAME, projection, selection,
+                selectionArgs, null, null, LocalDbSchema.CURRENT_WEATHER_ORDER_BY);
+        int idIdx = c.getColumnIndex(LocalDbContract.Weathers.COLUMN_NAME_CITY_ID);
 
-        for (WeatherData item : dataList) {
-            ContentValues values = convertToContentValues(item, forecast);
-            if (forecast) {
-               // values.put(LocalDbContract.Weathers.COLUMN_NAME_CITY_ID, item.getId());
-                db.insert(LocalDbContract.Weathers.TABLE_NAME, null, values);
-            } else {
-                String[] selectionArgs = {String.valueOf(item.getId()), String.valueOf(0)};
-                db.update(
-                        LocalDbContract.Weathers.TABLE_NAME,
-                        values,
-                        selection,
-                        selectionArgs);
+        while (c.moveToNext()) {
+            if (!c.isNull(idIdx)) {
+                ids.add(c.getInt(idIdx));
             }
         }
-        db.setTransactionSuccessful();
-        db.endTransaction();
-    }
 
-    // Конвертирует данные о погоде в данные для БД. forecast - данные по прогнозу погоды,
-    // иначе по текущей погоде.
-    private ContentValues convertToContentValues(WeatherData item, boolean forecast){
-        ContentValues values = new ContentValues();
-        values.put(LocalDbContract.Weathers.COLUMN_NAME_CITY_NAME, item.getCityName());
-        values.put(LocalDbContract.Weathers.COLUMN_NAME_COUNTRY, item.getCountry());
-        values.put(LocalDbContract.Weathers.COLUMN_NAME_TEMP, item.getTemp());
-        values.put(LocalDbContract.Weathers.COLUMN_NAME_HUMIDITY, item.getHumidity());
-        values.put(LocalDbContract.Weathers.COLUMN_NAME_WIND, item.getWind());
-        values.put(LocalDbContract.Weathers.COLUMN_NAME_PRESSURE, item.getPressure());
-        values.put(LocalDbContract.Weathers.COLUMN_NAME_CLOUDS, item.getClouds());
-        values.put(LocalDbContract.Weathers.COLUMN_NAME_ICON_ID, item.getWeatherIconId());
-        values.put(LocalDbContract.Weathers.COLUMN_NAME_IS_FORECAST, forecast);
-        values.put(LocalDbContract.Weathers.COLUMN_NAME_DATE, item.getDate() == null ? null : item.getDate().getTime());
-        values.put(LocalDbContract.Weathers.COLUMN_NAME_CITY_ID, item.getId());
-        return values;
+        c.close();
+
+        return ids;
     }
 
     @Override
@@ -248,40 +400,13 @@ public class LocalDbImpl implements LocalDb {
 
     @Override
     public void updateCurrentWeatherDataStatus(DataStatus status) {
-        updateWeatherDataStatus(status, false, 0);
-    }
-
-    // Обновляет статус данных по погоде. forecast - данные по прогнозу погоды для города с cityId.
-    // Иначе, данные по текущей погоде.
-    private void updateWeatherDataStatus(DataStatus status, boolean forecast, int cityId) {
-        SQLiteDatabase db = mSQLiteDatabase;
-
-        String selection = LocalDbContract.Meta.COLUMN_DATA_ID + " = ?";
-        String[] selectionArgs = {"" + getDataId(forecast, cityId)};
-
-        ContentValues values = new ContentValues();
-        values.put(LocalDbContract.Meta.COLUMN_REFRESHING, status.isRefreshing());
-        if (status.getLastUpdate() != null) {
-            values.put(LocalDbContract.Meta.COLUMN_LAST_UPDATE, status.getLastUpdate().getTime());
-        }
-        db.update(
-                LocalDbContract.Meta.TABLE_NAME,
-                values,
-                selection,
-                selectionArgs);
-    }
-
-    // Возвращает идентификатор данных. Если forecast==true, то идентификатор -
-    //  id города, по которому данные предоставляют прогноз погоды.
-    // Иначе -1.
-    private int getDataId(boolean forecast, int cityId) {
-        return forecast ? cityId : LocalDbHelper.CURRENT_WEATHER_DATA_ID;
+        mWriter.updateWeatherDataStatus(status, false, 0);
     }
 
     @Override
     public void updateWeatherForecast(int cityId, List<WeatherData> dataList) {
         Log.i(TAG, "Updating weather forecast. CityId: " + cityId + ". Size: " + dataList.size());
-        updateWeatherData(dataList, true, cityId);
+        mWriter.updateWeatherData(dataList, true, cityId);
     }
 
     @Override
@@ -296,26 +421,26 @@ public class LocalDbImpl implements LocalDb {
 
     @Override
     public void updateForecastDataStatus(DataStatus status, int cityId) {
-        updateWeatherDataStatus(status, true, cityId);
+        mWriter.updateWeatherDataStatus(status, true, cityId);
     }
 
     @Override
     public void addCityWithCurrentWeather(WeatherData data) {
-        SQLiteDatabase db = mSQLiteDatabase;
+        mWriter.addCityWithCurrentWeather(data);
+    }
 
-        db.beginTransaction();
-        int id = data.getId(); // Id города.
-        if (!getCitiesIds().contains(id)){ // Проверяем, что города еще нет в базе.
-            // Добавляем в базу данные о текущей погоде.
-            db.insert(LocalDbContract.Weathers.TABLE_NAME, null, convertToContentValues(data, false));
-
-            // Добавляем мета данные о новых данных.
-            ContentValues cvMeta = new ContentValues();
-            cvMeta.put(LocalDbContract.Meta.COLUMN_DATA_ID, id);
-            cvMeta.put(LocalDbContract.Meta.COLUMN_REFRESHING, 0);
-            db.insert(LocalDbContract.Meta.TABLE_NAME, null, cvMeta);
-        }
-        db.setTransactionSuccessful();
-        db.endTransaction();
+    @Override
+    public void observeCurrentWeather(Observer observer) {
+        mObservers.observeCurrentWeather(observer);
+    }
+
+    @Override
+    public void observeForecast(int cityId, Observer observer) {
+        mObservers.observeForecast(cityId, observer);
+    }
+
+    @Override
+    public void removeObserver(Observer observer) {
+        mObservers.removeObserver(observer);
     }
 }
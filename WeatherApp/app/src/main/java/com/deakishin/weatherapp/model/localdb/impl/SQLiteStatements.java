@@ -0,0 +1,74 @@
+package com.deakishin.weatherapp.model.localdb.impl;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.deakishin.weatherapp.model.localdb.Row;
+
+/**
+ * Компиляция запросов {@link WeatherBatchWriter} в {@link SQLiteStatement} и выполнение запросов на чтение.
+ */
+class SQLiteStatements implements WeatherBatchWriter.Statements {
+
+    // БД, для которой компилируются запросы.
+    private final SQLiteDatabase mDb;
+
+    SQLiteStatements(SQLiteDatabase db) {
+        mDb = db;
+    }
+
+    @Override
+    public WeatherBatchWriter.Statement compileStatement(String sql) {
+        final SQLiteStatement statement = mDb.compileStatement(sql);
+        return new WeatherBatchWriter.Statement() {
+            @Override
+            public void clearBindings() {
+                statement.clearBindings();
+            }
+
+            @Override
+            public void bindLong(int index, long value) {
+                statement.bindLong(index, value);
+            }
+
+            @Override
+            public void bindDouble(int index, double value) {
+                statement.bindDouble(index, value);
+            }
+
+            @Override
+            public void bindString(int index, String value) {
+                statement.bindString(index, value);
+            }
+
+            @Override
+            public int executeUpdateDelete() {
+                return statement.executeUpdateDelete();
+            }
+
+            @Override
+            public long executeInsert() {
+                return statement.executeInsert();
+            }
+
+            @Override
+            public void close() {
+                statement.close();
+            }
+        };
+    }
+
+    @Override
+    public void query(String sql, String[] args, WeatherBatchWriter.RowReader reader) {
+        Cursor c = mDb.rawQuery(sql, args);
+        try {
+            Row row = new CursorRow(c);
+            while (c.moveToNext()) {
+                reader.read(row);
+            }
+        } finally {
+            c.close();
+        }
+    }
+}
@@ -12,5 +12,8 @@ public class RestMethodsContract {
 
         /** Добавить новый город с его текущей погодой по его названию. */
         public static final int ADD_CITY = 3;
+
+        /** Обновить текущую погоду для городов, последнее обновление которых завершилось ошибкой. */
+        public static final int REFRESH_FAILED_WEATHERS = 4;
     }
 }
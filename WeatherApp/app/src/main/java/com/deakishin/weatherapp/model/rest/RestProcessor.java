@@ -7,11 +7,24 @@ import com.deakishin.weatherapp.model.entities.DataStatus;
 import com.deakishin.weatherapp.model.entities.WeatherData;
 import com.deakishin.weatherapp.model.localdb.LocalDb;
 import com.deakishin.weatherapp.model.localdb.impl.LocalDbImpl;
+import com.deakishin.weatherapp.model.rest.restclient.Deadline;
+import com.deakishin.weatherapp.model.rest.restclient.ResponseCache;
+import com.deakishin.weatherapp.model.rest.restclient.RestError;
+import com.deakishin.weatherapp.model.rest.restclient.RetryPolicy;
 import com.deakishin.weatherapp.model.rest.restclient.SyncRestClient;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Класс для выполнения Rest-методов и записи результатов в локальную БД.
@@ -21,57 +34,259 @@ public class RestProcessor {
 
     private final String TAG = getClass().getSimpleName();
 
+    /**
+     * Количество потоков по умолчанию для параллельного обновления текущей погоды.
+     */
+    public static final int DEFAULT_REFRESH_THREADS = 4;
+
+    // Максимальное время ожидания завершения параллельного обновления в секундах.
+    private static final long REFRESH_TIMEOUT_SEC = 120;
+
     // Объект для выполнения Rest-методов.
     private SyncRestClient mRestApi;
     // Объект для работы с локальной БД.
     private LocalDb mLocalDb;
 
+    // Время в мс, которое дается на запись результатов после истечения срока операции.
+    private static final long DEADLINE_GRACE_MS = 2 * 1000;
+
+    // Количество потоков для обновления текущей погоды. Если не больше 1,
+    // то запросы выполняются последовательно в вызывающем потоке.
+    private final int mRefreshThreads;
+
+    // Срок выполнения операций или null, если срок не ограничен.
+    private final Deadline mDeadline;
+
     public RestProcessor(Context context) {
-        mLocalDb = LocalDbImpl.getInstance(context.getApplicationContext());
-        mRestApi = new SyncRestClient();
+        this(context, DEFAULT_REFRESH_THREADS);
+    }
+
+    /**
+     * @param context  Контекст.
+     * @param deadline Срок выполнения операций или null, если срок не ограничен.
+     *                 По его истечении или при отмене выполняющиеся запросы прерываются,
+     *                 а уже полученные результаты записываются в БД.
+     */
+    public RestProcessor(Context context, Deadline deadline) {
+        this(context, DEFAULT_REFRESH_THREADS, deadline);
+    }
+
+    /**
+     * @param context        Контекст.
+     * @param refreshThreads Максимальное количество потоков для одновременных запросов
+     *                       при обновлении текущей погоды. Если не больше 1,
+     *                       то запросы выполняются последовательно.
+     */
+    public RestProcessor(Context context, int refreshThreads) {
+        this(context, refreshThreads, null);
+    }
+
+    /**
+     * @param context        Контекст.
+     * @param refreshThreads Максимальное количество потоков для одновременных запросов
+     *                       при обновлении текущей погоды. Если не больше 1,
+     *                       то запросы выполняются последовательно.
+     * @param deadline       Срок выполнения операций или null, если срок не ограничен.
+     */
+    public RestProcessor(Context context, int refreshThreads, Deadline deadline) {
+        this(LocalDbImpl.getCachedInstance(context.getApplicationContext()),
+                new SyncRestClient(ResponseCache.getInstance(context), RetryPolicy.DEFAULT, deadline),
+                refreshThreads, deadline);
+    }
+
+    /**
+     * Создает объект с заданными БД и клиентом. Используется для запуска операций
+     * вне устройства, например, в тестах с транспортом {@link com.deakishin.weatherapp.model.rest.restclient.ReplayTransport}.
+     *
+     * @param localDb        Локальная БД.
+     * @param restClient     Клиент для выполнения Rest-методов.
+     * @param refreshThreads Максимальное количество потоков для одновременных запросов
+     *                       при обновлении текущей погоды.
+     * @param deadline       Срок выполнения операций или null, если срок не ограничен.
+     */
+    public RestProcessor(LocalDb localDb, SyncRestClient restClient, int refreshThreads, Deadline deadline) {
+        mLocalDb = localDb;
+        mRestApi = restClient;
+        mRefreshThreads = refreshThreads;
+        mDeadline = deadline;
     }
 
     /**
      * Обновляет все данные по текущей погоде.
+     * Города запрашиваются группами по {@link SyncRestClient#MAX_BATCH_SIZE}, запросы для групп
+     * выполняются параллельно в пуле потоков. Результат каждой группы записывается в БД сразу
+     * по получении, так что ошибка в одной группе не отменяет обновление остальных.
+     * Для городов, которые обновить не удалось, в БД запоминается ошибка, а в статусе всех данных -
+     * ошибка {@link RestError#PARTIAL}.
+     * Обновление выполняется по запросу пользователя, поэтому данные всегда запрашиваются
+     * с сервера, минуя кэш ответов.
      *
-     * @return True, если операция проведена успешно, false в противном случае.
+     * @return True, если обновлены все города, false в противном случае.
      */
     public boolean refreshAllWeathers() {
-        mLocalDb.updateCurrentWeatherDataStatus(new DataStatus(true));
+        return refreshWeathers(mLocalDb.getCitiesIds());
+    }
+
+    /**
+     * Обновляет текущую погоду только для тех городов, последнее обновление которых
+     * завершилось ошибкой.
+     *
+     * @return True, если обновлены все такие города, false в противном случае.
+     */
+    public boolean refreshFailedWeathers() {
+        return refreshWeathers(mLocalDb.getFailedCitiesIds());
+    }
+
+    /**
+     * Результат запроса текущей погоды для группы городов.
+     */
+    private static class BatchResult {
+        // Идентификаторы запрошенных городов.
+        final List<Integer> mIds;
+        // Полученные данные или null в случае ошибки.
+        final List<WeatherData> mData;
+        // Ошибка или null в случае успеха.
+        final RestError mError;
 
-        List<Integer> ids = mLocalDb.getCitiesIds();
+        BatchResult(List<Integer> ids, List<WeatherData> data, RestError error) {
+            mIds = ids;
+            mData = data;
+            mError = error;
+        }
+    }
 
-        final List<WeatherData> items = new ArrayList<>();
+    // Обновляет текущую погоду для городов с идентификаторами ids.
+    // Возвращает true, если обновлены все города.
+    private boolean refreshWeathers(List<Integer> ids) {
+        mLocalDb.updateCurrentWeatherDataStatus(new DataStatus(true));
 
-        for (int id : ids) {
-            mRestApi.getCurrentWeather(id, new SyncRestClient.ResponseHandler<WeatherData>() {
-                @Override
-                public void onSuccess(WeatherData data) {
-                    Log.i(TAG, "Received weather object from Rest client: " + data.toString());
-                    items.add(data);
+        // Города запрашиваются группами, по одному запросу на группу.
+        List<List<Integer>> batches = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += SyncRestClient.MAX_BATCH_SIZE) {
+            batches.add(ids.subList(i, Math.min(i + SyncRestClient.MAX_BATCH_SIZE, ids.size())));
+        }
+
+        // Если обновление прервется исключением, то все города считаются необновленными,
+        // а флаг обновления все равно сбрасывается.
+        int failedCount = ids.size();
+        try {
+            if (mRefreshThreads > 1 && batches.size() > 1) {
+                failedCount = refreshBatchesConcurrently(batches);
+            } else {
+                int count = 0;
+                for (List<Integer> batch : batches) {
+                    count += commitBatchResult(fetchCurrentWeatherBatch(batch));
                 }
+                failedCount = count;
+            }
+        } finally {
+            DataStatus dataStatus = new DataStatus(false);
+            if (failedCount == 0) {
+                dataStatus.setLastUpdate(new Date());
+            } else {
+                Log.e(TAG, "Failed to refresh " + failedCount + " of " + ids.size() + " cities");
+                dataStatus.setError(RestError.PARTIAL.name());
+            }
+            mLocalDb.updateCurrentWeatherDataStatus(dataStatus);
+        }
+        return failedCount == 0;
+    }
+
+    // Запрашивает текущую погоду для группы городов с идентификаторами ids.
+    private BatchResult fetchCurrentWeatherBatch(final List<Integer> ids) {
+        final BatchResult[] result = new BatchResult[1];
+        mRestApi.getCurrentWeatherBatch(ids, false, new SyncRestClient.ResponseHandler<List<WeatherData>>() {
+            @Override
+            public void onSuccess(List<WeatherData> dataList) {
+                Log.i(TAG, "Received " + dataList.size() + " weather objects from Rest client");
+                result[0] = new BatchResult(ids, dataList, null);
+            }
+
+            @Override
+            public void onError(RestError error) {
+                result[0] = new BatchResult(ids, null, error);
+            }
+        });
+        return result[0];
+    }
+
+    // Записывает результат запроса группы городов в БД: данные полученных городов
+    // и ошибки для остальных. Возвращает количество городов, которые обновить не удалось.
+    private int commitBatchResult(BatchResult result) {
+        Set<Integer> receivedIds = new HashSet<>();
+        if (result.mData != null && !result.mData.isEmpty()) {
+            mLocalDb.updateCurrentWeatherData(result.mData);
+            for (WeatherData data : result.mData) {
+                receivedIds.add(data.getId());
+            }
+        }
 
+        RestError error = result.mError == null ? RestError.NO_DATA : result.mError;
+        Map<Integer, String> errors = new HashMap<>();
+        for (int id : result.mIds) {
+            if (!receivedIds.contains(id)) {
+                errors.put(id, error.name());
+            }
+        }
+        if (!errors.isEmpty()) {
+            mLocalDb.updateCurrentWeatherErrors(errors);
+        }
+        return errors.size();
+    }
+
+    // Запрашивает текущую погоду для групп городов из batches в пуле из mRefreshThreads потоков.
+    // Результаты записываются в БД в вызывающем потоке по мере их получения.
+    // Возвращает количество городов, которые обновить не удалось.
+    private int refreshBatchesConcurrently(List<List<Integer>> batches) {
+        final BlockingQueue<BatchResult> results = new LinkedBlockingQueue<>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(mRefreshThreads, batches.size()));
+        for (final List<Integer> batch : batches) {
+            executor.execute(new Runnable() {
                 @Override
-                public void onError() {
+                public void run() {
+                    results.add(fetchCurrentWeatherBatch(batch));
                 }
             });
         }
+        executor.shutdown();
 
-        boolean success;
-        DataStatus dataStatus = new DataStatus(false);
-        if (items.size() == ids.size()) {
-            mLocalDb.updateCurrentWeatherData(items);
-            success = true;
-            dataStatus.setLastUpdate(new Date());
-        } else {
-            success = false;
+        // Группы, результаты которых еще не получены.
+        List<List<Integer>> pending = new ArrayList<>(batches);
+        int failedCount = 0;
+        long timeoutMs = TimeUnit.SECONDS.toMillis(REFRESH_TIMEOUT_SEC);
+        if (mDeadline != null) {
+            // После истечения срока запросы прерываются, и результаты групп
+            // поступают быстро. Небольшой запас дается на их запись.
+            timeoutMs = Math.min(timeoutMs, Math.max(0, mDeadline.getRemainingMs()) + DEADLINE_GRACE_MS);
         }
-        mLocalDb.updateCurrentWeatherDataStatus(dataStatus);
-        return success;
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        try {
+            while (!pending.isEmpty()) {
+                BatchResult result = results.poll(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                if (result == null) {
+                    Log.e(TAG, "Concurrent refresh timed out. Batches left: " + pending.size());
+                    break;
+                }
+                pending.remove(result.mIds);
+                failedCount += commitBatchResult(result);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (!pending.isEmpty()) {
+            executor.shutdownNow();
+            RestError error = mDeadline != null && mDeadline.isDone() ? RestError.CANCELLED : RestError.NETWORK;
+            for (List<Integer> batch : pending) {
+                failedCount += commitBatchResult(new BatchResult(batch, null, error));
+            }
+        }
+        return failedCount;
     }
 
     /**
-     * Обновляет прогноз погоды для конкретного города.
+     * Обновляет прогноз погоды для конкретного города. Прогноз всегда запрашивается с сервера,
+     * минуя кэш ответов, чтобы время обновления соответствовало данным.
      *
      * @param cityId Идентификатор города.
      * @return True, если операция проведена успешно, false в противном случае.
@@ -79,30 +294,38 @@ public class RestProcessor {
     public boolean refreshForecast(int cityId) {
         mLocalDb.updateForecastDataStatus(new DataStatus(true), cityId);
 
-        final List<WeatherData> forecastList = new ArrayList<>();
-        mRestApi.getForecast(cityId, new SyncRestClient.ResponseHandler<List<WeatherData>>() {
-            @Override
-            public void onSuccess(List<WeatherData> dataList) {
-                Log.i(TAG, "Received forecast list from Rest client: " + dataList.toString());
-                forecastList.addAll(dataList);
-            }
+        boolean success = false;
+        final RestError[] error = new RestError[1];
+        try {
+            final List<WeatherData> forecastList = new ArrayList<>();
+            mRestApi.getForecast(cityId, false, new SyncRestClient.ResponseHandler<List<WeatherData>>() {
+                @Override
+                public void onSuccess(List<WeatherData> dataList) {
+                    Log.i(TAG, "Received forecast list from Rest client: " + dataList.toString());
+                    forecastList.addAll(dataList);
+                }
 
-            @Override
-            public void onError() {
-                forecastList.clear();
-            }
-        });
+                @Override
+                public void onError(RestError e) {
+                    forecastList.clear();
+                    error[0] = e;
+                }
+            });
 
-        boolean success;
-        DataStatus dataStatus = new DataStatus(false);
-        if (!forecastList.isEmpty()) {
-            mLocalDb.updateWeatherForecast(cityId, forecastList);
-            success = true;
-            dataStatus.setLastUpdate(new Date());
-        } else {
-            success = false;
+            if (!forecastList.isEmpty()) {
+                mLocalDb.updateWeatherForecast(cityId, forecastList);
+                success = true;
+            }
+        } finally {
+            // Флаг обновления сбрасывается, даже если операция прервана.
+            DataStatus dataStatus = new DataStatus(false);
+            if (success) {
+                dataStatus.setLastUpdate(new Date());
+            } else {
+                dataStatus.setError((error[0] == null ? RestError.NO_DATA : error[0]).name());
+            }
+            mLocalDb.updateForecastDataStatus(dataStatus, cityId);
         }
-        mLocalDb.updateForecastDataStatus(dataStatus, cityId);
         return success;
     }
 
@@ -128,7 +351,7 @@ public class RestProcessor {
             }
 
             @Override
-            public void onError() {
+            public void onError(RestError error) {
                 dataList.clear();
             }
         });
@@ -0,0 +1,95 @@
+package com.deakishin.weatherapp.model.rest.restclient;
+
+import com.loopj.android.http.AsyncHttpClient;
+import com.loopj.android.http.AsyncHttpResponseHandler;
+import com.loopj.android.http.SyncHttpClient;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import cz.msebera.android.httpclient.Header;
+import cz.msebera.android.httpclient.entity.ByteArrayEntity;
+import cz.msebera.android.httpclient.message.BasicHeader;
+
+/**
+ * Транспорт на основе клиента android-async-http, выполняющего запросы синхронно.
+ * Срок выполнения запроса проверяется только перед его отправкой: синхронный клиент
+ * не позволяет прервать уже выполняющийся запрос.
+ */
+public class AsyncHttpTransport implements Transport {
+
+    /**
+     * Объекты для выполнения запросов на сервер.
+     * SyncHttpClient не рассчитан на одновременное использование из нескольких потоков,
+     * поэтому у каждого потока свой клиент.
+     */
+    private static final ThreadLocal<AsyncHttpClient> sClient = new ThreadLocal<AsyncHttpClient>() {
+        @Override
+        protected AsyncHttpClient initialValue() {
+            return new SyncHttpClient();
+        }
+    };
+
+    @Override
+    public HttpResponse execute(HttpRequest request) throws IOException {
+        if (request.getDeadline() != null && request.getDeadline().isDone()) {
+            throw new InterruptedIOException("Deadline expired or operation cancelled");
+        }
+
+        final HttpResponse[] response = new HttpResponse[1];
+        final Throwable[] error = new Throwable[1];
+
+        AsyncHttpResponseHandler handler = new AsyncHttpResponseHandler() {
+            @Override
+            public void onSuccess(int statusCode, Header[] headers, byte[] responseBody) {
+                response[0] = new HttpResponse(statusCode, toMap(headers), responseBody);
+            }
+
+            @Override
+            public void onFailure(int statusCode, Header[] headers, byte[] responseBody, Throwable e) {
+                if (statusCode > 0) {
+                    response[0] = new HttpResponse(statusCode, toMap(headers), responseBody);
+                } else {
+                    error[0] = e;
+                }
+            }
+        };
+
+        Header[] headers = toHeaders(request.getHeaders());
+        if (HttpRequest.Methods.POST.equals(request.getMethod())) {
+            ByteArrayEntity entity = request.getBody() == null ? null : new ByteArrayEntity(request.getBody());
+            sClient.get().post(null, request.getUrl(), headers, entity, request.getContentType(), handler);
+        } else {
+            sClient.get().get(null, request.getUrl(), headers, null, handler);
+        }
+
+        if (response[0] == null) {
+            throw error[0] instanceof IOException ? (IOException) error[0]
+                    : new IOException("Request failed: " + error[0], error[0]);
+        }
+        return response[0];
+    }
+
+    // Конвертирует заголовки в массив для клиента.
+    private static Header[] toHeaders(Map<String, String> headers) {
+        Header[] result = new Header[headers.size()];
+        int i = 0;
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            result[i++] = new BasicHeader(header.getKey(), header.getValue());
+        }
+        return result;
+    }
+
+    // Конвертирует заголовки ответа клиента в карту.
+    private static Map<String, String> toMap(Header[] headers) {
+        Map<String, String> result = new HashMap<>();
+        if (headers != null) {
+            for (Header header : headers) {
+                result.put(header.getName(), header.getValue());
+            }
+        }
+        return result;
+    }
+}
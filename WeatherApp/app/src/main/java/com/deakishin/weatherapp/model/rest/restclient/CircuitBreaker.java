@@ -0,0 +1,138 @@
+package com.deakishin.weatherapp.model.rest.restclient;
+
+/**
+ * Предохранитель для запросов к одной точке входа сервера.
+ * После нескольких подряд неудачных запросов предохранитель размыкается, и запросы
+ * сразу завершаются ошибкой, не занимая потоки. Через заданное время предохранитель
+ * пропускает один пробный запрос: при его успехе предохранитель замыкается,
+ * при неудаче снова размыкается.
+ * Класс потокобезопасный.
+ */
+public class CircuitBreaker {
+
+    /**
+     * Состояние предохранителя.
+     */
+    public enum State {
+        /** Запросы выполняются. */
+        CLOSED,
+        /** Запросы сразу завершаются ошибкой. */
+        OPEN,
+        /** Выполняется пробный запрос, остальные завершаются ошибкой. */
+        HALF_OPEN
+    }
+
+    /**
+     * Количество неудач подряд по умолчанию, после которого предохранитель размыкается.
+     */
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    /**
+     * Время по умолчанию в мс, в течение которого предохранитель разомкнут.
+     */
+    public static final long DEFAULT_OPEN_DURATION_MS = 30 * 1000;
+
+    // Количество неудач подряд, после которого предохранитель размыкается.
+    private final int mFailureThreshold;
+    // Время в мс, в течение которого предохранитель разомкнут.
+    private final long mOpenDurationMs;
+
+    private State mState = State.CLOSED;
+    // Текущее количество неудач подряд.
+    private int mFailureCount;
+    // Время размыкания в мс.
+    private long mOpenedAt;
+    // Количество размыканий.
+    private long mOpenCount;
+
+    public CircuitBreaker() {
+        this(DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_DURATION_MS);
+    }
+
+    /**
+     * @param failureThreshold Количество неудач подряд, после которого предохранитель размыкается.
+     * @param openDurationMs   Время в мс, в течение которого предохранитель разомкнут.
+     */
+    public CircuitBreaker(int failureThreshold, long openDurationMs) {
+        mFailureThreshold = failureThreshold;
+        mOpenDurationMs = openDurationMs;
+    }
+
+    /**
+     * Проверяет, можно ли выполнить запрос. Если разрешен пробный запрос,
+     * то после его выполнения обязательно вызывается {@link #onSuccess()} или {@link #onFailure()}.
+     *
+     * @return True, если запрос можно выполнить.
+     */
+    public synchronized boolean allowRequest() {
+        switch (mState) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() - mOpenedAt >= mOpenDurationMs) {
+                    mState = State.HALF_OPEN;
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Учитывает успешный запрос.
+     */
+    public synchronized void onSuccess() {
+        mFailureCount = 0;
+        mState = State.CLOSED;
+    }
+
+    /**
+     * Учитывает неудачный запрос.
+     */
+    public synchronized void onFailure() {
+        mFailureCount++;
+        if (mState == State.HALF_OPEN
+                || (mState == State.CLOSED && mFailureCount >= mFailureThreshold)) {
+            mState = State.OPEN;
+            mOpenedAt = System.currentTimeMillis();
+            mOpenCount++;
+        }
+    }
+
+    /**
+     * Учитывает запрос, прерванный до получения ответа по причинам, не связанным с сервером.
+     * Если это был пробный запрос, то следующий запрос снова будет пробным.
+     */
+    public synchronized void onCancelled() {
+        if (mState == State.HALF_OPEN) {
+            mState = State.OPEN;
+        }
+    }
+
+    /**
+     * @return Текущее состояние предохранителя.
+     */
+    public synchronized State getState() {
+        if (mState == State.OPEN && System.currentTimeMillis() - mOpenedAt >= mOpenDurationMs) {
+            // Следующий запрос будет пробным.
+            return State.HALF_OPEN;
+        }
+        return mState;
+    }
+
+    /**
+     * @return Количество размыканий предохранителя.
+     */
+    public synchronized long getOpenCount() {
+        return mOpenCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "CircuitBreaker{" +
+                "mState=" + mState +
+                ", mFailureCount=" + mFailureCount +
+                ", mOpenCount=" + mOpenCount +
+                '}';
+    }
+}
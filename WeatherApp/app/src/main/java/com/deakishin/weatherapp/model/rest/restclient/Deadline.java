@@ -0,0 +1,191 @@
+package com.deakishin.weatherapp.model.rest.restclient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Срок выполнения операции. Операция завершается, когда истекает срок
+ * или когда ее явно отменяют методом {@link #cancel()}. В обоих случаях вызываются
+ * слушатели, через которые выполняющиеся HTTP запросы прерываются.
+ * Отсчет срока может начинаться не при создании, а при запуске операции методом {@link #start()},
+ * например, если операция сначала ждет в очереди. Отменить операцию можно и до запуска.
+ * Класс потокобезопасный.
+ */
+public class Deadline {
+
+    // Поток для завершения операций по истечении срока. Общий для всех операций.
+    private static final ScheduledExecutorService sTimer = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "Deadline timer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    // Время на выполнение операции в мс.
+    private final long mTimeoutMs;
+    // Время истечения срока в нс. Действительно, только если отсчет начат.
+    private volatile long mExpiresAtNanos;
+    // Начат ли отсчет срока.
+    private volatile boolean mStarted;
+    // Задача завершения операции по истечении срока или null, если отсчет не начат.
+    private ScheduledFuture<?> mExpiration;
+
+    // Завершена ли операция.
+    private boolean mDone;
+    // Слушатели завершения.
+    private final List<Runnable> mListeners = new ArrayList<>();
+
+    /**
+     * Создает срок, отсчет которого начинается сразу.
+     *
+     * @param timeoutMs Время на выполнение операции в мс.
+     */
+    public Deadline(long timeoutMs) {
+        this(timeoutMs, true);
+    }
+
+    /**
+     * @param timeoutMs Время на выполнение операции в мс.
+     * @param start     Начать отсчет срока сразу. Иначе отсчет начинается методом {@link #start()}.
+     */
+    public Deadline(long timeoutMs, boolean start) {
+        mTimeoutMs = timeoutMs;
+        if (start) {
+            start();
+        }
+    }
+
+    /**
+     * Начинает отсчет срока, если он еще не начат и операция не отменена.
+     */
+    public void start() {
+        synchronized (mListeners) {
+            if (mStarted || mDone) {
+                return;
+            }
+            mExpiresAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(mTimeoutMs);
+            mStarted = true;
+            mExpiration = sTimer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    finish();
+                }
+            }, mTimeoutMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Отменяет операцию.
+     */
+    public void cancel() {
+        finish();
+    }
+
+    /**
+     * Освобождает ресурсы после завершения операции. Слушатели не вызываются.
+     */
+    public void release() {
+        synchronized (mListeners) {
+            cancelExpiration();
+            mListeners.clear();
+        }
+    }
+
+    // Отменяет задачу завершения по истечении срока. Вызывается под mListeners.
+    private void cancelExpiration() {
+        if (mExpiration != null) {
+            mExpiration.cancel(false);
+        }
+    }
+
+    // Помечает операцию завершенной и вызывает слушателей.
+    private void finish() {
+        List<Runnable> listeners;
+        synchronized (mListeners) {
+            if (mDone) {
+                return;
+            }
+            mDone = true;
+            listeners = new ArrayList<>(mListeners);
+            mListeners.clear();
+            mListeners.notifyAll();
+            cancelExpiration();
+        }
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+
+    /**
+     * @return True, если срок истек или операция отменена.
+     */
+    public boolean isDone() {
+        synchronized (mListeners) {
+            return mDone || getRemainingMs() <= 0;
+        }
+    }
+
+    /**
+     * @return Оставшееся время в мс. Не больше нуля, если срок истек.
+     * Если отсчет не начат, то все время на выполнение операции.
+     */
+    public long getRemainingMs() {
+        if (!mStarted) {
+            return mTimeoutMs;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(mExpiresAtNanos - System.nanoTime());
+    }
+
+    /**
+     * Ждет заданное время, но не дольше завершения операции.
+     *
+     * @param delayMs Время ожидания в мс.
+     * @return True, если время прошло, а операция не завершена.
+     * @throws InterruptedException Если поток прерван во время ожидания.
+     */
+    public boolean sleep(long delayMs) throws InterruptedException {
+        long endNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs);
+        synchronized (mListeners) {
+            long leftNanos;
+            while (!mDone && (leftNanos = endNanos - System.nanoTime()) > 0) {
+                TimeUnit.NANOSECONDS.timedWait(mListeners, leftNanos);
+            }
+            return !isDone();
+        }
+    }
+
+    /**
+     * Добавляет слушателя завершения операции. Если операция уже завершена,
+     * то слушатель вызывается сразу в текущем потоке.
+     *
+     * @param listener Слушатель.
+     */
+    public void addListener(Runnable listener) {
+        synchronized (mListeners) {
+            if (!mDone) {
+                mListeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    /**
+     * Удаляет слушателя завершения операции.
+     *
+     * @param listener Слушатель.
+     */
+    public void removeListener(Runnable listener) {
+        synchronized (mListeners) {
+            mListeners.remove(listener);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.deakishin.weatherapp.model.rest.restclient;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * HTTP запрос, выполняемый транспортом {@link Transport}.
+ */
+public class HttpRequest {
+
+    /**
+     * HTTP методы.
+     */
+    public static class Methods {
+        public static final String GET = "GET";
+        public static final String POST = "POST";
+    }
+
+    // HTTP метод.
+    private final String mMethod;
+    // Полный адрес запроса, включая параметры.
+    private final String mUrl;
+    // Заголовки запроса.
+    private final Map<String, String> mHeaders;
+    // Тело запроса или null.
+    private final byte[] mBody;
+    // Тип содержимого тела запроса или null.
+    private final String mContentType;
+    // Срок выполнения запроса или null, если срок не ограничен.
+    private final Deadline mDeadline;
+
+    public HttpRequest(String method, String url, Map<String, String> headers) {
+        this(method, url, headers, null, null, null);
+    }
+
+    public HttpRequest(String method, String url, Map<String, String> headers, Deadline deadline) {
+        this(method, url, headers, null, null, deadline);
+    }
+
+    public HttpRequest(String method, String url, Map<String, String> headers, byte[] body, String contentType) {
+        this(method, url, headers, body, contentType, null);
+    }
+
+    /**
+     * @param method      HTTP метод.
+     * @param url         Полный адрес запроса, включая параметры.
+     * @param headers     Заголовки запроса или null.
+     * @param body        Тело запроса или null.
+     * @param contentType Тип содержимого тела запроса или null.
+     * @param deadline    Срок выполнения запроса или null. По его истечении транспорт прерывает запрос.
+     */
+    public HttpRequest(String method, String url, Map<String, String> headers, byte[] body, String contentType,
+                       Deadline deadline) {
+        mMethod = method;
+        mUrl = url;
+        mHeaders = headers == null ? Collections.<String, String>emptyMap()
+                : Collections.unmodifiableMap(new LinkedHashMap<>(headers));
+        mBody = body;
+        mContentType = contentType;
+        mDeadline = deadline;
+    }
+
+    public String getMethod() {
+        return mMethod;
+    }
+
+    public String getUrl() {
+        return mUrl;
+    }
+
+    public Map<String, String> getHeaders() {
+        return mHeaders;
+    }
+
+    public byte[] getBody() {
+        return mBody;
+    }
+
+    public String getContentType() {
+        return mContentType;
+    }
+
+    public Deadline getDeadline() {
+        return mDeadline;
+    }
+
+    @Override
+    public String toString() {
+        return "HttpRequest{" +
+                "mMethod='" + mMethod + '\'' +
+                ", mUrl='" + mUrl + '\'' +
+                ", mHeaders=" + mHeaders +
+                '}';
+    }
+}
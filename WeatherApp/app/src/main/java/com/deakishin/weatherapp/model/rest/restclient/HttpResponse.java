@@ -0,0 +1,76 @@
+package com.deakishin.weatherapp.model.rest.restclient;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * HTTP ответ, полученный транспортом {@link Transport}.
+ */
+public class HttpResponse {
+    // Код ответа.
+    private final int mStatusCode;
+    // Заголовки ответа. Ключи в нижнем регистре.
+    private final Map<String, String> mHeaders;
+    // Тело ответа или null.
+    private final byte[] mBody;
+
+    /**
+     * @param statusCode Код ответа.
+     * @param headers    Заголовки ответа. Регистр названий не важен.
+     * @param body       Тело ответа или null.
+     */
+    public HttpResponse(int statusCode, Map<String, String> headers, byte[] body) {
+        mStatusCode = statusCode;
+        Map<String, String> normalized = new HashMap<>();
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                if (header.getKey() != null) {
+                    normalized.put(header.getKey().toLowerCase(Locale.US), header.getValue());
+                }
+            }
+        }
+        mHeaders = Collections.unmodifiableMap(normalized);
+        mBody = body;
+    }
+
+    public int getStatusCode() {
+        return mStatusCode;
+    }
+
+    /**
+     * @return Заголовки ответа. Названия в нижнем регистре.
+     */
+    public Map<String, String> getHeaders() {
+        return mHeaders;
+    }
+
+    /**
+     * @param name Название заголовка в любом регистре.
+     * @return Значение заголовка или null, если его нет.
+     */
+    public String getHeader(String name) {
+        return mHeaders.get(name.toLowerCase(Locale.US));
+    }
+
+    public byte[] getBody() {
+        return mBody;
+    }
+
+    /**
+     * @return True, если код ответа означает успех (2xx).
+     */
+    public boolean isSuccessful() {
+        return mStatusCode >= 200 && mStatusCode < 300;
+    }
+
+    @Override
+    public String toString() {
+        return "HttpResponse{" +
+                "mStatusCode=" + mStatusCode +
+                ", mHeaders=" + mHeaders +
+                ", mBodyLength=" + (mBody == null ? 0 : mBody.length) +
+                '}';
+    }
+}
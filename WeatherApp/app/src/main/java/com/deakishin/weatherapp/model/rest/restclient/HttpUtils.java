@@ -3,37 +3,139 @@ package com.deakishin.weatherapp.model.rest.restclient;
 import com.loopj.android.http.AsyncHttpClient;
 import com.loopj.android.http.AsyncHttpResponseHandler;
 import com.loopj.android.http.RequestParams;
-import com.loopj.android.http.SyncHttpClient;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.Map;
+
+import cz.msebera.android.httpclient.Header;
+import cz.msebera.android.httpclient.client.HttpResponseException;
+import cz.msebera.android.httpclient.message.BasicHeader;
 
 /**
  * Класс-помощник для выполнения запросов на сервер.
- * Запросы выполняются синхронно.
+ * Запросы выполняются синхронно через текущий транспорт {@link Transport}.
  */
-class HttpUtils {
-    private static final String BASE_URL = "http://api.openweathermap.org/data/2.5/";
+public class HttpUtils {
+    /**
+     * Адрес сервера по умолчанию.
+     */
+    public static final String DEFAULT_BASE_URL = "http://api.openweathermap.org/data/2.5/";
+
+    // Адрес сервера, к которому добавляются относительные адреса запросов.
+    private static volatile String sBaseUrl = DEFAULT_BASE_URL;
+
+    // Тип содержимого для параметров в теле POST запроса.
+    private static final String FORM_CONTENT_TYPE = "application/x-www-form-urlencoded";
+
+    /**
+     * Транспорт для выполнения запросов на сервер.
+     */
+    private static volatile Transport sTransport = new PooledHttpTransport();
+
+    /**
+     * Задает транспорт для выполнения всех последующих запросов.
+     *
+     * @param transport Транспорт.
+     */
+    public static void setTransport(Transport transport) {
+        sTransport = transport;
+    }
+
+    /**
+     * @return Текущий транспорт.
+     */
+    public static Transport getTransport() {
+        return sTransport;
+    }
 
     /**
-     * Объект для выполнения запросов на сервер.
+     * Задает адрес сервера для всех последующих запросов, например, адрес эмулятора сервера в тестах.
+     *
+     * @param baseUrl Адрес сервера, заканчивающийся на "/".
      */
-    private static AsyncHttpClient client = new SyncHttpClient();
+    public static void setBaseUrl(String baseUrl) {
+        sBaseUrl = baseUrl;
+    }
 
     public static void get(String url, RequestParams params, AsyncHttpResponseHandler responseHandler) {
-        client.get(getAbsoluteUrl(url), params, responseHandler);
+        get(url, params, null, responseHandler);
+    }
+
+    public static void get(String url, RequestParams params, Map<String, String> headers,
+                           AsyncHttpResponseHandler responseHandler) {
+        get(url, params, headers, null, responseHandler);
+    }
+
+    public static void get(String url, RequestParams params, Map<String, String> headers, Deadline deadline,
+                           AsyncHttpResponseHandler responseHandler) {
+        getByUrl(getAbsoluteUrl(url), params, headers, deadline, responseHandler);
     }
 
     public static void post(String url, RequestParams params, AsyncHttpResponseHandler responseHandler) {
-        client.post(getAbsoluteUrl(url), params, responseHandler);
+        postByUrl(getAbsoluteUrl(url), params, responseHandler);
     }
 
     public static void getByUrl(String url, RequestParams params, AsyncHttpResponseHandler responseHandler) {
-        client.get(url, params, responseHandler);
+        getByUrl(url, params, null, null, responseHandler);
+    }
+
+    private static void getByUrl(String url, RequestParams params, Map<String, String> headers, Deadline deadline,
+                                 AsyncHttpResponseHandler responseHandler) {
+        execute(new HttpRequest(HttpRequest.Methods.GET,
+                AsyncHttpClient.getUrlWithQueryString(false, url, params), headers, deadline), responseHandler);
     }
 
     public static void postByUrl(String url, RequestParams params, AsyncHttpResponseHandler responseHandler) {
-        client.post(url, params, responseHandler);
+        byte[] body;
+        try {
+            body = getParamString(params).getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            responseHandler.onFailure(0, null, null, e);
+            return;
+        }
+        execute(new HttpRequest(HttpRequest.Methods.POST, url, null, body, FORM_CONTENT_TYPE), responseHandler);
+    }
+
+    // Выполняет запрос текущим транспортом и передает результат обработчику.
+    private static void execute(HttpRequest request, AsyncHttpResponseHandler responseHandler) {
+        HttpResponse response;
+        try {
+            response = sTransport.execute(request);
+        } catch (IOException e) {
+            responseHandler.onFailure(0, null, null, e);
+            return;
+        }
+
+        Header[] headers = new Header[response.getHeaders().size()];
+        int i = 0;
+        for (Map.Entry<String, String> header : response.getHeaders().entrySet()) {
+            headers[i++] = new BasicHeader(header.getKey(), header.getValue());
+        }
+
+        if (response.isSuccessful()) {
+            responseHandler.onSuccess(response.getStatusCode(), headers, response.getBody());
+        } else {
+            responseHandler.onFailure(response.getStatusCode(), headers, response.getBody(),
+                    new HttpResponseException(response.getStatusCode(), "HTTP " + response.getStatusCode()));
+        }
+    }
+
+    /**
+     * Строит ключ запроса по относительному адресу и параметрам.
+     * Одинаковые запросы имеют одинаковые ключи.
+     */
+    public static String getRequestKey(String url, RequestParams params) {
+        return AsyncHttpClient.getUrlWithQueryString(false, getAbsoluteUrl(url), params);
+    }
+
+    // Возвращает параметры в виде закодированной строки "key1=value1&key2=value2".
+    private static String getParamString(RequestParams params) {
+        String url = AsyncHttpClient.getUrlWithQueryString(false, "", params);
+        return url.startsWith("?") ? url.substring(1) : url;
     }
 
     private static String getAbsoluteUrl(String relativeUrl) {
-        return BASE_URL + relativeUrl;
+        return sBaseUrl + relativeUrl;
     }
 }
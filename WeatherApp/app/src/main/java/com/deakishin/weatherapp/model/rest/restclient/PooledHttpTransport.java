@@ -0,0 +1,277 @@
+package com.deakishin.weatherapp.model.rest.restclient;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.GeneralSecurityException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Транспорт на основе {@link HttpURLConnection} с пулом постоянных (keep-alive) соединений.
+ * Соединения после полного чтения ответа возвращаются в пул и переиспользуются
+ * следующими запросами к тому же серверу. Используется общий для процесса пул HttpURLConnection
+ * с настройками платформы по умолчанию (keep-alive включен, до 5 простаивающих соединений на сервер);
+ * транспорт его не настраивает. Для HTTPS используется общая фабрика сокетов
+ * с кэшем TLS сессий, так что повторные соединения возобновляют сессию без полного рукопожатия.
+ * Количество одновременных запросов ограничено размером пула.
+ * Если у запроса задан срок выполнения, то таймауты не превышают оставшееся время,
+ * а по истечении срока соединение разрывается, прерывая чтение ответа.
+ */
+public class PooledHttpTransport implements Transport {
+
+    /**
+     * Максимальное количество одновременных запросов по умолчанию. Совпадает с количеством
+     * соединений, которые пул платформы держит открытыми для одного сервера.
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS = 5;
+    /**
+     * Время ожидания соединения по умолчанию в мс.
+     */
+    public static final int DEFAULT_CONNECT_TIMEOUT_MS = 10 * 1000;
+    /**
+     * Время ожидания данных по умолчанию в мс.
+     */
+    public static final int DEFAULT_READ_TIMEOUT_MS = 15 * 1000;
+
+    // Размер кэша TLS сессий и время жизни сессии в секундах.
+    private static final int TLS_SESSION_CACHE_SIZE = 32;
+    private static final int TLS_SESSION_TIMEOUT_SEC = 60 * 60;
+
+    // Размер буфера для чтения ответа.
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    // Ограничение на количество одновременных запросов.
+    private final Semaphore mConnections;
+    // Таймауты соединения и чтения в мс.
+    private final int mConnectTimeoutMs;
+    private final int mReadTimeoutMs;
+    // Фабрика сокетов с общим кэшем TLS сессий или null, если ее не удалось создать.
+    private final SSLSocketFactory mSslSocketFactory;
+
+    public PooledHttpTransport() {
+        this(DEFAULT_MAX_CONNECTIONS, DEFAULT_CONNECT_TIMEOUT_MS, DEFAULT_READ_TIMEOUT_MS);
+    }
+
+    /**
+     * @param maxConnections   Максимальное количество одновременных запросов.
+     * @param connectTimeoutMs Время ожидания соединения в мс.
+     * @param readTimeoutMs    Время ожидания данных в мс.
+     */
+    public PooledHttpTransport(int maxConnections, int connectTimeoutMs, int readTimeoutMs) {
+        mConnections = new Semaphore(maxConnections, true);
+        mConnectTimeoutMs = connectTimeoutMs;
+        mReadTimeoutMs = readTimeoutMs;
+        mSslSocketFactory = createSslSocketFactory();
+    }
+
+    // Создает фабрику сокетов с кэшем TLS сессий.
+    private static SSLSocketFactory createSslSocketFactory() {
+        try {
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(null, null, null);
+            SSLSessionContext sessionContext = context.getClientSessionContext();
+            if (sessionContext != null) {
+                sessionContext.setSessionCacheSize(TLS_SESSION_CACHE_SIZE);
+                sessionContext.setSessionTimeout(TLS_SESSION_TIMEOUT_SEC);
+            }
+            return context.getSocketFactory();
+        } catch (GeneralSecurityException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public HttpResponse execute(HttpRequest request) throws IOException {
+        Deadline deadline = request.getDeadline();
+        try {
+            if (deadline == null) {
+                mConnections.acquire();
+            } else if (!mConnections.tryAcquire(getRemainingMs(deadline), TimeUnit.MILLISECONDS)) {
+                throw new InterruptedIOException("Deadline expired while waiting for a connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a connection");
+        }
+        try {
+            return doExecute(request);
+        } finally {
+            mConnections.release();
+        }
+    }
+
+    // Возвращает оставшееся время до истечения срока в мс.
+    // Если срок истек или операция отменена, то выбрасывает исключение.
+    private static long getRemainingMs(Deadline deadline) throws InterruptedIOException {
+        long remainingMs = deadline.getRemainingMs();
+        if (deadline.isDone() || remainingMs <= 0) {
+            throw new InterruptedIOException("Deadline expired or operation cancelled");
+        }
+        return remainingMs;
+    }
+
+    // Выполняет запрос.
+    private HttpResponse doExecute(HttpRequest request) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(request.getUrl()).openConnection();
+        if (connection instanceof HttpsURLConnection && mSslSocketFactory != null) {
+            ((HttpsURLConnection) connection).setSSLSocketFactory(mSslSocketFactory);
+        }
+
+        Deadline deadline = request.getDeadline();
+        if (deadline == null) {
+            connection.setConnectTimeout(mConnectTimeoutMs);
+            connection.setReadTimeout(mReadTimeoutMs);
+            return doExecute(request, connection);
+        }
+
+        int remainingMs = (int) Math.min(getRemainingMs(deadline), Integer.MAX_VALUE);
+        connection.setConnectTimeout(Math.min(mConnectTimeoutMs, remainingMs));
+        connection.setReadTimeout(Math.min(mReadTimeoutMs, remainingMs));
+
+        // По завершении операции соединение разрывается из потока таймера или потока,
+        // отменившего операцию. Такое соединение не возвращается в пул.
+        Runnable abort = new Runnable() {
+            @Override
+            public void run() {
+                connection.disconnect();
+            }
+        };
+        deadline.addListener(abort);
+        try {
+            return doExecute(request, connection);
+        } catch (InterruptedIOException e) {
+            throw e;
+        } catch (IOException e) {
+            if (deadline.isDone()) {
+                InterruptedIOException cancelled = new InterruptedIOException("Request aborted: " + e);
+                cancelled.initCause(e);
+                throw cancelled;
+            }
+            throw e;
+        } finally {
+            deadline.removeListener(abort);
+        }
+    }
+
+    // Выполняет запрос на настроенном соединении. Если запрос завершается исключением,
+    // то поток ошибки дочитывается и закрывается, чтобы соединение могло вернуться в пул.
+    private HttpResponse doExecute(HttpRequest request, HttpURLConnection connection) throws IOException {
+        boolean completed = false;
+        try {
+            HttpResponse response = doExecuteUnchecked(request, connection);
+            completed = true;
+            return response;
+        } finally {
+            if (!completed) {
+                discardQuietly(connection.getErrorStream());
+            }
+        }
+    }
+
+    // Выполняет запрос на настроенном соединении без освобождения соединения при ошибке.
+    private HttpResponse doExecuteUnchecked(HttpRequest request, HttpURLConnection connection) throws IOException {
+        connection.setUseCaches(false);
+        connection.setRequestMethod(request.getMethod());
+        for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+            connection.setRequestProperty(header.getKey(), header.getValue());
+        }
+
+        byte[] body = request.getBody();
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.length);
+            if (request.getContentType() != null) {
+                connection.setRequestProperty("Content-Type", request.getContentType());
+            }
+            OutputStream out = connection.getOutputStream();
+            try {
+                out.write(body);
+            } finally {
+                out.close();
+            }
+        }
+
+        int statusCode = connection.getResponseCode();
+
+        Map<String, String> headers = new HashMap<>();
+        for (Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet()) {
+            if (header.getKey() != null && !header.getValue().isEmpty()) {
+                headers.put(header.getKey(), header.getValue().get(0));
+            }
+        }
+
+        InputStream in;
+        try {
+            in = connection.getInputStream();
+        } catch (IOException e) {
+            in = connection.getErrorStream();
+        }
+
+        // Соединение возвращается в пул только после полного чтения и закрытия потока ответа,
+        // поэтому disconnect() не вызывается.
+        byte[] responseBody = in == null ? null : readFully(in, request.getDeadline());
+
+        return new HttpResponse(statusCode, headers, responseBody);
+    }
+
+    // Дочитывает поток до конца и закрывает его, игнорируя ошибки.
+    private static void discardQuietly(InputStream in) {
+        if (in == null) {
+            return;
+        }
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (in.read(buffer) != -1) {
+                // Данные не нужны.
+            }
+        } catch (IOException e) {
+            // Соединение уже не вернется в пул.
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // Ничего не делаем.
+            }
+        }
+    }
+
+    // Выбрасывает исключение, если срок deadline истек или операция отменена.
+    private static void checkDeadline(Deadline deadline) throws InterruptedIOException {
+        if (deadline != null && deadline.isDone()) {
+            throw new InterruptedIOException("Deadline expired while reading response");
+        }
+    }
+
+    // Читает поток до конца и закрывает его. Если срок deadline истекает во время чтения,
+    // то чтение прерывается.
+    private static byte[] readFully(InputStream in, Deadline deadline) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                checkDeadline(deadline);
+                out.write(buffer, 0, count);
+            }
+            // Не все реализации прерывают чтение при разрыве соединения из другого потока,
+            // поэтому ответ, дочитанный после истечения срока, отбрасывается.
+            checkDeadline(deadline);
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.deakishin.weatherapp.model.rest.restclient;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограничитель частоты запросов по алгоритму "ведро с токенами".
+ * Токены пополняются с постоянной скоростью до размера ведра, каждый запрос забирает один токен.
+ * Если токенов нет, то запрос ждет своей очереди: токены резервируются в порядке обращения,
+ * так что запросы обслуживаются честно, в порядке поступления.
+ * Класс потокобезопасный.
+ */
+public class RateLimiter {
+
+    // Количество наносекунд в минуте.
+    private static final long NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    // Интервал между пополнениями на один токен в нс.
+    private final long mIntervalNanos;
+    // Размер ведра.
+    private final int mBurst;
+
+    // Текущее количество токенов. Отрицательное значение означает токены,
+    // зарезервированные ожидающими запросами.
+    private double mTokens;
+    // Время последнего пополнения в нс.
+    private long mLastRefillNanos;
+
+    /**
+     * @param permitsPerMinute Количество запросов в минуту.
+     * @param burst            Размер ведра: количество запросов, которые можно выполнить
+     *                         подряд без ожидания.
+     */
+    public RateLimiter(int permitsPerMinute, int burst) {
+        if (permitsPerMinute <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("Rate and burst must be positive: "
+                    + permitsPerMinute + ", " + burst);
+        }
+        mIntervalNanos = NANOS_PER_MINUTE / permitsPerMinute;
+        mBurst = burst;
+        mTokens = burst;
+        mLastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Забирает токен, при необходимости ожидая его появления.
+     *
+     * @return Время ожидания в мс.
+     * @throws InterruptedException Если поток прерван во время ожидания.
+     */
+    public long acquire() throws InterruptedException {
+        return acquire(Long.MAX_VALUE);
+    }
+
+    /**
+     * Забирает токен, если его можно получить за время не больше maxWaitMs.
+     *
+     * @param maxWaitMs Максимальное время ожидания в мс.
+     * @return Время ожидания в мс или -1, если токен за это время получить нельзя.
+     * В этом случае метод возвращается сразу, не забирая токен.
+     * @throws InterruptedException Если поток прерван во время ожидания.
+     */
+    public long acquire(long maxWaitMs) throws InterruptedException {
+        long waitNanos = reserve(maxWaitMs >= TimeUnit.NANOSECONDS.toMillis(Long.MAX_VALUE)
+                ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(maxWaitMs));
+        if (waitNanos < 0) {
+            return -1;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+        return TimeUnit.NANOSECONDS.toMillis(waitNanos);
+    }
+
+    // Резервирует токен и возвращает время в нс, через которое он станет доступен.
+    // Если ждать придется дольше maxWaitNanos, то токен не резервируется и возвращается -1.
+    private synchronized long reserve(long maxWaitNanos) {
+        long now = System.nanoTime();
+        mTokens = Math.min(mBurst, mTokens + (double) (now - mLastRefillNanos) / mIntervalNanos);
+        mLastRefillNanos = now;
+        long waitNanos = mTokens >= 1 ? 0 : (long) ((1 - mTokens) * mIntervalNanos);
+        if (waitNanos > maxWaitNanos) {
+            return -1;
+        }
+        mTokens -= 1;
+        return waitNanos;
+    }
+}
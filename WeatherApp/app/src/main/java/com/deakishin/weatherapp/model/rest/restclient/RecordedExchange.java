@@ -0,0 +1,115 @@
+package com.deakishin.weatherapp.model.rest.restclient;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Записанная пара HTTP запрос/ответ со временем выполнения запроса.
+ * Используется транспортами {@link RecordingTransport} и {@link ReplayTransport}.
+ * <p>
+ * Формат файла записи: заголовок {@link #MAGIC}, версия формата {@link #VERSION},
+ * далее записи до конца файла. Файл сжимается GZIP.
+ */
+class RecordedExchange {
+
+    /**
+     * Заголовок файла записи.
+     */
+    static final int MAGIC = 0x57524543;
+    /**
+     * Версия формата файла записи.
+     */
+    static final int VERSION = 1;
+
+    // Признак отсутствующего тела.
+    private static final int NO_BODY = -1;
+
+    // Записанный запрос.
+    final HttpRequest mRequest;
+    // Записанный ответ.
+    final HttpResponse mResponse;
+    // Время выполнения запроса в нс.
+    final long mDurationNanos;
+
+    RecordedExchange(HttpRequest request, HttpResponse response, long durationNanos) {
+        mRequest = request;
+        mResponse = response;
+        mDurationNanos = durationNanos;
+    }
+
+    /**
+     * @return Ключ, по которому запрос сопоставляется с записанными: метод и полный адрес.
+     */
+    static String getKey(HttpRequest request) {
+        return request.getMethod() + " " + request.getUrl();
+    }
+
+    /**
+     * Записывает пару в поток.
+     */
+    void write(DataOutputStream out) throws IOException {
+        out.writeUTF(mRequest.getMethod());
+        out.writeUTF(mRequest.getUrl());
+        writeHeaders(out, mRequest.getHeaders());
+        writeBody(out, mRequest.getBody());
+        out.writeInt(mResponse.getStatusCode());
+        writeHeaders(out, mResponse.getHeaders());
+        writeBody(out, mResponse.getBody());
+        out.writeLong(mDurationNanos);
+    }
+
+    /**
+     * Читает пару из потока.
+     */
+    static RecordedExchange read(DataInputStream in) throws IOException {
+        String method = in.readUTF();
+        String url = in.readUTF();
+        Map<String, String> requestHeaders = readHeaders(in);
+        byte[] requestBody = readBody(in);
+        int statusCode = in.readInt();
+        Map<String, String> responseHeaders = readHeaders(in);
+        byte[] responseBody = readBody(in);
+        long durationNanos = in.readLong();
+        return new RecordedExchange(new HttpRequest(method, url, requestHeaders, requestBody, null),
+                new HttpResponse(statusCode, responseHeaders, responseBody), durationNanos);
+    }
+
+    private static void writeHeaders(DataOutputStream out, Map<String, String> headers) throws IOException {
+        out.writeInt(headers.size());
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            out.writeUTF(header.getKey());
+            out.writeUTF(header.getValue() == null ? "" : header.getValue());
+        }
+    }
+
+    private static Map<String, String> readHeaders(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        Map<String, String> headers = new LinkedHashMap<>(count);
+        for (int i = 0; i < count; i++) {
+            headers.put(in.readUTF(), in.readUTF());
+        }
+        return headers;
+    }
+
+    private static void writeBody(DataOutputStream out, byte[] body) throws IOException {
+        if (body == null) {
+            out.writeInt(NO_BODY);
+        } else {
+            out.writeInt(body.length);
+            out.write(body);
+        }
+    }
+
+    private static byte[] readBody(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == NO_BODY) {
+            return null;
+        }
+        byte[] body = new byte[length];
+        in.readFully(body);
+        return body;
+    }
+}
@@ -0,0 +1,72 @@
+package com.deakishin.weatherapp.model.rest.restclient;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Транспорт, который выполняет запросы через другой транспорт и записывает
+ * пары запрос/ответ со временем выполнения в файл. Записанный файл воспроизводится
+ * транспортом {@link ReplayTransport}, что позволяет повторять обновление данных
+ * без обращения к серверу.
+ * Запросы, не получившие ответа, не записываются.
+ * После окончания записи транспорт нужно закрыть методом {@link #close()}.
+ * Класс потокобезопасный.
+ */
+public class RecordingTransport implements Transport, Closeable {
+
+    // Транспорт, выполняющий запросы.
+    private final Transport mDelegate;
+    // Поток записи.
+    private final DataOutputStream mOut;
+    // Количество записанных пар.
+    private int mCount;
+
+    /**
+     * @param delegate Транспорт, выполняющий запросы.
+     * @param file     Файл записи. Если файл существует, то он перезаписывается.
+     * @throws IOException Если файл не удалось открыть.
+     */
+    public RecordingTransport(Transport delegate, File file) throws IOException {
+        mDelegate = delegate;
+        mOut = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(file))));
+        mOut.writeInt(RecordedExchange.MAGIC);
+        mOut.writeInt(RecordedExchange.VERSION);
+    }
+
+    @Override
+    public HttpResponse execute(HttpRequest request) throws IOException {
+        long start = System.nanoTime();
+        HttpResponse response = mDelegate.execute(request);
+        long duration = System.nanoTime() - start;
+
+        synchronized (mOut) {
+            new RecordedExchange(request, response, duration).write(mOut);
+            mCount++;
+        }
+        return response;
+    }
+
+    /**
+     * @return Количество записанных пар запрос/ответ.
+     */
+    public int getCount() {
+        synchronized (mOut) {
+            return mCount;
+        }
+    }
+
+    /**
+     * Завершает запись и закрывает файл.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (mOut) {
+            mOut.close();
+        }
+    }
+}
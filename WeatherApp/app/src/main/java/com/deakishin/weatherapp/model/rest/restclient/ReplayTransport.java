@@ -0,0 +1,126 @@
+package com.deakishin.weatherapp.model.rest.restclient;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Транспорт, который отвечает на запросы ответами, записанными транспортом {@link RecordingTransport}.
+ * Запрос сопоставляется с записанными по методу и полному адресу, заголовки не учитываются.
+ * Если один и тот же запрос записан несколько раз, то ответы выдаются по очереди,
+ * а после последнего снова с первого, так что запись можно воспроизводить многократно.
+ * Перед ответом транспорт выжидает записанное время выполнения запроса, умноженное на
+ * коэффициент задержки.
+ * Класс потокобезопасный.
+ */
+public class ReplayTransport implements Transport {
+
+    // Записанные пары по ключу запроса.
+    private final Map<String, List<RecordedExchange>> mExchanges = new HashMap<>();
+    // Номер следующего ответа по ключу запроса.
+    private final Map<String, Integer> mPositions = new HashMap<>();
+
+    // Коэффициент задержки: 0 - отвечать сразу, 1 - с записанной задержкой.
+    private final double mLatencyScale;
+
+    /**
+     * @param file         Файл записи.
+     * @param latencyScale Коэффициент, на который умножается записанное время выполнения запроса.
+     *                     0 - отвечать без задержки.
+     * @throws IOException Если файл не удалось прочитать.
+     */
+    public ReplayTransport(File file, double latencyScale) throws IOException {
+        mLatencyScale = latencyScale;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+        try {
+            if (in.readInt() != RecordedExchange.MAGIC) {
+                throw new IOException("Not a recording file: " + file);
+            }
+            int version = in.readInt();
+            if (version != RecordedExchange.VERSION) {
+                throw new IOException("Unsupported recording version: " + version);
+            }
+            while (true) {
+                RecordedExchange exchange;
+                try {
+                    exchange = RecordedExchange.read(in);
+                } catch (EOFException e) {
+                    break;
+                }
+                String key = RecordedExchange.getKey(exchange.mRequest);
+                List<RecordedExchange> list = mExchanges.get(key);
+                if (list == null) {
+                    list = new ArrayList<>();
+                    mExchanges.put(key, list);
+                }
+                list.add(exchange);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    @Override
+    public HttpResponse execute(HttpRequest request) throws IOException {
+        String key = RecordedExchange.getKey(request);
+        RecordedExchange exchange;
+        synchronized (mExchanges) {
+            List<RecordedExchange> list = mExchanges.get(key);
+            if (list == null) {
+                throw new IOException("No recorded response for " + key);
+            }
+            Integer position = mPositions.get(key);
+            int index = position == null ? 0 : position;
+            exchange = list.get(index);
+            mPositions.put(key, (index + 1) % list.size());
+        }
+
+        long delayNanos = (long) (exchange.mDurationNanos * mLatencyScale);
+        if (delayNanos > 0) {
+            try {
+                Deadline deadline = request.getDeadline();
+                if (deadline == null) {
+                    TimeUnit.NANOSECONDS.sleep(delayNanos);
+                } else if (!deadline.sleep(TimeUnit.NANOSECONDS.toMillis(delayNanos))) {
+                    throw new InterruptedIOException("Deadline expired while replaying " + key);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while replaying " + key);
+            }
+        }
+        return exchange.mResponse;
+    }
+
+    /**
+     * @return Количество записанных пар запрос/ответ.
+     */
+    public int getCount() {
+        int count = 0;
+        synchronized (mExchanges) {
+            for (List<RecordedExchange> list : mExchanges.values()) {
+                count += list.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Возвращает воспроизведение к началу записи.
+     */
+    public void rewind() {
+        synchronized (mExchanges) {
+            mPositions.clear();
+        }
+    }
+}
@@ -0,0 +1,394 @@
+package com.deakishin.weatherapp.model.rest.restclient;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Класс-синглетон двухуровневого кэша ответов сервера.
+ * Первый уровень - LRU кэш в памяти с уже распарсенными результатами, ограниченный по объему
+ * тел ответов, из которых они получены.
+ * Второй уровень - "сырые" тела ответов в папке кэша приложения, ограниченные по объему.
+ * Время жизни записей задается для каждой точки входа отдельно.
+ * Дисковый уровень сохраняется между перезапусками процесса.
+ * Класс потокобезопасный.
+ */
+public class ResponseCache {
+
+    private final String TAG = getClass().getSimpleName();
+
+    // Название папки кэша внутри папки кэша приложения.
+    private static final String CACHE_DIR_NAME = "rest_responses";
+
+    // Максимальный объем записей в памяти в байтах тел ответов. Ответ группы городов в несколько раз
+    // больше ответа одного города, поэтому память ограничивается по объему, а не по количеству записей.
+    private static final long MAX_MEMORY_BYTES = 256 * 1024;
+
+    // Максимальный объем записей на диске в байтах.
+    private static final long MAX_DISK_BYTES = 2 * 1024 * 1024;
+
+    /**
+     * Запись кэша в памяти.
+     */
+    private static class MemoryEntry {
+        // Время сохранения ответа в мс.
+        final long mStoredAt;
+        // Результат распарсивания ответа.
+        final Object mData;
+        // Объем тела ответа в байтах.
+        final int mSize;
+
+        MemoryEntry(long storedAt, Object data, int size) {
+            mStoredAt = storedAt;
+            mData = data;
+            mSize = size;
+        }
+    }
+
+    /**
+     * Тело ответа, прочитанное с диска.
+     */
+    static class DiskEntry {
+        // Время сохранения ответа в мс.
+        final long mStoredAt;
+        // Тело ответа.
+        final byte[] mBody;
+
+        DiskEntry(long storedAt, byte[] body) {
+            mStoredAt = storedAt;
+            mBody = body;
+        }
+    }
+
+    // Записи в памяти по ключу запроса в порядке последнего использования.
+    private final Map<String, MemoryEntry> mMemory = new LinkedHashMap<>(16, 0.75f, true);
+    // Текущий объем записей в памяти. Изменяется под блокировкой mMemory.
+    private long mMemoryBytes;
+
+    // Время жизни записей по точкам входа. Ответы точек входа, для которых
+    // время жизни не задано, не кэшируются.
+    private final Map<String, Long> mTtls = new HashMap<>();
+
+    // Папка с телами ответов.
+    private final File mDir;
+    // Текущий объем файлов в папке. -1, если еще не подсчитан.
+    private long mDiskBytes = -1;
+    // Объект синхронизации для работы с диском.
+    private final Object mDiskLock = new Object();
+
+    private static ResponseCache sResponseCache;
+
+    /**
+     * @param context Контекст приложения.
+     * @return Кэш ответов сервера. При создании задается время жизни ответов точек входа
+     * {@link SyncRestClient} по умолчанию.
+     */
+    public static synchronized ResponseCache getInstance(Context context) {
+        if (sResponseCache == null) {
+            sResponseCache = new ResponseCache(new File(context.getApplicationContext().getCacheDir(), CACHE_DIR_NAME));
+            SyncRestClient.setDefaultTtls(sResponseCache);
+        }
+        return sResponseCache;
+    }
+
+    ResponseCache(File dir) {
+        mDir = dir;
+    }
+
+    /**
+     * Задает время жизни записей для точки входа.
+     *
+     * @param endpoint Точка входа.
+     * @param ttlMs    Время жизни в мс. Если не больше нуля, то ответы точки входа не кэшируются.
+     */
+    public void setTtl(String endpoint, long ttlMs) {
+        synchronized (mTtls) {
+            if (ttlMs > 0) {
+                mTtls.put(endpoint, ttlMs);
+            } else {
+                mTtls.remove(endpoint);
+            }
+        }
+    }
+
+    // Возвращает время жизни для точки входа или 0, если ответы точки входа не кэшируются.
+    private long getTtl(String endpoint) {
+        synchronized (mTtls) {
+            Long ttl = mTtls.get(endpoint);
+            return ttl == null ? 0 : ttl;
+        }
+    }
+
+    // Проверяет, не истекло ли время жизни записи, сохраненной в storedAt.
+    private boolean isFresh(String endpoint, long storedAt) {
+        long age = System.currentTimeMillis() - storedAt;
+        return age >= 0 && age < getTtl(endpoint);
+    }
+
+    /**
+     * Возвращает распарсенный результат из памяти, если он есть и не устарел.
+     *
+     * @param endpoint Точка входа.
+     * @param key      Ключ запроса.
+     * @return Результат или null.
+     */
+    Object getData(String endpoint, String key) {
+        synchronized (mMemory) {
+            MemoryEntry entry = mMemory.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (!isFresh(endpoint, entry.mStoredAt)) {
+                removeData(key);
+                return null;
+            }
+            return entry.mData;
+        }
+    }
+
+    /**
+     * Возвращает тело ответа с диска, если оно есть и не устарело.
+     *
+     * @param endpoint Точка входа.
+     * @param key      Ключ запроса.
+     * @return Тело ответа со временем сохранения или null.
+     */
+    DiskEntry getBody(String endpoint, String key) {
+        if (getTtl(endpoint) <= 0) {
+            return null;
+        }
+        synchronized (mDiskLock) {
+            File file = getFile(key);
+            if (!file.exists()) {
+                return null;
+            }
+            DiskEntry entry = readFile(file, key);
+            if (entry == null || !isFresh(endpoint, entry.mStoredAt)) {
+                deleteFile(file);
+                return null;
+            }
+            // Время изменения файла используется для вытеснения давно не использованных записей.
+            file.setLastModified(System.currentTimeMillis());
+            return entry;
+        }
+    }
+
+    /**
+     * Сохраняет распарсенный результат в память, не затрагивая диск.
+     * Используется, когда результат получен из тела ответа с диска.
+     *
+     * @param key      Ключ запроса.
+     * @param storedAt Время сохранения ответа в мс.
+     * @param data     Результат распарсивания ответа.
+     * @param size     Объем тела ответа в байтах.
+     */
+    void putData(String key, long storedAt, Object data, int size) {
+        synchronized (mMemory) {
+            removeData(key);
+            if (size > MAX_MEMORY_BYTES) {
+                // Запись вытеснила бы все остальные, поэтому остается только на диске.
+                return;
+            }
+            mMemory.put(key, new MemoryEntry(storedAt, data, size));
+            mMemoryBytes += size;
+            // Вытесняются давно не использованные записи, пока объем превышает допустимый.
+            Iterator<MemoryEntry> it = mMemory.values().iterator();
+            while (mMemoryBytes > MAX_MEMORY_BYTES && it.hasNext()) {
+                mMemoryBytes -= it.next().mSize;
+                it.remove();
+            }
+        }
+    }
+
+    // Удаляет запись из памяти и учитывает это в объеме. Вызывается под блокировкой mMemory.
+    private void removeData(String key) {
+        MemoryEntry entry = mMemory.remove(key);
+        if (entry != null) {
+            mMemoryBytes -= entry.mSize;
+        }
+    }
+
+    /**
+     * Сохраняет ответ в оба уровня кэша.
+     *
+     * @param endpoint Точка входа.
+     * @param key      Ключ запроса.
+     * @param body     Тело ответа.
+     * @param data     Результат распарсивания ответа.
+     */
+    void put(String endpoint, String key, byte[] body, Object data) {
+        if (getTtl(endpoint) <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        putData(key, now, data, body.length);
+
+        synchronized (mDiskLock) {
+            if (!mDir.exists() && !mDir.mkdirs()) {
+                Log.e(TAG, "Unable to create cache dir: " + mDir);
+                return;
+            }
+            File file = getFile(key);
+            deleteFile(file);
+            if (writeFile(file, key, now, body)) {
+                mDiskBytes = getDiskBytes() + file.length();
+                trimDisk();
+            }
+        }
+    }
+
+    /**
+     * Удаляет все записи из обоих уровней кэша.
+     */
+    public void clear() {
+        synchronized (mMemory) {
+            mMemory.clear();
+            mMemoryBytes = 0;
+        }
+        synchronized (mDiskLock) {
+            File[] files = mDir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            mDiskBytes = 0;
+        }
+    }
+
+    // Возвращает объем файлов кэша на диске, при необходимости подсчитывая его.
+    // Вызывается под mDiskLock.
+    private long getDiskBytes() {
+        if (mDiskBytes < 0) {
+            mDiskBytes = 0;
+            File[] files = mDir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    mDiskBytes += file.length();
+                }
+            }
+        }
+        return mDiskBytes;
+    }
+
+    // Удаляет давно не использованные файлы, пока их объем превышает допустимый.
+    // Вызывается под mDiskLock.
+    private void trimDisk() {
+        if (getDiskBytes() <= MAX_DISK_BYTES) {
+            return;
+        }
+        File[] files = mDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                long m1 = f1.lastModified(), m2 = f2.lastModified();
+                return m1 < m2 ? -1 : (m1 == m2 ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < files.length && mDiskBytes > MAX_DISK_BYTES; i++) {
+            deleteFile(files[i]);
+        }
+    }
+
+    // Удаляет файл и учитывает это в объеме кэша. Вызывается под mDiskLock.
+    private void deleteFile(File file) {
+        long length = file.length();
+        if (file.delete() && mDiskBytes >= 0) {
+            mDiskBytes = Math.max(0, mDiskBytes - length);
+        }
+    }
+
+    // Возвращает файл для ключа запроса.
+    private File getFile(String key) {
+        return new File(mDir, hash(key));
+    }
+
+    // Читает запись из файла. Возвращает null, если файл поврежден
+    // или принадлежит другому ключу.
+    private DiskEntry readFile(File file, String key) {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (!in.readUTF().equals(key)) {
+                return null;
+            }
+            long storedAt = in.readLong();
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            return new DiskEntry(storedAt, body);
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to read cache file: " + e);
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    // Записывает запись в файл. Возвращает true в случае успеха.
+    private boolean writeFile(File file, String key, long storedAt, byte[] body) {
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            out.writeUTF(key);
+            out.writeLong(storedAt);
+            out.writeInt(body.length);
+            out.write(body);
+            out.close();
+            out = null;
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to write cache file: " + e);
+            file.delete();
+            return false;
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    // Закрывает поток, игнорируя ошибки.
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // Ничего не делаем.
+            }
+        }
+    }
+
+    // Возвращает хэш ключа, используемый как имя файла.
+    private static String hash(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] bytes = digest.digest(key.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+                sb.append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException | IOException e) {
+            return Integer.toHexString(key.hashCode());
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.deakishin.weatherapp.model.rest.restclient;
+
+/**
+ * Тип ошибки выполнения Rest-запроса.
+ */
+public enum RestError {
+    /** Ответ от сервера не получен: нет сети, таймаут, обрыв соединения. */
+    NETWORK,
+    /** Сервер вернул ошибку 5xx. */
+    SERVER,
+    /** Сервер отклонил запрос (ошибка 4xx). */
+    CLIENT,
+    /** Сервер отклонил запрос из-за превышения квоты запросов (ошибка 429). */
+    RATE_LIMITED,
+    /** Ответ сервера не удалось распарсить. */
+    PARSE,
+    /** Запрос выполнен, но данных для объекта в ответе нет. */
+    NO_DATA,
+    /** Запрос не выполнялся, так как сервер недоступен и предохранитель точки входа разомкнут. */
+    CIRCUIT_OPEN,
+    /** Операция отменена или истек срок ее выполнения. */
+    CANCELLED,
+    /**
+     * Операцию над несколькими объектами не удалось выполнить для части объектов или для всех.
+     * Ошибки отдельных объектов сохраняются в их статусах.
+     */
+    PARTIAL
+}
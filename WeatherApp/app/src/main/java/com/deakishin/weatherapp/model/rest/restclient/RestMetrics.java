@@ -0,0 +1,115 @@
+package com.deakishin.weatherapp.model.rest.restclient;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Счетчики выполнения Rest-запросов: повторные попытки, срабатывания предохранителей
+ * и ожидание в очереди ограничителя частоты запросов.
+ * Класс потокобезопасный.
+ */
+public class RestMetrics {
+
+    // Количество повторных попыток.
+    private final AtomicLong mRetryCount = new AtomicLong();
+    // Количество запросов, завершившихся ошибкой после всех попыток.
+    private final AtomicLong mExhaustedCount = new AtomicLong();
+    // Количество запросов, отклоненных разомкнутым предохранителем.
+    private final AtomicLong mRejectedCount = new AtomicLong();
+    // Количество ответов 429 от сервера.
+    private final AtomicLong mRateLimitedCount = new AtomicLong();
+    // Количество запросов, ожидавших токен ограничителя частоты, и суммарное
+    // и максимальное время ожидания в мс.
+    private final AtomicLong mQueuedCount = new AtomicLong();
+    private final AtomicLong mQueueWaitMs = new AtomicLong();
+    private final AtomicLong mMaxQueueWaitMs = new AtomicLong();
+
+    void onRetry() {
+        mRetryCount.incrementAndGet();
+    }
+
+    void onExhausted() {
+        mExhaustedCount.incrementAndGet();
+    }
+
+    void onRejected() {
+        mRejectedCount.incrementAndGet();
+    }
+
+    void onRateLimited() {
+        mRateLimitedCount.incrementAndGet();
+    }
+
+    void onQueueWait(long waitMs) {
+        if (waitMs <= 0) {
+            return;
+        }
+        mQueuedCount.incrementAndGet();
+        mQueueWaitMs.addAndGet(waitMs);
+        long max;
+        do {
+            max = mMaxQueueWaitMs.get();
+        } while (waitMs > max && !mMaxQueueWaitMs.compareAndSet(max, waitMs));
+    }
+
+    /**
+     * @return Количество повторных попыток.
+     */
+    public long getRetryCount() {
+        return mRetryCount.get();
+    }
+
+    /**
+     * @return Количество запросов, завершившихся ошибкой после всех попыток.
+     */
+    public long getExhaustedCount() {
+        return mExhaustedCount.get();
+    }
+
+    /**
+     * @return Количество запросов, отклоненных разомкнутым предохранителем без обращения к серверу.
+     */
+    public long getRejectedCount() {
+        return mRejectedCount.get();
+    }
+
+    /**
+     * @return Количество ответов сервера о превышении квоты запросов (429).
+     */
+    public long getRateLimitedCount() {
+        return mRateLimitedCount.get();
+    }
+
+    /**
+     * @return Количество запросов, ожидавших в очереди ограничителя частоты.
+     */
+    public long getQueuedCount() {
+        return mQueuedCount.get();
+    }
+
+    /**
+     * @return Суммарное время ожидания в очереди ограничителя частоты в мс.
+     */
+    public long getQueueWaitMs() {
+        return mQueueWaitMs.get();
+    }
+
+    /**
+     * @return Максимальное время ожидания в очереди ограничителя частоты в мс.
+     */
+    public long getMaxQueueWaitMs() {
+        return mMaxQueueWaitMs.get();
+    }
+
+    @Override
+    public String toString() {
+        return "RestMetrics{" +
+                "mRetryCount=" + mRetryCount +
+                ", mExhaustedCount=" + mExhaustedCount +
+                ", mRejectedCount=" + mRejectedCount +
+                ", mRateLimitedCount=" + mRateLimitedCount +
+                ", mQueuedCount=" + mQueuedCount +
+                ", mQueueWaitMs=" + mQueueWaitMs +
+                ", mMaxQueueWaitMs=" + mMaxQueueWaitMs +
+                '}';
+    }
+}
@@ -0,0 +1,83 @@
+package com.deakishin.weatherapp.model.rest.restclient;
+
+import java.util.Random;
+
+/**
+ * Политика повторных попыток выполнения запроса.
+ * Задержка перед повторной попыткой растет экспоненциально и выбирается случайно
+ * в пределах от нуля до текущего предела ("full jitter"), чтобы клиенты,
+ * получившие ошибку одновременно, не повторяли запросы синхронно.
+ * Класс неизменяемый и потокобезопасный.
+ */
+public class RetryPolicy {
+
+    /**
+     * Политика по умолчанию: 3 попытки, базовая задержка 500 мс, максимальная 8 с.
+     */
+    public static final RetryPolicy DEFAULT = new RetryPolicy(3, 500, 8 * 1000);
+
+    /**
+     * Политика без повторных попыток.
+     */
+    public static final RetryPolicy NO_RETRIES = new RetryPolicy(1, 0, 0);
+
+    // Генератор случайной составляющей задержки.
+    private static final Random sRandom = new Random();
+
+    // Максимальное количество попыток, включая первую.
+    private final int mMaxAttempts;
+    // Базовая и максимальная задержки в мс.
+    private final long mBaseDelayMs;
+    private final long mMaxDelayMs;
+
+    /**
+     * @param maxAttempts Максимальное количество попыток, включая первую. Не меньше 1.
+     * @param baseDelayMs Задержка перед первой повторной попыткой в мс.
+     * @param maxDelayMs  Максимальная задержка в мс.
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMs, long maxDelayMs) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1: " + maxAttempts);
+        }
+        mMaxAttempts = maxAttempts;
+        mBaseDelayMs = baseDelayMs;
+        mMaxDelayMs = maxDelayMs;
+    }
+
+    public int getMaxAttempts() {
+        return mMaxAttempts;
+    }
+
+    /**
+     * Проверяет, можно ли повторить запрос после неудачной попытки.
+     *
+     * @param attempt Номер неудачной попытки, начиная с 1.
+     * @param error   Тип ошибки.
+     * @return True, если запрос можно повторить.
+     */
+    public boolean shouldRetry(int attempt, RestError error) {
+        if (attempt >= mMaxAttempts) {
+            return false;
+        }
+        return error == RestError.NETWORK || error == RestError.SERVER || error == RestError.RATE_LIMITED;
+    }
+
+    /**
+     * Возвращает задержку перед повторной попыткой.
+     *
+     * @param attempt Номер неудачной попытки, начиная с 1.
+     * @return Задержка в мс.
+     */
+    public long getDelayMs(int attempt) {
+        long limit = mBaseDelayMs << Math.min(attempt - 1, 30);
+        if (limit <= 0 || limit > mMaxDelayMs) {
+            limit = mMaxDelayMs;
+        }
+        if (limit <= 0) {
+            return 0;
+        }
+        synchronized (sRandom) {
+            return (long) (sRandom.nextDouble() * limit);
+        }
+    }
+}
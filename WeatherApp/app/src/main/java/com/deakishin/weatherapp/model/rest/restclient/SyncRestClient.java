@@ -3,21 +3,17 @@ package com.deakishin.weatherapp.model.rest.restclient;
 import android.util.Log;
 
 import com.deakishin.weatherapp.model.entities.WeatherData;
-import com.loopj.android.http.JsonHttpResponseHandler;
+import com.loopj.android.http.AsyncHttpResponseHandler;
 import com.loopj.android.http.RequestParams;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
 
 import cz.msebera.android.httpclient.Header;
+import cz.msebera.android.httpclient.HttpStatus;
 
 /**
  * Клиент для выполнения Rest-запросов на сервер.
@@ -27,9 +23,150 @@ public class SyncRestClient {
 
     private final String TAG = getClass().getSimpleName();
 
+    /**
+     * Максимальное количество городов в одном запросе текущей погоды для группы городов.
+     */
+    public static final int MAX_BATCH_SIZE = 20;
+
+    // Заголовки HTTP для условных запросов и ответов о превышении квоты.
+    private static class HEADERS {
+        static final String ETAG = "ETag";
+        static final String LAST_MODIFIED = "Last-Modified";
+        static final String IF_NONE_MATCH = "If-None-Match";
+        static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+        static final String RETRY_AFTER = "Retry-After";
+    }
+
+    // Кэш валидаторов для условных запросов. Общий для всех клиентов.
+    private static final ValidationCache sValidationCache = new ValidationCache();
+
+    /**
+     * @return Кэш валидаторов условных запросов со счетчиками попаданий.
+     */
+    public static ValidationCache getValidationCache() {
+        return sValidationCache;
+    }
+
+    // Время жизни ответов в кэше по умолчанию в мс.
+    private static final long WEATHER_CACHE_TTL_MS = 10 * 60 * 1000;
+    private static final long FORECAST_CACHE_TTL_MS = 3 * 60 * 60 * 1000;
+
+    /**
+     * Задает время жизни ответов точек входа клиента по умолчанию.
+     * Вызывается один раз при создании общего кэша ответов.
+     *
+     * @param responseCache Кэш ответов.
+     */
+    static void setDefaultTtls(ResponseCache responseCache) {
+        responseCache.setTtl(REST_PARAMS.WEATHER_ENDPOINT, WEATHER_CACHE_TTL_MS);
+        responseCache.setTtl(REST_PARAMS.GROUP_ENDPOINT, WEATHER_CACHE_TTL_MS);
+        responseCache.setTtl(REST_PARAMS.FORECAST_ENDPOINT, FORECAST_CACHE_TTL_MS);
+    }
+
+    // Предохранители по точкам входа. Общие для всех клиентов.
+    private static final Map<String, CircuitBreaker> sCircuitBreakers = new HashMap<>();
+
+    // Счетчики повторных попыток и срабатываний предохранителей. Общие для всех клиентов.
+    private static final RestMetrics sMetrics = new RestMetrics();
+
+    /**
+     * Квота запросов к серверу в минуту для ключа API.
+     */
+    public static final int DEFAULT_RATE_LIMIT_PER_MINUTE = 60;
+    /**
+     * Количество запросов, которые можно выполнить подряд без ожидания.
+     */
+    public static final int DEFAULT_RATE_LIMIT_BURST = 10;
+
+    // Ограничитель частоты запросов. Общий для всех клиентов, так как квота задана на ключ API.
+    private static volatile RateLimiter sRateLimiter =
+            new RateLimiter(DEFAULT_RATE_LIMIT_PER_MINUTE, DEFAULT_RATE_LIMIT_BURST);
+
+    /**
+     * Задает ограничитель частоты запросов для всех клиентов.
+     *
+     * @param rateLimiter Ограничитель.
+     */
+    public static void setRateLimiter(RateLimiter rateLimiter) {
+        sRateLimiter = rateLimiter;
+    }
+
+    /**
+     * @return Счетчики повторных попыток, срабатываний предохранителей и ожидания
+     * в очереди ограничителя частоты.
+     */
+    public static RestMetrics getMetrics() {
+        return sMetrics;
+    }
+
+    /**
+     * Возвращает предохранитель точки входа, создавая его при необходимости.
+     *
+     * @param endpoint Точка входа.
+     * @return Предохранитель.
+     */
+    public static CircuitBreaker getCircuitBreaker(String endpoint) {
+        synchronized (sCircuitBreakers) {
+            CircuitBreaker circuitBreaker = sCircuitBreakers.get(endpoint);
+            if (circuitBreaker == null) {
+                circuitBreaker = new CircuitBreaker();
+                sCircuitBreakers.put(endpoint, circuitBreaker);
+            }
+            return circuitBreaker;
+        }
+    }
+
+    // Кэш ответов сервера или null, если ответы не кэшируются.
+    private final ResponseCache mResponseCache;
+
+    // Политика повторных попыток.
+    private final RetryPolicy mRetryPolicy;
+
+    // Срок выполнения запросов клиента или null, если срок не ограничен.
+    private final Deadline mDeadline;
+
+    /**
+     * Создает клиент без кэша ответов.
+     */
+    public SyncRestClient() {
+        this(null);
+    }
+
+    /**
+     * Создает клиент, который сначала ищет ответы в кэше и сохраняет в него полученные с сервера ответы.
+     * Время жизни ответов задается кэшем, см. {@link ResponseCache#setTtl(String, long)}.
+     *
+     * @param responseCache Кэш ответов или null, если ответы кэшировать не нужно.
+     */
+    public SyncRestClient(ResponseCache responseCache) {
+        this(responseCache, RetryPolicy.DEFAULT);
+    }
+
+    /**
+     * @param responseCache Кэш ответов или null, если ответы кэшировать не нужно.
+     * @param retryPolicy   Политика повторных попыток при сетевых и серверных ошибках.
+     */
+    public SyncRestClient(ResponseCache responseCache, RetryPolicy retryPolicy) {
+        this(responseCache, retryPolicy, null);
+    }
+
+    /**
+     * @param responseCache Кэш ответов или null, если ответы кэшировать не нужно.
+     * @param retryPolicy   Политика повторных попыток при сетевых и серверных ошибках.
+     * @param deadline      Срок выполнения всех запросов клиента или null, если срок не ограничен.
+     *                      По его истечении выполняющиеся запросы прерываются, а новые сразу
+     *                      завершаются ошибкой {@link RestError#CANCELLED}.
+     */
+    public SyncRestClient(ResponseCache responseCache, RetryPolicy retryPolicy, Deadline deadline) {
+        mResponseCache = responseCache;
+        mRetryPolicy = retryPolicy;
+        mDeadline = deadline;
+    }
+
     // Параметры Rest-методов.
     private static class REST_PARAMS {
         static final String WEATHER_ENDPOINT = "weather";
+        static final String GROUP_ENDPOINT = "group";
         static final String FORECAST_ENDPOINT = "forecast";
         static final String PARAM_ID = "id";
         static final String PARAM_NAME = "q";
@@ -52,84 +189,284 @@ public class SyncRestClient {
 
         /**
          * Вызывается в случае возникновения ошибки во время выполнения запроса.
+         *
+         * @param error Тип ошибки.
          */
-        void onError();
-    }
-
-    /**
-     * Конвертер объекта Json в generic.
-     */
-    private interface JsonConverter<T> {
-        T convert(JSONObject json) throws JSONException;
+        void onError(RestError error);
     }
 
     // Получает данные с сервера по точке входа, запросу и конвертеру ответа.
     // Ответ передается объекту ResponseHandler.
-    private <T> void getData(String endpoint, RequestParams rp,
-                             final JsonConverter<T> converter, final ResponseHandler<T> responseHandler) {
-        HttpUtils.get(endpoint, rp, new JsonHttpResponseHandler() {
-            @Override
-            public void onSuccess(int statusCode, Header[] headers, JSONObject response) {
+    // Если useCache и в кэше ответов есть свежий ответ, то запрос на сервер не выполняется.
+    // Полученный с сервера ответ сохраняется в кэш, только если useCache: вызовы в обход кэша
+    // (обновления по запросу пользователя) записывают данные в БД, и из кэша их ответы не читались бы.
+    // При сетевых и серверных ошибках запрос повторяется согласно политике повторов.
+    // Если предохранитель точки входа разомкнут, то запрос сразу завершается ошибкой.
+    // Если срок выполнения истек, то запрос завершается ошибкой CANCELLED.
+    @SuppressWarnings("unchecked")
+    private <T> void getData(final String endpoint, RequestParams rp, final JsonConverter<T> converter,
+                             boolean useCache, final ResponseHandler<T> responseHandler) {
+        final String requestKey = HttpUtils.getRequestKey(endpoint, rp);
+
+        if (useCache && mResponseCache != null) {
+            Object cachedData = mResponseCache.getData(endpoint, requestKey);
+            if (cachedData != null) {
+                Log.i(TAG, "Serving REST result from memory cache. Endpoint=" + endpoint);
+                responseHandler.onSuccess(copyData((T) cachedData));
+                return;
+            }
+            ResponseCache.DiskEntry cachedBody = mResponseCache.getBody(endpoint, requestKey);
+            if (cachedBody != null) {
                 try {
-                    Log.i(TAG, "Received result from REST API as a JSON object. Code=" + statusCode + ". Response:" + response.toString());
-                    JSONObject json = new JSONObject(response.toString());
-                    responseHandler.onSuccess(converter.convert(json));
-                } catch (JSONException e) {
-                    Log.e(TAG, "Error processing JSON object: " + e);
-                    responseHandler.onError();
+                    T data = WeatherJsonConverters.decode(cachedBody.mBody, converter);
+                    mResponseCache.putData(requestKey, cachedBody.mStoredAt, copyData(data), cachedBody.mBody.length);
+                    Log.i(TAG, "Serving REST result from disk cache. Endpoint=" + endpoint);
+                    responseHandler.onSuccess(data);
+                    return;
+                } catch (IOException | RuntimeException e) {
+                    Log.e(TAG, "Error processing cached JSON response: " + e);
+                }
+            }
+        }
+
+        CircuitBreaker circuitBreaker = getCircuitBreaker(endpoint);
+        for (int attempt = 1; ; attempt++) {
+            if (mDeadline != null && mDeadline.isDone()) {
+                responseHandler.onError(RestError.CANCELLED);
+                return;
+            }
+            if (!circuitBreaker.allowRequest()) {
+                Log.e(TAG, "Circuit breaker is open. Endpoint=" + endpoint);
+                sMetrics.onRejected();
+                responseHandler.onError(RestError.CIRCUIT_OPEN);
+                return;
+            }
+
+            Result<T> result = executeRequest(endpoint, rp, requestKey, converter, useCache);
+            if (result.mError == null) {
+                circuitBreaker.onSuccess();
+                responseHandler.onSuccess(result.mData);
+                return;
+            }
+
+            if (result.mError == RestError.RATE_LIMITED) {
+                sMetrics.onRateLimited();
+            }
+
+            // Ошибки запроса, в отличие от ошибок сети и сервера, говорят о том, что сервер доступен.
+            // Отмена ничего не говорит о состоянии сервера.
+            if (result.mError == RestError.CANCELLED) {
+                circuitBreaker.onCancelled();
+            } else if (result.mError == RestError.NETWORK || result.mError == RestError.SERVER) {
+                circuitBreaker.onFailure();
+            } else {
+                circuitBreaker.onSuccess();
+            }
+
+            if (!mRetryPolicy.shouldRetry(attempt, result.mError)) {
+                if (attempt > 1) {
+                    sMetrics.onExhausted();
+                }
+                responseHandler.onError(result.mError);
+                return;
+            }
+
+            long delayMs = Math.max(mRetryPolicy.getDelayMs(attempt), result.mRetryAfterMs);
+            if (mDeadline != null && delayMs >= mDeadline.getRemainingMs()) {
+                // Повторная попытка не успеет выполниться до истечения срока.
+                responseHandler.onError(result.mError);
+                return;
+            }
+            Log.i(TAG, "Retrying REST method in " + delayMs + " ms. Endpoint=" + endpoint
+                    + ". Attempt=" + attempt + ". Error=" + result.mError);
+            sMetrics.onRetry();
+            try {
+                if (mDeadline == null) {
+                    Thread.sleep(delayMs);
+                } else if (!mDeadline.sleep(delayMs)) {
+                    responseHandler.onError(RestError.CANCELLED);
+                    return;
                 }
+            } catch (InterruptedException e) {
+                // Ожидание повтора прервано отменой задачи: это отмена, как и при ожидании токена,
+                // а не ошибка прошлой попытки, поэтому предохранитель ее не учитывает.
+                Thread.currentThread().interrupt();
+                responseHandler.onError(RestError.CANCELLED);
+                return;
             }
+        }
+    }
+
+    // Возвращает копию результата запроса: объекта WeatherData или списка таких объектов.
+    // Кэши хранят и выдают только копии, чтобы изменения результата вызывающим не затрагивали
+    // результаты, выданные другим вызывающим.
+    @SuppressWarnings("unchecked")
+    private static <T> T copyData(T data) {
+        if (data instanceof WeatherData) {
+            return (T) new WeatherData((WeatherData) data);
+        }
+        if (data instanceof List) {
+            List<WeatherData> list = (List<WeatherData>) data;
+            List<WeatherData> copy = new ArrayList<>(list.size());
+            for (WeatherData item : list) {
+                copy.add(item == null ? null : new WeatherData(item));
+            }
+            return (T) copy;
+        }
+        return data;
+    }
+
+    /**
+     * Результат одной попытки выполнения запроса.
+     */
+    private static class Result<T> {
+        // Полученные данные.
+        T mData;
+        // Ошибка или null в случае успеха.
+        RestError mError;
+        // Время в мс, через которое сервер просит повторить запрос, или 0.
+        long mRetryAfterMs;
+    }
+
+    // Выполняет одну попытку запроса на сервер, предварительно дождавшись токена ограничителя частоты.
+    // Если для запроса сохранены валидаторы, то запрос выполняется условно, и при ответе 304
+    // возвращается результат предыдущего полного ответа. Если cacheResponse, то полный ответ
+    // сохраняется в кэш ответов.
+    @SuppressWarnings("unchecked")
+    private <T> Result<T> executeRequest(final String endpoint, RequestParams rp, final String requestKey,
+                                         final JsonConverter<T> converter, final boolean cacheResponse) {
+        final Result<T> result = new Result<>();
+
+        try {
+            long waitMs = mDeadline == null ? sRateLimiter.acquire()
+                    : sRateLimiter.acquire(mDeadline.getRemainingMs());
+            if (waitMs < 0) {
+                // Токен не будет получен до истечения срока.
+                result.mError = RestError.CANCELLED;
+                return result;
+            }
+            sMetrics.onQueueWait(waitMs);
+        } catch (InterruptedException e) {
+            // Запрос не отправлялся: это отмена, а не ошибка сети, и предохранитель ее не учитывает.
+            Thread.currentThread().interrupt();
+            result.mError = RestError.CANCELLED;
+            return result;
+        }
+        final ValidationCache.Entry cached = sValidationCache.get(requestKey);
+
+        Map<String, String> headers = new HashMap<>(2);
+        if (cached != null) {
+            if (cached.mETag != null) {
+                headers.put(HEADERS.IF_NONE_MATCH, cached.mETag);
+            }
+            if (cached.mLastModified != null) {
+                headers.put(HEADERS.IF_MODIFIED_SINCE, cached.mLastModified);
+            }
+        }
 
+        HttpUtils.get(endpoint, rp, headers, mDeadline, new AsyncHttpResponseHandler() {
             @Override
-            public void onSuccess(int statusCode, Header[] headers, JSONArray array) {
-                Log.i(TAG, "Got result from REST API as a JSON array. Code=" + statusCode + ". Response:" + array.toString());
-                if (array.length() > 0)
-                    try {
-                        onSuccess(statusCode, headers, array.getJSONObject(0));
-                    } catch (JSONException e) {
-                        Log.e(TAG, "Error processing JSON array: " + e);
-                        e.printStackTrace();
-                        responseHandler.onError();
+            public void onSuccess(int statusCode, Header[] headers, byte[] responseBody) {
+                Log.i(TAG, "Received result from REST API. Code=" + statusCode
+                        + ". Length=" + (responseBody == null ? 0 : responseBody.length));
+                T data;
+                try {
+                    data = WeatherJsonConverters.decode(responseBody, converter);
+                } catch (IOException | RuntimeException e) {
+                    Log.e(TAG, "Error processing JSON response: " + e);
+                    result.mError = RestError.PARSE;
+                    return;
+                }
+                if (statusCode == HttpStatus.SC_OK) {
+                    T cachedData = copyData(data);
+                    sValidationCache.put(requestKey, getHeaderValue(headers, HEADERS.ETAG),
+                            getHeaderValue(headers, HEADERS.LAST_MODIFIED), cachedData);
+                    if (cacheResponse && mResponseCache != null) {
+                        mResponseCache.put(endpoint, requestKey, responseBody, cachedData);
                     }
+                }
+                result.mData = data;
             }
 
             @Override
-            public void onFailure(int statusCode, Header[] headers, Throwable throwable, JSONObject errorResponse) {
-                Log.e(TAG, "Failed to execute REST method. Code: " + statusCode + ". Response: " + errorResponse.toString());
+            public void onFailure(int statusCode, Header[] headers, byte[] responseBody, Throwable error) {
+                if (statusCode == HttpStatus.SC_NOT_MODIFIED && cached != null) {
+                    Log.i(TAG, "REST API result not modified. Reusing the cached result");
+                    sValidationCache.onNotModified();
+                    result.mData = copyData((T) cached.mData);
+                    return;
+                }
+
+                Log.e(TAG, "Failed to execute REST method. Code: " + statusCode + ". Error: " + error);
+                if (statusCode <= 0 && mDeadline != null && mDeadline.isDone()) {
+                    result.mError = RestError.CANCELLED;
+                    return;
+                }
+                String message = null;
                 try {
-                    if (errorResponse.getString("message").equals(WEATHER_ERROR_JSON_PARAM_CITY_NOT_FOUND)) {
-                        onSuccess(statusCode, headers, errorResponse);
-                    } else {
-                        responseHandler.onError();
+                    message = WeatherJsonConverters.decode(responseBody, WeatherJsonConverters.ERROR_MESSAGE);
+                } catch (IOException | RuntimeException e) {
+                    Log.e(TAG, "Unable to read error response: " + e);
+                }
+                if (WEATHER_ERROR_JSON_PARAM_CITY_NOT_FOUND.equals(message)) {
+                    onSuccess(statusCode, headers, responseBody);
+                } else {
+                    result.mError = getError(statusCode);
+                    if (result.mError == RestError.RATE_LIMITED) {
+                        result.mRetryAfterMs = getRetryAfterMs(headers);
                     }
-                } catch (JSONException e) {
-                    responseHandler.onError();
                 }
             }
         });
+        return result;
     }
 
-    // Сообщение в ошибке, которое означает, что город не найден.
-    private static final String WEATHER_ERROR_JSON_PARAM_CITY_NOT_FOUND = "city not found";
+    // Код ответа о превышении квоты запросов.
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+
+    // Возвращает тип ошибки по коду ответа. Код 0 означает, что ответ не получен.
+    private static RestError getError(int statusCode) {
+        if (statusCode <= 0) {
+            return RestError.NETWORK;
+        }
+        if (statusCode == SC_TOO_MANY_REQUESTS) {
+            return RestError.RATE_LIMITED;
+        }
+        return statusCode >= 500 ? RestError.SERVER : RestError.CLIENT;
+    }
+
+    // Максимальное учитываемое значение заголовка Retry-After в мс.
+    private static final long MAX_RETRY_AFTER_MS = 60 * 1000;
+
+    // Возвращает время в мс из заголовка Retry-After или 0, если заголовка нет
+    // или он задан не в секундах. Значение ограничивается MAX_RETRY_AFTER_MS.
+    private static long getRetryAfterMs(Header[] headers) {
+        String value = getHeaderValue(headers, HEADERS.RETRY_AFTER);
+        if (value != null) {
+            try {
+                return Math.max(0, Math.min(Long.parseLong(value.trim()) * 1000, MAX_RETRY_AFTER_MS));
+            } catch (NumberFormatException e) {
+                // Дата в заголовке не поддерживается.
+            }
+        }
+        return 0;
+    }
 
-    // Параметры для распарсивания текущей погоды из JSON объекта.
-    private static class WEATHER_JSON_PARAMS {
-        static final String ID = "id";
-        static final String CITY = "name";
-        static final String WEATHER = "weather";
-        static final String WEATHER_ICON = "icon";
-        static final String MAIN = "main";
-        static final String MAIN_TEMP = "temp";
-        static final String MAIN_PRESSURE = "pressure";
-        static final String MAIN_HUMIDITY = "humidity";
-        static final String WIND = "wind";
-        static final String WIND_SPEED = "speed";
-        static final String CLOUDS = "clouds";
-        static final String CLOUDS_ALL = "all";
-        static final String SYS = "sys";
-        static final String SYS_COUNTRY = "country";
+    // Возвращает значение заголовка name или null, если такого заголовка нет.
+    private static String getHeaderValue(Header[] headers, String name) {
+        if (headers != null) {
+            for (Header header : headers) {
+                if (header.getName().equalsIgnoreCase(name)) {
+                    return header.getValue();
+                }
+            }
+        }
+        return null;
     }
 
+    // Сообщение в ошибке, которое означает, что город не найден.
+    private static final String WEATHER_ERROR_JSON_PARAM_CITY_NOT_FOUND = "city not found";
+
     /**
      * Выполняет запрос о текущей погоде для конкретного города.
      *
@@ -143,39 +480,52 @@ public class SyncRestClient {
         rp.add(REST_PARAMS.PARAM_KEY, REST_PARAMS.KEY);
         rp.add(REST_PARAMS.PARAM_UNITS, REST_PARAMS.UNITS_METRIC);
 
-        getData(REST_PARAMS.WEATHER_ENDPOINT, rp, new CurrentWeatherJsonConverter(), responseHandler);
+        getData(REST_PARAMS.WEATHER_ENDPOINT, rp, WeatherJsonConverters.CURRENT_WEATHER, true, responseHandler);
     }
 
     /**
-     * Конвертер JSON объекта, в котором содержатся данные о текущей погоде.
+     * Выполняет запрос о текущей погоде для группы городов одним запросом.
+     * Количество городов не должно превышать {@link #MAX_BATCH_SIZE}.
+     *
+     * @param ids             Идентификаторы городов.
+     * @param responseHandler Обработчик ответа на запроса.
      */
-    private class CurrentWeatherJsonConverter implements JsonConverter<WeatherData> {
-        @Override
-        public WeatherData convert(JSONObject json) throws JSONException {
-            WeatherData data = new WeatherData();
-
-            data.setId(json.getInt(WEATHER_JSON_PARAMS.ID));
-            data.setCityName(json.getString(WEATHER_JSON_PARAMS.CITY));
-
-            data.setCountry(json.getJSONObject(WEATHER_JSON_PARAMS.SYS).getString(WEATHER_JSON_PARAMS.SYS_COUNTRY));
-
-            JSONObject mainJson = json.getJSONObject(WEATHER_JSON_PARAMS.MAIN);
-            data.setTemp(mainJson.getDouble(WEATHER_JSON_PARAMS.MAIN_TEMP));
-            data.setPressure(mainJson.getDouble(WEATHER_JSON_PARAMS.MAIN_PRESSURE));
-            data.setHumidity(mainJson.getDouble(WEATHER_JSON_PARAMS.MAIN_HUMIDITY));
+    public void getCurrentWeatherBatch(List<Integer> ids, final ResponseHandler<List<WeatherData>> responseHandler) {
+        getCurrentWeatherBatch(ids, true, responseHandler);
+    }
 
-            data.setWind(json.getJSONObject(WEATHER_JSON_PARAMS.WIND).getDouble(WEATHER_JSON_PARAMS.WIND_SPEED));
+    /**
+     * Выполняет запрос о текущей погоде для группы городов одним запросом.
+     * Количество городов не должно превышать {@link #MAX_BATCH_SIZE}.
+     *
+     * @param ids             Идентификаторы городов.
+     * @param useCache        Можно ли взять ответ из кэша и сохранить в него ответ сервера. Если false,
+     *                        то запрос выполняется на сервер в обход кэша, например, при обновлении
+     *                        по запросу пользователя.
+     * @param responseHandler Обработчик ответа на запроса.
+     */
+    public void getCurrentWeatherBatch(List<Integer> ids, boolean useCache,
+                                       final ResponseHandler<List<WeatherData>> responseHandler) {
+        if (ids.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Too many cities in one batch: " + ids.size());
+        }
 
-            data.setClouds(json.getJSONObject(WEATHER_JSON_PARAMS.CLOUDS).getDouble(WEATHER_JSON_PARAMS.CLOUDS_ALL));
+        StringBuilder idsParam = new StringBuilder();
+        for (int id : ids) {
+            if (idsParam.length() > 0) {
+                idsParam.append(',');
+            }
+            idsParam.append(id);
+        }
 
-            data.setWeatherIconId(json.getJSONArray(WEATHER_JSON_PARAMS.WEATHER).getJSONObject(0).getString(WEATHER_JSON_PARAMS.WEATHER_ICON));
+        RequestParams rp = new RequestParams();
+        rp.add(REST_PARAMS.PARAM_ID, idsParam.toString());
+        rp.add(REST_PARAMS.PARAM_KEY, REST_PARAMS.KEY);
+        rp.add(REST_PARAMS.PARAM_UNITS, REST_PARAMS.UNITS_METRIC);
 
-            return data;
-        }
+        getData(REST_PARAMS.GROUP_ENDPOINT, rp, WeatherJsonConverters.CURRENT_WEATHER_LIST, useCache, responseHandler);
     }
 
-    ;
-
     /**
      * Выполняет запрос о текущей погоде для конкретного города по его названию.
      * Если город с таким названием не найден, то возвращает null обработчику ответа.
@@ -190,37 +540,7 @@ public class SyncRestClient {
         rp.add(REST_PARAMS.PARAM_KEY, REST_PARAMS.KEY);
         rp.add(REST_PARAMS.PARAM_UNITS, REST_PARAMS.UNITS_METRIC);
 
-        getData(REST_PARAMS.WEATHER_ENDPOINT, rp, new CurrentWeatherJsonConverter() {
-            @Override
-            public WeatherData convert(JSONObject json) throws JSONException {
-                if (!json.has(WEATHER_JSON_PARAMS.ID)) {
-                    return null;
-                }
-                return super.convert(json);
-            }
-        }, responseHandler);
-    }
-
-
-    // Параметры для распарсивания прогноза погоды из JSON объекта.
-    private static class FORECAST_JSON_PARAMS {
-        static final String CITY = "city";
-        static final String CITY_ID = "id";
-        static final String CITY_NAME = "name";
-        static final String CITY_COUNTRY = "country";
-        static final String COUNT = "cnt";
-        static final String LIST = "list";
-        static final String LIST_MAIN = "main";
-        static final String LIST_MAIN_TEMP = "temp";
-        static final String LIST_MAIN_PRESSURE = "pressure";
-        static final String LIST_MAIN_HUMIDITY = "humidity";
-        static final String LIST_WIND = "wind";
-        static final String LIST_WIND_SPEED = "speed";
-        static final String LIST_WEATHER = "weather";
-        static final String LIST_WEATHER_ICON = "icon";
-        static final String LIST_CLOUDS = "clouds";
-        static final String LIST_CLOUDS_ALL = "all";
-        static final String LIST_DATE = "dt_txt";
+        getData(REST_PARAMS.WEATHER_ENDPOINT, rp, WeatherJsonConverters.CURRENT_WEATHER_OR_NULL, true, responseHandler);
     }
 
     /**
@@ -230,59 +550,24 @@ public class SyncRestClient {
      * @param responseHandler Обработчик ответа на запроса.
      */
     public void getForecast(long id, final ResponseHandler<List<WeatherData>> responseHandler) {
+        getForecast(id, true, responseHandler);
+    }
+
+    /**
+     * Выполняет запрос о прогнозе погоды для конкретного города.
+     *
+     * @param id              Идентификатор города.
+     * @param useCache        Можно ли взять ответ из кэша и сохранить в него ответ сервера. Если false,
+     *                        то запрос выполняется на сервер в обход кэша.
+     * @param responseHandler Обработчик ответа на запроса.
+     */
+    public void getForecast(long id, boolean useCache, final ResponseHandler<List<WeatherData>> responseHandler) {
 
         RequestParams rp = new RequestParams();
         rp.add(REST_PARAMS.PARAM_ID, Long.toString(id));
         rp.add(REST_PARAMS.PARAM_KEY, REST_PARAMS.KEY);
         rp.add(REST_PARAMS.PARAM_UNITS, REST_PARAMS.UNITS_METRIC);
 
-        getData(REST_PARAMS.FORECAST_ENDPOINT, rp, new JsonConverter<List<WeatherData>>() {
-            @Override
-            public List<WeatherData> convert(JSONObject json) throws JSONException {
-                List<WeatherData> dataList = new ArrayList<>();
-
-                JSONObject cityJson = json.getJSONObject(FORECAST_JSON_PARAMS.CITY);
-                int cityId = cityJson.getInt(FORECAST_JSON_PARAMS.CITY_ID);
-                String cityName = cityJson.getString(FORECAST_JSON_PARAMS.CITY_NAME);
-                String country = cityJson.getString(FORECAST_JSON_PARAMS.CITY_COUNTRY);
-                int count = json.getInt(FORECAST_JSON_PARAMS.COUNT);
-
-                JSONArray array = json.getJSONArray(FORECAST_JSON_PARAMS.LIST);
-                for (int i = 0; i < array.length(); i++) {
-                    WeatherData data = new WeatherData();
-                    data.setId(cityId);
-                    data.setCityName(cityName);
-                    data.setCountry(country);
-
-                    JSONObject jsonObj = array.getJSONObject(i);
-
-                    JSONObject mainJson = jsonObj.getJSONObject(FORECAST_JSON_PARAMS.LIST_MAIN);
-                    data.setTemp(mainJson.getDouble(FORECAST_JSON_PARAMS.LIST_MAIN_TEMP));
-                    data.setHumidity(mainJson.getDouble(FORECAST_JSON_PARAMS.LIST_MAIN_HUMIDITY));
-                    data.setPressure(mainJson.getDouble(FORECAST_JSON_PARAMS.LIST_MAIN_PRESSURE));
-
-                    data.setWeatherIconId(jsonObj.getJSONArray(FORECAST_JSON_PARAMS.LIST_WEATHER)
-                            .getJSONObject(0).getString(FORECAST_JSON_PARAMS.LIST_WEATHER_ICON));
-
-                    data.setClouds(jsonObj.getJSONObject(FORECAST_JSON_PARAMS.LIST_CLOUDS)
-                            .getDouble(FORECAST_JSON_PARAMS.LIST_CLOUDS_ALL));
-
-                    data.setWind(jsonObj.getJSONObject(FORECAST_JSON_PARAMS.LIST_WIND)
-                            .getDouble(FORECAST_JSON_PARAMS.LIST_WIND_SPEED));
-
-                    String dateStr = jsonObj.getString(FORECAST_JSON_PARAMS.LIST_DATE);
-                    DateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.ENGLISH);
-                    try {
-                        data.setDate(format.parse(dateStr));
-                    } catch (ParseException e) {
-                        Log.e(TAG, "Unable to parse date for the forecast: " + e);
-                    }
-
-                    dataList.add(data);
-                }
-
-                return dataList;
-            }
-        }, responseHandler);
+        getData(REST_PARAMS.FORECAST_ENDPOINT, rp, WeatherJsonConverters.FORECAST, useCache, responseHandler);
     }
 }
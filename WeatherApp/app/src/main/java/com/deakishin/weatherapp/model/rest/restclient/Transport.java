@@ -0,0 +1,19 @@
+package com.deakishin.weatherapp.model.rest.restclient;
+
+import java.io.IOException;
+
+/**
+ * Транспорт для выполнения HTTP запросов.
+ * Запросы выполняются синхронно в вызывающем потоке.
+ * Реализации должны допускать одновременные вызовы из нескольких потоков.
+ */
+public interface Transport {
+    /**
+     * Выполняет запрос и возвращает ответ сервера с любым кодом.
+     *
+     * @param request Запрос.
+     * @return Ответ сервера.
+     * @throws IOException Если ответ не был получен.
+     */
+    HttpResponse execute(HttpRequest request) throws IOException;
+}
@@ -0,0 +1,133 @@
+package com.deakishin.weatherapp.model.rest.restclient;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Кэш валидаторов (ETag / Last-Modified) для условных запросов на сервер.
+ * Для каждого запроса (адрес и параметры) хранятся валидаторы последнего полного ответа
+ * и результат его распарсивания, который используется повторно, если сервер ответил 304.
+ * Класс потокобезопасный.
+ */
+public class ValidationCache {
+
+    // Максимальное количество хранимых записей. При превышении удаляются давно не использованные.
+    private static final int MAX_ENTRIES = 256;
+
+    /**
+     * Запись кэша.
+     */
+    static class Entry {
+        // Значение заголовка ETag ответа или null.
+        final String mETag;
+        // Значение заголовка Last-Modified ответа или null.
+        final String mLastModified;
+        // Результат распарсивания ответа.
+        final Object mData;
+
+        Entry(String eTag, String lastModified, Object data) {
+            mETag = eTag;
+            mLastModified = lastModified;
+            mData = data;
+        }
+    }
+
+    // Записи кэша по ключу запроса в порядке последнего использования.
+    private final Map<String, Entry> mEntries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ValidationCache.Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    // Счетчики запросов: отправленных с валидаторами, отправленных без валидаторов,
+    // и получивших ответ 304.
+    private final AtomicLong mHitCount = new AtomicLong();
+    private final AtomicLong mMissCount = new AtomicLong();
+    private final AtomicLong mNotModifiedCount = new AtomicLong();
+
+    /**
+     * Возвращает запись для запроса и учитывает обращение в счетчиках.
+     *
+     * @param key Ключ запроса.
+     * @return Запись или null, если для запроса нет валидаторов.
+     */
+    Entry get(String key) {
+        Entry entry;
+        synchronized (mEntries) {
+            entry = mEntries.get(key);
+        }
+        if (entry == null) {
+            mMissCount.incrementAndGet();
+        } else {
+            mHitCount.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * Сохраняет валидаторы и результат полного ответа. Если у ответа нет валидаторов,
+     * то запись для запроса удаляется.
+     *
+     * @param key          Ключ запроса.
+     * @param eTag         Значение заголовка ETag или null.
+     * @param lastModified Значение заголовка Last-Modified или null.
+     * @param data         Результат распарсивания ответа.
+     */
+    void put(String key, String eTag, String lastModified, Object data) {
+        synchronized (mEntries) {
+            if (eTag == null && lastModified == null) {
+                mEntries.remove(key);
+            } else {
+                mEntries.put(key, new Entry(eTag, lastModified, data));
+            }
+        }
+    }
+
+    /**
+     * Учитывает в счетчиках ответ 304.
+     */
+    void onNotModified() {
+        mNotModifiedCount.incrementAndGet();
+    }
+
+    /**
+     * Удаляет все записи.
+     */
+    public void clear() {
+        synchronized (mEntries) {
+            mEntries.clear();
+        }
+    }
+
+    /**
+     * @return Количество запросов, отправленных с валидаторами.
+     */
+    public long getHitCount() {
+        return mHitCount.get();
+    }
+
+    /**
+     * @return Количество запросов, отправленных без валидаторов.
+     */
+    public long getMissCount() {
+        return mMissCount.get();
+    }
+
+    /**
+     * @return Количество ответов 304, для которых использован сохраненный результат.
+     */
+    public long getNotModifiedCount() {
+        return mNotModifiedCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ValidationCache{" +
+                "mHitCount=" + mHitCount +
+                ", mMissCount=" + mMissCount +
+                ", mNotModifiedCount=" + mNotModifiedCount +
+                '}';
+    }
+}
@@ -11,6 +11,7 @@ import android.util.Log;
 
 import com.deakishin.weatherapp.model.rest.RestMethodsContract;
 import com.deakishin.weatherapp.model.rest.RestProcessor;
+import com.deakishin.weatherapp.model.rest.restclient.Deadline;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -20,11 +21,18 @@ import java.util.Map;
 /**
  * Служба для выполнения фоновой работы с Rest-сервисом.
  * По окончании выполнения операции выполняется рассылка с индикатором успеха/неудачи операции.
+ * У каждой операции есть срок выполнения, по истечении которого запросы на сервер прерываются,
+ * а полученные к этому моменту результаты сохраняются. Операцию можно отменить досрочно.
  */
 public class RestService extends Service {
 
     private final String TAG = getClass().getSimpleName();
 
+    /**
+     * Срок выполнения операции по умолчанию в мс.
+     */
+    public static final long DEFAULT_TIMEOUT_MS = 2 * 60 * 1000;
+
     // Инициализирована ли служба.
     private boolean mInitialized = false;
 
@@ -44,6 +52,15 @@ public class RestService extends Service {
         public static final String CITY_ID_EXTRA = "CITY_ID_EXTRA";
 
         public static final String CITY_NAME_EXTRA = "CITY_NAME_EXTRA";
+
+        /** Срок выполнения операции в мс. */
+        public static final String TIMEOUT_EXTRA = "TIMEOUT_EXTRA";
+
+        /** Идентификатор операции, которую нужно отменить. */
+        public static final String CANCEL_TASK_ID_EXTRA = "CANCEL_TASK_ID_EXTRA";
+
+        /** Признак того, что операция была отменена или не уложилась в срок. */
+        public static final String CANCELLED_EXTRA = "CANCELLED_EXTRA";
     }
 
     @Nullable
@@ -65,6 +82,11 @@ public class RestService extends Service {
             }
 
             Bundle extras = intent.getExtras();
+            if (extras.containsKey(Extras.CANCEL_TASK_ID_EXTRA)) {
+                cancelTask(extras.getString(Extras.CANCEL_TASK_ID_EXTRA));
+                return START_STICKY;
+            }
+
             String taskId = getTaskIdentifier(extras);
             int methodId = extras.getInt(Extras.METHOD_EXTRA);
             String resultAction = extras.getString(Extras.RESULT_ACTION_EXTRA);
@@ -75,6 +97,7 @@ public class RestService extends Service {
             } else {
                 // Запускаем операцию
                 AsyncServiceTask task = new AsyncServiceTask(taskId, methodId, resultAction, extras);
+                mTasks.put(taskId, task);
                 task.execute();
             }
         }
@@ -85,6 +108,19 @@ public class RestService extends Service {
     private void init() {
     }
 
+    // Отменяет операцию с идентификатором taskId, если она выполняется.
+    // Вызывается под mTasks.
+    private void cancelTask(String taskId) {
+        AsyncServiceTask task = mTasks.get(taskId);
+        if (task != null) {
+            Log.i(TAG, "Cancelling background task. TaskId=" + taskId);
+            task.cancelTask();
+        } else if (mTasks.isEmpty()) {
+            // Служба запущена только для отмены.
+            stopSelf();
+        }
+    }
+
     /**
      * Builds a string identifier for this method call.
      * The identifier will contain data about:
@@ -97,7 +133,7 @@ public class RestService extends Service {
      * Операция идентифицируется по:
      * - методу, который она должна выполнить,
      * - переданным параметрам в метод. */
-    private String getTaskIdentifier(Bundle extras) {
+    static String getTaskIdentifier(Bundle extras) {
         String[] keys = extras.keySet().toArray(new String[0]);
         java.util.Arrays.sort(keys);
         StringBuilder identifier = new StringBuilder();
@@ -105,8 +141,8 @@ public class RestService extends Service {
         for (int keyIndex = 0; keyIndex < keys.length; keyIndex++) {
             String key = keys[keyIndex];
 
-            // Для одной операции могут быть разные "слушатели".
-            if (key.equals(Extras.RESULT_ACTION_EXTRA)) {
+            // Для одной операции могут быть разные "слушатели" и сроки.
+            if (key.equals(Extras.RESULT_ACTION_EXTRA) || key.equals(Extras.TIMEOUT_EXTRA)) {
                 continue;
             }
 
@@ -134,12 +170,25 @@ public class RestService extends Service {
         private final String mTaskId;
         // Дополнения, в которых могут лежат параметры для методов.
         private final Bundle mExtras;
+        // Срок выполнения операции. Отсчет начинается при запуске операции, а не при постановке в очередь.
+        private final Deadline mDeadline;
 
         AsyncServiceTask(String taskId, int methodId, String resultAction, Bundle extras) {
             mMethodId = methodId;
             addResultAction(resultAction);
             mTaskId = taskId;
             mExtras = extras;
+            long timeoutMs = extras == null ? DEFAULT_TIMEOUT_MS
+                    : extras.getLong(Extras.TIMEOUT_EXTRA, DEFAULT_TIMEOUT_MS);
+            mDeadline = new Deadline(timeoutMs, false);
+        }
+
+        /**
+         * Отменяет операцию. Выполняющиеся запросы прерываются, операция завершается
+         * с уже полученными результатами, и "слушатели" получают рассылку как обычно.
+         */
+        void cancelTask() {
+            mDeadline.cancel();
         }
 
         /**
@@ -157,10 +206,18 @@ public class RestService extends Service {
         @Override
         protected Integer doInBackground(Void... params) {
             Log.i(TAG, "Starting background task. MethodId=" + mMethodId + ". TaskId=" + mTaskId);
-            RestProcessor restProcessor = new RestProcessor(RestService.this);
+            // Операции выполняются последовательно, и время ожидания в очереди не входит в срок.
+            mDeadline.start();
+            if (mDeadline.isDone()) {
+                // Операция отменена, пока ждала в очереди.
+                return 0;
+            }
+            RestProcessor restProcessor = new RestProcessor(RestService.this, mDeadline);
             switch (mMethodId) {
                 case RestMethodsContract.Methods.REFRESH_ALL_WEATHERS:
                     return restProcessor.refreshAllWeathers() ? 1 : 0;
+                case RestMethodsContract.Methods.REFRESH_FAILED_WEATHERS:
+                    return restProcessor.refreshFailedWeathers() ? 1 : 0;
                 case RestMethodsContract.Methods.REFRESH_FORECAST:
                     if (mExtras == null || !mExtras.containsKey(Extras.CITY_ID_EXTRA)) {
                         return 0;
@@ -180,12 +237,15 @@ public class RestService extends Service {
         protected void onPostExecute(Integer result) {
             synchronized (mTasks) {
                 Log.i(TAG, "Finishing background task. MethodId=" + mMethodId + ". Result=" + result);
+                boolean cancelled = mDeadline.isDone();
+                mDeadline.release();
 
                 // Отправляем широковещательные сообщения всем "слушателям".
                 for (String resultAction : mResultActions) {
                     Intent intent = new Intent(resultAction);
                     intent.putExtra(Extras.METHOD_EXTRA, mMethodId);
                     intent.putExtra(Extras.RESULT_EXTRA, result);
+                    intent.putExtra(Extras.CANCELLED_EXTRA, cancelled);
                     Log.i(TAG, "Sending broadcast. Result action: " + resultAction);
                     LocalBroadcastManager.getInstance(RestService.this).sendBroadcast(intent);
                 }
@@ -13,6 +13,8 @@ public class RestServiceHelper {
 
     private Context mContext;
     private String mResultAction;
+    // Срок выполнения операций в мс или 0, если используется срок по умолчанию.
+    private long mTimeoutMs;
 
     /**
      * Создает помощника.
@@ -26,24 +28,45 @@ public class RestServiceHelper {
         mResultAction = resultAction;
     }
 
+    /**
+     * Задает срок выполнения для последующих операций.
+     *
+     * @param timeoutMs Срок в мс. Если не больше нуля, то используется
+     *                  {@link RestService#DEFAULT_TIMEOUT_MS}.
+     */
+    public void setTimeout(long timeoutMs) {
+        mTimeoutMs = timeoutMs;
+    }
+
     /**
      * Обновляет данные в БД по текущей погоде с сервера.
+     *
+     * @return Идентификатор операции для отмены.
+     */
+    public String refreshAllWeathers() {
+        return runService(RestMethodsContract.Methods.REFRESH_ALL_WEATHERS);
+    }
+
+    /**
+     * Обновляет данные в БД по текущей погоде с сервера только для тех городов,
+     * последнее обновление которых завершилось ошибкой.
+     *
+     * @return Идентификатор операции для отмены.
      */
-    public void refreshAllWeathers() {
-        runService(RestMethodsContract.Methods.REFRESH_ALL_WEATHERS);
+    public String refreshFailedWeathers() {
+        return runService(RestMethodsContract.Methods.REFRESH_FAILED_WEATHERS);
     }
 
     /**
      * Обновляет данные в БД по прогнозу погоды с сервера для конкретного города.
      *
      * @param cityId Идентификатор города.
+     * @return Идентификатор операции для отмены.
      */
-    public void refreshForecast(int cityId) {
-        Intent intent = new Intent(mContext, RestService.class);
-        intent.putExtra(RestService.Extras.METHOD_EXTRA, RestMethodsContract.Methods.REFRESH_FORECAST);
-        intent.putExtra(RestService.Extras.RESULT_ACTION_EXTRA, mResultAction);
+    public String refreshForecast(int cityId) {
+        Intent intent = createIntent(RestMethodsContract.Methods.REFRESH_FORECAST);
         intent.putExtra(RestService.Extras.CITY_ID_EXTRA, cityId);
-        mContext.startService(intent);
+        return startService(intent);
     }
 
     /**
@@ -51,24 +74,51 @@ public class RestServiceHelper {
      * Также в случае успеха сразу обновляется текущая погода этого города.
      *
      * @param cityName Название города.
+     * @return Идентификатор операции для отмены.
      */
-    public void addCity(String cityName) {
-        Intent intent = new Intent(mContext, RestService.class);
-        intent.putExtra(RestService.Extras.METHOD_EXTRA, RestMethodsContract.Methods.ADD_CITY);
-        intent.putExtra(RestService.Extras.RESULT_ACTION_EXTRA, mResultAction);
+    public String addCity(String cityName) {
+        Intent intent = createIntent(RestMethodsContract.Methods.ADD_CITY);
         intent.putExtra(RestService.Extras.CITY_NAME_EXTRA, cityName);
-        mContext.startService(intent);
+        return startService(intent);
     }
 
     /**
      * Запускает службу для выполнения конкретного метода.
      *
      * @param methodId Идентификатор REST-метода.
+     * @return Идентификатор операции для отмены.
+     */
+    public String runService(int methodId) {
+        return startService(createIntent(methodId));
+    }
+
+    /**
+     * Отменяет операцию. Выполняющиеся запросы прерываются, полученные результаты сохраняются,
+     * а "слушатели" получают рассылку с признаком {@link RestService.Extras#CANCELLED_EXTRA}.
+     * Если операция уже завершена, то ничего не происходит.
+     *
+     * @param taskId Идентификатор операции, возвращенный при ее запуске.
      */
-    public void runService(int methodId) {
+    public void cancel(String taskId) {
+        Intent intent = new Intent(mContext, RestService.class);
+        intent.putExtra(RestService.Extras.CANCEL_TASK_ID_EXTRA, taskId);
+        mContext.startService(intent);
+    }
+
+    // Создает интент для запуска службы для выполнения метода.
+    private Intent createIntent(int methodId) {
         Intent intent = new Intent(mContext, RestService.class);
         intent.putExtra(RestService.Extras.METHOD_EXTRA, methodId);
         intent.putExtra(RestService.Extras.RESULT_ACTION_EXTRA, mResultAction);
+        if (mTimeoutMs > 0) {
+            intent.putExtra(RestService.Extras.TIMEOUT_EXTRA, mTimeoutMs);
+        }
+        return intent;
+    }
+
+    // Запускает службу и возвращает идентификатор операции.
+    private String startService(Intent intent) {
         mContext.startService(intent);
+        return RestService.getTaskIdentifier(intent.getExtras());
     }
 }
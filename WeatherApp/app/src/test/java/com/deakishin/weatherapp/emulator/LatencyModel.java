@@ -0,0 +1,80 @@
+package com.deakishin.weatherapp.emulator;
+
+import java.util.Random;
+
+/**
+ * Распределение задержки ответов эмулятора сервера.
+ */
+public abstract class LatencyModel {
+
+    /**
+     * @param random Генератор случайных чисел.
+     * @return Очередная задержка в мс.
+     */
+    public abstract long nextDelayMs(Random random);
+
+    /**
+     * @return Ответ без задержки.
+     */
+    public static LatencyModel none() {
+        return fixed(0);
+    }
+
+    /**
+     * @param delayMs Задержка в мс.
+     * @return Постоянная задержка.
+     */
+    public static LatencyModel fixed(final long delayMs) {
+        return new LatencyModel() {
+            @Override
+            public long nextDelayMs(Random random) {
+                return delayMs;
+            }
+
+            @Override
+            public String toString() {
+                return "fixed(" + delayMs + ")";
+            }
+        };
+    }
+
+    /**
+     * @param minMs Минимальная задержка в мс.
+     * @param maxMs Максимальная задержка в мс.
+     * @return Задержка, равномерно распределенная между minMs и maxMs.
+     */
+    public static LatencyModel uniform(final long minMs, final long maxMs) {
+        return new LatencyModel() {
+            @Override
+            public long nextDelayMs(Random random) {
+                return minMs + (long) (random.nextDouble() * (maxMs - minMs));
+            }
+
+            @Override
+            public String toString() {
+                return "uniform(" + minMs + ", " + maxMs + ")";
+            }
+        };
+    }
+
+    /**
+     * Логнормальное распределение с "длинным хвостом", похожее на задержки реального сервера.
+     *
+     * @param medianMs Медиана задержки в мс.
+     * @param sigma    Параметр разброса. При 0.5 99-й перцентиль примерно в 3 раза больше медианы.
+     * @return Задержка с логнормальным распределением.
+     */
+    public static LatencyModel logNormal(final long medianMs, final double sigma) {
+        return new LatencyModel() {
+            @Override
+            public long nextDelayMs(Random random) {
+                return (long) (medianMs * Math.exp(sigma * random.nextGaussian()));
+            }
+
+            @Override
+            public String toString() {
+                return "logNormal(" + medianMs + ", " + sigma + ")";
+            }
+        };
+    }
+}
@@ -0,0 +1,9 @@
+package com.deakishin.weatherapp.emulator;
+
+/**
+ * Категория JUnit для нагрузочных тестов с эмулятором сервера. Такие тесты не входят в обычный
+ * запуск unit-тестов и выполняются отдельно:
+ * <pre>./gradlew testDebugUnitTest -Dweatherapp.loadtest=true</pre>
+ */
+public interface LoadTest {
+}
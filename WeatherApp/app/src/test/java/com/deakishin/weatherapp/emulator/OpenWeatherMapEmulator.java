@@ -0,0 +1,429 @@
+package com.deakishin.weatherapp.emulator;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Эмулятор сервера OpenWeatherMap на встроенном HTTP сервере.
+ * Обслуживает точки входа weather, group, forecast и find синтетическими данными
+ * для городов с идентификаторами от {@link #FIRST_CITY_ID} до FIRST_CITY_ID + cityCount - 1.
+ * Город с идентификатором id называется "City id", так что его можно найти и по названию.
+ * Задержка ответов, доля ошибок 5xx и доля ответов 429 настраиваются.
+ * Класс потокобезопасный.
+ */
+public class OpenWeatherMapEmulator {
+
+    /**
+     * Идентификатор первого города.
+     */
+    public static final int FIRST_CITY_ID = 1000000;
+
+    // Начало названия потока HttpServer, принимающего соединения.
+    private static final String DISPATCHER_THREAD_NAME = "HTTP-Dispatcher";
+
+    // Префикс названия города.
+    private static final String CITY_NAME_PREFIX = "City ";
+
+    /**
+     * Количество элементов прогноза: 5 дней по 8 элементов с шагом в 3 часа.
+     */
+    public static final int FORECAST_ITEMS = 40;
+    private static final long FORECAST_STEP_MS = 3 * 60 * 60 * 1000;
+
+    // Иконки погоды.
+    private static final String[] ICONS = {"01d", "02d", "03d", "04d", "09d", "10d", "11d", "13d", "50d",
+            "01n", "02n", "03n", "04n", "09n", "10n", "11n", "13n", "50n"};
+
+    // Количество городов.
+    private final int mCityCount;
+    private final HttpServer mServer;
+    private final ExecutorService mExecutor;
+    // Потоки обработки запросов. Живут до остановки сервера.
+    private final List<Thread> mThreads = new CopyOnWriteArrayList<>();
+
+    private volatile LatencyModel mLatency = LatencyModel.none();
+    private volatile double mErrorRate;
+    private volatile double mRateLimitRate;
+
+    // Генератор задержек и ошибок.
+    private final Random mRandom;
+
+    // Счетчики запросов.
+    private final AtomicLong mRequestCount = new AtomicLong();
+    private final AtomicLong mErrorCount = new AtomicLong();
+    private final AtomicLong mRateLimitedCount = new AtomicLong();
+
+    /**
+     * Значение генератора случайных чисел по умолчанию.
+     */
+    public static final long DEFAULT_SEED = 42;
+
+    /**
+     * @param cityCount Количество городов.
+     * @param threads   Количество потоков сервера.
+     * @throws IOException Если сервер не удалось создать.
+     */
+    public OpenWeatherMapEmulator(int cityCount, int threads) throws IOException {
+        this(cityCount, threads, DEFAULT_SEED);
+    }
+
+    /**
+     * @param cityCount Количество городов.
+     * @param threads   Количество потоков сервера.
+     * @param seed      Начальное значение генератора задержек и ошибок. Последовательность значений
+     *                  повторяется, но при параллельных запросах порядок их распределения по запросам может меняться.
+     * @throws IOException Если сервер не удалось создать.
+     */
+    public OpenWeatherMapEmulator(int cityCount, int threads, long seed) throws IOException {
+        mCityCount = cityCount;
+        mRandom = new Random(seed);
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "emulator-" + mThreads.size());
+                mThreads.add(thread);
+                return thread;
+            }
+        });
+        mServer.setExecutor(mExecutor);
+        mServer.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    handleRequest(exchange);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * @return Объем памяти, выделенной потоками сервера с момента их создания, или -1, если JVM
+     * этого не поддерживает. Нужен, чтобы исключить работу сервера из замеров клиента.
+     */
+    public long getAllocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        List<Thread> threads = new ArrayList<>(mThreads);
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            // Поток, принимающий соединения, создает сам HttpServer.
+            if (thread.getName().startsWith(DISPATCHER_THREAD_NAME)) {
+                threads.add(thread);
+            }
+        }
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        long allocated = 0;
+        for (Thread thread : threads) {
+            // Для завершившегося потока возвращается -1.
+            allocated += Math.max(0, threadBean.getThreadAllocatedBytes(thread.getId()));
+        }
+        return allocated;
+    }
+
+    /**
+     * Запускает сервер.
+     */
+    public void start() {
+        mServer.start();
+    }
+
+    /**
+     * Останавливает сервер.
+     */
+    public void stop() {
+        mServer.stop(0);
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * @return Адрес сервера для {@link com.deakishin.weatherapp.model.rest.restclient.HttpUtils#setBaseUrl(String)}.
+     */
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + mServer.getAddress().getPort() + "/";
+    }
+
+    /**
+     * @return Идентификаторы всех городов.
+     */
+    public List<Integer> getCityIds() {
+        List<Integer> ids = new ArrayList<>(mCityCount);
+        for (int i = 0; i < mCityCount; i++) {
+            ids.add(FIRST_CITY_ID + i);
+        }
+        return ids;
+    }
+
+    /**
+     * @param id Идентификатор города.
+     * @return Название города.
+     */
+    public static String getCityName(int id) {
+        return CITY_NAME_PREFIX + id;
+    }
+
+    public void setLatency(LatencyModel latency) {
+        mLatency = latency;
+    }
+
+    /**
+     * @param errorRate Доля запросов от 0 до 1, на которые сервер отвечает ошибкой 503.
+     */
+    public void setErrorRate(double errorRate) {
+        mErrorRate = errorRate;
+    }
+
+    /**
+     * @param rateLimitRate Доля запросов от 0 до 1, на которые сервер отвечает ошибкой 429.
+     */
+    public void setRateLimitRate(double rateLimitRate) {
+        mRateLimitRate = rateLimitRate;
+    }
+
+    public long getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    public long getErrorCount() {
+        return mErrorCount.get();
+    }
+
+    public long getRateLimitedCount() {
+        return mRateLimitedCount.get();
+    }
+
+    /**
+     * Сбрасывает счетчики запросов.
+     */
+    public void resetCounters() {
+        mRequestCount.set(0);
+        mErrorCount.set(0);
+        mRateLimitedCount.set(0);
+    }
+
+    private void handleRequest(HttpExchange exchange) throws IOException {
+        mRequestCount.incrementAndGet();
+
+        long delayMs;
+        double failure;
+        synchronized (mRandom) {
+            delayMs = mLatency.nextDelayMs(mRandom);
+            failure = mRandom.nextDouble();
+        }
+        if (delayMs > 0) {
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+
+        if (failure < mRateLimitRate) {
+            mRateLimitedCount.incrementAndGet();
+            exchange.getResponseHeaders().add("Retry-After", "1");
+            send(exchange, 429, "{\"cod\":429,\"message\":\"Your account is temporary blocked due to exceeding of requests limitation\"}");
+            return;
+        }
+        if (failure < mRateLimitRate + mErrorRate) {
+            mErrorCount.incrementAndGet();
+            send(exchange, 503, "{\"cod\":503,\"message\":\"Service unavailable\"}");
+            return;
+        }
+
+        String path = exchange.getRequestURI().getPath();
+        String endpoint = path.substring(path.lastIndexOf('/') + 1);
+        Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+
+        StringBuilder json = new StringBuilder();
+        boolean found;
+        switch (endpoint) {
+            case "weather":
+                int id = params.containsKey("id") ? parseId(params.get("id")) : findByName(params.get("q"));
+                found = isKnown(id);
+                if (found) {
+                    appendWeather(json, id);
+                }
+                break;
+            case "group":
+                json.append("{\"cnt\":0,\"list\":[");
+                boolean first = true;
+                String ids = params.get("id");
+                for (String value : ids == null ? new String[0] : ids.split(",")) {
+                    int cityId = parseId(value);
+                    if (isKnown(cityId)) {
+                        if (!first) {
+                            json.append(',');
+                        }
+                        first = false;
+                        appendWeather(json, cityId);
+                    }
+                }
+                json.append("]}");
+                found = true;
+                break;
+            case "forecast":
+                int forecastId = parseId(params.get("id"));
+                found = isKnown(forecastId);
+                if (found) {
+                    appendForecast(json, forecastId);
+                }
+                break;
+            case "find":
+                int foundId = findByName(params.get("q"));
+                json.append("{\"message\":\"accurate\",\"cod\":\"200\",\"count\":");
+                if (isKnown(foundId)) {
+                    json.append("1,\"list\":[");
+                    appendWeather(json, foundId);
+                    json.append("]}");
+                } else {
+                    json.append("0,\"list\":[]}");
+                }
+                found = true;
+                break;
+            default:
+                send(exchange, 404, "{\"cod\":404,\"message\":\"Internal error\"}");
+                return;
+        }
+
+        if (found) {
+            send(exchange, 200, json.toString());
+        } else {
+            send(exchange, 404, "{\"cod\":\"404\",\"message\":\"city not found\"}");
+        }
+    }
+
+    private boolean isKnown(int id) {
+        return id >= FIRST_CITY_ID && id < FIRST_CITY_ID + mCityCount;
+    }
+
+    private static int parseId(String value) {
+        try {
+            return value == null ? -1 : Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static int findByName(String name) {
+        if (name == null || !name.startsWith(CITY_NAME_PREFIX)) {
+            return -1;
+        }
+        return parseId(name.substring(CITY_NAME_PREFIX.length()));
+    }
+
+    // Добавляет объект текущей погоды. Значения детерминированы идентификатором города.
+    private static void appendWeather(StringBuilder json, int id) {
+        int h = hash(id);
+        json.append("{\"coord\":{\"lon\":").append(h % 360 - 180).append(",\"lat\":").append(h % 180 - 90).append('}')
+                .append(",\"weather\":[{\"id\":800,\"main\":\"Clear\",\"description\":\"clear sky\",\"icon\":\"")
+                .append(ICONS[h % ICONS.length]).append("\"}]")
+                .append(",\"base\":\"stations\"");
+        appendMain(json, h);
+        json.append(",\"visibility\":10000");
+        appendWindAndClouds(json, h);
+        json.append(",\"dt\":").append(System.currentTimeMillis() / 1000)
+                .append(",\"sys\":{\"type\":1,\"id\":").append(h % 10000)
+                .append(",\"message\":0.01,\"country\":\"").append(getCountry(h)).append("\"")
+                .append(",\"sunrise\":1485753940,\"sunset\":1485784855}")
+                .append(",\"id\":").append(id)
+                .append(",\"name\":\"").append(getCityName(id)).append("\",\"cod\":200}");
+    }
+
+    // Добавляет объект прогноза погоды с элементами с шагом 3 часа от текущего времени.
+    private static void appendForecast(StringBuilder json, int id) {
+        int h = hash(id);
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.ENGLISH);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        long start = System.currentTimeMillis() / FORECAST_STEP_MS * FORECAST_STEP_MS;
+
+        json.append("{\"cod\":\"200\",\"message\":0.0036,\"cnt\":").append(FORECAST_ITEMS).append(",\"list\":[");
+        for (int i = 0; i < FORECAST_ITEMS; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            long time = start + i * FORECAST_STEP_MS;
+            int itemHash = hash(h + i);
+            json.append("{\"dt\":").append(time / 1000);
+            appendMain(json, itemHash);
+            json.append(",\"weather\":[{\"id\":500,\"main\":\"Rain\",\"description\":\"light rain\",\"icon\":\"")
+                    .append(ICONS[itemHash % ICONS.length]).append("\"}]");
+            appendWindAndClouds(json, itemHash);
+            json.append(",\"sys\":{\"pod\":\"d\"},\"dt_txt\":\"").append(format.format(new Date(time))).append("\"}");
+        }
+        json.append("],\"city\":{\"id\":").append(id)
+                .append(",\"name\":\"").append(getCityName(id)).append('"')
+                .append(",\"coord\":{\"lat\":").append(h % 180 - 90).append(",\"lon\":").append(h % 360 - 180).append('}')
+                .append(",\"country\":\"").append(getCountry(h)).append("\"}}");
+    }
+
+    private static void appendMain(StringBuilder json, int h) {
+        json.append(",\"main\":{\"temp\":").append((h % 600 - 300) / 10.0)
+                .append(",\"pressure\":").append(950 + h % 100)
+                .append(",\"humidity\":").append(h % 101)
+                .append(",\"temp_min\":").append((h % 600 - 310) / 10.0)
+                .append(",\"temp_max\":").append((h % 600 - 290) / 10.0).append('}');
+    }
+
+    private static void appendWindAndClouds(StringBuilder json, int h) {
+        json.append(",\"wind\":{\"speed\":").append(h % 200 / 10.0).append(",\"deg\":").append(h % 360).append('}')
+                .append(",\"clouds\":{\"all\":").append(h % 101).append('}');
+    }
+
+    private static String getCountry(int h) {
+        return new String(new char[]{(char) ('A' + h % 26), (char) ('A' + h / 26 % 26)});
+    }
+
+    private static int hash(int value) {
+        int h = value * 0x9E3779B9;
+        h ^= h >>> 16;
+        return h & Integer.MAX_VALUE;
+    }
+
+    private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<>();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                int index = pair.indexOf('=');
+                if (index > 0) {
+                    params.put(URLDecoder.decode(pair.substring(0, index), "UTF-8"),
+                            URLDecoder.decode(pair.substring(index + 1), "UTF-8"));
+                }
+            }
+        }
+        return params;
+    }
+
+    private static void send(HttpExchange exchange, int statusCode, String body) throws IOException {
+        byte[] bytes = body.getBytes("UTF-8");
+        exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(statusCode, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+    }
+}
@@ -0,0 +1,240 @@
+package com.deakishin.weatherapp.emulator;
+
+import com.deakishin.weatherapp.BuildConfig;
+import com.deakishin.weatherapp.model.entities.WeatherData;
+import com.deakishin.weatherapp.model.localdb.LocalDb;
+import com.deakishin.weatherapp.model.localdb.impl.LocalDbImpl;
+import com.deakishin.weatherapp.model.localdb.impl.LocalDbImplTestHooks;
+import com.deakishin.weatherapp.model.rest.RestProcessor;
+import com.deakishin.weatherapp.model.rest.restclient.HttpUtils;
+import com.deakishin.weatherapp.model.rest.restclient.RateLimiter;
+import com.deakishin.weatherapp.model.rest.restclient.RetryPolicy;
+import com.deakishin.weatherapp.model.rest.restclient.SyncRestClient;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Нагрузочный тест обновления данных: {@link RestProcessor} и {@link LocalDbImpl}
+ * против эмулятора сервера {@link OpenWeatherMapEmulator}.
+ * Для каждого количества городов и режима обновления (последовательного и параллельного)
+ * проверяет, что все города обновлены, и пишет в журнал общее время, количество запросов в секунду,
+ * объем памяти, выделенной в вызывающем потоке, и время записи в БД.
+ * Ошибки эмулятора редки, и повторные попытки {@link RetryPolicy#DEFAULT} их скрывают.
+ * <p>
+ * Входит в категорию {@link LoadTest} и не выполняется в обычном запуске тестов:
+ * <pre>./gradlew testDebugUnitTest -Dweatherapp.loadtest=true --tests '*RefreshLoadTest'</pre>
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+@Category(LoadTest.class)
+public class RefreshLoadTest {
+
+    private static final Logger sLogger = Logger.getLogger(RefreshLoadTest.class.getSimpleName());
+
+    // Количество городов, для которых обновляется прогноз.
+    private static final int FORECAST_CITIES = 50;
+
+    // Начальное значение генератора задержек и ошибок эмулятора.
+    private static final long SEED = 20170301;
+
+    private OpenWeatherMapEmulator mEmulator;
+
+    @Before
+    public void setUp() throws Exception {
+        // LocalDbImpl - синглетон, а каждый тест Robolectric получает новое приложение.
+        LocalDbImplTestHooks.resetInstances();
+        // Квота реального сервера в эмуляторе не действует.
+        SyncRestClient.setRateLimiter(new RateLimiter(Integer.MAX_VALUE / 2, 10000));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (mEmulator != null) {
+            mEmulator.stop();
+        }
+        HttpUtils.setBaseUrl(HttpUtils.DEFAULT_BASE_URL);
+        SyncRestClient.setRateLimiter(new RateLimiter(SyncRestClient.DEFAULT_RATE_LIMIT_PER_MINUTE,
+                SyncRestClient.DEFAULT_RATE_LIMIT_BURST));
+        LocalDbImplTestHooks.resetInstances();
+    }
+
+    @Test
+    public void refresh10Cities() throws Exception {
+        runRefresh(10);
+    }
+
+    @Test
+    public void refresh1000Cities() throws Exception {
+        runRefresh(1000);
+    }
+
+    @Test
+    public void refresh10000Cities() throws Exception {
+        runRefresh(10000);
+    }
+
+    private void runRefresh(int cityCount) throws Exception {
+        mEmulator = new OpenWeatherMapEmulator(cityCount, 16, SEED);
+        mEmulator.setLatency(LatencyModel.logNormal(40, 0.5));
+        mEmulator.setErrorRate(0.01);
+        mEmulator.setRateLimitRate(0.005);
+        mEmulator.start();
+        HttpUtils.setBaseUrl(mEmulator.getBaseUrl());
+
+        LocalDb localDb = LocalDbImpl.getInstance(RuntimeEnvironment.application);
+        List<Integer> ids = mEmulator.getCityIds();
+        long start = System.nanoTime();
+        for (int id : ids) {
+            WeatherData data = new WeatherData();
+            data.setId(id);
+            data.setCityName(OpenWeatherMapEmulator.getCityName(id));
+            localDb.addCityWithCurrentWeather(data);
+        }
+        sLogger.info(String.format("%d cities: seeding took %d ms", cityCount, toMs(System.nanoTime() - start)));
+
+        for (int threads : new int[]{1, RestProcessor.DEFAULT_REFRESH_THREADS}) {
+            TimingHandler timing = new TimingHandler(localDb);
+            RestProcessor processor = new RestProcessor(timing.getProxy(),
+                    new SyncRestClient(null, RetryPolicy.DEFAULT), threads, null);
+
+            Measurement measurement = new Measurement(timing);
+            boolean refreshed = processor.refreshAllWeathers();
+            measurement.report(cityCount + " cities, refreshAllWeathers, threads=" + threads);
+
+            assertTrue(refreshed);
+            assertTrue(localDb.getFailedCitiesIds().isEmpty());
+            assertEquals(cityCount, localDb.getCurrentWeatherData().getData().size());
+            assertNull(localDb.getCurrentWeatherDataStatus().getError());
+            // Не меньше одного запроса на группу городов.
+            assertTrue(measurement.getRequests() >= (cityCount + SyncRestClient.MAX_BATCH_SIZE - 1)
+                    / SyncRestClient.MAX_BATCH_SIZE);
+        }
+
+        TimingHandler timing = new TimingHandler(localDb);
+        RestProcessor processor = new RestProcessor(timing.getProxy(),
+                new SyncRestClient(null, RetryPolicy.DEFAULT), 1, null);
+        Measurement measurement = new Measurement(timing);
+        for (int i = 0; i < Math.min(cityCount, FORECAST_CITIES); i++) {
+            assertTrue(processor.refreshForecast(ids.get(i)));
+        }
+        measurement.report(cityCount + " cities, refreshForecast x " + Math.min(cityCount, FORECAST_CITIES));
+
+        assertEquals(OpenWeatherMapEmulator.FORECAST_ITEMS, localDb.getWeatherForecast(ids.get(0)).getData().size());
+    }
+
+    private static long toMs(long nanos) {
+        return nanos / 1000000;
+    }
+
+    /**
+     * Замер одного прогона: время, запросы к эмулятору, выделенная память и время записи в БД.
+     */
+    private class Measurement {
+        private final TimingHandler mTiming;
+        private final long mStartNanos;
+        private final long mStartAllocated;
+        private final long mStartRequests;
+
+        Measurement(TimingHandler timing) {
+            mTiming = timing;
+            mEmulator.resetCounters();
+            mStartRequests = mEmulator.getRequestCount();
+            mStartAllocated = getAllocatedBytes();
+            mStartNanos = System.nanoTime();
+        }
+
+        long getRequests() {
+            return mEmulator.getRequestCount() - mStartRequests;
+        }
+
+        void report(String name) {
+            long wallNanos = System.nanoTime() - mStartNanos;
+            long allocated = mStartAllocated < 0 ? -1 : getAllocatedBytes() - mStartAllocated;
+            long requests = getRequests();
+            sLogger.info(String.format(
+                    "%s: wall=%d ms, requests=%d (%.1f req/s, 5xx=%d, 429=%d), allocated=%s, "
+                            + "db writes=%d ms in %d calls",
+                    name, toMs(wallNanos), requests, requests * 1e9 / Math.max(1, wallNanos),
+                    mEmulator.getErrorCount(), mEmulator.getRateLimitedCount(),
+                    allocated < 0 ? "n/a" : (allocated / 1024) + " KB",
+                    toMs(mTiming.mWriteNanos.get()), mTiming.mWriteCalls.get()));
+        }
+    }
+
+    // Возвращает объем памяти, выделенной всеми потоками JVM без потоков эмулятора сервера,
+    // или -1, если JVM этого не поддерживает. Учитываются поток теста, поток записи в БД
+    // и потоки пула параллельного обновления, в том числе уже завершившиеся.
+    private long getAllocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        long serverAllocated = mEmulator.getAllocatedBytes();
+        if (!(bean instanceof com.sun.management.ThreadMXBean) || serverAllocated < 0) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        long total;
+        try {
+            // Сумма по всем потокам с запуска JVM, включая завершившиеся, есть с Java 14.
+            Method method = com.sun.management.ThreadMXBean.class.getMethod("getTotalThreadAllocatedBytes");
+            total = (Long) method.invoke(threadBean);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            // В более старых JVM учитываются только живые потоки: память завершившихся потоков пула теряется.
+            total = 0;
+            for (long id : threadBean.getAllThreadIds()) {
+                total += Math.max(0, threadBean.getThreadAllocatedBytes(id));
+            }
+        }
+        return total < 0 ? -1 : total - serverAllocated;
+    }
+
+    /**
+     * Обертка над {@link LocalDb}, замеряющая время методов записи.
+     */
+    private static class TimingHandler implements InvocationHandler {
+        private final LocalDb mDelegate;
+        final AtomicLong mWriteNanos = new AtomicLong();
+        final AtomicLong mWriteCalls = new AtomicLong();
+
+        TimingHandler(LocalDb delegate) {
+            mDelegate = delegate;
+        }
+
+        LocalDb getProxy() {
+            return (LocalDb) Proxy.newProxyInstance(LocalDb.class.getClassLoader(),
+                    new Class<?>[]{LocalDb.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            boolean write = method.getName().startsWith("update") || method.getName().startsWith("add");
+            long start = System.nanoTime();
+            try {
+                return method.invoke(mDelegate, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                if (write) {
+                    mWriteNanos.addAndGet(System.nanoTime() - start);
+                    mWriteCalls.incrementAndGet();
+                }
+            }
+        }
+    }
+}
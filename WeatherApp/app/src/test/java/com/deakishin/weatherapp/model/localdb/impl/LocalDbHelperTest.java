@@ -0,0 +1,186 @@
+package com.deakishin.weatherapp.model.localdb.impl;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.deakishin.weatherapp.BuildConfig;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Тесты открытия файла БД старой версии через {@link LocalDbHelper}: система должна вызвать
+ * onUpgrade() или onDowngrade(), и после открытия схема должна совпадать со схемой новой БД.
+ * Шаги миграций отдельно проверяются в LocalDbMigrationsTest модуля localdb-jdbc.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class LocalDbHelperTest {
+
+    // Интервал между строками прогноза.
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+
+    // Время заполнения БД.
+    private final long mNow = System.currentTimeMillis();
+
+    private Context mContext;
+    private LocalDbHelper mHelper;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+    }
+
+    @After
+    public void tearDown() {
+        if (mHelper != null) {
+            mHelper.close();
+        }
+    }
+
+    // Создает файл БД LocalDbHelper со схемой версии 7 и записывает в него версию version.
+    // Последний город добавлен дважды, как это было возможно до версии 9, его прогноз - из устаревшей
+    // и двух актуальных строк.
+    private void createV7Db(int version) {
+        File file = mContext.getDatabasePath(LocalDbHelper.DATABASE_NAME);
+        assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(file, null);
+        try {
+            db.execSQL("CREATE TABLE weathers (_id INTEGER PRIMARY KEY, city_id INTEGER, city TEXT,"
+                    + " country TEXT, temp REAL, clouds REAL, humidity REAL, pressure REAL, wind REAL,"
+                    + " icon_id TEXT, forecast INTEGER, date INTEGER )");
+            db.execSQL("CREATE TABLE meta (_id INTEGER PRIMARY KEY, data_id INTEGER, last_update INTEGER,"
+                    + " refreshing INTEGER )");
+
+            db.execSQL("INSERT INTO weathers (city_id, city, country, temp, icon_id, forecast)"
+                    + " VALUES (5601538, 'Москва', 'RU', 1, '01d', 0)");
+            db.execSQL("INSERT INTO weathers (city_id, city, country, temp, icon_id, forecast)"
+                    + " VALUES (1, 'City 1', 'RU', 3, '10n', 0)");
+            db.execSQL("INSERT INTO weathers (city_id, city, country, temp, icon_id, forecast)"
+                    + " VALUES (1, 'City 1', 'RU', 3, '10n', 0)");
+            long[] forecastDates = {mNow - 24 * HOUR_MS, mNow + 3 * HOUR_MS, mNow + 6 * HOUR_MS};
+            for (long date : forecastDates) {
+                db.execSQL("INSERT INTO weathers (city_id, city, country, temp, icon_id, forecast, date)"
+                        + " VALUES (1, 'City 1', 'RU', 4, '04d', 1, " + date + ")");
+            }
+
+            db.execSQL("INSERT INTO meta (data_id, last_update, refreshing) VALUES (-1, 1000, 0)");
+            db.execSQL("INSERT INTO meta (data_id, last_update, refreshing) VALUES (1, 2000, 0)");
+            db.execSQL("INSERT INTO meta (data_id, last_update, refreshing) VALUES (5601538, 3000, 0)");
+            db.setVersion(version);
+        } finally {
+            db.close();
+        }
+    }
+
+    // Проверяет, что таблицы и индексы db такие же, как у новой БД, созданной LocalDbHelper.onCreate().
+    private void assertCurrentSchema(SQLiteDatabase db) {
+        assertEquals(LocalDbSchema.DATABASE_VERSION, db.getVersion());
+
+        SQLiteDatabase expected = SQLiteDatabase.create(null);
+        try {
+            mHelper.onCreate(expected);
+            for (String table : new String[]{LocalDbContract.Cities.TABLE_NAME,
+                    LocalDbContract.Weathers.TABLE_NAME, LocalDbContract.Meta.TABLE_NAME}) {
+                assertEquals(table, queryStrings(expected, "PRAGMA table_info(" + table + ")", "name"),
+                        queryStrings(db, "PRAGMA table_info(" + table + ")", "name"));
+                assertEquals(table, queryStrings(expected, "PRAGMA index_list(" + table + ")", "name"),
+                        queryStrings(db, "PRAGMA index_list(" + table + ")", "name"));
+            }
+        } finally {
+            expected.close();
+        }
+
+        assertTrue(isUniqueIndex(db, LocalDbContract.Weathers.TABLE_NAME,
+                LocalDbContract.Weathers.INDEX_NAME_FORECAST_CITY_DATE));
+        assertTrue(isUniqueIndex(db, LocalDbContract.Meta.TABLE_NAME, LocalDbContract.Meta.INDEX_NAME_DATA_ID));
+    }
+
+    // Проверяет, что у таблицы table есть уникальный индекс index.
+    private static boolean isUniqueIndex(SQLiteDatabase db, String table, String index) {
+        Cursor c = db.rawQuery("PRAGMA index_list(" + table + ")", null);
+        try {
+            while (c.moveToNext()) {
+                if (index.equals(c.getString(c.getColumnIndexOrThrow("name")))) {
+                    return c.getInt(c.getColumnIndexOrThrow("unique")) == 1;
+                }
+            }
+            return false;
+        } finally {
+            c.close();
+        }
+    }
+
+    // Выполняет запрос sql и возвращает значения столбца column всех строк, отсортированные по возрастанию.
+    private static List<String> queryStrings(SQLiteDatabase db, String sql, String column) {
+        List<String> values = new ArrayList<>();
+        Cursor c = db.rawQuery(sql, null);
+        try {
+            int index = c.getColumnIndex(column);
+            if (index == -1) {
+                // Пустой результат PRAGMA (например, index_list таблицы без индексов) не содержит столбцов.
+                assertEquals(sql, 0, c.getCount());
+                return values;
+            }
+            while (c.moveToNext()) {
+                values.add(c.getString(index));
+            }
+        } finally {
+            c.close();
+        }
+        Collections.sort(values);
+        return values;
+    }
+
+    @Test
+    public void upgradesVersion7File() {
+        createV7Db(7);
+        mHelper = new LocalDbHelper(mContext);
+        SQLiteDatabase db = mHelper.getWritableDatabase();
+        assertCurrentSchema(db);
+
+        // Повторы города удалены, города перенесены в отдельную таблицу, значки закодированы.
+        assertEquals(Arrays.asList("1", "5601538"), queryStrings(db,
+                "SELECT city_id FROM weathers WHERE forecast = 0", "city_id"));
+        assertEquals(Arrays.asList("City 1", "Москва"), queryStrings(db, "SELECT city FROM cities", "city"));
+        assertEquals(Collections.singletonList("" + WeatherIconCodes.encode("10n")), queryStrings(db,
+                "SELECT icon_code FROM weathers WHERE forecast = 0 AND city_id = 1", "icon_code"));
+
+        // Устаревшая строка прогноза удалена, актуальные сохранены.
+        assertEquals(Arrays.asList("" + (mNow + 3 * HOUR_MS), "" + (mNow + 6 * HOUR_MS)), queryStrings(db,
+                "SELECT date FROM weathers WHERE forecast = 1 AND city_id = 1", "date"));
+        // Статус прогноза с актуальными строками сохранен, а прогноз, от которого ничего не осталось,
+        // будет загружен заново.
+        assertEquals(Collections.singletonList("2000"), queryStrings(db,
+                "SELECT last_update FROM meta WHERE data_id = 1", "last_update"));
+        assertEquals(Collections.singletonList((String) null), queryStrings(db,
+                "SELECT last_update FROM meta WHERE data_id = 5601538", "last_update"));
+    }
+
+    @Test
+    public void recreatesNewerVersionFile() {
+        createV7Db(LocalDbSchema.DATABASE_VERSION + 1);
+        mHelper = new LocalDbHelper(mContext);
+        SQLiteDatabase db = mHelper.getWritableDatabase();
+        assertCurrentSchema(db);
+
+        // Схема более новой версии неизвестна, поэтому БД создана заново с городами по умолчанию.
+        assertEquals(Arrays.asList("" + LocalDbSchema.DEFAULT_IDS[1], "" + LocalDbSchema.DEFAULT_IDS[0]),
+                queryStrings(db, "SELECT city_id FROM weathers WHERE forecast = 0", "city_id"));
+        assertTrue(queryStrings(db, "SELECT _id FROM weathers WHERE forecast = 1", "_id").isEmpty());
+    }
+}
@@ -0,0 +1,14 @@
+package com.deakishin.weatherapp.model.localdb.impl;
+
+/**
+ * Доступ к служебным методам {@link LocalDbImpl} для тестов из других пакетов.
+ */
+public class LocalDbImplTestHooks {
+
+    /**
+     * Закрывает БД и сбрасывает синглетоны LocalDbImpl, в том числе БД с кэшем в памяти.
+     */
+    public static void resetInstances() {
+        LocalDbImpl.resetInstances();
+    }
+}
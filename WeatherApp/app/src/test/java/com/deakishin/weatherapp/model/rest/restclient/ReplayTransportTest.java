@@ -0,0 +1,161 @@
+package com.deakishin.weatherapp.model.rest.restclient;
+
+import com.deakishin.weatherapp.model.entities.WeatherData;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Тесты записи и воспроизведения запросов транспортами
+ * {@link RecordingTransport} и {@link ReplayTransport}.
+ */
+public class ReplayTransportTest {
+
+    private static final String GROUP_RESPONSE = "{\"cnt\":2,\"list\":["
+            + "{\"id\":524901,\"name\":\"Moscow\",\"sys\":{\"country\":\"RU\"},"
+            + "\"weather\":[{\"icon\":\"01d\"}],\"main\":{\"temp\":10.5,\"pressure\":1012,\"humidity\":60},"
+            + "\"wind\":{\"speed\":3.1},\"clouds\":{\"all\":0}},"
+            + "{\"id\":498817,\"name\":\"Saint Petersburg\",\"sys\":{\"country\":\"RU\"},"
+            + "\"weather\":[{\"icon\":\"04n\"}],\"main\":{\"temp\":5,\"pressure\":1008,\"humidity\":80},"
+            + "\"wind\":{\"speed\":6},\"clouds\":{\"all\":90}}]}";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private final Transport mDefaultTransport = HttpUtils.getTransport();
+
+    @After
+    public void restoreTransport() {
+        HttpUtils.setTransport(mDefaultTransport);
+    }
+
+    // Транспорт, отвечающий на любой запрос заданным телом с задержкой и считающий запросы.
+    private static class FakeTransport implements Transport {
+        final AtomicInteger mCount = new AtomicInteger();
+        private final String mBody;
+        private final long mDelayMs;
+
+        FakeTransport(String body, long delayMs) {
+            mBody = body;
+            mDelayMs = delayMs;
+        }
+
+        @Override
+        public HttpResponse execute(HttpRequest request) throws IOException {
+            int count = mCount.incrementAndGet();
+            try {
+                Thread.sleep(mDelayMs);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            return new HttpResponse(200, Collections.singletonMap("ETag", "\"" + count + "\""),
+                    mBody.getBytes("UTF-8"));
+        }
+    }
+
+    private File record(Transport delegate, HttpRequest... requests) throws IOException {
+        File file = mFolder.newFile();
+        RecordingTransport recording = new RecordingTransport(delegate, file);
+        try {
+            for (HttpRequest request : requests) {
+                recording.execute(request);
+            }
+            assertEquals(requests.length, recording.getCount());
+        } finally {
+            recording.close();
+        }
+        return file;
+    }
+
+    @Test
+    public void replaysRecordedResponsesInOrderAndCycles() throws Exception {
+        HttpRequest request = new HttpRequest(HttpRequest.Methods.GET, "http://example.com/weather?id=1", null);
+        File file = record(new FakeTransport("{}", 0), request, request);
+
+        ReplayTransport replay = new ReplayTransport(file, 0);
+        assertEquals(2, replay.getCount());
+        assertEquals("\"1\"", replay.execute(request).getHeader("ETag"));
+        assertEquals("\"2\"", replay.execute(request).getHeader("ETag"));
+        assertEquals("\"1\"", replay.execute(request).getHeader("ETag"));
+
+        replay.rewind();
+        HttpResponse response = replay.execute(request);
+        assertEquals(200, response.getStatusCode());
+        assertEquals("\"1\"", response.getHeader("ETag"));
+        assertArrayEquals("{}".getBytes("UTF-8"), response.getBody());
+    }
+
+    @Test(expected = IOException.class)
+    public void failsOnUnknownRequest() throws Exception {
+        HttpRequest request = new HttpRequest(HttpRequest.Methods.GET, "http://example.com/weather?id=1", null);
+        File file = record(new FakeTransport("{}", 0), request);
+
+        new ReplayTransport(file, 0).execute(
+                new HttpRequest(HttpRequest.Methods.GET, "http://example.com/weather?id=2", null));
+    }
+
+    @Test
+    public void scalesRecordedLatency() throws Exception {
+        HttpRequest request = new HttpRequest(HttpRequest.Methods.GET, "http://example.com/forecast?id=1", null);
+        File file = record(new FakeTransport("{}", 200), request);
+
+        long start = System.nanoTime();
+        new ReplayTransport(file, 0).execute(request);
+        assertTrue(System.nanoTime() - start < 150 * 1000 * 1000L);
+
+        start = System.nanoTime();
+        new ReplayTransport(file, 1).execute(request);
+        assertTrue(System.nanoTime() - start >= 190 * 1000 * 1000L);
+    }
+
+    @Test
+    public void replaysRestClientRequestsOffline() throws Exception {
+        List<Integer> ids = Arrays.asList(524901, 498817);
+        File file = mFolder.newFile();
+
+        FakeTransport server = new FakeTransport(GROUP_RESPONSE, 0);
+        RecordingTransport recording = new RecordingTransport(server, file);
+        HttpUtils.setTransport(recording);
+        List<WeatherData> recorded = getBatch(ids);
+        recording.close();
+
+        HttpUtils.setTransport(new ReplayTransport(file, 0));
+        for (int i = 0; i < 3; i++) {
+            List<WeatherData> replayed = getBatch(ids);
+            assertNotNull(replayed);
+            assertEquals(recorded.size(), replayed.size());
+            assertEquals("Moscow", replayed.get(0).getCityName());
+        }
+        assertEquals(1, server.mCount.get());
+    }
+
+    private static List<WeatherData> getBatch(List<Integer> ids) {
+        final Object[] result = new Object[1];
+        new SyncRestClient(null, RetryPolicy.NO_RETRIES).getCurrentWeatherBatch(ids,
+                new SyncRestClient.ResponseHandler<List<WeatherData>>() {
+                    @Override
+                    public void onSuccess(List<WeatherData> data) {
+                        result[0] = data;
+                    }
+
+                    @Override
+                    public void onError(RestError error) {
+                        fail("Unexpected error: " + error);
+                    }
+                });
+        @SuppressWarnings("unchecked")
+        List<WeatherData> data = (List<WeatherData>) result[0];
+        return data;
+    }
+}
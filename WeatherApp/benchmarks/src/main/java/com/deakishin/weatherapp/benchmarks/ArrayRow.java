@@ -0,0 +1,72 @@
+package com.deakishin.weatherapp.benchmarks;
+
+import com.deakishin.weatherapp.model.localdb.Row;
+
+/**
+ * Строки результата запроса, хранящиеся в памяти. Значения столбцов - Long, Double, String или null,
+ * как их возвращает SQLite. Текущая строка задается методом {@link #moveTo(int)}.
+ */
+class ArrayRow implements Row {
+
+    // Названия столбцов.
+    private final String[] mColumns;
+    // Значения по строкам.
+    private final Object[][] mValues;
+    // Текущая строка.
+    private Object[] mCurrent;
+
+    ArrayRow(String[] columns, Object[][] values) {
+        mColumns = columns;
+        mValues = values;
+    }
+
+    /**
+     * @return Количество строк.
+     */
+    int getCount() {
+        return mValues.length;
+    }
+
+    /**
+     * Делает текущей строку с индексом position.
+     */
+    void moveTo(int position) {
+        mCurrent = mValues[position];
+    }
+
+    @Override
+    public int getColumnIndex(String columnName) {
+        for (int i = 0; i < mColumns.length; i++) {
+            if (mColumns[i].equals(columnName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean isNull(int index) {
+        return mCurrent[index] == null;
+    }
+
+    @Override
+    public int getInt(int index) {
+        return ((Number) mCurrent[index]).intValue();
+    }
+
+    @Override
+    public long getLong(int index) {
+        return ((Number) mCurrent[index]).longValue();
+    }
+
+    @Override
+    public double getDouble(int index) {
+        return ((Number) mCurrent[index]).doubleValue();
+    }
+
+    @Override
+    public String getString(int index) {
+        Object value = mCurrent[index];
+        return value == null ? null : value.toString();
+    }
+}
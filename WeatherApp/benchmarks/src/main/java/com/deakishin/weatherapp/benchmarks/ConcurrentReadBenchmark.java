@@ -0,0 +1,166 @@
+package com.deakishin.weatherapp.benchmarks;
+
+import com.deakishin.weatherapp.model.entities.WeatherData;
+import com.deakishin.weatherapp.model.localdb.LocalDbOptions;
+import com.deakishin.weatherapp.model.localdb.impl.JdbcLocalDb;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Задержки чтения локальной БД ({@link JdbcLocalDb}) под нагрузкой записи.
+ * В каждой группе один поток непрерывно пишет, как RestService при синхронизации, а второй читает данные,
+ * как MainScreenActivity. Запись - прогноз одного города (writeLoad=forecast, короткая транзакция)
+ * или текущая погода всех городов (writeLoad=currentWeather, длинная транзакция). Задержки чтения
+ * (p0.50, p0.99) сравниваются для режима журнала отката с одним соединением (wal=false, как было на устройстве)
+ * и режима WAL с пулом из readerConnections соединений для чтения.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Group)
+public class ConcurrentReadBenchmark {
+
+    // Количество городов.
+    @Param({"10000"})
+    public int cities;
+
+    // Общее количество строк прогноза.
+    @Param({"1000000"})
+    public int forecastRows;
+
+    // Режим журнала упреждающей записи.
+    @Param({"false", "true"})
+    public boolean wal;
+
+    // Количество соединений для чтения в режиме WAL.
+    @Param({"2"})
+    public int readerConnections;
+
+    // Нагрузка записи: forecast или currentWeather.
+    @Param({"forecast", "currentWeather"})
+    public String writeLoad;
+
+    // Значение PRAGMA synchronous.
+    @Param({"FULL"})
+    public String synchronous;
+
+    // Файл БД.
+    private File mFile;
+    // БД.
+    private JdbcLocalDb mDb;
+    // Прогноз для записи. Используется только потоком записи.
+    private List<WeatherData> mForecast;
+    // Текущая погода всех городов для записи. Используется только потоком записи.
+    private List<WeatherData> mCurrentWeather;
+    // Счетчик для выбора города записи по кругу. Используется только потоком записи.
+    private int mNextWrite;
+    // Выбор города для чтения.
+    private final Random mRandom = new Random(42);
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        mFile = File.createTempFile("concurrent-read-benchmark", ".db");
+        String url = "jdbc:sqlite:" + mFile.getAbsolutePath();
+
+        // Заполнение в режиме по умолчанию, чтобы оно не зависело от параметров.
+        JdbcLocalDb db = new JdbcLocalDb(url);
+        try {
+            LocalDbFixtures.populate(db.getConnection(), cities, forecastRows);
+        } finally {
+            db.close();
+        }
+
+        LocalDbOptions options = new LocalDbOptions();
+        options.setWriteAheadLogging(wal);
+        options.setReaderConnections(readerConnections);
+        options.setSynchronous(synchronous);
+        mDb = new JdbcLocalDb(url, options);
+        mForecast = LocalDbFixtures.createForecast(Math.max(1, forecastRows / cities));
+        mCurrentWeather = new ArrayList<>(cities);
+        for (int i = 0; i < cities; i++) {
+            mCurrentWeather.add(LocalDbFixtures.createWeather(LocalDbFixtures.FIRST_CITY_ID + i, i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mDb.close();
+        mFile.delete();
+        new File(mFile.getPath() + "-wal").delete();
+        new File(mFile.getPath() + "-shm").delete();
+    }
+
+    // Выполняет одну транзакцию записи: обновляет текущую погоду всех городов
+    // или перезаписывает прогноз следующего города.
+    private void write() {
+        if ("currentWeather".equals(writeLoad)) {
+            mDb.updateCurrentWeatherData(mCurrentWeather);
+            return;
+        }
+        mNextWrite = (mNextWrite + 1) % cities;
+        int cityId = LocalDbFixtures.FIRST_CITY_ID + mNextWrite;
+        for (WeatherData data : mForecast) {
+            data.setId(cityId);
+        }
+        mDb.updateWeatherForecast(cityId, mForecast);
+    }
+
+    // Возвращает идентификатор случайного города для чтения.
+    private int randomCityId() {
+        synchronized (mRandom) {
+            return LocalDbFixtures.FIRST_CITY_ID + mRandom.nextInt(cities);
+        }
+    }
+
+    @Benchmark
+    @Group("forecast")
+    @GroupThreads(1)
+    public void forecastWriter() {
+        write();
+    }
+
+    @Benchmark
+    @Group("forecast")
+    @GroupThreads(1)
+    public Object forecastReader() {
+        return mDb.getWeatherForecast(randomCityId());
+    }
+
+    @Benchmark
+    @Group("currentWeather")
+    @GroupThreads(1)
+    public void currentWeatherWriter() {
+        write();
+    }
+
+    @Benchmark
+    @Group("currentWeather")
+    @GroupThreads(1)
+    public Object currentWeatherReader() {
+        return mDb.getCurrentWeatherData();
+    }
+}
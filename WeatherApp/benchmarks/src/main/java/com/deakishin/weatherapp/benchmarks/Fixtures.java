@@ -0,0 +1,46 @@
+package com.deakishin.weatherapp.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Ответы сервера OpenWeatherMap, сохраненные в ресурсах модуля.
+ */
+public class Fixtures {
+
+    /**
+     * Названия ответов.
+     */
+    public static final String CURRENT = "current";
+    public static final String GROUP = "group";
+    public static final String FORECAST = "forecast";
+
+    private Fixtures() {
+    }
+
+    /**
+     * Читает ответ из ресурсов.
+     *
+     * @param name Название ответа.
+     * @return Тело ответа.
+     * @throws IOException Если ответа с таким названием нет.
+     */
+    public static byte[] load(String name) throws IOException {
+        InputStream in = Fixtures.class.getResourceAsStream("/fixtures/" + name + ".json");
+        if (in == null) {
+            throw new IOException("No fixture: " + name);
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8 * 1024];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.deakishin.weatherapp.benchmarks;
+
+import com.deakishin.weatherapp.model.entities.WeatherData;
+import com.deakishin.weatherapp.model.localdb.LocalDbOptions;
+import com.deakishin.weatherapp.model.localdb.impl.JdbcLocalDb;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Одновременная запись в локальную БД ({@link JdbcLocalDb}) из нескольких потоков: каждый поток
+ * перезаписывает прогноз своего города. В приложении задачи RestService пишут последовательно,
+ * поэтому такая нагрузка возможна только при использовании БД через JDBC из нескольких потоков.
+ * Сравнивается запись каждой операции в своей транзакции (maxWritesPerTransaction=1)
+ * и объединение одновременных записей в одну транзакцию.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class GroupCommitBenchmark {
+
+    // Количество городов.
+    @Param({"100"})
+    public int cities;
+
+    // Количество строк прогноза одного города.
+    @Param({"40"})
+    public int forecastSize;
+
+    // Максимальное количество записей в транзакции.
+    @Param({"1", "32"})
+    public int maxWritesPerTransaction;
+
+    // Значение PRAGMA synchronous.
+    @Param({"FULL"})
+    public String synchronous;
+
+    // Файл БД.
+    private File mFile;
+    // БД.
+    private JdbcLocalDb mDb;
+
+    /**
+     * Прогноз, который записывает один поток.
+     */
+    @State(Scope.Thread)
+    public static class Writer {
+        // Счетчик для выдачи потокам разных городов.
+        private static final AtomicInteger sNextCity = new AtomicInteger();
+
+        // Город потока.
+        int mCityId;
+        // Прогноз города.
+        List<WeatherData> mForecast;
+
+        @Setup(Level.Trial)
+        public void setUp(GroupCommitBenchmark benchmark) {
+            mCityId = LocalDbFixtures.FIRST_CITY_ID + sNextCity.getAndIncrement() % benchmark.cities;
+            mForecast = LocalDbFixtures.createForecast(benchmark.forecastSize);
+            for (WeatherData data : mForecast) {
+                data.setId(mCityId);
+            }
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        mFile = File.createTempFile("group-commit-benchmark", ".db");
+        String url = "jdbc:sqlite:" + mFile.getAbsolutePath();
+
+        JdbcLocalDb db = new JdbcLocalDb(url);
+        try {
+            LocalDbFixtures.populate(db.getConnection(), cities, cities * forecastSize);
+        } finally {
+            db.close();
+        }
+
+        LocalDbOptions options = new LocalDbOptions();
+        options.setWriteAheadLogging(true);
+        options.setSynchronous(synchronous);
+        options.setMaxWritesPerTransaction(maxWritesPerTransaction);
+        mDb = new JdbcLocalDb(url, options);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mDb.close();
+        mFile.delete();
+        new File(mFile.getPath() + "-wal").delete();
+        new File(mFile.getPath() + "-shm").delete();
+    }
+
+    @Benchmark
+    public void writeForecast(Writer writer) {
+        mDb.updateWeatherForecast(writer.mCityId, writer.mForecast);
+    }
+}
@@ -0,0 +1,69 @@
+package com.deakishin.weatherapp.benchmarks;
+
+import com.deakishin.weatherapp.model.rest.restclient.WeatherJsonConverters;
+
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение стратегий декодирования ответов сервера: потоковый разбор {@link WeatherJsonConverters}
+ * и построение дерева org.json. Для каждого ответа и стратегии выводятся ops/s,
+ * а с профилировщиком gc (задан в задаче jmh) - байты, выделенные на операцию (gc.alloc.rate.norm).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonDecodingBenchmark {
+
+    // Название ответа. Поле публичное и без префикса, так как JMH выводит его имя в результатах.
+    @Param({Fixtures.CURRENT, Fixtures.GROUP, Fixtures.FORECAST})
+    public String fixture;
+
+    // Тело ответа.
+    private byte[] mBody;
+
+    @Setup
+    public void setUp() throws IOException {
+        mBody = Fixtures.load(fixture);
+    }
+
+    @Benchmark
+    public Object streaming() throws IOException {
+        switch (fixture) {
+            case Fixtures.GROUP:
+                return WeatherJsonConverters.decode(mBody, WeatherJsonConverters.CURRENT_WEATHER_LIST);
+            case Fixtures.FORECAST:
+                return WeatherJsonConverters.decode(mBody, WeatherJsonConverters.FORECAST);
+            default:
+                return WeatherJsonConverters.decode(mBody, WeatherJsonConverters.CURRENT_WEATHER);
+        }
+    }
+
+    @Benchmark
+    public Object orgJsonTree() throws JSONException, IOException {
+        switch (fixture) {
+            case Fixtures.GROUP:
+                return OrgJsonDecoders.decodeCurrentWeatherList(mBody);
+            case Fixtures.FORECAST:
+                return OrgJsonDecoders.decodeForecast(mBody);
+            default:
+                return OrgJsonDecoders.decodeCurrentWeather(mBody);
+        }
+    }
+}
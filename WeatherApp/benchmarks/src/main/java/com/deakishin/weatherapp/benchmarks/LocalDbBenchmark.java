@@ -0,0 +1,108 @@
+package com.deakishin.weatherapp.benchmarks;
+
+import com.deakishin.weatherapp.model.entities.WeatherData;
+import com.deakishin.weatherapp.model.localdb.impl.JdbcLocalDb;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Задержки методов локальной БД на sqlite-jdbc ({@link JdbcLocalDb}) с той же схемой, что и на устройстве.
+ * БД заполняется один раз на запуск: cities городов с текущей погодой и forecastRows строк прогноза,
+ * поровну между городами. Режим SampleTime выводит распределение задержек (p0.50, p0.99 и др.),
+ * по которому сравниваются изменения схемы и индексов.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LocalDbBenchmark {
+
+    // Количество городов. Поля параметров публичные и без префикса, так как JMH выводит их имена в результатах.
+    @Param({"10000"})
+    public int cities;
+
+    // Общее количество строк прогноза.
+    @Param({"1000000"})
+    public int forecastRows;
+
+    // Файл БД.
+    private File mFile;
+    // БД.
+    private JdbcLocalDb mDb;
+    // Прогноз для записи в updateWeatherForecast.
+    private List<WeatherData> mForecast;
+    // Счетчик для выбора городов по кругу.
+    private int mNext;
+    // Идентификатор следующего добавляемого города.
+    private int mNextNewCityId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        mFile = File.createTempFile("localdb-benchmark", ".db");
+        mDb = new JdbcLocalDb("jdbc:sqlite:" + mFile.getAbsolutePath());
+        LocalDbFixtures.populate(mDb.getConnection(), cities, forecastRows);
+        mForecast = LocalDbFixtures.createForecast(Math.max(1, forecastRows / cities));
+        mNextNewCityId = LocalDbFixtures.FIRST_CITY_ID + cities;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mDb.close();
+        mFile.delete();
+    }
+
+    // Возвращает идентификатор следующего города по кругу.
+    private int nextCityId() {
+        mNext = (mNext + 1) % cities;
+        return LocalDbFixtures.FIRST_CITY_ID + mNext;
+    }
+
+    @Benchmark
+    public Object getCurrentWeatherData() {
+        return mDb.getCurrentWeatherData();
+    }
+
+    @Benchmark
+    public Object getWeatherForecast() {
+        return mDb.getWeatherForecast(nextCityId());
+    }
+
+    @Benchmark
+    public void updateWeatherForecast() {
+        int cityId = nextCityId();
+        for (WeatherData data : mForecast) {
+            data.setId(cityId);
+        }
+        mDb.updateWeatherForecast(cityId, mForecast);
+    }
+
+    @Benchmark
+    public void addCityWithCurrentWeather() {
+        mDb.addCityWithCurrentWeather(LocalDbFixtures.createWeather(mNextNewCityId++, 0));
+    }
+
+    @Benchmark
+    public Object getCitiesIds() {
+        return mDb.getCitiesIds();
+    }
+}
@@ -0,0 +1,138 @@
+package com.deakishin.weatherapp.benchmarks;
+
+import com.deakishin.weatherapp.model.entities.WeatherData;
+import com.deakishin.weatherapp.model.localdb.impl.LocalDbContract;
+import com.deakishin.weatherapp.model.localdb.impl.WeatherIconCodes;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Тестовые данные для бенчмарков локальной БД.
+ */
+public class LocalDbFixtures {
+
+    /**
+     * Первый идентификатор города в БД.
+     */
+    public static final int FIRST_CITY_ID = 1000000;
+
+    private LocalDbFixtures() {
+    }
+
+    /**
+     * Заполняет БД напрямую пакетными вставками, чтобы не измерять заполнение:
+     * cities городов с идентификаторами от {@link #FIRST_CITY_ID} и forecastRows строк прогноза поровну между ними.
+     *
+     * @param connection   Соединение для записи.
+     * @param cities       Количество городов.
+     * @param forecastRows Общее количество строк прогноза.
+     */
+    public static void populate(Connection connection, int cities, int forecastRows) throws SQLException {
+        connection.setAutoCommit(false);
+        PreparedStatement city = connection.prepareStatement("INSERT INTO " + LocalDbContract.Cities.TABLE_NAME
+                + " (" + LocalDbContract.Cities._ID
+                + ", " + LocalDbContract.Cities.COLUMN_NAME_CITY_NAME
+                + ", " + LocalDbContract.Cities.COLUMN_NAME_COUNTRY
+                + ") VALUES (?, ?, 'RU')");
+        PreparedStatement weather = connection.prepareStatement("INSERT INTO " + LocalDbContract.Weathers.TABLE_NAME
+                + " (" + LocalDbContract.Weathers.COLUMN_NAME_CITY_ID
+                + ", " + LocalDbContract.Weathers.COLUMN_NAME_TEMP
+                + ", " + LocalDbContract.Weathers.COLUMN_NAME_HUMIDITY
+                + ", " + LocalDbContract.Weathers.COLUMN_NAME_PRESSURE
+                + ", " + LocalDbContract.Weathers.COLUMN_NAME_WIND
+                + ", " + LocalDbContract.Weathers.COLUMN_NAME_CLOUDS
+                + ", " + LocalDbContract.Weathers.COLUMN_NAME_ICON_CODE
+                + ", " + LocalDbContract.Weathers.COLUMN_NAME_IS_FORECAST
+                + ", " + LocalDbContract.Weathers.COLUMN_NAME_DATE
+                + ", " + LocalDbContract.Weathers.COLUMN_NAME_LAST_UPDATE
+                + ") VALUES (?, ?, 60, 1012, 3, 20, " + WeatherIconCodes.encode("01d") + ", ?, ?, ?)");
+        PreparedStatement meta = connection.prepareStatement("INSERT INTO " + LocalDbContract.Meta.TABLE_NAME
+                + " (" + LocalDbContract.Meta.COLUMN_DATA_ID + ", " + LocalDbContract.Meta.COLUMN_REFRESHING
+                + ") VALUES (?, 0)");
+        try {
+            long now = System.currentTimeMillis();
+            int rowsPerCity = Math.max(1, forecastRows / cities);
+            for (int i = 0; i < cities; i++) {
+                int id = FIRST_CITY_ID + i;
+                city.setInt(1, id);
+                city.setString(2, "City " + id);
+                city.addBatch();
+                addWeatherRow(weather, id, false, now, i);
+                meta.setInt(1, id);
+                meta.addBatch();
+                for (int j = 0; j < rowsPerCity && i * rowsPerCity + j < forecastRows; j++) {
+                    addWeatherRow(weather, id, true, now + j * 3 * 60 * 60 * 1000L, j);
+                }
+                if (i % 100 == 99) {
+                    city.executeBatch();
+                    weather.executeBatch();
+                    meta.executeBatch();
+                }
+            }
+            city.executeBatch();
+            weather.executeBatch();
+            meta.executeBatch();
+            connection.commit();
+        } finally {
+            city.close();
+            weather.close();
+            meta.close();
+            connection.setAutoCommit(true);
+        }
+    }
+
+    // Добавляет в пакет строку погоды города id.
+    private static void addWeatherRow(PreparedStatement statement, int id, boolean forecast, long date, int i)
+            throws SQLException {
+        statement.setInt(1, id);
+        statement.setDouble(2, i % 40 - 10);
+        statement.setInt(3, forecast ? 1 : 0);
+        if (forecast) {
+            statement.setLong(4, date);
+            statement.setNull(5, java.sql.Types.INTEGER);
+        } else {
+            statement.setLong(4, LocalDbContract.Weathers.CURRENT_WEATHER_DATE);
+            statement.setLong(5, date);
+        }
+        statement.addBatch();
+    }
+
+    /**
+     * Возвращает данные о погоде для города id.
+     *
+     * @param id Идентификатор города.
+     * @param i  Номер строки, от которого зависят температура и дата.
+     */
+    public static WeatherData createWeather(int id, int i) {
+        WeatherData data = new WeatherData();
+        data.setId(id);
+        data.setCityName("City " + id);
+        data.setCountry("RU");
+        data.setTemp(i % 40 - 10.0);
+        data.setHumidity(60.0);
+        data.setPressure(1012.0);
+        data.setWind(3.0);
+        data.setClouds(20.0);
+        data.setWeatherIconId("01d");
+        data.setDate(new Date(System.currentTimeMillis() + i * 3 * 60 * 60 * 1000L));
+        return data;
+    }
+
+    /**
+     * Возвращает прогноз из size строк для записи в updateWeatherForecast.
+     *
+     * @param size Количество строк.
+     */
+    public static List<WeatherData> createForecast(int size) {
+        List<WeatherData> forecast = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            forecast.add(createWeather(0, i));
+        }
+        return forecast;
+    }
+}
@@ -0,0 +1,104 @@
+package com.deakishin.weatherapp.benchmarks;
+
+import com.deakishin.weatherapp.model.entities.WeatherData;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.UnsupportedEncodingException;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Декодирование ответов через дерево org.json, как это делалось до перехода на потоковый разбор:
+ * тело ответа сначала целиком превращается в строку и дерево объектов, затем из дерева читаются поля.
+ * Используется только как база для сравнения в бенчмарках.
+ */
+class OrgJsonDecoders {
+
+    private OrgJsonDecoders() {
+    }
+
+    // Строит дерево из тела ответа.
+    private static JSONObject parse(byte[] body) throws JSONException, UnsupportedEncodingException {
+        return new JSONObject(new String(body, "UTF-8"));
+    }
+
+    static WeatherData decodeCurrentWeather(byte[] body) throws JSONException, UnsupportedEncodingException {
+        return readWeatherData(parse(body));
+    }
+
+    static List<WeatherData> decodeCurrentWeatherList(byte[] body) throws JSONException, UnsupportedEncodingException {
+        JSONArray array = parse(body).getJSONArray("list");
+        List<WeatherData> dataList = new ArrayList<>(array.length());
+        for (int i = 0; i < array.length(); i++) {
+            dataList.add(readWeatherData(array.getJSONObject(i)));
+        }
+        return dataList;
+    }
+
+    static List<WeatherData> decodeForecast(byte[] body) throws JSONException, UnsupportedEncodingException {
+        JSONObject json = parse(body);
+        List<WeatherData> dataList = new ArrayList<>();
+
+        JSONObject cityJson = json.getJSONObject("city");
+        int cityId = cityJson.getInt("id");
+        String cityName = cityJson.getString("name");
+        String country = cityJson.getString("country");
+
+        JSONArray array = json.getJSONArray("list");
+        for (int i = 0; i < array.length(); i++) {
+            WeatherData data = new WeatherData();
+            data.setId(cityId);
+            data.setCityName(cityName);
+            data.setCountry(country);
+
+            JSONObject jsonObj = array.getJSONObject(i);
+
+            JSONObject mainJson = jsonObj.getJSONObject("main");
+            data.setTemp(mainJson.getDouble("temp"));
+            data.setHumidity(mainJson.getDouble("humidity"));
+            data.setPressure(mainJson.getDouble("pressure"));
+
+            data.setWeatherIconId(jsonObj.getJSONArray("weather").getJSONObject(0).getString("icon"));
+            data.setClouds(jsonObj.getJSONObject("clouds").getDouble("all"));
+            data.setWind(jsonObj.getJSONObject("wind").getDouble("speed"));
+
+            DateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.ENGLISH);
+            try {
+                data.setDate(format.parse(jsonObj.getString("dt_txt")));
+            } catch (ParseException e) {
+                // Элемент без даты все равно сохраняется.
+            }
+
+            dataList.add(data);
+        }
+
+        return dataList;
+    }
+
+    // Читает данные о текущей погоде из объекта дерева.
+    private static WeatherData readWeatherData(JSONObject json) throws JSONException {
+        WeatherData data = new WeatherData();
+
+        data.setId(json.getInt("id"));
+        data.setCityName(json.getString("name"));
+        data.setCountry(json.getJSONObject("sys").getString("country"));
+
+        JSONObject mainJson = json.getJSONObject("main");
+        data.setTemp(mainJson.getDouble("temp"));
+        data.setPressure(mainJson.getDouble("pressure"));
+        data.setHumidity(mainJson.getDouble("humidity"));
+
+        data.setWind(json.getJSONObject("wind").getDouble("speed"));
+        data.setClouds(json.getJSONObject("clouds").getDouble("all"));
+        data.setWeatherIconId(json.getJSONArray("weather").getJSONObject(0).getString("icon"));
+
+        return data;
+    }
+}
@@ -0,0 +1,105 @@
+package com.deakishin.weatherapp.benchmarks;
+
+import com.deakishin.weatherapp.model.entities.WeatherData;
+import com.deakishin.weatherapp.model.localdb.impl.LocalDbContract;
+import com.deakishin.weatherapp.model.localdb.impl.WeatherIconCodes;
+import com.deakishin.weatherapp.model.localdb.impl.WeatherRowMapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Преобразование строк таблицы погоды в {@link WeatherData} через {@link WeatherRowMapper}.
+ * Строки хранятся в памяти, так что измеряется только преобразование, без чтения из БД.
+ * Одна операция - преобразование всех строк результата.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RowMappingBenchmark {
+
+    // Количество строк в результате. Поле публичное и без префикса, так как JMH выводит его имя в результатах.
+    @Param({"20", "1000"})
+    public int rows;
+
+    // Строки результата запросов текущей погоды и прогноза.
+    private ArrayRow mCurrentRow;
+    private ArrayRow mForecastRow;
+
+    @Setup
+    public void setUp() {
+        mCurrentRow = createRows(WeatherRowMapper.PROJECTION, rows);
+        mForecastRow = createRows(WeatherRowMapper.FORECAST_PROJECTION, rows);
+    }
+
+    // Возвращает count строк со столбцами columns.
+    private static ArrayRow createRows(String[] columns, int count) {
+        Object[][] values = new Object[count][];
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            Object[] row = new Object[columns.length];
+            for (int j = 0; j < columns.length; j++) {
+                row[j] = getValue(columns[j], i, now);
+            }
+            values[i] = row;
+        }
+        return new ArrayRow(columns, values);
+    }
+
+    // Возвращает значение столбца column для строки i.
+    private static Object getValue(String column, int i, long now) {
+        switch (column) {
+            case LocalDbContract.Weathers.COLUMN_NAME_CITY_ID:
+                return (long) (1000000 + i);
+            case LocalDbContract.Cities.COLUMN_NAME_CITY_NAME:
+                return "City " + i;
+            case LocalDbContract.Cities.COLUMN_NAME_COUNTRY:
+                return "RU";
+            case LocalDbContract.Weathers.COLUMN_NAME_ICON_CODE:
+                return (long) WeatherIconCodes.encode("01d");
+            case LocalDbContract.Weathers.COLUMN_NAME_DATE:
+            case LocalDbContract.Weathers.COLUMN_NAME_LAST_UPDATE:
+                return now + i * 1000L;
+            case LocalDbContract.Weathers.COLUMN_NAME_ERROR:
+                return null;
+            default:
+                return 10.0 + i % 50;
+        }
+    }
+
+    @Benchmark
+    public void mapCurrentWeather(Blackhole blackhole) {
+        ArrayRow row = mCurrentRow;
+        WeatherRowMapper mapper = new WeatherRowMapper(row);
+        for (int i = 0; i < row.getCount(); i++) {
+            row.moveTo(i);
+            blackhole.consume(mapper.map(row, false));
+            blackhole.consume(mapper.mapItemStatus(row));
+        }
+    }
+
+    @Benchmark
+    public void mapForecast(Blackhole blackhole) {
+        ArrayRow row = mForecastRow;
+        WeatherRowMapper mapper = new WeatherRowMapper(row);
+        for (int i = 0; i < row.getCount(); i++) {
+            row.moveTo(i);
+            blackhole.consume(mapper.map(row, true));
+        }
+    }
+}
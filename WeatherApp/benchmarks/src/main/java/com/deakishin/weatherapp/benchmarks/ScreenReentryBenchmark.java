@@ -0,0 +1,93 @@
+package com.deakishin.weatherapp.benchmarks;
+
+import com.deakishin.weatherapp.model.entities.WeatherData;
+import com.deakishin.weatherapp.model.localdb.LocalDb;
+import com.deakishin.weatherapp.model.localdb.impl.CachingLocalDb;
+import com.deakishin.weatherapp.model.localdb.impl.JdbcLocalDb;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Задержки повторного открытия экранов (onStart, поворот экрана) без записи между ними:
+ * MainScreenActivity читает текущую погоду, ForecastScreenActivity - прогноз одного и того же города.
+ * mainScreenWindowed читает текущую погоду окнами, как главный экран, и загружает первое окно.
+ * Сравнивается чтение напрямую из {@link JdbcLocalDb} (cached=false) и через {@link CachingLocalDb}.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScreenReentryBenchmark {
+
+    // Размер окна главного экрана.
+    private static final int WINDOW_SIZE = 50;
+
+    // Количество городов.
+    @Param({"100", "10000"})
+    public int cities;
+
+    // Общее количество строк прогноза.
+    @Param({"1000000"})
+    public int forecastRows;
+
+    // Читать ли через кэш в памяти.
+    @Param({"false", "true"})
+    public boolean cached;
+
+    // Файл БД.
+    private File mFile;
+    // БД на sqlite-jdbc.
+    private JdbcLocalDb mJdbcDb;
+    // БД, из которой читают экраны.
+    private LocalDb mDb;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        mFile = File.createTempFile("screen-reentry-benchmark", ".db");
+        mJdbcDb = new JdbcLocalDb("jdbc:sqlite:" + mFile.getAbsolutePath());
+        LocalDbFixtures.populate(mJdbcDb.getConnection(), cities, forecastRows);
+        mDb = cached ? new CachingLocalDb(mJdbcDb) : mJdbcDb;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mJdbcDb.close();
+        mFile.delete();
+    }
+
+    @Benchmark
+    public Object mainScreen() {
+        return mDb.getCurrentWeatherData();
+    }
+
+    @Benchmark
+    public Object mainScreenWindowed() {
+        List<WeatherData> data = mDb.getCurrentWeatherDataWindowed(WINDOW_SIZE).getData();
+        return data.isEmpty() ? null : data.get(0);
+    }
+
+    @Benchmark
+    public Object forecastScreen() {
+        return mDb.getWeatherForecast(LocalDbFixtures.FIRST_CITY_ID);
+    }
+}
@@ -0,0 +1,572 @@
+package com.deakishin.weatherapp.model.localdb.impl;
+
+import com.deakishin.weatherapp.model.entities.DataStatus;
+import com.deakishin.weatherapp.model.entities.WeatherData;
+import com.deakishin.weatherapp.model.localdb.LocalDb;
+import com.deakishin.weatherapp.model.localdb.LocalDbOptions;
+import com.deakishin.weatherapp.model.localdb.QueryListResult;
+import com.deakishin.weatherapp.model.localdb.WindowedList;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Реализация локальной базы данных на JDBC (например, sqlite-jdbc).
+ * Схема и запросы те же, что у LocalDbImpl на Android, а запись и уведомления наблюдателей
+ * выполняются теми же {@link LocalDbWriter} и {@link WeatherBatchWriter}, поэтому запросы можно профилировать
+ * и измерять вне устройства. Ошибки JDBC выбрасываются как {@link IllegalStateException}.
+ * Запись выполняется через одно соединение в потоке очереди записей ({@link GroupCommitQueue}),
+ * которая может объединять одновременные записи в одну транзакцию. Методы записи ждут фиксации.
+ * В режиме WAL чтение выполняется через пул соединений для чтения, если он задан в {@link LocalDbOptions}, иначе через
+ * соединение записи под той же блокировкой. Чтение из нескольких запросов (данные и их статус)
+ * выполняется в одной транзакции чтения, так что все запросы видят один снимок данных. Класс потокобезопасный.
+ */
+public class JdbcLocalDb implements LocalDb, Closeable {
+
+    // Время ожидания блокировки БД другим соединением в мс.
+    private static final int BUSY_TIMEOUT_MS = 30 * 1000;
+
+    // Соединение для записи.
+    private final Connection mConnection;
+    // Блокировка соединения для записи.
+    private final ReentrantLock mWriteLock = new ReentrantLock();
+    // Свободные соединения для чтения или null, если чтение идет через соединение записи.
+    private final BlockingQueue<Connection> mReaders;
+    // Наблюдатели изменений.
+    private final LocalDbObservers mObservers = new LocalDbObservers();
+    // Очередь записей.
+    private final GroupCommitQueue mWriteQueue;
+    // Запись строк скомпилированными запросами через соединение записи.
+    private final WeatherBatchWriter mBatchWriter;
+    // Запись через очередь записей с уведомлением наблюдателей.
+    private final LocalDbWriter mWriter;
+
+    /**
+     * Открывает БД по адресу JDBC, например "jdbc:sqlite:/tmp/weather.db".
+     * Как и LocalDbHelper на Android, создает таблицы, если их нет, и пересоздает их, если версия схемы другая.
+     *
+     * @param url Адрес БД.
+     * @throws SQLException Если БД не удалось открыть.
+     */
+    public JdbcLocalDb(String url) throws SQLException {
+        this(url, new LocalDbOptions());
+    }
+
+    /**
+     * Открывает БД по адресу JDBC с параметрами options. Соединения для чтения открываются
+     * отдельно, поэтому при их использовании адрес должен указывать на файл, а не на БД в памяти.
+     *
+     * @param url     Адрес БД.
+     * @param options Параметры БД.
+     * @throws SQLException Если БД не удалось открыть.
+     */
+    public JdbcLocalDb(String url, LocalDbOptions options) throws SQLException {
+        mConnection = DriverManager.getConnection(url);
+        mBatchWriter = new WeatherBatchWriter(new JdbcStatements(mConnection));
+        try {
+            configure(mConnection, options);
+            execSQL("PRAGMA journal_mode = " + (options.isWriteAheadLogging() ? "WAL" : "DELETE"));
+            createOrUpgrade();
+        } catch (SQLException | RuntimeException e) {
+            mBatchWriter.close();
+            mConnection.close();
+            throw e;
+        }
+        mWriteQueue = new GroupCommitQueue("JdbcLocalDb writer", new GroupCommitQueue.Transactions() {
+            @Override
+            public void begin() {
+                try {
+                    beginTransaction();
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            @Override
+            public void end(boolean success) {
+                try {
+                    endTransaction(success);
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }, options.getMaxWritesPerTransaction(), options.getGroupCommitWindowMs());
+        mWriter = new LocalDbWriter(mWriteQueue, mBatchWriter, mObservers, new LocalDbWriter.DataStatusReader() {
+            @Override
+            public DataStatus getDataStatus(int dataId) {
+                try {
+                    return JdbcLocalDb.getDataStatus(mConnection, dataId);
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+
+        // В режиме журнала отката запись блокирует чтение из других соединений, и при непрерывной записи
+        // чтение может не дождаться своей очереди. Поэтому, как и на Android, пул открывается только в режиме WAL.
+        if (!options.isWriteAheadLogging() || options.getReaderConnections() == 0) {
+            mReaders = null;
+            return;
+        }
+        mReaders = new ArrayBlockingQueue<>(options.getReaderConnections());
+        try {
+            for (int i = 0; i < options.getReaderConnections(); i++) {
+                Connection reader = DriverManager.getConnection(url);
+                mReaders.add(reader);
+                configure(reader, options);
+            }
+        } catch (SQLException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    // Задает время ожидания блокировки и выполняет PRAGMA из параметров на соединении.
+    private static void configure(Connection connection, LocalDbOptions options) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            statement.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT_MS);
+            for (String pragma : options.getPragmas()) {
+                statement.execute(pragma);
+            }
+        } finally {
+            statement.close();
+        }
+    }
+
+    // Создает таблицы, если их нет, переводит их на текущую версию схемы с сохранением данных,
+    // если это возможно, и пересоздает их в остальных случаях, как LocalDbHelper на Android.
+    private void createOrUpgrade() throws SQLException {
+        int version = getUserVersion();
+        if (version != LocalDbSchema.DATABASE_VERSION) {
+            beginTransaction();
+            try {
+                if (LocalDbMigrations.canMigrate(version, LocalDbSchema.DATABASE_VERSION)) {
+                    LocalDbMigrations.migrate(new LocalDbMigrations.Db() {
+                        @Override
+                        public void execSQL(String sql) {
+                            try {
+                                JdbcLocalDb.this.execSQL(sql);
+                            } catch (SQLException e) {
+                                throw new IllegalStateException("Unable to migrate local database", e);
+                            }
+                        }
+                    }, version, LocalDbSchema.DATABASE_VERSION, System.currentTimeMillis());
+                } else {
+                    if (version != 0) {
+                        execSQL(LocalDbSchema.SQL_DELETE_CITIES);
+                        execSQL(LocalDbSchema.SQL_DELETE_WEATHERS);
+                        execSQL(LocalDbSchema.SQL_DELETE_META);
+                    }
+                    onCreate();
+                }
+                execSQL("PRAGMA user_version = " + LocalDbSchema.DATABASE_VERSION);
+                endTransaction(true);
+            } catch (SQLException | RuntimeException e) {
+                endTransaction(false);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * @return Соединение для записи, например, для заполнения БД тестовыми данными.
+     */
+    public Connection getConnection() {
+        return mConnection;
+    }
+
+    @Override
+    public void close() {
+        mWriteQueue.close();
+        mBatchWriter.close();
+        try {
+            mConnection.close();
+            if (mReaders != null) {
+                for (Connection reader : mReaders) {
+                    reader.close();
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Создает таблицы и добавляет города по умолчанию.
+    private void onCreate() throws SQLException {
+        execSQL(LocalDbSchema.SQL_CREATE_CITIES);
+        execSQL(LocalDbSchema.SQL_CREATE_WEATHERS);
+        execSQL(LocalDbSchema.SQL_CREATE_WEATHERS_INDEX);
+        execSQL(LocalDbSchema.SQL_CREATE_META);
+        execSQL(LocalDbSchema.SQL_CREATE_META_INDEX);
+        mBatchWriter.insertDefaultData();
+    }
+
+    // Возвращает версию схемы БД или 0, если БД новая.
+    private int getUserVersion() throws SQLException {
+        Statement statement = mConnection.createStatement();
+        try {
+            ResultSet rs = statement.executeQuery("PRAGMA user_version");
+            return rs.next() ? rs.getInt(1) : 0;
+        } finally {
+            statement.close();
+        }
+    }
+
+    // Выполняет SQL без результата.
+    private void execSQL(String sql) throws SQLException {
+        Statement statement = mConnection.createStatement();
+        try {
+            statement.execute(sql);
+        } finally {
+            statement.close();
+        }
+    }
+
+    // Начинает транзакцию, захватывая соединение для записи до ее завершения.
+    private void beginTransaction() throws SQLException {
+        mWriteLock.lock();
+        try {
+            mConnection.setAutoCommit(false);
+        } catch (SQLException | RuntimeException e) {
+            mWriteLock.unlock();
+            throw e;
+        }
+    }
+
+    // Завершает транзакцию, фиксируя изменения, если success, иначе откатывая их.
+    private void endTransaction(boolean success) throws SQLException {
+        try {
+            if (success) {
+                mConnection.commit();
+            } else {
+                mConnection.rollback();
+            }
+        } finally {
+            try {
+                mConnection.setAutoCommit(true);
+            } finally {
+                mWriteLock.unlock();
+            }
+        }
+    }
+
+    // Возвращает соединение для чтения. После использования его нужно вернуть через releaseReader().
+    private Connection acquireReader() {
+        if (mReaders == null) {
+            mWriteLock.lock();
+            return mConnection;
+        }
+        try {
+            return mReaders.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a reader connection", e);
+        }
+    }
+
+    // Возвращает соединение для чтения в пул.
+    private void releaseReader(Connection connection) {
+        if (mReaders == null) {
+            mWriteLock.unlock();
+        } else {
+            mReaders.add(connection);
+        }
+    }
+
+    // Начинает транзакцию чтения на соединении для чтения. Транзакция отложенная: снимок данных
+    // фиксируется первым запросом, и запись в это время не блокируется.
+    private static void beginRead(Connection connection) throws SQLException {
+        connection.setAutoCommit(false);
+    }
+
+    // Завершает транзакцию чтения.
+    private static void endRead(Connection connection) throws SQLException {
+        try {
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    @Override
+    public QueryListResult<WeatherData> getCurrentWeatherData() {
+        return getWeathers(false, 0);
+    }
+
+    @Override
+    public QueryListResult<WeatherData> getCurrentWeatherDataWindowed(int windowSize) {
+        int count;
+        DataStatus dataStatus;
+        Connection connection = acquireReader();
+        try {
+            beginRead(connection);
+            try {
+                count = countCurrentWeathers(connection);
+                dataStatus = getDataStatus(connection, LocalDbSchema.CURRENT_WEATHER_DATA_ID);
+            } finally {
+                endRead(connection);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            releaseReader(connection);
+        }
+
+        WindowedList<WeatherData> data = new WindowedList<>(count, windowSize,
+                new WindowedList.Loader<WeatherData>() {
+                    @Override
+                    public WindowedList.Window<WeatherData> load(int offset, int count) {
+                        return getCurrentWeatherWindow(offset, count);
+                    }
+                });
+        return new QueryListResult<WeatherData>(data, dataStatus);
+    }
+
+    // Возвращает количество строк текущей погоды.
+    private static int countCurrentWeathers(Connection connection) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM " + LocalDbContract.Weathers.TABLE_NAME
+                    + " WHERE " + LocalDbContract.Weathers.COLUMN_NAME_IS_FORECAST + " = 0");
+            return rs.next() ? rs.getInt(1) : 0;
+        } finally {
+            statement.close();
+        }
+    }
+
+    // Возвращает окно из count строк текущей погоды со статусами городов, начиная с позиции offset.
+    private WindowedList.Window<WeatherData> getCurrentWeatherWindow(int offset, int count) {
+        List<WeatherData> dataList = new ArrayList<>(count);
+        Map<Integer, DataStatus> itemStatuses = new HashMap<>();
+        Connection connection = acquireReader();
+        try {
+            StringBuilder sql = new StringBuilder("SELECT ");
+            for (int i = 0; i < WeatherRowMapper.PROJECTION.length; i++) {
+                sql.append(i == 0 ? "" : ", ").append(WeatherRowMapper.PROJECTION[i]);
+            }
+            sql.append(" FROM ").append(LocalDbSchema.SQL_WEATHERS_WITH_CITIES)
+                    .append(" WHERE ").append(LocalDbSchema.CURRENT_WEATHER_WINDOW_SELECTION)
+                    .append(" ORDER BY ").append(LocalDbSchema.CURRENT_WEATHER_ORDER_BY);
+            PreparedStatement statement = connection.prepareStatement(sql.toString());
+            try {
+                statement.setInt(1, count);
+                statement.setInt(2, offset);
+                ResultSet rs = statement.executeQuery();
+                ResultSetRow row = new ResultSetRow(rs);
+                WeatherRowMapper mapper = new WeatherRowMapper(row);
+                while (rs.next()) {
+                    WeatherData data = mapper.map(row, false);
+                    itemStatuses.put(data.getId(), mapper.mapItemStatus(row));
+                    dataList.add(data);
+                }
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            releaseReader(connection);
+        }
+        return new WindowedList.Window<>(dataList, itemStatuses);
+    }
+
+    // Возвращает записи по погоде. Если forecast, то возвращаются данные по прогнозу погоды
+    // для города с идентификатором cityId, иначе - по текущей погоде с названиями городов.
+    private QueryListResult<WeatherData> getWeathers(boolean forecast, int cityId) {
+        String[] projection = forecast ? WeatherRowMapper.FORECAST_PROJECTION : WeatherRowMapper.PROJECTION;
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (int i = 0; i < projection.length; i++) {
+            sql.append(i == 0 ? "" : ", ").append(projection[i]);
+        }
+        sql.append(" FROM ").append(forecast ? LocalDbContract.Weathers.TABLE_NAME
+                : LocalDbSchema.SQL_WEATHERS_WITH_CITIES)
+                .append(" WHERE ").append(LocalDbContract.Weathers.COLUMN_NAME_IS_FORECAST).append(" = ?");
+        if (forecast) {
+            sql.append(" AND ").append(LocalDbContract.Weathers.COLUMN_NAME_CITY_ID).append(" = ?")
+                    .append(" ORDER BY ").append(LocalDbContract.Weathers.COLUMN_NAME_DATE).append(" ASC");
+        } else {
+            sql.append(" ORDER BY ").append(LocalDbSchema.CURRENT_WEATHER_ORDER_BY);
+        }
+
+        List<WeatherData> dataList = new ArrayList<>();
+        // Статусы обновления городов. Есть только для текущей погоды.
+        Map<Integer, DataStatus> itemStatuses = forecast ? null : new HashMap<Integer, DataStatus>();
+        DataStatus dataStatus;
+        Connection connection = acquireReader();
+        try {
+            // Данные и статус читаются в одной транзакции, чтобы между запросами не зафиксировалась запись.
+            beginRead(connection);
+            try {
+                PreparedStatement statement = connection.prepareStatement(sql.toString());
+                try {
+                    statement.setInt(1, forecast ? 1 : 0);
+                    if (forecast) {
+                        statement.setInt(2, cityId);
+                    }
+                    ResultSet rs = statement.executeQuery();
+                    ResultSetRow row = new ResultSetRow(rs);
+                    WeatherRowMapper mapper = new WeatherRowMapper(row);
+                    while (rs.next()) {
+                        WeatherData data = mapper.map(row, forecast);
+                        if (!forecast) {
+                            itemStatuses.put(data.getId(), mapper.mapItemStatus(row));
+                        }
+                        dataList.add(data);
+                    }
+                } finally {
+                    statement.close();
+                }
+                dataStatus = getDataStatus(connection, LocalDbWriter.getDataId(forecast, cityId));
+            } finally {
+                endRead(connection);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            releaseReader(connection);
+        }
+
+        QueryListResult<WeatherData> result = new QueryListResult<>();
+        result.setData(dataList);
+        result.setDataStatus(dataStatus);
+        result.setItemStatuses(itemStatuses);
+        return result;
+    }
+
+    // Возвращает статус данных. forecast - данные по прогнозу погоде, cityId - идентификатор города,
+    // если данные по прогнозу погоды.
+    private DataStatus getDataStatus(boolean forecast, int cityId) {
+        Connection connection = acquireReader();
+        try {
+            return getDataStatus(connection, LocalDbWriter.getDataId(forecast, cityId));
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            releaseReader(connection);
+        }
+    }
+
+    // Возвращает статус данных с идентификатором dataId, читая его через соединение connection.
+    private static DataStatus getDataStatus(Connection connection, int dataId) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(LocalDbSchema.SQL_SELECT_DATA_STATUS);
+        try {
+            statement.setInt(1, dataId);
+            ResultSet rs = statement.executeQuery();
+            return rs.next() ? WeatherRowMapper.mapDataStatus(new ResultSetRow(rs)) : null;
+        } finally {
+            statement.close();
+        }
+    }
+
+    @Override
+    public List<Integer> getCitiesIds() {
+        return queryCitiesIds(LocalDbContract.Weathers.COLUMN_NAME_IS_FORECAST + " = 0");
+    }
+
+    @Override
+    public List<Integer> getFailedCitiesIds() {
+        return queryCitiesIds(LocalDbContract.Weathers.COLUMN_NAME_IS_FORECAST + " = 0 AND "
+                + LocalDbContract.Weathers.COLUMN_NAME_ERROR + " IS NOT NULL");
+    }
+
+    // Возвращает идентификаторы городов из строк, удовлетворяющих условию where.
+    private List<Integer> queryCitiesIds(String where) {
+        List<Integer> ids = new ArrayList<>();
+        String sql = "SELECT " + LocalDbContract.Weathers.COLUMN_NAME_CITY_ID
+                + " FROM " + LocalDbContract.Weathers.TABLE_NAME + " WHERE " + where
+                + " ORDER BY " + LocalDbSchema.CURRENT_WEATHER_ORDER_BY;
+        Connection connection = acquireReader();
+        try {
+            Statement statement = connection.createStatement();
+            try {
+                ResultSet rs = statement.executeQuery(sql);
+                while (rs.next()) {
+                    int id = rs.getInt(1);
+                    if (!rs.wasNull()) {
+                        ids.add(id);
+                    }
+                }
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            releaseReader(connection);
+        }
+        return ids;
+    }
+
+    @Override
+    public void updateCurrentWeatherData(List<WeatherData> dataList) {
+        mWriter.updateWeatherData(dataList, false, 0);
+    }
+
+    @Override
+    public void updateCurrentWeatherErrors(Map<Integer, String> errors) {
+        mWriter.updateCurrentWeatherErrors(errors);
+    }
+
+    @Override
+    public DataStatus getCurrentWeatherDataStatus() {
+        return getDataStatus(false, 0);
+    }
+
+    @Override
+    public void updateCurrentWeatherDataStatus(DataStatus status) {
+        mWriter.updateWeatherDataStatus(status, false, 0);
+    }
+
+    @Override
+    public void updateWeatherForecast(int cityId, List<WeatherData> dataList) {
+        mWriter.updateWeatherData(dataList, true, cityId);
+    }
+
+    @Override
+    public QueryListResult<WeatherData> getWeatherForecast(int cityId) {
+        return getWeathers(true, cityId);
+    }
+
+    @Override
+    public DataStatus getWeatherForecastDataStatus(int cityId) {
+        return getDataStatus(true, cityId);
+    }
+
+    @Override
+    public void updateForecastDataStatus(DataStatus status, int cityId) {
+        mWriter.updateWeatherDataStatus(status, true, cityId);
+    }
+
+    @Override
+    public void addCityWithCurrentWeather(WeatherData data) {
+        mWriter.addCityWithCurrentWeather(data);
+    }
+
+    @Override
+    public void observeCurrentWeather(Observer observer) {
+        mObservers.observeCurrentWeather(observer);
+    }
+
+    @Override
+    public void observeForecast(int cityId, Observer observer) {
+        mObservers.observeForecast(cityId, observer);
+    }
+
+    @Override
+    public void removeObserver(Observer observer) {
+        mObservers.removeObserver(observer);
+    }
+}
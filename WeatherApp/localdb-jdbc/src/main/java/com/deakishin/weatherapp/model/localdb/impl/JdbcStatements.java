@@ -0,0 +1,112 @@
+package com.deakishin.weatherapp.model.localdb.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Компиляция запросов {@link WeatherBatchWriter} в {@link PreparedStatement} JDBC и выполнение запросов на чтение.
+ * Ошибки JDBC выбрасываются как {@link IllegalStateException}, как и SQLiteStatement на Android
+ * выбрасывает непроверяемые исключения.
+ */
+class JdbcStatements implements WeatherBatchWriter.Statements {
+
+    // Соединение, для которого компилируются запросы.
+    private final Connection mConnection;
+
+    JdbcStatements(Connection connection) {
+        mConnection = connection;
+    }
+
+    @Override
+    public WeatherBatchWriter.Statement compileStatement(String sql) {
+        final PreparedStatement statement;
+        try {
+            statement = mConnection.prepareStatement(sql);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+        return new WeatherBatchWriter.Statement() {
+            @Override
+            public void clearBindings() {
+                try {
+                    statement.clearParameters();
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            @Override
+            public void bindLong(int index, long value) {
+                try {
+                    statement.setLong(index, value);
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            @Override
+            public void bindDouble(int index, double value) {
+                try {
+                    statement.setDouble(index, value);
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            @Override
+            public void bindString(int index, String value) {
+                try {
+                    statement.setString(index, value);
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            @Override
+            public int executeUpdateDelete() {
+                try {
+                    return statement.executeUpdate();
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            @Override
+            public long executeInsert() {
+                return executeUpdateDelete() > 0 ? 0 : -1;
+            }
+
+            @Override
+            public void close() {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+    }
+
+    @Override
+    public void query(String sql, String[] args, WeatherBatchWriter.RowReader reader) {
+        try {
+            PreparedStatement statement = mConnection.prepareStatement(sql);
+            try {
+                for (int i = 0; i < args.length; i++) {
+                    statement.setString(i + 1, args[i]);
+                }
+                ResultSet rs = statement.executeQuery();
+                ResultSetRow row = new ResultSetRow(rs);
+                while (rs.next()) {
+                    reader.read(row);
+                }
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
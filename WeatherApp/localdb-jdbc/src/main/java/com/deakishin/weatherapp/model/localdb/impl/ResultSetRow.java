@@ -0,0 +1,75 @@
+package com.deakishin.weatherapp.model.localdb.impl;
+
+import com.deakishin.weatherapp.model.localdb.Row;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Строка результата запроса к БД поверх {@link ResultSet} JDBC.
+ * Возвращает значения текущей строки результата. Ошибки JDBC выбрасываются
+ * как {@link IllegalStateException}, так же как курсор Android выбрасывает непроверяемые исключения.
+ */
+class ResultSetRow implements Row {
+
+    // Результат запроса.
+    private final ResultSet mResultSet;
+
+    ResultSetRow(ResultSet resultSet) {
+        mResultSet = resultSet;
+    }
+
+    @Override
+    public int getColumnIndex(String columnName) {
+        try {
+            return mResultSet.findColumn(columnName);
+        } catch (SQLException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public boolean isNull(int index) {
+        try {
+            return mResultSet.getObject(index) == null;
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public int getInt(int index) {
+        try {
+            return mResultSet.getInt(index);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public long getLong(int index) {
+        try {
+            return mResultSet.getLong(index);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public double getDouble(int index) {
+        try {
+            return mResultSet.getDouble(index);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public String getString(int index) {
+        try {
+            return mResultSet.getString(index);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
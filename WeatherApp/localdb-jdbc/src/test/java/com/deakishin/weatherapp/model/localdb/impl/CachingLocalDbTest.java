@@ -0,0 +1,167 @@
+package com.deakishin.weatherapp.model.localdb.impl;
+
+import com.deakishin.weatherapp.model.entities.WeatherData;
+import com.deakishin.weatherapp.model.localdb.QueryListResult;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+/**
+ * Тесты кэша локальной БД {@link CachingLocalDb} поверх {@link JdbcLocalDb}.
+ */
+public class CachingLocalDbTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private CountingLocalDb mJdbcDb;
+    private CachingLocalDb mDb;
+
+    /**
+     * БД, считающая запросы чтения. Может выполнить запись через кэш во время чтения.
+     */
+    private class CountingLocalDb extends JdbcLocalDb {
+        int mReads;
+        // Запись, выполняемая после следующего чтения текущей погоды.
+        Runnable mWriteDuringRead;
+
+        CountingLocalDb(String url) throws SQLException {
+            super(url);
+        }
+
+        @Override
+        public QueryListResult<WeatherData> getCurrentWeatherData() {
+            mReads++;
+            QueryListResult<WeatherData> result = super.getCurrentWeatherData();
+            if (mWriteDuringRead != null) {
+                Runnable write = mWriteDuringRead;
+                mWriteDuringRead = null;
+                write.run();
+            }
+            return result;
+        }
+
+        @Override
+        public QueryListResult<WeatherData> getWeatherForecast(int cityId) {
+            mReads++;
+            return super.getWeatherForecast(cityId);
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        mJdbcDb = new CountingLocalDb("jdbc:sqlite:" + mFolder.newFile("weather.db").getAbsolutePath());
+        mDb = new CachingLocalDb(mJdbcDb, 2);
+    }
+
+    @After
+    public void tearDown() {
+        mJdbcDb.close();
+    }
+
+    // Возвращает данные о погоде для города id.
+    private static WeatherData createWeather(int id, double temp, Date date) {
+        WeatherData data = new WeatherData();
+        data.setId(id);
+        data.setCityName("City " + id);
+        data.setTemp(temp);
+        data.setDate(date);
+        return data;
+    }
+
+    @Test
+    public void servesRepeatedReadsFromMemoryUntilWrite() {
+        QueryListResult<WeatherData> first = mDb.getCurrentWeatherData();
+        assertEquals(first.getData().size(), mDb.getCurrentWeatherData().getData().size());
+        assertEquals(1, mJdbcDb.mReads);
+        try {
+            first.getData().clear();
+            fail("Cached list must be unmodifiable");
+        } catch (UnsupportedOperationException ignored) {
+        }
+
+        mDb.addCityWithCurrentWeather(createWeather(1, 10, null));
+        QueryListResult<WeatherData> second = mDb.getCurrentWeatherData();
+        assertNotSame(first, second);
+        assertEquals(3, second.getData().size());
+        assertEquals(2, mJdbcDb.mReads);
+    }
+
+    @Test
+    public void doesNotShareCachedObjectsBetweenCallers() {
+        QueryListResult<WeatherData> first = mDb.getCurrentWeatherData();
+        first.getData().get(0).setTemp(-100.0);
+        first.getItemStatus(5601538).setError("CHANGED");
+        first.getDataStatus().setRefreshing(true);
+        try {
+            first.getItemStatuses().clear();
+            fail("Item statuses must be unmodifiable");
+        } catch (UnsupportedOperationException ignored) {
+        }
+
+        QueryListResult<WeatherData> second = mDb.getCurrentWeatherData();
+        assertEquals(1, mJdbcDb.mReads);
+        assertNull(second.getData().get(0).getTemp());
+        assertNull(second.getItemStatus(5601538).getError());
+        assertFalse(second.getDataStatus().isRefreshing());
+
+        mDb.addCityWithCurrentWeather(createWeather(1, 10, null));
+        mDb.updateWeatherForecast(1, Collections.singletonList(createWeather(1, 5, new Date(1000))));
+        mDb.getWeatherForecast(1).getData().get(0).setDate(new Date(2000));
+        assertEquals(new Date(1000), mDb.getWeatherForecast(1).getData().get(0).getDate());
+
+        // Список, читаемый окнами, у каждого вызывающего свой, с элементами из своих окон.
+        WeatherData windowed = mDb.getCurrentWeatherDataWindowed(2).getData().get(2);
+        windowed.setCityName("Changed");
+        assertNotSame(windowed, mDb.getCurrentWeatherDataWindowed(2).getData().get(2));
+        assertEquals("City 1", mDb.getCurrentWeatherDataWindowed(2).getData().get(2).getCityName());
+    }
+
+    @Test
+    public void doesNotCacheReadOverlappingWrite() {
+        mJdbcDb.mWriteDuringRead = new Runnable() {
+            @Override
+            public void run() {
+                mDb.updateCurrentWeatherErrors(Collections.singletonMap(5601538, "NETWORK"));
+            }
+        };
+        long generation = mDb.getGeneration();
+        assertNull(mDb.getCurrentWeatherData().getItemStatus(5601538).getError());
+        assertTrue(mDb.getGeneration() > generation);
+
+        // Результат чтения, начатого до записи, не попал в кэш.
+        assertEquals("NETWORK", mDb.getCurrentWeatherData().getItemStatus(5601538).getError());
+        assertEquals(2, mJdbcDb.mReads);
+    }
+
+    @Test
+    public void keepsRecentlyUsedForecastsAndInvalidatesUpdatedOnes() {
+        for (int id = 1; id <= 3; id++) {
+            mDb.addCityWithCurrentWeather(createWeather(id, 10, null));
+        }
+        mDb.getWeatherForecast(1);
+        mDb.getWeatherForecast(2);
+        mDb.getWeatherForecast(1);
+        // Прогноз города 2 вытесняется как давно не использованный.
+        mDb.getWeatherForecast(3);
+        mJdbcDb.mReads = 0;
+        mDb.getWeatherForecast(1);
+        mDb.getWeatherForecast(3);
+        assertEquals(0, mJdbcDb.mReads);
+        mDb.getWeatherForecast(2);
+        assertEquals(1, mJdbcDb.mReads);
+
+        mDb.updateWeatherForecast(1, Collections.singletonList(createWeather(1, 5, new Date(1000))));
+        assertEquals(1, mDb.getWeatherForecast(1).getData().size());
+        assertEquals(2, mJdbcDb.mReads);
+    }
+}
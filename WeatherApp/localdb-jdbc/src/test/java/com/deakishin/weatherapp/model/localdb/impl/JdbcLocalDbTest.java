@@ -0,0 +1,476 @@
+package com.deakishin.weatherapp.model.localdb.impl;
+
+import com.deakishin.weatherapp.model.entities.DataStatus;
+import com.deakishin.weatherapp.model.entities.WeatherData;
+import com.deakishin.weatherapp.model.localdb.ChangeSet;
+import com.deakishin.weatherapp.model.localdb.LocalDb;
+import com.deakishin.weatherapp.model.localdb.LocalDbOptions;
+import com.deakishin.weatherapp.model.localdb.QueryListResult;
+import com.deakishin.weatherapp.model.localdb.WindowedList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Тесты реализации локальной БД на sqlite-jdbc {@link JdbcLocalDb}.
+ */
+public class JdbcLocalDbTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private String mUrl;
+    private JdbcLocalDb mDb;
+
+    @Before
+    public void setUp() throws Exception {
+        mUrl = "jdbc:sqlite:" + mFolder.newFile("weather.db").getAbsolutePath();
+        mDb = new JdbcLocalDb(mUrl);
+    }
+
+    @After
+    public void tearDown() {
+        mDb.close();
+    }
+
+    // Возвращает данные о погоде для города id.
+    private static WeatherData createWeather(int id, double temp, Date date) {
+        WeatherData data = new WeatherData();
+        data.setId(id);
+        data.setCityName("City " + id);
+        data.setCountry("RU");
+        data.setTemp(temp);
+        data.setWeatherIconId("01d");
+        data.setDate(date);
+        return data;
+    }
+
+    @Test
+    public void createsDefaultCities() {
+        assertEquals(Arrays.asList(5601538, 498817), mDb.getCitiesIds());
+        assertNotNull(mDb.getCurrentWeatherDataStatus());
+        assertTrue(mDb.getFailedCitiesIds().isEmpty());
+    }
+
+    @Test
+    public void addsCityAndUpdatesCurrentWeather() {
+        mDb.addCityWithCurrentWeather(createWeather(1, 10, null));
+        mDb.addCityWithCurrentWeather(createWeather(1, 11, null));
+        assertEquals(3, mDb.getCitiesIds().size());
+
+        mDb.updateCurrentWeatherErrors(Collections.singletonMap(1, "NETWORK"));
+        assertEquals(Collections.singletonList(1), mDb.getFailedCitiesIds());
+
+        mDb.updateCurrentWeatherData(Collections.singletonList(createWeather(1, 12, null)));
+        QueryListResult<WeatherData> result = mDb.getCurrentWeatherData();
+        WeatherData city = null;
+        for (WeatherData data : result.getData()) {
+            if (data.getId() == 1) {
+                city = data;
+            }
+        }
+        assertNotNull(city);
+        assertEquals(12, city.getTemp(), 0);
+        assertNull(city.getPressure());
+        assertNull(result.getItemStatus(1).getError());
+        assertNotNull(result.getItemStatus(1).getLastUpdate());
+        assertTrue(mDb.getFailedCitiesIds().isEmpty());
+    }
+
+    @Test
+    public void replacesForecastAndReturnsItOrderedByDate() {
+        mDb.addCityWithCurrentWeather(createWeather(1, 10, null));
+        List<WeatherData> forecast = new ArrayList<>();
+        for (int i = 3; i > 0; i--) {
+            forecast.add(createWeather(1, i, new Date(i * 1000L)));
+        }
+        mDb.updateWeatherForecast(1, forecast);
+        mDb.updateWeatherForecast(1, forecast);
+
+        List<WeatherData> stored = mDb.getWeatherForecast(1).getData();
+        assertEquals(3, stored.size());
+        assertEquals(new Date(1000), stored.get(0).getDate());
+        assertEquals(new Date(3000), stored.get(2).getDate());
+        assertTrue(mDb.getWeatherForecast(2).getData().isEmpty());
+    }
+
+    @Test
+    public void storesCityNameOnceAndIconAsCode() {
+        mDb.addCityWithCurrentWeather(createWeather(1, 10, null));
+        WeatherData renamed = createWeather(1, 11, null);
+        renamed.setCityName("Renamed");
+        renamed.setWeatherIconId("10n");
+        mDb.updateCurrentWeatherData(Collections.singletonList(renamed));
+        mDb.updateWeatherForecast(1, Collections.singletonList(createWeather(1, 1, new Date(1000))));
+
+        WeatherData current = mDb.getCurrentWeatherData().getData().get(2);
+        assertEquals("Renamed", current.getCityName());
+        assertEquals("RU", current.getCountry());
+        assertEquals("10n", current.getWeatherIconId());
+
+        // Строки прогноза не хранят название города.
+        WeatherData forecast = mDb.getWeatherForecast(1).getData().get(0);
+        assertEquals(1, forecast.getId());
+        assertNull(forecast.getCityName());
+        assertEquals("01d", forecast.getWeatherIconId());
+    }
+
+    @Test
+    public void keepsOneForecastRowPerDate() {
+        mDb.addCityWithCurrentWeather(createWeather(1, 10, null));
+        mDb.updateWeatherForecast(1, Arrays.asList(createWeather(1, 1, new Date(1000)),
+                createWeather(1, 2, new Date(1000))));
+
+        List<WeatherData> stored = mDb.getWeatherForecast(1).getData();
+        assertEquals(1, stored.size());
+        assertEquals(2, stored.get(0).getTemp(), 0);
+    }
+
+    // Возвращает идентификаторы строк прогноза города по датам.
+    private Map<Long, Long> getForecastRowIds(int cityId) throws SQLException {
+        Map<Long, Long> ids = new HashMap<>();
+        Statement statement = mDb.getConnection().createStatement();
+        try {
+            ResultSet rs = statement.executeQuery("SELECT " + LocalDbContract.Weathers._ID + ", "
+                    + LocalDbContract.Weathers.COLUMN_NAME_DATE + " FROM " + LocalDbContract.Weathers.TABLE_NAME
+                    + " WHERE " + LocalDbContract.Weathers.COLUMN_NAME_IS_FORECAST + " = 1 AND "
+                    + LocalDbContract.Weathers.COLUMN_NAME_CITY_ID + " = " + cityId);
+            while (rs.next()) {
+                ids.put(rs.getLong(2), rs.getLong(1));
+            }
+        } finally {
+            statement.close();
+        }
+        return ids;
+    }
+
+    @Test
+    public void mergesForecastByDate() throws Exception {
+        mDb.addCityWithCurrentWeather(createWeather(1, 10, null));
+        mDb.updateWeatherForecast(1, Arrays.asList(createWeather(1, 1, new Date(1000)),
+                createWeather(1, 2, new Date(2000)), createWeather(1, 3, new Date(3000))));
+        Map<Long, Long> ids = getForecastRowIds(1);
+
+        final List<ChangeSet> forecasts = new ArrayList<>();
+        mDb.observeForecast(1, new LocalDb.Observer() {
+            @Override
+            public void onChange(ChangeSet changes) {
+                forecasts.add(changes);
+            }
+        });
+
+        // Тот же прогноз ничего не меняет.
+        mDb.updateWeatherForecast(1, Arrays.asList(createWeather(1, 1, new Date(1000)),
+                createWeather(1, 2, new Date(2000)), createWeather(1, 3, new Date(3000))));
+        assertTrue(forecasts.isEmpty());
+        assertEquals(ids, getForecastRowIds(1));
+
+        // Прошедшая строка удаляется, изменившаяся обновляется на месте, новая добавляется.
+        mDb.updateWeatherForecast(1, Arrays.asList(createWeather(1, 2, new Date(2000)),
+                createWeather(1, 30, new Date(3000)), createWeather(1, 4, new Date(4000))));
+        assertEquals(1, forecasts.size());
+        assertTrue(forecasts.get(0).isDataChanged());
+
+        Map<Long, Long> merged = getForecastRowIds(1);
+        assertEquals(new HashSet<>(Arrays.asList(2000L, 3000L, 4000L)), merged.keySet());
+        assertEquals(ids.get(2000L), merged.get(2000L));
+        assertEquals(ids.get(3000L), merged.get(3000L));
+        List<WeatherData> stored = mDb.getWeatherForecast(1).getData();
+        assertEquals(30, stored.get(1).getTemp(), 0);
+    }
+
+    // Возвращает количество строк, измененных через соединение записи с момента его открытия.
+    private long getTotalChanges() throws SQLException {
+        Statement statement = mDb.getConnection().createStatement();
+        try {
+            ResultSet rs = statement.executeQuery("SELECT total_changes()");
+            rs.next();
+            return rs.getLong(1);
+        } finally {
+            statement.close();
+        }
+    }
+
+    @Test
+    public void writesNothingForUnchangedForecast() throws Exception {
+        mDb.addCityWithCurrentWeather(createWeather(1, 10, null));
+        List<WeatherData> forecast = Arrays.asList(createWeather(1, 1, new Date(1000)),
+                createWeather(1, 2, new Date(2000)));
+        mDb.updateWeatherForecast(1, forecast);
+        final List<ChangeSet> forecasts = new ArrayList<>();
+        mDb.observeForecast(1, new LocalDb.Observer() {
+            @Override
+            public void onChange(ChangeSet changes) {
+                forecasts.add(changes);
+            }
+        });
+
+        long changes = getTotalChanges();
+        mDb.updateWeatherForecast(1, forecast);
+        assertEquals(changes, getTotalChanges());
+        assertTrue(forecasts.isEmpty());
+
+        // Изменившаяся строка обновляется одна.
+        mDb.updateWeatherForecast(1, Arrays.asList(createWeather(1, 1, new Date(1000)),
+                createWeather(1, 20, new Date(2000))));
+        assertEquals(changes + 1, getTotalChanges());
+        assertEquals(1, forecasts.size());
+    }
+
+    @Test
+    public void keepsDatedForecastForUndatedList() throws Exception {
+        mDb.addCityWithCurrentWeather(createWeather(1, 10, null));
+        mDb.updateWeatherForecast(1, Arrays.asList(createWeather(1, 1, new Date(1000)),
+                createWeather(1, 2, new Date(2000))));
+        Map<Long, Long> ids = getForecastRowIds(1);
+
+        mDb.updateWeatherForecast(1, Collections.singletonList(createWeather(1, 5, null)));
+        mDb.updateWeatherForecast(1, Collections.singletonList(createWeather(1, 6, null)));
+        Map<Long, Long> stored = getForecastRowIds(1);
+        assertEquals(ids.get(1000L), stored.get(1000L));
+        assertEquals(ids.get(2000L), stored.get(2000L));
+        // Строка без даты заменяет прежнюю строку без даты.
+        assertEquals(3, mDb.getWeatherForecast(1).getData().size());
+    }
+
+    @Test
+    public void updatesDataStatus() {
+        mDb.addCityWithCurrentWeather(createWeather(1, 10, null));
+        DataStatus status = new DataStatus(true);
+        status.setLastUpdate(new Date(5000));
+        mDb.updateForecastDataStatus(status, 1);
+
+        DataStatus stored = mDb.getWeatherForecastDataStatus(1);
+        assertTrue(stored.isRefreshing());
+        assertEquals(new Date(5000), stored.getLastUpdate());
+
+        status = new DataStatus(false);
+        status.setError("SERVER");
+        mDb.updateForecastDataStatus(status, 1);
+        stored = mDb.getWeatherForecastDataStatus(1);
+        assertFalse(stored.isRefreshing());
+        assertEquals("SERVER", stored.getError());
+        assertEquals(new Date(5000), stored.getLastUpdate());
+    }
+
+    @Test
+    public void publishesOnlyAffectedCitiesToObservers() {
+        final List<ChangeSet> current = new ArrayList<>();
+        final List<ChangeSet> forecasts = new ArrayList<>();
+        mDb.observeCurrentWeather(new LocalDb.Observer() {
+            @Override
+            public void onChange(ChangeSet changes) {
+                current.add(changes);
+            }
+        });
+        LocalDb.Observer forecastObserver = new LocalDb.Observer() {
+            @Override
+            public void onChange(ChangeSet changes) {
+                forecasts.add(changes);
+            }
+        };
+        mDb.observeForecast(1, forecastObserver);
+
+        mDb.addCityWithCurrentWeather(createWeather(1, 10, null));
+        mDb.addCityWithCurrentWeather(createWeather(1, 10, null));
+        assertEquals(1, current.size());
+        assertEquals(Collections.singleton(1), current.get(0).getCityIds());
+        assertTrue(current.get(0).isCitiesAdded());
+        assertEquals(10, current.get(0).getRows().get(0).getTemp(), 0);
+
+        mDb.updateCurrentWeatherErrors(Collections.singletonMap(498817, "NETWORK"));
+        assertEquals(Collections.singleton(498817), current.get(1).getCityIds());
+        assertFalse(current.get(1).isDataChanged());
+
+        // Время обновления не передано и остается прежним, наблюдатель получает статус из БД.
+        DataStatus status = new DataStatus(false);
+        status.setLastUpdate(new Date(5000));
+        mDb.updateCurrentWeatherDataStatus(status);
+        mDb.updateCurrentWeatherDataStatus(new DataStatus(true));
+        assertTrue(current.get(3).getDataStatus().isRefreshing());
+        assertEquals(new Date(5000), current.get(3).getDataStatus().getLastUpdate());
+
+        // Прогноз другого города не касается наблюдателя прогноза города 1.
+        mDb.updateWeatherForecast(2, Collections.singletonList(createWeather(2, 1, new Date(1000))));
+        mDb.updateWeatherForecast(1, Collections.singletonList(createWeather(1, 1, new Date(1000))));
+        assertEquals(2, forecasts.size());
+        assertNotNull(forecasts.get(0).getDataStatus());
+        assertTrue(forecasts.get(1).isDataChanged());
+        assertEquals(4, current.size());
+
+        mDb.removeObserver(forecastObserver);
+        mDb.updateWeatherForecast(1, Collections.<WeatherData>emptyList());
+        assertEquals(2, forecasts.size());
+    }
+
+    @Test
+    public void loadsCurrentWeatherWindowsOnDemand() {
+        for (int id = 1; id <= 10; id++) {
+            mDb.addCityWithCurrentWeather(createWeather(id, id, null));
+        }
+        List<WeatherData> all = mDb.getCurrentWeatherData().getData();
+
+        QueryListResult<WeatherData> result = mDb.getCurrentWeatherDataWindowed(4);
+        WindowedList<WeatherData> windowed = (WindowedList<WeatherData>) result.getData();
+        assertNotNull(result.getDataStatus());
+        assertEquals(all.size(), windowed.size());
+        assertEquals(0, windowed.getLoadCount());
+
+        for (int i = windowed.size() - 1; i >= 0; i--) {
+            assertEquals(all.get(i).getId(), windowed.get(i).getId());
+            assertEquals(all.get(i).getCityName(), windowed.get(i).getCityName());
+        }
+        // 12 строк - три окна, каждое загружено один раз.
+        assertEquals(3, windowed.getLoadCount());
+        windowed.get(0);
+        windowed.get(11);
+        assertEquals(3, windowed.getLoadCount());
+    }
+
+    @Test
+    public void loadsItemStatusesWithWindows() {
+        mDb.addCityWithCurrentWeather(createWeather(1, 10, null));
+        mDb.updateCurrentWeatherErrors(Collections.singletonMap(1, "NETWORK"));
+
+        QueryListResult<WeatherData> result = mDb.getCurrentWeatherDataWindowed(2);
+        assertNull(result.getItemStatus(1));
+        for (int i = 0; i < result.getData().size(); i++) {
+            result.getData().get(i);
+        }
+        assertEquals("NETWORK", result.getItemStatus(1).getError());
+        assertEquals(mDb.getCurrentWeatherData().getItemStatuses().keySet(), result.getItemStatuses().keySet());
+    }
+
+    @Test
+    public void loadsWindowsInBackground() {
+        for (int id = 1; id <= 10; id++) {
+            mDb.addCityWithCurrentWeather(createWeather(id, id, null));
+        }
+        List<WeatherData> all = mDb.getCurrentWeatherData().getData();
+        WindowedList<WeatherData> windowed =
+                (WindowedList<WeatherData>) mDb.getCurrentWeatherDataWindowed(4).getData();
+        final List<Runnable> tasks = new ArrayList<>();
+        final List<Integer> loaded = new ArrayList<>();
+        windowed.setAsyncLoading(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        }, new WindowedList.Listener() {
+            @Override
+            public void onWindowLoaded(int offset, int count) {
+                loaded.add(offset);
+            }
+        });
+
+        // Позиция в конце первого окна: загружаются первое окно и следующее за ним.
+        assertNull(windowed.get(3));
+        assertNull(windowed.get(2));
+        assertEquals(2, tasks.size());
+        assertEquals(0, windowed.getLoadCount());
+
+        for (Runnable task : tasks) {
+            task.run();
+        }
+        assertEquals(Arrays.asList(0, 4), loaded);
+        assertEquals(2, windowed.getLoadCount());
+        // Позиции в начале второго окна не требуют новых загрузок: соседнее окно - первое.
+        for (int i = 0; i < 6; i++) {
+            assertEquals(all.get(i).getId(), windowed.get(i).getId());
+        }
+        assertEquals(2, tasks.size());
+    }
+
+    @Test
+    public void updatesLoadedWindowsWithChangedRows() {
+        for (int id = 1; id <= 10; id++) {
+            mDb.addCityWithCurrentWeather(createWeather(id, id, null));
+        }
+        WindowedList<WeatherData> windowed =
+                (WindowedList<WeatherData>) mDb.getCurrentWeatherDataWindowed(4).getData();
+        windowed.get(0);
+
+        final List<ChangeSet> changes = new ArrayList<>();
+        mDb.observeCurrentWeather(new LocalDb.Observer() {
+            @Override
+            public void onChange(ChangeSet changeSet) {
+                changes.add(changeSet);
+            }
+        });
+        mDb.updateCurrentWeatherData(Arrays.asList(createWeather(1, 100, null), createWeather(10, 100, null)));
+        assertFalse(changes.get(0).isCitiesAdded());
+
+        final Map<Integer, WeatherData> rows = new HashMap<>();
+        for (WeatherData row : changes.get(0).getRows()) {
+            rows.put(row.getId(), row);
+        }
+        int updated = windowed.update(new WindowedList.Updater<WeatherData>() {
+            @Override
+            public WeatherData update(WeatherData item) {
+                return rows.get(item.getId());
+            }
+        });
+        // Заменена только строка в загруженном окне, само окно не загружалось заново.
+        assertEquals(1, updated);
+        assertEquals(1, windowed.getLoadCount());
+        for (int i = 0; i < windowed.size(); i++) {
+            WeatherData item = windowed.get(i);
+            if (item.getId() == 1 || item.getId() == 10) {
+                assertEquals(100, item.getTemp(), 0);
+            }
+        }
+    }
+
+    @Test
+    public void keepsDataWhenReopened() throws Exception {
+        mDb.addCityWithCurrentWeather(createWeather(1, 10, null));
+        mDb.close();
+        mDb = new JdbcLocalDb(mUrl);
+        assertEquals(3, mDb.getCitiesIds().size());
+    }
+
+    @Test
+    public void readsCommittedDataWhileWriteTransactionIsOpen() throws Exception {
+        mDb.close();
+        LocalDbOptions options = new LocalDbOptions();
+        options.setWriteAheadLogging(true);
+        options.setReaderConnections(2);
+        options.setSynchronous(LocalDbOptions.Synchronous.NORMAL);
+        mDb = new JdbcLocalDb(mUrl, options);
+
+        Connection writer = mDb.getConnection();
+        writer.setAutoCommit(false);
+        Statement statement = writer.createStatement();
+        try {
+            statement.executeUpdate("UPDATE " + LocalDbContract.Weathers.TABLE_NAME
+                    + " SET " + LocalDbContract.Weathers.COLUMN_NAME_ERROR + " = 'NETWORK'");
+            // Соединения для чтения не ждут транзакцию записи и не видят ее изменений.
+            assertEquals(2, mDb.getCurrentWeatherData().getData().size());
+            assertTrue(mDb.getFailedCitiesIds().isEmpty());
+            writer.commit();
+        } finally {
+            statement.close();
+            writer.setAutoCommit(true);
+        }
+        assertEquals(2, mDb.getFailedCitiesIds().size());
+    }
+}
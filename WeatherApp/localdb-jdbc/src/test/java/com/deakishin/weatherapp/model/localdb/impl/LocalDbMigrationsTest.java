@@ -0,0 +1,180 @@
+package com.deakishin.weatherapp.model.localdb.impl;
+
+import com.deakishin.weatherapp.model.entities.WeatherData;
+import com.deakishin.weatherapp.model.localdb.QueryListResult;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Тесты миграций схемы локальной БД {@link LocalDbMigrations}.
+ * БД каждой старой версии создается и заполняется SQL той версии и открывается через {@link JdbcLocalDb}.
+ */
+public class LocalDbMigrationsTest {
+
+    // Интервал между строками прогноза.
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    // Время заполнения БД.
+    private final long mNow = System.currentTimeMillis();
+
+    // Создает и заполняет БД версии version: три города, причем последний добавлен дважды,
+    // как это было возможно до версии 9, его прогноз из устаревшей и двух актуальных строк,
+    // статусы текущей погоды и прогнозов.
+    private String createDb(int version) throws Exception {
+        String url = "jdbc:sqlite:" + mFolder.newFile("weather-v" + version + ".db").getAbsolutePath();
+        Connection connection = DriverManager.getConnection(url);
+        Statement statement = connection.createStatement();
+        try {
+            // Схема версии 7.
+            statement.execute("CREATE TABLE weathers (_id INTEGER PRIMARY KEY, city_id INTEGER, city TEXT,"
+                    + " country TEXT, temp REAL, clouds REAL, humidity REAL, pressure REAL, wind REAL,"
+                    + " icon_id TEXT, forecast INTEGER, date INTEGER )");
+            statement.execute("CREATE TABLE meta (_id INTEGER PRIMARY KEY, data_id INTEGER, last_update INTEGER,"
+                    + " refreshing INTEGER )");
+            if (version >= 8) {
+                statement.execute("ALTER TABLE weathers ADD COLUMN last_update INTEGER");
+                statement.execute("ALTER TABLE weathers ADD COLUMN error TEXT");
+                statement.execute("ALTER TABLE meta ADD COLUMN error TEXT");
+            }
+
+            String currentDate = version >= 9 ? "0" : "NULL";
+            statement.execute("INSERT INTO weathers (city_id, city, country, temp, icon_id, forecast, date)"
+                    + " VALUES (5601538, 'Москва', 'RU', 1, '01d', 0, " + currentDate + ")");
+            statement.execute("INSERT INTO weathers (city_id, city, country, temp, icon_id, forecast, date)"
+                    + " VALUES (498817, 'Санкт-Петербург', 'RU', 2, '02n', 0, " + currentDate + ")");
+            statement.execute("INSERT INTO weathers (city_id, city, country, temp, icon_id, forecast, date)"
+                    + " VALUES (1, 'City 1', 'RU', 3, '10n', 0, " + currentDate + ")");
+            if (version < 9) {
+                statement.execute("INSERT INTO weathers (city_id, city, country, temp, icon_id, forecast, date)"
+                        + " VALUES (1, 'City 1', 'RU', 3, '10n', 0, NULL)");
+            }
+            long[] forecastDates = {mNow - 24 * HOUR_MS, mNow + 3 * HOUR_MS, mNow + 6 * HOUR_MS};
+            for (long date : forecastDates) {
+                statement.execute("INSERT INTO weathers (city_id, city, country, temp, icon_id, forecast, date)"
+                        + " VALUES (1, 'City 1', 'RU', 4, '04d', 1, " + date + ")");
+            }
+            if (version >= 8) {
+                statement.execute("UPDATE weathers SET last_update = 4000, error = 'NETWORK'"
+                        + " WHERE forecast = 0 AND city_id = 1");
+            }
+
+            statement.execute("INSERT INTO meta (data_id, last_update, refreshing) VALUES (-1, 1000, 0)");
+            statement.execute("INSERT INTO meta (data_id, last_update, refreshing) VALUES (1, 2000, 0)");
+            statement.execute("INSERT INTO meta (data_id, last_update, refreshing) VALUES (5601538, 3000, 0)");
+
+            if (version >= 9) {
+                statement.execute("CREATE UNIQUE INDEX weathers_forecast_city_date"
+                        + " ON weathers (forecast, city_id, date )");
+                statement.execute("CREATE UNIQUE INDEX meta_data_id ON meta (data_id )");
+            }
+            statement.execute("PRAGMA user_version = " + version);
+        } finally {
+            statement.close();
+            connection.close();
+        }
+        return url;
+    }
+
+    // Проверяет, что данные БД, заполненной createDb(version), пережили миграцию.
+    private void assertMigrated(int version) throws Exception {
+        String url = createDb(version);
+        JdbcLocalDb db = new JdbcLocalDb(url);
+        try {
+            assertEquals(Arrays.asList(5601538, 498817, 1), db.getCitiesIds());
+
+            QueryListResult<WeatherData> current = db.getCurrentWeatherData();
+            assertEquals(3, current.getData().size());
+            WeatherData city = current.getData().get(2);
+            assertEquals(1, city.getId());
+            assertEquals("City 1", city.getCityName());
+            assertEquals("RU", city.getCountry());
+            assertEquals(3, city.getTemp(), 0);
+            assertEquals("10n", city.getWeatherIconId());
+            assertEquals("Санкт-Петербург", current.getData().get(1).getCityName());
+            assertEquals("02n", current.getData().get(1).getWeatherIconId());
+            assertEquals(new Date(1000), current.getDataStatus().getLastUpdate());
+            if (version >= 8) {
+                assertEquals(Collections.singletonList(1), db.getFailedCitiesIds());
+                assertEquals(new Date(4000), current.getItemStatus(1).getLastUpdate());
+            }
+
+            // Устаревшая строка прогноза удалена, актуальные сохранены.
+            List<WeatherData> forecast = db.getWeatherForecast(1).getData();
+            assertEquals(2, forecast.size());
+            assertEquals(new Date(mNow + 3 * HOUR_MS), forecast.get(0).getDate());
+            assertEquals("04d", forecast.get(1).getWeatherIconId());
+            assertEquals(new Date(2000), db.getWeatherForecastDataStatus(1).getLastUpdate());
+            // Прогноз, от которого ничего не осталось, будет загружен заново.
+            assertNull(db.getWeatherForecastDataStatus(5601538).getLastUpdate());
+
+            // Индексы и таблица городов работают как в новой БД.
+            WeatherData added = new WeatherData();
+            added.setId(1);
+            added.setCityName("City 1");
+            db.addCityWithCurrentWeather(added);
+            assertEquals(3, db.getCitiesIds().size());
+            db.updateWeatherForecast(1, forecast);
+            assertEquals(2, db.getWeatherForecast(1).getData().size());
+        } finally {
+            db.close();
+        }
+
+        // Повторное открытие не меняет данные.
+        db = new JdbcLocalDb(url);
+        try {
+            assertEquals(3, db.getCitiesIds().size());
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    public void stepsReachCurrentVersion() {
+        assertEquals(LocalDbSchema.DATABASE_VERSION, LocalDbMigrations.getLatestVersion());
+    }
+
+    @Test
+    public void migratesFromVersion7() throws Exception {
+        assertMigrated(7);
+    }
+
+    @Test
+    public void migratesFromVersion8() throws Exception {
+        assertMigrated(8);
+    }
+
+    @Test
+    public void migratesFromVersion9() throws Exception {
+        assertMigrated(9);
+    }
+
+    @Test
+    public void recreatesUnknownVersions() throws Exception {
+        assertFalse(LocalDbMigrations.canMigrate(6, LocalDbSchema.DATABASE_VERSION));
+        assertFalse(LocalDbMigrations.canMigrate(LocalDbSchema.DATABASE_VERSION + 1, LocalDbSchema.DATABASE_VERSION));
+
+        // Версия новее текущей: схема неизвестна, БД создается заново с городами по умолчанию.
+        JdbcLocalDb db = new JdbcLocalDb(createDb(LocalDbSchema.DATABASE_VERSION + 1));
+        try {
+            assertEquals(Arrays.asList(5601538, 498817), db.getCitiesIds());
+            assertTrue(db.getWeatherForecast(1).getData().isEmpty());
+        } finally {
+            db.close();
+        }
+    }
+}
@@ -10,6 +10,9 @@ public class DataStatus {
     /* Происходит ли в данных момент обновление данных. */
     private boolean mRefreshing;
 
+    /* Ошибка последнего обновления или null, если обновление прошло успешно. */
+    private String mError;
+
     public DataStatus() {
     }
 
@@ -17,6 +20,17 @@ public class DataStatus {
         mRefreshing = refreshing;
     }
 
+    /**
+     * Создает копию статуса.
+     *
+     * @param other Копируемый статус.
+     */
+    public DataStatus(DataStatus other) {
+        mLastUpdate = other.mLastUpdate == null ? null : new Date(other.mLastUpdate.getTime());
+        mRefreshing = other.mRefreshing;
+        mError = other.mError;
+    }
+
     public Date getLastUpdate() {
         return mLastUpdate;
     }
@@ -33,11 +47,20 @@ public class DataStatus {
         mRefreshing = refreshing;
     }
 
+    public String getError() {
+        return mError;
+    }
+
+    public void setError(String error) {
+        mError = error;
+    }
+
     @Override
     public String toString() {
         return "DataStatus{" +
                 "mLastUpdate=" + (mLastUpdate == null ? "null" : mLastUpdate) +
                 ", mRefreshing=" + mRefreshing +
+                ", mError=" + mError +
                 '}';
     }
 }
@@ -30,6 +30,27 @@ public class WeatherData {
     // Дата погоды.
     private Date mDate;
 
+    public WeatherData() {
+    }
+
+    /**
+     * Создает копию данных о погоде.
+     *
+     * @param other Копируемые данные.
+     */
+    public WeatherData(WeatherData other) {
+        mId = other.mId;
+        mCityName = other.mCityName;
+        mCountry = other.mCountry;
+        mTemp = other.mTemp;
+        mWind = other.mWind;
+        mClouds = other.mClouds;
+        mHumidity = other.mHumidity;
+        mPressure = other.mPressure;
+        mWeatherIconId = other.mWeatherIconId;
+        mDate = other.mDate == null ? null : new Date(other.mDate.getTime());
+    }
+
     public int getId() {
         return mId;
     }
@@ -0,0 +1,108 @@
+package com.deakishin.weatherapp.model.localdb;
+
+import com.deakishin.weatherapp.model.entities.DataStatus;
+import com.deakishin.weatherapp.model.entities.WeatherData;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Изменение данных в локальной БД, о котором сообщается наблюдателям {@link LocalDb.Observer}.
+ * Содержит только затронутые записью города и, если они известны без запроса к БД, их новые строки.
+ * Объект неизменяемый.
+ */
+public class ChangeSet {
+    // Изменение прогноза, иначе - текущей погоды.
+    private final boolean mForecast;
+    // Идентификаторы городов, данные или статусы которых изменились.
+    private final Set<Integer> mCityIds;
+    // Изменились ли строки погоды городов.
+    private final boolean mDataChanged;
+    // Добавлены ли новые города.
+    private final boolean mCitiesAdded;
+    // Новые строки текущей погоды городов или null.
+    private final List<WeatherData> mRows;
+    // Новый статус данных или null, если статус не изменился.
+    private final DataStatus mDataStatus;
+
+    /**
+     * @param forecast    Изменение прогноза, иначе - текущей погоды.
+     * @param cityIds     Идентификаторы городов, данные или статусы которых изменились.
+     * @param dataChanged Изменились ли строки погоды городов.
+     * @param citiesAdded Добавлены ли новые города.
+     * @param rows        Новые строки текущей погоды городов или null, если строки не изменились или не известны.
+     * @param dataStatus  Новый статус данных или null, если статус не изменился.
+     */
+    public ChangeSet(boolean forecast, Set<Integer> cityIds, boolean dataChanged, boolean citiesAdded,
+                     List<WeatherData> rows, DataStatus dataStatus) {
+        mForecast = forecast;
+        mCityIds = Collections.unmodifiableSet(cityIds);
+        mDataChanged = dataChanged;
+        mCitiesAdded = citiesAdded;
+        mRows = rows == null ? null : Collections.unmodifiableList(rows);
+        mDataStatus = dataStatus;
+    }
+
+    /**
+     * @return true, если изменился прогноз, false - если текущая погода.
+     */
+    public boolean isForecast() {
+        return mForecast;
+    }
+
+    /**
+     * @return Идентификаторы городов, данные или статусы которых изменились.
+     * Для прогноза - один город.
+     */
+    public Set<Integer> getCityIds() {
+        return mCityIds;
+    }
+
+    /**
+     * @return true, если изменились строки погоды городов из {@link #getCityIds()}.
+     * Иначе изменились только статусы: ошибки обновления городов или статус данных.
+     */
+    public boolean isDataChanged() {
+        return mDataChanged;
+    }
+
+    /**
+     * @return true, если добавлены новые города текущей погоды, так что количество строк изменилось.
+     * Иначе изменились только строки существующих городов.
+     */
+    public boolean isCitiesAdded() {
+        return mCitiesAdded;
+    }
+
+    /**
+     * Строки текущей погоды передаются в том виде, в котором были записаны, и заменяют строки
+     * с теми же идентификаторами городов. Строки новых городов добавляются в конец списка.
+     * Прогноз передается без строк, так как при записи БД объединяет его с записанными строками
+     * по дате и упорядочивает их. Его нужно прочитать заново, если {@link #isDataChanged()}.
+     *
+     * @return Новые строки текущей погоды или null, если строки не изменились или не известны.
+     */
+    public List<WeatherData> getRows() {
+        return mRows;
+    }
+
+    /**
+     * @return Новый статус данных, как он записан в БД, или null, если статус не изменился.
+     */
+    public DataStatus getDataStatus() {
+        return mDataStatus;
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeSet{" +
+                "mForecast=" + mForecast +
+                ", mCityIds=" + mCityIds +
+                ", mDataChanged=" + mDataChanged +
+                ", mCitiesAdded=" + mCitiesAdded +
+                ", mRows=" + (mRows == null ? null : mRows.size()) +
+                ", mDataStatus=" + mDataStatus +
+                '}';
+    }
+}
@@ -0,0 +1,139 @@
+package com.deakishin.weatherapp.model.localdb;
+
+import com.deakishin.weatherapp.model.entities.DataStatus;
+import com.deakishin.weatherapp.model.entities.WeatherData;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Интерфейс для работы с локальной базой данных.
+ */
+public interface LocalDb {
+    /**
+     * Идентификатор для наблюдения за прогнозами всех городов в {@link #observeForecast(int, Observer)}.
+     */
+    int ALL_CITIES = -1;
+
+    /**
+     * Наблюдатель изменений данных в БД.
+     */
+    interface Observer {
+        /**
+         * Вызывается после фиксации каждой записи в потоке, который ее выполнил.
+         * Наблюдатели экранов должны сами передать изменения в поток UI.
+         *
+         * @param changes Изменение данных.
+         */
+        void onChange(ChangeSet changes);
+    }
+
+    /**
+     * @return Данные о текущей погоде для каждого города в БД
+     * вместе со статусами обновления каждого города.
+     */
+    QueryListResult<WeatherData> getCurrentWeatherData();
+
+    /**
+     * Возвращает данные о текущей погоде в том же порядке, что и {@link #getCurrentWeatherData()},
+     * но строки читаются из БД окнами ({@link WindowedList}) только при обращении к ним.
+     * Статусы отдельных городов загружаются вместе с окнами строк.
+     *
+     * @param windowSize Количество строк в окне.
+     * @return Данные о текущей погоде и статус данных.
+     */
+    QueryListResult<WeatherData> getCurrentWeatherDataWindowed(int windowSize);
+
+    /**
+     * @return Идентификаторы городов в базе.
+     */
+    List<Integer> getCitiesIds();
+
+    /**
+     * Обновляет данные по текущей погоде.
+     * Для обновленных городов сбрасывается ошибка обновления и запоминается время обновления.
+     *
+     * @param dataList Список объектов  с данными о текущей погоде.
+     */
+    void updateCurrentWeatherData(List<WeatherData> dataList);
+
+    /**
+     * Запоминает ошибки обновления текущей погоды для городов.
+     *
+     * @param errors Ошибки по идентификаторам городов.
+     */
+    void updateCurrentWeatherErrors(Map<Integer, String> errors);
+
+    /**
+     * @return Идентификаторы городов, последнее обновление текущей погоды которых завершилось ошибкой.
+     */
+    List<Integer> getFailedCitiesIds();
+
+    /**
+     * @return Статус данных о текущей погоде.
+     */
+    DataStatus getCurrentWeatherDataStatus();
+
+    /**
+     * Обновляет статус данных по текущей погоде.
+     *
+     * @param status Статус данных.
+     */
+    void updateCurrentWeatherDataStatus(DataStatus status);
+
+    /**
+     * Обновляет прогноз погоды для города.
+     * Записанный прогноз объединяется с новым по дате: прошедшие строки стираются, изменившиеся
+     * обновляются, новые добавляются. Если прогноз не изменился, наблюдатели не уведомляются.
+     *
+     * @param cityId   Идентификатор города.
+     * @param dataList Список объектов, содержащих данные о погоде.
+     */
+    void updateWeatherForecast(int cityId, List<WeatherData> dataList);
+
+    /**
+     * @param cityId Идентификатор города.
+     * @return Данные о прогнозе погоде для конкретного города в БД.
+     */
+    QueryListResult<WeatherData> getWeatherForecast(int cityId);
+
+    /**
+     * @param cityId Идентификатор города.
+     * @return Статус данных о прогнозе погоде для конкретного города.
+     */
+    DataStatus getWeatherForecastDataStatus(int cityId);
+
+    /**
+     * Обновляет статус данных по прогнозу погоды для конкретного города.
+     *
+     * @param status Статус данных.
+     * @param cityId Идентификатор города.
+     */
+    void updateForecastDataStatus(DataStatus status, int cityId);
+
+    /** Добавляет город с его текущей погодой. */
+    void addCityWithCurrentWeather(WeatherData data);
+
+    /**
+     * Подписывает наблюдателя на изменения текущей погоды: строк и ошибок обновления городов,
+     * статуса данных, добавление городов.
+     *
+     * @param observer Наблюдатель.
+     */
+    void observeCurrentWeather(Observer observer);
+
+    /**
+     * Подписывает наблюдателя на изменения прогноза города: строк и статуса данных.
+     *
+     * @param cityId   Идентификатор города или {@link #ALL_CITIES}.
+     * @param observer Наблюдатель.
+     */
+    void observeForecast(int cityId, Observer observer);
+
+    /**
+     * Отписывает наблюдателя от всех изменений.
+     *
+     * @param observer Наблюдатель.
+     */
+    void removeObserver(Observer observer);
+}
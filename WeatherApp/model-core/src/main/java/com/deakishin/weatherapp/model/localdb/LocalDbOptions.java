@@ -0,0 +1,200 @@
+package com.deakishin.weatherapp.model.localdb;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Параметры открытия локальной базы данных.
+ * По умолчанию БД открывается в режиме журнала отката с одним соединением,
+ * каждая запись выполняется в своей транзакции, а значения PRAGMA остаются значениями SQLite по умолчанию.
+ */
+public class LocalDbOptions {
+
+    /**
+     * Значения PRAGMA synchronous.
+     */
+    public static class Synchronous {
+        /**
+         * Без синхронизации с диском. Самая быстрая запись, но при сбое питания БД может быть повреждена.
+         */
+        public static final String OFF = "OFF";
+        /**
+         * Синхронизация только в критические моменты. В режиме WAL не повреждает БД,
+         * но последние транзакции могут быть потеряны при сбое питания.
+         */
+        public static final String NORMAL = "NORMAL";
+        /**
+         * Синхронизация при каждой фиксации транзакции.
+         */
+        public static final String FULL = "FULL";
+    }
+
+    // Открывать ли БД в режиме журнала упреждающей записи (WAL).
+    private boolean mWriteAheadLogging;
+    // Количество соединений только для чтения. 0 - чтение через соединение записи.
+    private int mReaderConnections;
+    // Значение PRAGMA synchronous или null, если не задано.
+    private String mSynchronous;
+    // Объем отображаемой в память части файла БД в байтах. Меньше нуля, если не задан.
+    private long mMmapSizeBytes = -1;
+    // Размер кэша страниц каждого соединения в КБ. 0, если не задан.
+    private int mCacheSizeKb;
+    // Максимальное количество записей, объединяемых в одну транзакцию.
+    private int mMaxWritesPerTransaction = 1;
+    // Время в мс, в течение которого к транзакции добавляются поступающие записи.
+    private long mGroupCommitWindowMs;
+
+    /**
+     * @return true, если БД открывается в режиме журнала упреждающей записи (WAL).
+     */
+    public boolean isWriteAheadLogging() {
+        return mWriteAheadLogging;
+    }
+
+    /**
+     * В режиме WAL чтение не ждет завершения транзакции записи и видит данные
+     * последней зафиксированной транзакции.
+     *
+     * @param writeAheadLogging Открывать ли БД в режиме журнала упреждающей записи.
+     */
+    public void setWriteAheadLogging(boolean writeAheadLogging) {
+        mWriteAheadLogging = writeAheadLogging;
+    }
+
+    /**
+     * @return Количество соединений только для чтения.
+     */
+    public int getReaderConnections() {
+        return mReaderConnections;
+    }
+
+    /**
+     * Задает размер пула соединений для чтения в режиме WAL. Если 0 или WAL выключен, то чтение
+     * выполняется через соединение записи и ждет завершения транзакций записи.
+     * На Android размер пула определяется системой и включается вместе с WAL,
+     * поэтому значение используется только реализацией на JDBC.
+     *
+     * @param readerConnections Количество соединений только для чтения.
+     */
+    public void setReaderConnections(int readerConnections) {
+        mReaderConnections = Math.max(0, readerConnections);
+    }
+
+    /**
+     * @return Значение PRAGMA synchronous или null, если не задано.
+     */
+    public String getSynchronous() {
+        return mSynchronous;
+    }
+
+    /**
+     * @param synchronous Значение PRAGMA synchronous из {@link Synchronous} или null для значения по умолчанию.
+     */
+    public void setSynchronous(String synchronous) {
+        mSynchronous = synchronous;
+    }
+
+    /**
+     * @return Объем отображаемой в память части файла БД в байтах или -1, если не задан.
+     */
+    public long getMmapSizeBytes() {
+        return mMmapSizeBytes;
+    }
+
+    /**
+     * Задает PRAGMA mmap_size. SQLite до версии 3.7.17 игнорирует это значение.
+     * PRAGMA действует на каждое соединение отдельно, поэтому значение используется только
+     * реализацией на JDBC: на Android соединения для чтения открывает система.
+     *
+     * @param mmapSizeBytes Объем в байтах. 0 отключает отображение в память, меньше нуля - значение по умолчанию.
+     */
+    public void setMmapSizeBytes(long mmapSizeBytes) {
+        mMmapSizeBytes = mmapSizeBytes;
+    }
+
+    /**
+     * @return Размер кэша страниц каждого соединения в КБ или 0, если не задан.
+     */
+    public int getCacheSizeKb() {
+        return mCacheSizeKb;
+    }
+
+    /**
+     * Задает PRAGMA cache_size. Как и mmap_size, используется только реализацией на JDBC.
+     *
+     * @param cacheSizeKb Размер кэша страниц каждого соединения в КБ. 0 - значение по умолчанию.
+     */
+    public void setCacheSizeKb(int cacheSizeKb) {
+        mCacheSizeKb = Math.max(0, cacheSizeKb);
+    }
+
+    /**
+     * @return Максимальное количество записей, объединяемых в одну транзакцию.
+     */
+    public int getMaxWritesPerTransaction() {
+        return mMaxWritesPerTransaction;
+    }
+
+    /**
+     * Записи выполняются по очереди в отдельном потоке. Если запись поступила, пока выполнялась предыдущая,
+     * то она фиксируется в одной транзакции с другими ожидающими записями (group commit): так меньше
+     * фиксаций, синхронизаций с диском и ожиданий блокировки при одновременной записи из нескольких потоков.
+     *
+     * @param maxWritesPerTransaction Максимальное количество записей в транзакции. 1 - каждая запись
+     *                                в своей транзакции.
+     */
+    public void setMaxWritesPerTransaction(int maxWritesPerTransaction) {
+        mMaxWritesPerTransaction = Math.max(1, maxWritesPerTransaction);
+    }
+
+    /**
+     * @return Время в мс, в течение которого к транзакции добавляются поступающие записи.
+     */
+    public long getGroupCommitWindowMs() {
+        return mGroupCommitWindowMs;
+    }
+
+    /**
+     * Задает, сколько поток записи ждет следующих записей после первой, прежде чем начать транзакцию.
+     * Каждая запись ждет фиксации не больше этого времени дополнительно. Используется,
+     * только если {@link #getMaxWritesPerTransaction()} больше 1.
+     *
+     * @param groupCommitWindowMs Время в мс. 0 - объединяются только уже ожидающие записи.
+     */
+    public void setGroupCommitWindowMs(long groupCommitWindowMs) {
+        mGroupCommitWindowMs = Math.max(0, groupCommitWindowMs);
+    }
+
+    /**
+     * @return Запросы PRAGMA, которые нужно выполнить на каждом соединении после открытия БД.
+     * Режим журнала в них не входит, так как он включается по-разному на Android и JDBC.
+     * Используются реализацией на JDBC; на Android применяется только synchronous.
+     */
+    public List<String> getPragmas() {
+        List<String> pragmas = new ArrayList<>();
+        if (mSynchronous != null) {
+            pragmas.add("PRAGMA synchronous = " + mSynchronous);
+        }
+        if (mMmapSizeBytes >= 0) {
+            pragmas.add("PRAGMA mmap_size = " + mMmapSizeBytes);
+        }
+        if (mCacheSizeKb > 0) {
+            // Отрицательное значение cache_size задает размер в КБ, а не в страницах.
+            pragmas.add("PRAGMA cache_size = -" + mCacheSizeKb);
+        }
+        return pragmas;
+    }
+
+    @Override
+    public String toString() {
+        return "LocalDbOptions{" +
+                "mWriteAheadLogging=" + mWriteAheadLogging +
+                ", mReaderConnections=" + mReaderConnections +
+                ", mSynchronous='" + mSynchronous + '\'' +
+                ", mMmapSizeBytes=" + mMmapSizeBytes +
+                ", mCacheSizeKb=" + mCacheSizeKb +
+                ", mMaxWritesPerTransaction=" + mMaxWritesPerTransaction +
+                ", mGroupCommitWindowMs=" + mGroupCommitWindowMs +
+                '}';
+    }
+}
@@ -0,0 +1,67 @@
+package com.deakishin.weatherapp.model.localdb;
+
+import com.deakishin.weatherapp.model.entities.DataStatus;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Результат запроса к БД. Содержит список элементов из базы, а также статус этих данных.
+ * Может также содержать статусы отдельных элементов по их идентификаторам. Статусы элементов списка,
+ * загружаемого окнами, загружаются вместе с окнами.
+ */
+public class QueryListResult<T> {
+    private List<T> mData;
+    private DataStatus mDataStatus;
+    private Map<Integer, DataStatus> mItemStatuses;
+
+    public QueryListResult() {
+    }
+
+    public QueryListResult(List<T> data, DataStatus dataStatus) {
+        mData = data;
+        mDataStatus = dataStatus;
+    }
+
+    public List<T> getData() {
+        return mData;
+    }
+
+    public void setData(List<T> data) {
+        mData = data;
+    }
+
+    public DataStatus getDataStatus() {
+        return mDataStatus;
+    }
+
+    public void setDataStatus(DataStatus dataStatus) {
+        mDataStatus = dataStatus;
+    }
+
+    /**
+     * @return Статусы элементов по их идентификаторам или null, если статусов нет. Для списка,
+     * загружаемого окнами ({@link WindowedList}), - статусы элементов загруженных окон.
+     */
+    public Map<Integer, DataStatus> getItemStatuses() {
+        if (mItemStatuses == null && mData instanceof WindowedList) {
+            return ((WindowedList<T>) mData).getItemStatuses();
+        }
+        return mItemStatuses;
+    }
+
+    public void setItemStatuses(Map<Integer, DataStatus> itemStatuses) {
+        mItemStatuses = itemStatuses;
+    }
+
+    /**
+     * @param id Идентификатор элемента.
+     * @return Статус элемента или null, если статус неизвестен.
+     */
+    public DataStatus getItemStatus(int id) {
+        if (mItemStatuses == null && mData instanceof WindowedList) {
+            return ((WindowedList<T>) mData).getItemStatus(id);
+        }
+        return mItemStatuses == null ? null : mItemStatuses.get(id);
+    }
+}
@@ -0,0 +1,23 @@
+package com.deakishin.weatherapp.model.localdb;
+
+/**
+ * Текущая строка результата запроса к БД. Абстрагирует курсор Android
+ * и другие источники строк от преобразования строк в объекты.
+ */
+public interface Row {
+    /**
+     * @param columnName Название столбца.
+     * @return Индекс столбца или -1, если такого столбца нет.
+     */
+    int getColumnIndex(String columnName);
+
+    boolean isNull(int index);
+
+    int getInt(int index);
+
+    long getLong(int index);
+
+    double getDouble(int index);
+
+    String getString(int index);
+}
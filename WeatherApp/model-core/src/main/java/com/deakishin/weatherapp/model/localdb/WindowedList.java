@@ -0,0 +1,307 @@
+package com.deakishin.weatherapp.model.localdb;
+
+import com.deakishin.weatherapp.model.entities.DataStatus;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Неизменяемый список, элементы которого загружаются из БД окнами фиксированного размера
+ * при первом обращении к позиции. В памяти хранится не больше {@link #MAX_LOADED_WINDOWS} последних
+ * использованных окон, так что занимаемая память не зависит от размера списка.
+ * Вместе с элементами окна загружаются их статусы ({@link #getItemStatus(int)}).
+ * По умолчанию окно загружается в потоке, который обратился к позиции. После
+ * {@link #setAsyncLoading(Executor, Listener)} окна загружаются в фоне, а до их загрузки
+ * на позициях возвращается null.
+ * Размер списка задается при создании. Окна, загруженные позже, отражают данные на момент загрузки,
+ * поэтому при изменении количества строк список нужно получить заново, а изменения строк можно
+ * применить к уже загруженным окнам через {@link #update(Updater)}.
+ * Класс потокобезопасный.
+ */
+public class WindowedList<T> extends AbstractList<T> implements RandomAccess {
+
+    /**
+     * Окно элементов.
+     */
+    public static class Window<T> {
+        private final List<T> mItems;
+        private final Map<Integer, DataStatus> mItemStatuses;
+
+        /**
+         * @param items        Элементы окна.
+         * @param itemStatuses Статусы элементов окна по их идентификаторам или null, если статусов нет.
+         */
+        public Window(List<T> items, Map<Integer, DataStatus> itemStatuses) {
+            mItems = items;
+            mItemStatuses = itemStatuses;
+        }
+    }
+
+    /**
+     * Загрузчик окна элементов.
+     */
+    public interface Loader<T> {
+        /**
+         * @param offset Позиция первого элемента окна.
+         * @param count  Количество элементов в окне.
+         * @return Окно элементов.
+         */
+        Window<T> load(int offset, int count);
+    }
+
+    /**
+     * Обновление элементов загруженных окон.
+     */
+    public interface Updater<T> {
+        /**
+         * @param item Элемент загруженного окна.
+         * @return Новый элемент вместо item или null, если элемент не изменился.
+         */
+        T update(T item);
+    }
+
+    /**
+     * Слушатель фоновой загрузки окон.
+     */
+    public interface Listener {
+        /**
+         * Вызывается в потоке загрузки, когда окно загружено и его элементы можно получить.
+         *
+         * @param offset Позиция первого элемента окна.
+         * @param count  Количество элементов в окне.
+         */
+        void onWindowLoaded(int offset, int count);
+    }
+
+    /**
+     * Максимальное количество окон в памяти.
+     */
+    public static final int MAX_LOADED_WINDOWS = 3;
+
+    // Размер списка.
+    private final int mSize;
+    // Количество элементов в окне.
+    private final int mWindowSize;
+    // Загрузчик окон.
+    private final Loader<T> mLoader;
+    // Загруженные окна по номерам в порядке последнего использования.
+    private final Map<Integer, Window<T>> mWindows = new LinkedHashMap<Integer, Window<T>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Window<T>> eldest) {
+            return size() > MAX_LOADED_WINDOWS;
+        }
+    };
+    // Номера окон, загружаемых в фоне.
+    private final Set<Integer> mPendingWindows = new HashSet<>();
+    // Исполнитель фоновой загрузки окон или null, если окна загружаются при обращении.
+    private Executor mExecutor;
+    // Слушатель фоновой загрузки окон.
+    private Listener mListener;
+    // Количество обновлений элементов. Окно, при загрузке которого элементы обновились,
+    // могло быть прочитано до изменения и загружается заново.
+    private int mUpdateCount;
+    // Количество загрузок окон.
+    private int mLoadCount;
+
+    /**
+     * @param size       Размер списка.
+     * @param windowSize Количество элементов в окне.
+     * @param loader     Загрузчик окон.
+     */
+    public WindowedList(int size, int windowSize, Loader<T> loader) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Window size must be positive: " + windowSize);
+        }
+        mSize = size;
+        mWindowSize = windowSize;
+        mLoader = loader;
+    }
+
+    /**
+     * Включает фоновую загрузку окон: при обращении к позиции незагруженного окна возвращается null,
+     * а окно загружается исполнителем executor. Заранее загружается также соседнее окно,
+     * ближайшее к позиции, чтобы при прокрутке его элементы уже были в памяти.
+     *
+     * @param executor Исполнитель загрузки окон.
+     * @param listener Слушатель загрузки окон, вызывается в потоке загрузки.
+     */
+    public synchronized void setAsyncLoading(Executor executor, Listener listener) {
+        mExecutor = executor;
+        mListener = listener;
+    }
+
+    /**
+     * @return Элемент на позиции index или null, если включена фоновая загрузка,
+     * а окно с этой позицией еще не загружено.
+     */
+    @Override
+    public synchronized T get(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + mSize);
+        }
+        int window = index / mWindowSize;
+        int offset = window * mWindowSize;
+        if (mExecutor != null) {
+            // Соседнее окно с той стороны, к которой ближе позиция.
+            int neighbour = index - offset < mWindowSize / 2 ? window - 1 : window + 1;
+            Window<T> loaded = mWindows.get(window);
+            if (loaded == null) {
+                loadAsync(window);
+            }
+            if (neighbour >= 0 && neighbour * mWindowSize < mSize && !mWindows.containsKey(neighbour)) {
+                loadAsync(neighbour);
+            }
+            return loaded == null ? null : loaded.mItems.get(index - offset);
+        }
+
+        Window<T> loaded = mWindows.get(window);
+        if (loaded == null) {
+            loaded = mLoader.load(offset, getWindowCount(window));
+            mWindows.put(window, loaded);
+            mLoadCount++;
+        }
+        return loaded.mItems.get(index - offset);
+    }
+
+    // Возвращает количество элементов в окне с номером window.
+    private int getWindowCount(int window) {
+        return Math.min(mWindowSize, mSize - window * mWindowSize);
+    }
+
+    // Запускает фоновую загрузку окна с номером window, если она еще не запущена.
+    // Вызывается под блокировкой списка.
+    private void loadAsync(final int window) {
+        if (!mPendingWindows.add(window)) {
+            return;
+        }
+        final int offset = window * mWindowSize;
+        final int count = getWindowCount(window);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Listener listener = null;
+                try {
+                    while (true) {
+                        int updateCount;
+                        synchronized (WindowedList.this) {
+                            updateCount = mUpdateCount;
+                        }
+                        // Окно читается из БД без блокировки списка, так что get() не ждет загрузку.
+                        Window<T> loaded = mLoader.load(offset, count);
+                        synchronized (WindowedList.this) {
+                            if (updateCount != mUpdateCount) {
+                                // Окно могло быть прочитано до изменений, примененных к загруженным окнам.
+                                continue;
+                            }
+                            mWindows.put(window, loaded);
+                            mLoadCount++;
+                            listener = mListener;
+                        }
+                        break;
+                    }
+                } finally {
+                    // Если загрузка не удалась, то окно будет загружено заново при следующем обращении.
+                    synchronized (WindowedList.this) {
+                        mPendingWindows.remove(window);
+                    }
+                }
+                if (listener != null) {
+                    listener.onWindowLoaded(offset, count);
+                }
+            }
+        });
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @param id Идентификатор элемента.
+     * @return Статус элемента из загруженного окна или null, если окно не загружено или статус неизвестен.
+     */
+    public synchronized DataStatus getItemStatus(int id) {
+        for (Window<T> window : mWindows.values()) {
+            if (window.mItemStatuses != null && window.mItemStatuses.containsKey(id)) {
+                return window.mItemStatuses.get(id);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return Статусы элементов загруженных окон по идентификаторам элементов.
+     */
+    public synchronized Map<Integer, DataStatus> getItemStatuses() {
+        Map<Integer, DataStatus> itemStatuses = new HashMap<>();
+        for (Window<T> window : mWindows.values()) {
+            if (window.mItemStatuses != null) {
+                itemStatuses.putAll(window.mItemStatuses);
+            }
+        }
+        return itemStatuses;
+    }
+
+    /**
+     * Заменяет элементы загруженных окон без их повторной загрузки. Окна, которые еще не загружены
+     * или загружаются в фоне, будут прочитаны уже с изменениями. Размер списка и статусы элементов
+     * не меняются.
+     *
+     * @param updater Обновление элементов.
+     * @return Количество замененных элементов.
+     */
+    public synchronized int update(Updater<T> updater) {
+        mUpdateCount++;
+        int count = 0;
+        for (Map.Entry<Integer, Window<T>> entry : mWindows.entrySet()) {
+            Window<T> window = entry.getValue();
+            List<T> items = window.mItems;
+            for (int i = 0; i < items.size(); i++) {
+                T item = updater.update(items.get(i));
+                if (item != null) {
+                    if (items == window.mItems) {
+                        // Загрузчик мог вернуть неизменяемый список, поэтому окно заменяется копией.
+                        items = new ArrayList<>(items);
+                    }
+                    items.set(i, item);
+                    count++;
+                }
+            }
+            if (items != window.mItems) {
+                entry.setValue(new Window<>(items, window.mItemStatuses));
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return Новый список того же размера с тем же загрузчиком. Окна нового списка загружаются заново,
+     * так что его элементы не общие с этим списком. Фоновая загрузка в новом списке не включена.
+     */
+    public WindowedList<T> copy() {
+        return new WindowedList<>(mSize, mWindowSize, mLoader);
+    }
+
+    /**
+     * @return Количество элементов в окне.
+     */
+    public int getWindowSize() {
+        return mWindowSize;
+    }
+
+    /**
+     * @return Количество загрузок окон с момента создания списка.
+     */
+    public synchronized int getLoadCount() {
+        return mLoadCount;
+    }
+}
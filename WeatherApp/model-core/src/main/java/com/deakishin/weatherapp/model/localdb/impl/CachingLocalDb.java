@@ -0,0 +1,274 @@
+package com.deakishin.weatherapp.model.localdb.impl;
+
+import com.deakishin.weatherapp.model.entities.DataStatus;
+import com.deakishin.weatherapp.model.entities.WeatherData;
+import com.deakishin.weatherapp.model.localdb.ChangeSet;
+import com.deakishin.weatherapp.model.localdb.LocalDb;
+import com.deakishin.weatherapp.model.localdb.QueryListResult;
+import com.deakishin.weatherapp.model.localdb.WindowedList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Локальная БД с кэшем в памяти поверх другой реализации.
+ * Кэшируются результаты чтения текущей погоды (полной и окнами) и прогнозов последних использованных городов,
+ * так что повторное открытие экрана не выполняет запросов.
+ * Запись всегда выполняется в БД. Затронутые записи кэша удаляются по уведомлениям БД
+ * ({@link LocalDb.Observer}) раньше, чем о записи узнают наблюдатели, подписанные через этот объект.
+ * Каждая запись увеличивает поколение данных, и результат чтения, начатого до записи, не попадает в кэш.
+ * Каждый вызывающий получает свою копию результата из кэша с неизменяемыми списками, так что
+ * изменение объектов одним вызывающим не видно остальным. Список, читаемый окнами, копируется без
+ * загруженных окон: окна загружаются заново для каждого вызывающего.
+ * Класс потокобезопасный.
+ */
+public class CachingLocalDb implements LocalDb {
+
+    /**
+     * Количество прогнозов в кэше по умолчанию.
+     */
+    public static final int DEFAULT_MAX_FORECASTS = 16;
+
+    // БД, к которой идут запросы.
+    private final LocalDb mLocalDb;
+
+    // Объект синхронизации для работы с кэшем.
+    private final Object mLock = new Object();
+    // Поколение данных. Увеличивается при каждой записи.
+    private long mGeneration;
+    // Текущая погода или null, если не загружена.
+    private QueryListResult<WeatherData> mCurrentWeather;
+    // Текущая погода, читаемая окнами, или null, если не загружена.
+    private QueryListResult<WeatherData> mCurrentWeatherWindowed;
+    // Размер окна mCurrentWeatherWindowed.
+    private int mWindowSize;
+    // Прогнозы по идентификаторам городов в порядке последнего использования.
+    private final Map<Integer, QueryListResult<WeatherData>> mForecasts;
+
+    /**
+     * @param localDb БД, к которой идут запросы.
+     */
+    public CachingLocalDb(LocalDb localDb) {
+        this(localDb, DEFAULT_MAX_FORECASTS);
+    }
+
+    /**
+     * @param localDb      БД, к которой идут запросы.
+     * @param maxForecasts Максимальное количество прогнозов в кэше.
+     */
+    public CachingLocalDb(LocalDb localDb, final int maxForecasts) {
+        mLocalDb = localDb;
+        mForecasts = new LinkedHashMap<Integer, QueryListResult<WeatherData>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, QueryListResult<WeatherData>> eldest) {
+                return size() > maxForecasts;
+            }
+        };
+
+        localDb.observeCurrentWeather(new Observer() {
+            @Override
+            public void onChange(ChangeSet changes) {
+                invalidateCurrentWeather();
+            }
+        });
+        localDb.observeForecast(ALL_CITIES, new Observer() {
+            @Override
+            public void onChange(ChangeSet changes) {
+                for (int cityId : changes.getCityIds()) {
+                    invalidateForecast(cityId);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return БД, к которой идут запросы.
+     */
+    public LocalDb getLocalDb() {
+        return mLocalDb;
+    }
+
+    /**
+     * @return Поколение данных. Увеличивается при каждой записи.
+     */
+    public long getGeneration() {
+        synchronized (mLock) {
+            return mGeneration;
+        }
+    }
+
+    // Возвращает копию результата из кэша для одного вызывающего: новые объекты данных о погоде
+    // и статусов в неизменяемых контейнерах. Результат в кэше вызывающим не передается.
+    private static QueryListResult<WeatherData> copy(QueryListResult<WeatherData> cached) {
+        if (cached == null) {
+            return null;
+        }
+        List<WeatherData> data = cached.getData();
+        if (data instanceof WindowedList) {
+            data = ((WindowedList<WeatherData>) data).copy();
+        } else if (data != null) {
+            List<WeatherData> items = new ArrayList<>(data.size());
+            for (WeatherData item : data) {
+                items.add(new WeatherData(item));
+            }
+            data = Collections.unmodifiableList(items);
+        }
+        QueryListResult<WeatherData> result = new QueryListResult<>(data,
+                cached.getDataStatus() == null ? null : new DataStatus(cached.getDataStatus()));
+        // Статусы элементов списка, загружаемого окнами, загружаются вместе с окнами копии.
+        if (!(data instanceof WindowedList) && cached.getItemStatuses() != null) {
+            Map<Integer, DataStatus> itemStatuses = new HashMap<>();
+            for (Map.Entry<Integer, DataStatus> itemStatus : cached.getItemStatuses().entrySet()) {
+                itemStatuses.put(itemStatus.getKey(),
+                        itemStatus.getValue() == null ? null : new DataStatus(itemStatus.getValue()));
+            }
+            result.setItemStatuses(Collections.unmodifiableMap(itemStatuses));
+        }
+        return result;
+    }
+
+    @Override
+    public QueryListResult<WeatherData> getCurrentWeatherData() {
+        long generation;
+        synchronized (mLock) {
+            if (mCurrentWeather != null) {
+                return copy(mCurrentWeather);
+            }
+            generation = mGeneration;
+        }
+
+        QueryListResult<WeatherData> result = mLocalDb.getCurrentWeatherData();
+        synchronized (mLock) {
+            if (generation == mGeneration) {
+                mCurrentWeather = result;
+            }
+        }
+        return copy(result);
+    }
+
+    @Override
+    public QueryListResult<WeatherData> getCurrentWeatherDataWindowed(int windowSize) {
+        long generation;
+        synchronized (mLock) {
+            if (mCurrentWeatherWindowed != null && mWindowSize == windowSize) {
+                return copy(mCurrentWeatherWindowed);
+            }
+            generation = mGeneration;
+        }
+
+        QueryListResult<WeatherData> result = mLocalDb.getCurrentWeatherDataWindowed(windowSize);
+        synchronized (mLock) {
+            if (generation == mGeneration) {
+                mCurrentWeatherWindowed = result;
+                mWindowSize = windowSize;
+            }
+        }
+        return copy(result);
+    }
+
+    @Override
+    public QueryListResult<WeatherData> getWeatherForecast(int cityId) {
+        long generation;
+        synchronized (mLock) {
+            QueryListResult<WeatherData> cached = mForecasts.get(cityId);
+            if (cached != null) {
+                return copy(cached);
+            }
+            generation = mGeneration;
+        }
+
+        QueryListResult<WeatherData> result = mLocalDb.getWeatherForecast(cityId);
+        synchronized (mLock) {
+            if (generation == mGeneration && result != null) {
+                mForecasts.put(cityId, result);
+            }
+        }
+        return copy(result);
+    }
+
+    // Увеличивает поколение и удаляет текущую погоду из кэша.
+    private void invalidateCurrentWeather() {
+        synchronized (mLock) {
+            mGeneration++;
+            mCurrentWeather = null;
+            mCurrentWeatherWindowed = null;
+        }
+    }
+
+    // Увеличивает поколение и удаляет прогноз города из кэша.
+    private void invalidateForecast(int cityId) {
+        synchronized (mLock) {
+            mGeneration++;
+            mForecasts.remove(cityId);
+        }
+    }
+
+    @Override
+    public List<Integer> getCitiesIds() {
+        return mLocalDb.getCitiesIds();
+    }
+
+    @Override
+    public void updateCurrentWeatherData(List<WeatherData> dataList) {
+        mLocalDb.updateCurrentWeatherData(dataList);
+    }
+
+    @Override
+    public void updateCurrentWeatherErrors(Map<Integer, String> errors) {
+        mLocalDb.updateCurrentWeatherErrors(errors);
+    }
+
+    @Override
+    public List<Integer> getFailedCitiesIds() {
+        return mLocalDb.getFailedCitiesIds();
+    }
+
+    @Override
+    public DataStatus getCurrentWeatherDataStatus() {
+        return mLocalDb.getCurrentWeatherDataStatus();
+    }
+
+    @Override
+    public void updateCurrentWeatherDataStatus(DataStatus status) {
+        mLocalDb.updateCurrentWeatherDataStatus(status);
+    }
+
+    @Override
+    public void updateWeatherForecast(int cityId, List<WeatherData> dataList) {
+        mLocalDb.updateWeatherForecast(cityId, dataList);
+    }
+
+    @Override
+    public DataStatus getWeatherForecastDataStatus(int cityId) {
+        return mLocalDb.getWeatherForecastDataStatus(cityId);
+    }
+
+    @Override
+    public void updateForecastDataStatus(DataStatus status, int cityId) {
+        mLocalDb.updateForecastDataStatus(status, cityId);
+    }
+
+    @Override
+    public void addCityWithCurrentWeather(WeatherData data) {
+        mLocalDb.addCityWithCurrentWeather(data);
+    }
+
+    @Override
+    public void observeCurrentWeather(Observer observer) {
+        mLocalDb.observeCurrentWeather(observer);
+    }
+
+    @Override
+    public void observeForecast(int cityId, Observer observer) {
+        mLocalDb.observeForecast(cityId, observer);
+    }
+
+    @Override
+    public void removeObserver(Observer observer) {
+        mLocalDb.removeObserver(observer);
+    }
+}
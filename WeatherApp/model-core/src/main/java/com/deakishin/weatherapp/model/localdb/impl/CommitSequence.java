@@ -0,0 +1,69 @@
+package com.deakishin.weatherapp.model.localdb.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Счетчик фиксаций транзакций записи для согласованного чтения из нескольких запросов без блокировок.
+ * Счетчик увеличивается перед фиксацией и после нее, так что во время фиксации он нечетный.
+ * Чтение считается согласованным, если до его начала фиксация не шла, а после завершения
+ * счетчик не изменился: все запросы видели данные одной и той же зафиксированной версии.
+ * Нужен там, где нельзя открыть транзакцию чтения на отдельном соединении (SQLiteDatabase до API 35).
+ * Класс потокобезопасный.
+ */
+class CommitSequence {
+
+    /**
+     * Чтение из нескольких запросов.
+     */
+    interface Read<T> {
+        /**
+         * @return Результат чтения. Не null.
+         */
+        T read();
+    }
+
+    /**
+     * Количество попыток чтения без блокировки.
+     */
+    static final int MAX_OPTIMISTIC_READS = 3;
+
+    // Счетчик фиксаций. Нечетный во время фиксации.
+    private final AtomicLong mSequence = new AtomicLong();
+
+    /**
+     * Вызывается непосредственно перед фиксацией или откатом транзакции записи.
+     */
+    void beginCommit() {
+        mSequence.incrementAndGet();
+    }
+
+    /**
+     * Вызывается после фиксации или отката транзакции записи, в том числе неудачных.
+     */
+    void endCommit() {
+        mSequence.incrementAndGet();
+    }
+
+    /**
+     * Выполняет чтение, пока оно не окажется согласованным, но не больше {@link #MAX_OPTIMISTIC_READS} раз.
+     *
+     * @param read Чтение.
+     * @return Результат согласованного чтения или null, если все попытки пересеклись с фиксациями.
+     * Тогда чтение нужно выполнить под блокировкой записи.
+     */
+    <T> T readOptimistically(Read<T> read) {
+        for (int attempt = 0; attempt < MAX_OPTIMISTIC_READS; attempt++) {
+            long sequence = mSequence.get();
+            if ((sequence & 1) != 0) {
+                // Фиксация занимает мало времени по сравнению с чтением, поэтому ждем ее завершения.
+                Thread.yield();
+                continue;
+            }
+            T result = read.read();
+            if (mSequence.get() == sequence) {
+                return result;
+            }
+        }
+        return null;
+    }
+}
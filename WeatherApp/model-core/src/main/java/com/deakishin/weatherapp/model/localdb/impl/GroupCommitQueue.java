@@ -0,0 +1,277 @@
+package com.deakishin.weatherapp.model.localdb.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Очередь записей в локальную БД с одним потоком записи.
+ * Поток берет из очереди первую запись, добавляет к ней записи, поступившие за время ожидания
+ * (но не больше заданного количества), и выполняет их в одной транзакции (group commit).
+ * Если транзакция группы не удалась, то она откатывается, и записи группы выполняются
+ * каждая в своей транзакции, так что ошибка одной записи не отменяет остальные.
+ * Общий для реализации на Android и реализации на JDBC. Класс потокобезопасный.
+ */
+class GroupCommitQueue {
+
+    /**
+     * Транзакции БД. Методы вызываются только в потоке записи.
+     */
+    interface Transactions {
+        /**
+         * Начинает транзакцию записи.
+         */
+        void begin();
+
+        /**
+         * Завершает транзакцию записи.
+         *
+         * @param success Зафиксировать изменения, иначе - откатить.
+         */
+        void end(boolean success);
+    }
+
+    /**
+     * Запись в БД.
+     */
+    interface Write {
+        /**
+         * Выполняет запись в открытой транзакции. Может быть вызван повторно, если транзакция
+         * группы откатилась из-за другой записи.
+         */
+        void write();
+
+        /**
+         * Вызывается после фиксации транзакции, например, чтобы сообщить об изменениях наблюдателям.
+         */
+        void onCommitted();
+    }
+
+    /**
+     * Запись в очереди и результат ее выполнения.
+     */
+    private static class Task extends FutureTask<Void> {
+        // Запись или null, если это команда остановки потока.
+        final Write mWrite;
+
+        Task(Write write) {
+            super(NO_OP, null);
+            mWrite = write;
+        }
+
+        void succeed() {
+            set(null);
+        }
+
+        void fail(Throwable e) {
+            setException(e);
+        }
+    }
+
+    // Пустое действие для FutureTask: задачи завершаются потоком записи через succeed() и fail().
+    private static final Runnable NO_OP = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    // Транзакции БД.
+    private final Transactions mTransactions;
+    // Максимальное количество записей в транзакции.
+    private final int mMaxGroupSize;
+    // Время в мс, в течение которого к группе добавляются поступающие записи.
+    private final long mWindowMs;
+    // Записи, ожидающие выполнения.
+    private final BlockingQueue<Task> mQueue = new LinkedBlockingQueue<>();
+    // Поток записи.
+    private final Thread mThread;
+    // Закрыта ли очередь.
+    private volatile boolean mClosed;
+    // Количество зафиксированных транзакций. Изменяется только потоком записи.
+    private volatile long mCommitCount;
+
+    /**
+     * Создает очередь и запускает поток записи.
+     *
+     * @param name         Имя потока записи.
+     * @param transactions Транзакции БД.
+     * @param maxGroupSize Максимальное количество записей в транзакции.
+     * @param windowMs     Время в мс, в течение которого к группе добавляются поступающие записи.
+     */
+    GroupCommitQueue(String name, Transactions transactions, int maxGroupSize, long windowMs) {
+        mTransactions = transactions;
+        mMaxGroupSize = Math.max(1, maxGroupSize);
+        mWindowMs = windowMs;
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                processQueue();
+            }
+        }, name);
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    /**
+     * Ставит запись в очередь.
+     *
+     * @param write Запись.
+     * @return Результат, который завершается после фиксации транзакции с записью
+     * или с ошибкой записи.
+     */
+    Future<Void> submit(Write write) {
+        Task task = new Task(write);
+        if (Thread.currentThread() == mThread) {
+            // Запись из onCommitted() другой записи. Поток записи не может ждать сам себя,
+            // поэтому она выполняется сразу в своей транзакции.
+            execute(Collections.singletonList(task));
+            return task;
+        }
+        if (mClosed) {
+            throw new IllegalStateException("Write queue is closed");
+        }
+        mQueue.add(task);
+        return task;
+    }
+
+    /**
+     * Ставит запись в очередь и ждет ее фиксации.
+     *
+     * @param write Запись.
+     * @throws RuntimeException Ошибка записи.
+     */
+    void execute(Write write) {
+        Future<Void> result = submit(write);
+        try {
+            result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a write", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * @return Количество зафиксированных транзакций с момента создания.
+     */
+    long getCommitCount() {
+        return mCommitCount;
+    }
+
+    /**
+     * Выполняет записи, поставленные в очередь раньше, и останавливает поток записи.
+     */
+    void close() {
+        if (mClosed) {
+            return;
+        }
+        mClosed = true;
+        mQueue.add(new Task(null));
+        try {
+            mThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        failPending();
+    }
+
+    // Завершает с ошибкой записи, которые остались в очереди после остановки потока записи.
+    private void failPending() {
+        Task task;
+        while ((task = mQueue.poll()) != null) {
+            if (task.mWrite != null) {
+                task.fail(new IllegalStateException("Write queue is closed"));
+            }
+        }
+    }
+
+    // Цикл потока записи: собирает записи в группы и выполняет их до команды остановки.
+    private void processQueue() {
+        List<Task> group = new ArrayList<>();
+        boolean closing = false;
+        while (!closing) {
+            group.clear();
+            try {
+                Task first = mQueue.take();
+                if (first.mWrite == null) {
+                    break;
+                }
+                group.add(first);
+                long deadline = System.currentTimeMillis() + mWindowMs;
+                while (group.size() < mMaxGroupSize) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    Task next = remaining > 0 ? mQueue.poll(remaining, TimeUnit.MILLISECONDS) : mQueue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    if (next.mWrite == null) {
+                        closing = true;
+                        break;
+                    }
+                    group.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Поток записи не прерывается извне, но если это случилось, собранная группа выполняется.
+                closing = true;
+            }
+            if (!group.isEmpty() && !execute(group)) {
+                for (Task task : group) {
+                    execute(Collections.singletonList(task));
+                }
+            }
+        }
+
+        // Записи, поставленные после команды остановки, не выполняются.
+        failPending();
+    }
+
+    // Выполняет записи группы в одной транзакции. Возвращает false, если транзакция откатилась
+    // и в группе больше одной записи: тогда их нужно выполнить по отдельности.
+    // Ошибка единственной записи передается в ее результат.
+    private boolean execute(List<Task> group) {
+        try {
+            mTransactions.begin();
+            boolean success = false;
+            try {
+                for (Task task : group) {
+                    task.mWrite.write();
+                }
+                success = true;
+            } finally {
+                mTransactions.end(success);
+            }
+        } catch (RuntimeException | Error e) {
+            if (group.size() > 1) {
+                return false;
+            }
+            group.get(0).fail(e);
+            return true;
+        }
+        mCommitCount++;
+
+        for (Task task : group) {
+            try {
+                task.mWrite.onCommitted();
+                task.succeed();
+            } catch (RuntimeException e) {
+                // Изменения уже зафиксированы, но вызывающий должен узнать об ошибке.
+                task.fail(e);
+            }
+        }
+        return true;
+    }
+}
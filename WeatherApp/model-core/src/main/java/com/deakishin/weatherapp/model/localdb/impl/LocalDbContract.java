@@ -0,0 +1,82 @@
+package com.deakishin.weatherapp.model.localdb.impl;
+
+/**
+ * Контракт для работы с БД.
+ * Не зависит от Android, так что схема общая для всех реализаций БД.
+ */
+public class LocalDbContract {
+    public LocalDbContract() {
+    }
+
+    /**
+     * Название столбца первичного ключа, совпадает с android.provider.BaseColumns._ID.
+     */
+    public static final String _ID = "_id";
+
+    /**
+     * Контракт для таблицы городов. Первичный ключ - идентификатор города.
+     * Название и страна хранятся один раз на город, а не в каждой строке погоды.
+     */
+    public static abstract class Cities {
+        public static final String _ID = LocalDbContract._ID;
+        public static final String TABLE_NAME = "cities";
+        public static final String COLUMN_NAME_CITY_NAME = "city";
+        public static final String COLUMN_NAME_COUNTRY = "country";
+    }
+
+    /**
+     * Контракт для таблицы с текущей погодой и прогнозом погоды для каждого города.
+     * Строки ссылаются на город в таблице {@link Cities} через city_id.
+     */
+    public static abstract class Weathers {
+        public static final String _ID = LocalDbContract._ID;
+        public static final String TABLE_NAME = "weathers";
+        public static final String COLUMN_NAME_CITY_ID = "city_id";
+        public static final String COLUMN_NAME_TEMP = "temp";
+        public static final String COLUMN_NAME_WIND = "wind";
+        public static final String COLUMN_NAME_CLOUDS = "clouds";
+        public static final String COLUMN_NAME_HUMIDITY = "humidity";
+        public static final String COLUMN_NAME_PRESSURE = "pressure";
+        /**
+         * Код значка погоды, см. {@link WeatherIconCodes}.
+         */
+        public static final String COLUMN_NAME_ICON_CODE = "icon_code";
+
+        public static final String COLUMN_NAME_IS_FORECAST = "forecast";
+        public static final String COLUMN_NAME_DATE = "date";
+
+        /**
+         * Уникальный индекс по (forecast, city_id, date). У строк текущей погоды дата всегда равна
+         * {@link #CURRENT_WEATHER_DATE}, так что индекс не допускает повторов городов в текущей погоде
+         * и повторов дат в прогнозе города.
+         */
+        public static final String INDEX_NAME_FORECAST_CITY_DATE = "weathers_forecast_city_date";
+
+        /**
+         * Значение даты в строках текущей погоды.
+         */
+        public static final long CURRENT_WEATHER_DATE = 0;
+
+        // Статус обновления текущей погоды города.
+        public static final String COLUMN_NAME_LAST_UPDATE = "last_update";
+        public static final String COLUMN_NAME_ERROR = "error";
+    }
+
+    /**
+     * Контракт для таблицы с метаданными о данных:
+     * последнее обновление данных, их идентификатор, флаг обновления и ошибка последнего обновления.
+     */
+    public static abstract class Meta {
+        public static final String _ID = LocalDbContract._ID;
+        public static final String TABLE_NAME = "meta";
+        public static final String COLUMN_DATA_ID = "data_id";
+        public static final String COLUMN_REFRESHING = "refreshing";
+        public static final String COLUMN_LAST_UPDATE = "last_update";
+        public static final String COLUMN_ERROR = "error";
+
+        /**
+         * Уникальный индекс по data_id.
+         */
+        public static final String INDEX_NAME_DATA_ID = "meta_data_id";
+    }
+}
@@ -0,0 +1,114 @@
+package com.deakishin.weatherapp.model.localdb.impl;
+
+/**
+ * Миграции схемы локальной БД, сохраняющие данные: города, текущую погоду, статусы обновления
+ * и еще не устаревшие строки прогноза. Каждый шаг переводит БД с версии на следующую.
+ * SQL шагов зафиксирован на момент соответствующей версии и не берется из {@link LocalDbSchema},
+ * который описывает только последнюю версию.
+ * Общие для реализации на Android и реализации на JDBC.
+ */
+class LocalDbMigrations {
+
+    /**
+     * БД, к которой применяются миграции.
+     */
+    interface Db {
+        /**
+         * Выполняет SQL без результата.
+         */
+        void execSQL(String sql);
+    }
+
+    // Самая старая версия, с которой возможна миграция. Более старые БД пересоздаются.
+    static final int OLDEST_VERSION = 7;
+
+    // Шаги миграции. Шаг с индексом i переводит БД с версии OLDEST_VERSION + i на следующую.
+    private static final String[][] STEPS = {
+            // 7 -> 8: статус обновления каждого города и ошибка обновления данных.
+            {
+                    "ALTER TABLE weathers ADD COLUMN last_update INTEGER",
+                    "ALTER TABLE weathers ADD COLUMN error TEXT",
+                    "ALTER TABLE meta ADD COLUMN error TEXT"
+            },
+            // 8 -> 9: уникальные индексы. У строк текущей погоды дата 0, повторы удаляются,
+            // причем остается первая строка, чтобы сохранить порядок городов.
+            {
+                    "UPDATE weathers SET date = 0 WHERE forecast = 0",
+                    "DELETE FROM weathers WHERE _id NOT IN"
+                            + " (SELECT MIN(_id) FROM weathers GROUP BY forecast, city_id, date)",
+                    "DELETE FROM meta WHERE _id NOT IN (SELECT MIN(_id) FROM meta GROUP BY data_id)",
+                    "CREATE UNIQUE INDEX weathers_forecast_city_date ON weathers (forecast, city_id, date)",
+                    "CREATE UNIQUE INDEX meta_data_id ON meta (data_id)"
+            },
+            // 9 -> 10: таблица городов и коды значков вместо идентификаторов.
+            // SQLite не умеет удалять столбцы, поэтому таблица погоды пересоздается.
+            {
+                    "CREATE TABLE cities (_id INTEGER PRIMARY KEY, city TEXT, country TEXT)",
+                    "INSERT OR IGNORE INTO cities (_id, city, country)"
+                            + " SELECT city_id, city, country FROM weathers"
+                            + " WHERE forecast = 0 AND city_id IS NOT NULL ORDER BY _id",
+                    "CREATE TABLE weathers_v10 (_id INTEGER PRIMARY KEY, city_id INTEGER REFERENCES cities(_id),"
+                            + " temp REAL, clouds REAL, humidity REAL, pressure REAL, wind REAL, icon_code INTEGER,"
+                            + " forecast INTEGER, date INTEGER, last_update INTEGER, error TEXT)",
+                    "INSERT INTO weathers_v10 (_id, city_id, temp, clouds, humidity, pressure, wind, icon_code,"
+                            + " forecast, date, last_update, error)"
+                            + " SELECT _id, city_id, temp, clouds, humidity, pressure, wind,"
+                            // Так же, как WeatherIconCodes.encode(): "NNd" -> NN * 2, "NNn" -> NN * 2 + 1.
+                            + " CASE WHEN icon_id GLOB '[0-9][0-9][dn]'"
+                            + " THEN CAST(substr(icon_id, 1, 2) AS INTEGER) * 2 + (substr(icon_id, 3, 1) = 'n')"
+                            + " ELSE NULL END,"
+                            + " forecast, date, last_update, error FROM weathers",
+                    "DROP TABLE weathers",
+                    "ALTER TABLE weathers_v10 RENAME TO weathers",
+                    "CREATE UNIQUE INDEX weathers_forecast_city_date ON weathers (forecast, city_id, date)"
+            }
+    };
+
+    // Время, в течение которого строка прогноза остается актуальной после своей даты, в мс.
+    // Интервал между строками прогноза - 3 часа.
+    private static final long FORECAST_ROW_TTL_MS = 3 * 60 * 60 * 1000L;
+
+    private LocalDbMigrations() {
+    }
+
+    /**
+     * @return Версия, до которой доводят БД все шаги миграции.
+     */
+    static int getLatestVersion() {
+        return OLDEST_VERSION + STEPS.length;
+    }
+
+    /**
+     * Проверяет, можно ли перевести БД с версии oldVersion на newVersion без потери данных.
+     */
+    static boolean canMigrate(int oldVersion, int newVersion) {
+        return oldVersion >= OLDEST_VERSION && oldVersion < newVersion && newVersion <= getLatestVersion();
+    }
+
+    /**
+     * Переводит БД с версии oldVersion на newVersion и удаляет устаревшие строки прогноза.
+     * Вызывается внутри транзакции, так что при ошибке БД остается в исходной версии.
+     *
+     * @param db         БД.
+     * @param oldVersion Текущая версия БД.
+     * @param newVersion Требуемая версия БД.
+     * @param now        Текущее время в мс.
+     * @throws IllegalArgumentException Если миграция невозможна, см. {@link #canMigrate(int, int)}.
+     */
+    static void migrate(Db db, int oldVersion, int newVersion, long now) {
+        if (!canMigrate(oldVersion, newVersion)) {
+            throw new IllegalArgumentException("Unable to migrate from " + oldVersion + " to " + newVersion);
+        }
+        for (int version = oldVersion; version < newVersion; version++) {
+            for (String sql : STEPS[version - OLDEST_VERSION]) {
+                db.execSQL(sql);
+            }
+        }
+
+        // Столбцы, используемые ниже, есть во всех версиях схемы.
+        db.execSQL("DELETE FROM weathers WHERE forecast = 1 AND date < " + (now - FORECAST_ROW_TTL_MS));
+        // Прогноз города, от которого ничего не осталось, должен быть загружен заново.
+        db.execSQL("UPDATE meta SET last_update = NULL WHERE data_id <> " + LocalDbSchema.CURRENT_WEATHER_DATA_ID
+                + " AND data_id NOT IN (SELECT city_id FROM weathers WHERE forecast = 1 AND city_id IS NOT NULL)");
+    }
+}
@@ -0,0 +1,116 @@
+package com.deakishin.weatherapp.model.localdb.impl;
+
+import com.deakishin.weatherapp.model.entities.DataStatus;
+import com.deakishin.weatherapp.model.entities.WeatherData;
+import com.deakishin.weatherapp.model.localdb.ChangeSet;
+import com.deakishin.weatherapp.model.localdb.LocalDb;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Наблюдатели локальной БД. Реализации БД сообщают сюда о каждой зафиксированной записи,
+ * а наблюдатели получают изменения в порядке подписки.
+ * Общие для реализации на Android и реализации на JDBC. Класс потокобезопасный.
+ */
+class LocalDbObservers {
+
+    /**
+     * Подписка наблюдателя.
+     */
+    private static class Subscription {
+        // Наблюдатель.
+        final LocalDb.Observer mObserver;
+        // Подписка на прогноз, иначе - на текущую погоду.
+        final boolean mForecast;
+        // Идентификатор города прогноза или LocalDb.ALL_CITIES.
+        final int mCityId;
+
+        Subscription(LocalDb.Observer observer, boolean forecast, int cityId) {
+            mObserver = observer;
+            mForecast = forecast;
+            mCityId = cityId;
+        }
+    }
+
+    // Подписки в порядке подписки. Запись чаще, чем подписка, поэтому список копируется при изменении.
+    private final List<Subscription> mSubscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * Подписывает наблюдателя на изменения текущей погоды.
+     */
+    void observeCurrentWeather(LocalDb.Observer observer) {
+        mSubscriptions.add(new Subscription(observer, false, LocalDb.ALL_CITIES));
+    }
+
+    /**
+     * Подписывает наблюдателя на изменения прогноза города cityId или всех городов.
+     */
+    void observeForecast(int cityId, LocalDb.Observer observer) {
+        mSubscriptions.add(new Subscription(observer, true, cityId));
+    }
+
+    /**
+     * Отписывает наблюдателя от всех изменений.
+     */
+    void removeObserver(LocalDb.Observer observer) {
+        for (Subscription subscription : mSubscriptions) {
+            if (subscription.mObserver == observer) {
+                mSubscriptions.remove(subscription);
+            }
+        }
+    }
+
+    /**
+     * @return true, если есть наблюдатели. Иначе изменения можно не собирать.
+     */
+    boolean hasObservers() {
+        return !mSubscriptions.isEmpty();
+    }
+
+    /**
+     * Сообщает об изменении текущей погоды.
+     *
+     * @param cityIds    Идентификаторы городов, данные или статусы которых изменились.
+     * @param rows        Новые строки текущей погоды или null, если строки не изменились.
+     * @param citiesAdded Добавлены ли новые города.
+     * @param dataStatus  Новый статус данных или null, если статус не изменился.
+     */
+    void notifyCurrentWeatherChanged(Collection<Integer> cityIds, List<WeatherData> rows, boolean citiesAdded,
+                                     DataStatus dataStatus) {
+        if (!hasObservers()) {
+            return;
+        }
+        ChangeSet changes = new ChangeSet(false, new LinkedHashSet<>(cityIds), rows != null, citiesAdded,
+                rows, dataStatus);
+        for (Subscription subscription : mSubscriptions) {
+            if (!subscription.mForecast) {
+                subscription.mObserver.onChange(changes);
+            }
+        }
+    }
+
+    /**
+     * Сообщает об изменении прогноза города.
+     *
+     * @param cityId      Идентификатор города.
+     * @param dataChanged Изменились ли строки прогноза.
+     * @param dataStatus  Новый статус данных или null, если статус не изменился.
+     */
+    void notifyForecastChanged(int cityId, boolean dataChanged, DataStatus dataStatus) {
+        if (!hasObservers()) {
+            return;
+        }
+        ChangeSet changes = new ChangeSet(true, Collections.singleton(cityId), dataChanged, false, null,
+                dataStatus);
+        for (Subscription subscription : mSubscriptions) {
+            if (subscription.mForecast
+                    && (subscription.mCityId == LocalDb.ALL_CITIES || subscription.mCityId == cityId)) {
+                subscription.mObserver.onChange(changes);
+            }
+        }
+    }
+}
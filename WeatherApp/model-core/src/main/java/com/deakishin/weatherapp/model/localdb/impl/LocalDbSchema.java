@@ -0,0 +1,225 @@
+package com.deakishin.weatherapp.model.localdb.impl;
+
+/**
+ * Схема локальной БД: версия, SQL для создания и удаления таблиц и начальные данные.
+ * Общая для реализации на Android и реализации на JDBC.
+ */
+class LocalDbSchema {
+
+    private LocalDbSchema() {
+    }
+
+    // Версия БД.
+    static final int DATABASE_VERSION = 10;
+
+    // Идентификаторы городов по умолчанию.
+    static final int[] DEFAULT_IDS = {5601538, 498817};
+    // Названия городов по умолчанию.
+    static final String[] DEFAULT_CITY_NAMES = {"Moscow", "Saint Petersburg"};
+
+    // Идентификатор данных по текущей погоде.
+    static final int CURRENT_WEATHER_DATA_ID = -1;
+
+    private static final String TEXT_TYPE = " TEXT";
+    private static final String REAL_TYPE = " REAL";
+    private static final String INT_TYPE = " INTEGER";
+    private static final String COMMA_SEP = ",";
+    static final String SQL_CREATE_CITIES =
+            "CREATE TABLE " + LocalDbContract.Cities.TABLE_NAME + " (" +
+                    LocalDbContract.Cities._ID + INT_TYPE + " PRIMARY KEY," +
+                    LocalDbContract.Cities.COLUMN_NAME_CITY_NAME + TEXT_TYPE + COMMA_SEP +
+                    LocalDbContract.Cities.COLUMN_NAME_COUNTRY + TEXT_TYPE + " )";
+    static final String SQL_CREATE_WEATHERS =
+            "CREATE TABLE " + LocalDbContract.Weathers.TABLE_NAME + " (" +
+                    LocalDbContract.Weathers._ID + INT_TYPE + " PRIMARY KEY," +
+                    LocalDbContract.Weathers.COLUMN_NAME_CITY_ID + INT_TYPE + " REFERENCES " +
+                    LocalDbContract.Cities.TABLE_NAME + "(" + LocalDbContract.Cities._ID + ")" + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_TEMP + REAL_TYPE + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_CLOUDS + REAL_TYPE + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_HUMIDITY + REAL_TYPE + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_PRESSURE + REAL_TYPE + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_WIND + REAL_TYPE + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_ICON_CODE + INT_TYPE + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_IS_FORECAST + INT_TYPE + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_DATE + INT_TYPE + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_LAST_UPDATE + INT_TYPE + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_ERROR + TEXT_TYPE + " )";
+    static final String SQL_CREATE_META =
+            "CREATE TABLE " + LocalDbContract.Meta.TABLE_NAME + " (" +
+                    LocalDbContract.Meta._ID + INT_TYPE + " PRIMARY KEY," +
+                    LocalDbContract.Meta.COLUMN_DATA_ID + INT_TYPE + COMMA_SEP +
+                    LocalDbContract.Meta.COLUMN_LAST_UPDATE + INT_TYPE + COMMA_SEP +
+                    LocalDbContract.Meta.COLUMN_REFRESHING + INT_TYPE + COMMA_SEP +
+                    LocalDbContract.Meta.COLUMN_ERROR + TEXT_TYPE + " )";
+
+    static final String SQL_CREATE_WEATHERS_INDEX =
+            "CREATE UNIQUE INDEX " + LocalDbContract.Weathers.INDEX_NAME_FORECAST_CITY_DATE + " ON " +
+                    LocalDbContract.Weathers.TABLE_NAME + " (" +
+                    LocalDbContract.Weathers.COLUMN_NAME_IS_FORECAST + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_CITY_ID + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_DATE + " )";
+    static final String SQL_CREATE_META_INDEX =
+            "CREATE UNIQUE INDEX " + LocalDbContract.Meta.INDEX_NAME_DATA_ID + " ON " +
+                    LocalDbContract.Meta.TABLE_NAME + " (" + LocalDbContract.Meta.COLUMN_DATA_ID + " )";
+
+    // Строки погоды с названиями городов. Соединение нужно только для текущей погоды:
+    // экран прогноза получает название города от главного экрана.
+    static final String SQL_WEATHERS_WITH_CITIES =
+            LocalDbContract.Weathers.TABLE_NAME + " LEFT JOIN " + LocalDbContract.Cities.TABLE_NAME + " ON " +
+                    LocalDbContract.Weathers.TABLE_NAME + "." + LocalDbContract.Weathers.COLUMN_NAME_CITY_ID + " = " +
+                    LocalDbContract.Cities.TABLE_NAME + "." + LocalDbContract.Cities._ID;
+
+    // Порядок строк текущей погоды - порядок добавления городов. Без явной сортировки
+    // строки возвращались бы в порядке индекса, то есть по идентификаторам городов.
+    static final String CURRENT_WEATHER_ORDER_BY =
+            LocalDbContract.Weathers.TABLE_NAME + "." + LocalDbContract.Weathers._ID + " ASC";
+
+    // Условие выборки окна текущей погоды из SQL_WEATHERS_WITH_CITIES. Строки окна выбираются
+    // по идентификаторам из индекса, так что сортируются только идентификаторы, а не полные строки
+    // всех городов. Параметры: limit, offset.
+    static final String CURRENT_WEATHER_WINDOW_SELECTION =
+            LocalDbContract.Weathers.TABLE_NAME + "." + LocalDbContract.Weathers._ID + " IN (SELECT " +
+                    LocalDbContract.Weathers._ID + " FROM " + LocalDbContract.Weathers.TABLE_NAME +
+                    " WHERE " + LocalDbContract.Weathers.COLUMN_NAME_IS_FORECAST + " = 0" +
+                    " ORDER BY " + CURRENT_WEATHER_ORDER_BY + " LIMIT ? OFFSET ?)";
+
+    // Параметры SQL_INSERT_CITY: city_id, city, country. Существующий город не изменяется.
+    static final String SQL_INSERT_CITY =
+            "INSERT OR IGNORE INTO " + LocalDbContract.Cities.TABLE_NAME + " (" +
+                    LocalDbContract.Cities._ID + COMMA_SEP +
+                    LocalDbContract.Cities.COLUMN_NAME_CITY_NAME + COMMA_SEP +
+                    LocalDbContract.Cities.COLUMN_NAME_COUNTRY +
+                    ") VALUES (?, ?, ?)";
+
+    // Параметры SQL_INSERT_CURRENT_WEATHER: temp, humidity, wind, pressure, clouds, icon_code, city_id,
+    // last_update. Строка текущей погоды существующего города не изменяется.
+    static final String SQL_INSERT_CURRENT_WEATHER =
+            "INSERT OR IGNORE INTO " + LocalDbContract.Weathers.TABLE_NAME + " (" +
+                    LocalDbContract.Weathers.COLUMN_NAME_TEMP + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_HUMIDITY + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_WIND + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_PRESSURE + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_CLOUDS + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_ICON_CODE + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_CITY_ID + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_LAST_UPDATE + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_IS_FORECAST + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_DATE +
+                    ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, 0, " + LocalDbContract.Weathers.CURRENT_WEATHER_DATE + ")";
+    // Параметры SQL_INSERT_META: data_id. Существующие метаданные не изменяются.
+    static final String SQL_INSERT_META =
+            "INSERT OR IGNORE INTO " + LocalDbContract.Meta.TABLE_NAME + " (" +
+                    LocalDbContract.Meta.COLUMN_DATA_ID + COMMA_SEP +
+                    LocalDbContract.Meta.COLUMN_REFRESHING +
+                    ") VALUES (?, 0)";
+
+    // Запросы для пакетной записи строк погоды. Компилируются один раз и выполняются для многих строк.
+    // Параметры SQL_INSERT_FORECAST: city_id, temp, humidity, wind, pressure, clouds, icon_code, date.
+    // Существующая строка с той же датой не изменяется: ее обновляет SQL_UPDATE_FORECAST.
+    static final String SQL_INSERT_FORECAST =
+            "INSERT OR IGNORE INTO " + LocalDbContract.Weathers.TABLE_NAME + " (" +
+                    LocalDbContract.Weathers.COLUMN_NAME_CITY_ID + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_TEMP + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_HUMIDITY + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_WIND + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_PRESSURE + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_CLOUDS + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_ICON_CODE + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_IS_FORECAST + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_DATE +
+                    ") VALUES (?, ?, ?, ?, ?, ?, ?, 1, ?)";
+    // Параметры SQL_UPDATE_FORECAST: temp, humidity, wind, pressure, clouds, icon_code, city_id, date.
+    // Строка изменяется, только если хотя бы одно значение отличается, чтобы не писать неизменные данные.
+    static final String SQL_UPDATE_FORECAST =
+            "UPDATE " + LocalDbContract.Weathers.TABLE_NAME + " SET " +
+                    LocalDbContract.Weathers.COLUMN_NAME_TEMP + " = ?1" + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_HUMIDITY + " = ?2" + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_WIND + " = ?3" + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_PRESSURE + " = ?4" + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_CLOUDS + " = ?5" + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_ICON_CODE + " = ?6" +
+                    " WHERE " + LocalDbContract.Weathers.COLUMN_NAME_IS_FORECAST + " = 1 AND " +
+                    LocalDbContract.Weathers.COLUMN_NAME_CITY_ID + " = ?7 AND " +
+                    LocalDbContract.Weathers.COLUMN_NAME_DATE + " = ?8 AND (" +
+                    LocalDbContract.Weathers.COLUMN_NAME_TEMP + " IS NOT ?1 OR " +
+                    LocalDbContract.Weathers.COLUMN_NAME_HUMIDITY + " IS NOT ?2 OR " +
+                    LocalDbContract.Weathers.COLUMN_NAME_WIND + " IS NOT ?3 OR " +
+                    LocalDbContract.Weathers.COLUMN_NAME_PRESSURE + " IS NOT ?4 OR " +
+                    LocalDbContract.Weathers.COLUMN_NAME_CLOUDS + " IS NOT ?5 OR " +
+                    LocalDbContract.Weathers.COLUMN_NAME_ICON_CODE + " IS NOT ?6)";
+    // Параметры SQL_UPDATE_CURRENT_WEATHER: temp, humidity, wind, pressure, clouds, icon_code,
+    // last_update, city_id. Ошибка обновления города сбрасывается.
+    static final String SQL_UPDATE_CURRENT_WEATHER =
+            "UPDATE " + LocalDbContract.Weathers.TABLE_NAME + " SET " +
+                    LocalDbContract.Weathers.COLUMN_NAME_TEMP + " = ?" + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_HUMIDITY + " = ?" + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_WIND + " = ?" + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_PRESSURE + " = ?" + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_CLOUDS + " = ?" + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_ICON_CODE + " = ?" + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_LAST_UPDATE + " = ?" + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_ERROR + " = NULL" +
+                    " WHERE " + LocalDbContract.Weathers.COLUMN_NAME_IS_FORECAST + " = 0 AND " +
+                    LocalDbContract.Weathers.COLUMN_NAME_CITY_ID + " = ?";
+    // Параметры SQL_UPDATE_CITY: city, country, city_id.
+    static final String SQL_UPDATE_CITY =
+            "UPDATE " + LocalDbContract.Cities.TABLE_NAME + " SET " +
+                    LocalDbContract.Cities.COLUMN_NAME_CITY_NAME + " = ?" + COMMA_SEP +
+                    LocalDbContract.Cities.COLUMN_NAME_COUNTRY + " = ?" +
+                    " WHERE " + LocalDbContract.Cities._ID + " = ?";
+    // Параметры SQL_SELECT_FORECAST: city_id. Строки с датами и значениями прогноза города,
+    // с которыми новый прогноз сравнивается перед записью. Строки преобразует WeatherRowMapper.
+    static final String SQL_SELECT_FORECAST =
+            "SELECT " + LocalDbContract.Weathers.COLUMN_NAME_CITY_ID + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_TEMP + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_HUMIDITY + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_WIND + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_PRESSURE + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_CLOUDS + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_ICON_CODE + COMMA_SEP +
+                    LocalDbContract.Weathers.COLUMN_NAME_DATE +
+                    " FROM " + LocalDbContract.Weathers.TABLE_NAME +
+                    " WHERE " + LocalDbContract.Weathers.COLUMN_NAME_IS_FORECAST + " = 1 AND " +
+                    LocalDbContract.Weathers.COLUMN_NAME_CITY_ID + " = ? AND " +
+                    LocalDbContract.Weathers.COLUMN_NAME_DATE + " IS NOT NULL";
+    // Параметры SQL_DELETE_STALE_FORECAST: city_id, первая и последняя даты нового прогноза.
+    // Удаляет строки прогноза вне диапазона дат нового прогноза (прошедшие) и строки без даты.
+    static final String SQL_DELETE_STALE_FORECAST =
+            "DELETE FROM " + LocalDbContract.Weathers.TABLE_NAME +
+                    " WHERE " + LocalDbContract.Weathers.COLUMN_NAME_IS_FORECAST + " = 1 AND " +
+                    LocalDbContract.Weathers.COLUMN_NAME_CITY_ID + " = ? AND (" +
+                    LocalDbContract.Weathers.COLUMN_NAME_DATE + " IS NULL OR " +
+                    LocalDbContract.Weathers.COLUMN_NAME_DATE + " < ? OR " +
+                    LocalDbContract.Weathers.COLUMN_NAME_DATE + " > ?)";
+
+    // Параметры SQL_UPDATE_CURRENT_WEATHER_ERROR: error, city_id.
+    static final String SQL_UPDATE_CURRENT_WEATHER_ERROR =
+            "UPDATE " + LocalDbContract.Weathers.TABLE_NAME + " SET " +
+                    LocalDbContract.Weathers.COLUMN_NAME_ERROR + " = ?" +
+                    " WHERE " + LocalDbContract.Weathers.COLUMN_NAME_IS_FORECAST + " = 0 AND " +
+                    LocalDbContract.Weathers.COLUMN_NAME_CITY_ID + " = ?";
+
+    // Параметры SQL_UPDATE_DATA_STATUS: refreshing, error, last_update, data_id.
+    // Если last_update NULL, то прежнее время обновления сохраняется.
+    static final String SQL_UPDATE_DATA_STATUS =
+            "UPDATE " + LocalDbContract.Meta.TABLE_NAME + " SET " +
+                    LocalDbContract.Meta.COLUMN_REFRESHING + " = ?" + COMMA_SEP +
+                    LocalDbContract.Meta.COLUMN_ERROR + " = ?" + COMMA_SEP +
+                    LocalDbContract.Meta.COLUMN_LAST_UPDATE + " = COALESCE(?, " +
+                    LocalDbContract.Meta.COLUMN_LAST_UPDATE + ")" +
+                    " WHERE " + LocalDbContract.Meta.COLUMN_DATA_ID + " = ?";
+    // Параметры SQL_SELECT_DATA_STATUS: data_id. Строку преобразует WeatherRowMapper.mapDataStatus().
+    static final String SQL_SELECT_DATA_STATUS =
+            "SELECT " + LocalDbContract.Meta.COLUMN_REFRESHING + COMMA_SEP +
+                    LocalDbContract.Meta.COLUMN_LAST_UPDATE + COMMA_SEP +
+                    LocalDbContract.Meta.COLUMN_ERROR +
+                    " FROM " + LocalDbContract.Meta.TABLE_NAME +
+                    " WHERE " + LocalDbContract.Meta.COLUMN_DATA_ID + " = ?";
+
+    static final String SQL_DELETE_CITIES =
+            "DROP TABLE IF EXISTS " + LocalDbContract.Cities.TABLE_NAME;
+    static final String SQL_DELETE_WEATHERS =
+            "DROP TABLE IF EXISTS " + LocalDbContract.Weathers.TABLE_NAME;
+    static final String SQL_DELETE_META =
+            "DROP TABLE IF EXISTS " + LocalDbContract.Meta.TABLE_NAME;
+}
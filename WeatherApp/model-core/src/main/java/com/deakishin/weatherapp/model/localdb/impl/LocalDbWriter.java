@@ -0,0 +1,173 @@
+package com.deakishin.weatherapp.model.localdb.impl;
+
+import com.deakishin.weatherapp.model.entities.DataStatus;
+import com.deakishin.weatherapp.model.entities.WeatherData;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Методы записи локальной БД: каждая запись выполняется через очередь записей ({@link GroupCommitQueue})
+ * и {@link WeatherBatchWriter}, а после фиксации о ней узнают наблюдатели ({@link LocalDbObservers}).
+ * Общие для реализации на Android и реализации на JDBC. Методы записи ждут фиксации. Класс потокобезопасный.
+ */
+class LocalDbWriter {
+
+    /**
+     * Чтение статуса данных в транзакции записи, чтобы наблюдатели получили статус так, как он записан.
+     */
+    interface DataStatusReader {
+        /**
+         * @param dataId Идентификатор данных в метаданных.
+         * @return Статус данных или null, если их нет.
+         */
+        DataStatus getDataStatus(int dataId);
+    }
+
+    // Очередь записей.
+    private final GroupCommitQueue mWriteQueue;
+    // Запись строк скомпилированными запросами. Используется только в потоке очереди записей.
+    private final WeatherBatchWriter mBatchWriter;
+    // Наблюдатели изменений.
+    private final LocalDbObservers mObservers;
+    // Чтение статуса данных через соединение записи.
+    private final DataStatusReader mStatusReader;
+
+    LocalDbWriter(GroupCommitQueue writeQueue, WeatherBatchWriter batchWriter, LocalDbObservers observers,
+                  DataStatusReader statusReader) {
+        mWriteQueue = writeQueue;
+        mBatchWriter = batchWriter;
+        mObservers = observers;
+        mStatusReader = statusReader;
+    }
+
+    /**
+     * Возвращает идентификатор данных в метаданных.
+     *
+     * @param forecast True, если данные по прогнозу погоды. Тогда идентификатор - id города cityId.
+     * @param cityId   Идентификатор города прогноза.
+     * @return Идентификатор данных.
+     */
+    static int getDataId(boolean forecast, int cityId) {
+        return forecast ? cityId : LocalDbSchema.CURRENT_WEATHER_DATA_ID;
+    }
+
+    /**
+     * Обновляет данные по погоде из списка. forecast - данные по прогнозу погоды для города с cityId,
+     * иначе, данные по текущей погоде.
+     */
+    void updateWeatherData(final List<WeatherData> dataList, final boolean forecast, final int cityId) {
+        mWriteQueue.execute(new GroupCommitQueue.Write() {
+            // Изменился ли прогноз.
+            boolean mForecastChanged;
+
+            @Override
+            public void write() {
+                if (forecast) {
+                    mForecastChanged = mBatchWriter.mergeForecast(cityId, dataList);
+                } else {
+                    long now = System.currentTimeMillis();
+                    for (WeatherData item : dataList) {
+                        mBatchWriter.updateCurrentWeather(item, now);
+                    }
+                }
+            }
+
+            @Override
+            public void onCommitted() {
+                if (forecast) {
+                    if (mForecastChanged) {
+                        mObservers.notifyForecastChanged(cityId, true, null);
+                    }
+                } else if (mObservers.hasObservers()) {
+                    List<Integer> ids = new ArrayList<>(dataList.size());
+                    for (WeatherData item : dataList) {
+                        ids.add(item.getId());
+                    }
+                    mObservers.notifyCurrentWeatherChanged(ids, dataList, false, null);
+                }
+            }
+        });
+    }
+
+    /**
+     * Записывает ошибки обновления текущей погоды городов.
+     *
+     * @param errors Ошибки по идентификаторам городов. Null сбрасывает ошибку.
+     */
+    void updateCurrentWeatherErrors(final Map<Integer, String> errors) {
+        mWriteQueue.execute(new GroupCommitQueue.Write() {
+            @Override
+            public void write() {
+                for (Map.Entry<Integer, String> error : errors.entrySet()) {
+                    mBatchWriter.updateCurrentWeatherError(error.getKey(), error.getValue());
+                }
+            }
+
+            @Override
+            public void onCommitted() {
+                mObservers.notifyCurrentWeatherChanged(errors.keySet(), null, false, null);
+            }
+        });
+    }
+
+    /**
+     * Обновляет статус данных по погоде. forecast - данные по прогнозу погоды для города с cityId.
+     * Иначе, данные по текущей погоде.
+     */
+    void updateWeatherDataStatus(final DataStatus status, final boolean forecast, final int cityId) {
+        mWriteQueue.execute(new GroupCommitQueue.Write() {
+            // Статус, как он записан в БД, или null, если наблюдателей нет.
+            private DataStatus mStored;
+
+            @Override
+            public void write() {
+                mBatchWriter.updateDataStatus(getDataId(forecast, cityId), status);
+                // Время обновления могло остаться прежним, поэтому наблюдателям передается статус из БД.
+                mStored = mObservers.hasObservers() ? mStatusReader.getDataStatus(getDataId(forecast, cityId)) : null;
+            }
+
+            @Override
+            public void onCommitted() {
+                if (mStored == null) {
+                    return;
+                }
+                if (forecast) {
+                    mObservers.notifyForecastChanged(cityId, false, mStored);
+                } else {
+                    mObservers.notifyCurrentWeatherChanged(Collections.<Integer>emptySet(), null, false, mStored);
+                }
+            }
+        });
+    }
+
+    /**
+     * Добавляет город с данными о текущей погоде, если его еще нет.
+     *
+     * @param data Данные о погоде в городе.
+     */
+    void addCityWithCurrentWeather(final WeatherData data) {
+        mWriteQueue.execute(new GroupCommitQueue.Write() {
+            // Статус прогноза добавленного города или null, если город уже был или наблюдателей нет.
+            private DataStatus mForecastStatus;
+
+            @Override
+            public void write() {
+                boolean added = mBatchWriter.addCity(data, System.currentTimeMillis());
+                mForecastStatus = added && mObservers.hasObservers()
+                        ? mStatusReader.getDataStatus(getDataId(true, data.getId())) : null;
+            }
+
+            @Override
+            public void onCommitted() {
+                if (mForecastStatus != null) {
+                    mObservers.notifyCurrentWeatherChanged(Collections.singleton(data.getId()),
+                            Collections.singletonList(data), true, null);
+                    mObservers.notifyForecastChanged(data.getId(), false, mForecastStatus);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,389 @@
+package com.deakishin.weatherapp.model.localdb.impl;
+
+import com.deakishin.weatherapp.model.entities.DataStatus;
+import com.deakishin.weatherapp.model.entities.WeatherData;
+import com.deakishin.weatherapp.model.localdb.Row;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Запись строк локальной БД через заранее скомпилированные запросы.
+ * Запросы компилируются при первом использовании и переиспользуются для всех строк и вызовов,
+ * значения привязываются напрямую, без упаковки чисел.
+ * Общая для реализации на Android и реализации на JDBC: каждая из них предоставляет
+ * только компиляцию и выполнение запросов ({@link Statements}).
+ * Методы нужно вызывать внутри транзакции: иначе каждая строка фиксируется отдельно.
+ * Класс не потокобезопасный.
+ */
+class WeatherBatchWriter {
+
+    /**
+     * Скомпилированный запрос. Методы повторяют SQLiteStatement на Android.
+     */
+    interface Statement {
+        /**
+         * Сбрасывает значения параметров в NULL.
+         */
+        void clearBindings();
+
+        void bindLong(int index, long value);
+
+        void bindDouble(int index, double value);
+
+        void bindString(int index, String value);
+
+        /**
+         * Выполняет UPDATE или DELETE.
+         *
+         * @return Количество измененных строк.
+         */
+        int executeUpdateDelete();
+
+        /**
+         * Выполняет INSERT.
+         *
+         * @return -1, если строка не добавлена, например, из-за OR IGNORE. Иначе неотрицательное значение,
+         * на Android - идентификатор добавленной строки.
+         */
+        long executeInsert();
+
+        void close();
+    }
+
+    /**
+     * Обработчик строк результата запроса на чтение.
+     */
+    interface RowReader {
+        /**
+         * Вызывается для каждой строки результата. Объект строки один для всего результата.
+         */
+        void read(Row row);
+    }
+
+    /**
+     * БД, для которой компилируются запросы.
+     */
+    interface Statements {
+        Statement compileStatement(String sql);
+
+        /**
+         * Выполняет запрос на чтение через соединение, в котором выполняется запись.
+         *
+         * @param sql    Запрос.
+         * @param args   Значения параметров.
+         * @param reader Обработчик строк результата.
+         */
+        void query(String sql, String[] args, RowReader reader);
+    }
+
+    // БД, для которой компилируются запросы.
+    private final Statements mDb;
+
+    // Скомпилированные запросы или null, если еще не использовались.
+    private Statement mInsertForecast;
+    private Statement mUpdateForecast;
+    private Statement mUpdateCurrentWeather;
+    private Statement mUpdateCity;
+    private Statement mDeleteStaleForecast;
+    private Statement mInsertCity;
+    private Statement mInsertCurrentWeather;
+    private Statement mInsertMeta;
+    private Statement mUpdateError;
+    private Statement mUpdateDataStatus;
+
+    WeatherBatchWriter(Statements db) {
+        mDb = db;
+    }
+
+    /**
+     * Добавляет города по умолчанию и метаданные текущей погоды в новую БД.
+     */
+    void insertDefaultData() {
+        for (int i = 0; i < LocalDbSchema.DEFAULT_IDS.length; i++) {
+            WeatherData data = new WeatherData();
+            data.setId(LocalDbSchema.DEFAULT_IDS[i]);
+            if (i < LocalDbSchema.DEFAULT_CITY_NAMES.length) {
+                data.setCityName(LocalDbSchema.DEFAULT_CITY_NAMES[i]);
+            }
+            insertCity(data, null);
+        }
+        insertMeta(LocalDbSchema.CURRENT_WEATHER_DATA_ID);
+    }
+
+    /**
+     * Добавляет город с текущей погодой и метаданными прогноза. Если город уже есть в БД,
+     * то уникальные индексы не дают добавить повторные строки, и город не изменяется.
+     *
+     * @param item       Данные о погоде в городе.
+     * @param lastUpdate Время обновления в мс.
+     * @return true, если город добавлен.
+     */
+    boolean addCity(WeatherData item, long lastUpdate) {
+        return insertCity(item, lastUpdate);
+    }
+
+    // Добавляет город, строку его текущей погоды и метаданные. lastUpdate - время обновления
+    // или null, если погода еще не загружалась. Возвращает true, если добавлена строка погоды.
+    private boolean insertCity(WeatherData item, Long lastUpdate) {
+        if (mInsertCity == null) {
+            mInsertCity = mDb.compileStatement(LocalDbSchema.SQL_INSERT_CITY);
+        }
+        Statement statement = mInsertCity;
+        statement.clearBindings();
+        statement.bindLong(1, item.getId());
+        bindString(statement, 2, item.getCityName());
+        bindString(statement, 3, item.getCountry());
+        statement.executeInsert();
+
+        if (mInsertCurrentWeather == null) {
+            mInsertCurrentWeather = mDb.compileStatement(LocalDbSchema.SQL_INSERT_CURRENT_WEATHER);
+        }
+        statement = mInsertCurrentWeather;
+        statement.clearBindings();
+        int index = bindWeather(statement, 1, item);
+        statement.bindLong(index++, item.getId());
+        if (lastUpdate != null) {
+            statement.bindLong(index, lastUpdate);
+        }
+        boolean added = statement.executeInsert() != -1;
+
+        insertMeta(item.getId());
+        return added;
+    }
+
+    // Добавляет метаданные для данных с идентификатором dataId, если их еще нет.
+    private void insertMeta(int dataId) {
+        if (mInsertMeta == null) {
+            mInsertMeta = mDb.compileStatement(LocalDbSchema.SQL_INSERT_META);
+        }
+        mInsertMeta.clearBindings();
+        mInsertMeta.bindLong(1, dataId);
+        mInsertMeta.executeInsert();
+    }
+
+    /**
+     * Объединяет прогноз города в БД с новым по дате вместо удаления и повторной вставки всех строк:
+     * удаляются строки вне диапазона дат нового прогноза (прошедшие) и строки без даты,
+     * строки с изменившимися значениями обновляются, строки с новыми датами добавляются.
+     * Если в новом прогнозе нет ни одной даты, то удаляются только строки без даты.
+     * Строки сравниваются с прочитанными из БД, так что для неизменных строк запросы записи
+     * не выполняются. Если в списке несколько строк с одной датой, остается последняя.
+     *
+     * @param cityId   Идентификатор города.
+     * @param dataList Новый прогноз.
+     * @return true, если изменилась хотя бы одна строка.
+     */
+    boolean mergeForecast(int cityId, List<WeatherData> dataList) {
+        long firstDate = Long.MAX_VALUE;
+        long lastDate = Long.MIN_VALUE;
+        for (WeatherData item : dataList) {
+            if (item.getDate() != null) {
+                firstDate = Math.min(firstDate, item.getDate().getTime());
+                lastDate = Math.max(lastDate, item.getDate().getTime());
+            }
+        }
+        if (firstDate > lastDate) {
+            // Дат нет, поэтому прошедшие строки определить нельзя: строки с датами сохраняются.
+            firstDate = Long.MIN_VALUE;
+            lastDate = Long.MAX_VALUE;
+        }
+
+        if (mDeleteStaleForecast == null) {
+            mDeleteStaleForecast = mDb.compileStatement(LocalDbSchema.SQL_DELETE_STALE_FORECAST);
+        }
+        mDeleteStaleForecast.clearBindings();
+        mDeleteStaleForecast.bindLong(1, cityId);
+        mDeleteStaleForecast.bindLong(2, firstDate);
+        mDeleteStaleForecast.bindLong(3, lastDate);
+        boolean changed = mDeleteStaleForecast.executeUpdateDelete() > 0;
+
+        Map<Long, WeatherData> stored = queryForecast(cityId);
+        for (WeatherData item : dataList) {
+            if (item.getDate() == null) {
+                changed |= insertForecast(cityId, item);
+                continue;
+            }
+            WeatherData old = stored.get(item.getDate().getTime());
+            if (old == null) {
+                changed |= insertForecast(cityId, item);
+            } else if (!hasSameValues(old, item)) {
+                changed |= updateForecast(cityId, item);
+            }
+            stored.put(item.getDate().getTime(), item);
+        }
+        return changed;
+    }
+
+    // Возвращает строки прогноза города с датами по датам.
+    private Map<Long, WeatherData> queryForecast(int cityId) {
+        final Map<Long, WeatherData> stored = new HashMap<>();
+        mDb.query(LocalDbSchema.SQL_SELECT_FORECAST, new String[]{"" + cityId}, new RowReader() {
+            // Преобразователь строк, создается по первой строке результата.
+            private WeatherRowMapper mMapper;
+
+            @Override
+            public void read(Row row) {
+                if (mMapper == null) {
+                    mMapper = new WeatherRowMapper(row);
+                }
+                WeatherData data = mMapper.map(row, true);
+                stored.put(data.getDate().getTime(), data);
+            }
+        });
+        return stored;
+    }
+
+    // Возвращает true, если значения погоды в строке прогноза old совпадают со значениями item.
+    private static boolean hasSameValues(WeatherData old, WeatherData item) {
+        return equal(old.getTemp(), item.getTemp())
+                && equal(old.getHumidity(), item.getHumidity())
+                && equal(old.getWind(), item.getWind())
+                && equal(old.getPressure(), item.getPressure())
+                && equal(old.getClouds(), item.getClouds())
+                && WeatherIconCodes.encode(old.getWeatherIconId()) == WeatherIconCodes.encode(item.getWeatherIconId());
+    }
+
+    private static boolean equal(Double a, Double b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    // Обновляет строку прогноза города с датой item. Строка не изменяется, если ее значения
+    // совпадают с item. Возвращает true, если строка изменилась.
+    private boolean updateForecast(int cityId, WeatherData item) {
+        if (mUpdateForecast == null) {
+            mUpdateForecast = mDb.compileStatement(LocalDbSchema.SQL_UPDATE_FORECAST);
+        }
+        Statement statement = mUpdateForecast;
+        statement.clearBindings();
+        int index = bindWeather(statement, 1, item);
+        statement.bindLong(index++, cityId);
+        statement.bindLong(index, item.getDate().getTime());
+        return statement.executeUpdateDelete() > 0;
+    }
+
+    // Добавляет строку прогноза города, если строки с той же датой еще нет.
+    // Возвращает true, если строка добавлена.
+    private boolean insertForecast(int cityId, WeatherData item) {
+        if (mInsertForecast == null) {
+            mInsertForecast = mDb.compileStatement(LocalDbSchema.SQL_INSERT_FORECAST);
+        }
+        Statement statement = mInsertForecast;
+        statement.clearBindings();
+        statement.bindLong(1, cityId);
+        int index = bindWeather(statement, 2, item);
+        if (item.getDate() != null) {
+            statement.bindLong(index, item.getDate().getTime());
+        }
+        return statement.executeInsert() != -1;
+    }
+
+    /**
+     * Обновляет строку текущей погоды города, проставляя время обновления и сбрасывая ошибку,
+     * а также название города и страну.
+     *
+     * @param item       Данные о погоде.
+     * @param lastUpdate Время обновления в мс.
+     */
+    void updateCurrentWeather(WeatherData item, long lastUpdate) {
+        if (mUpdateCurrentWeather == null) {
+            mUpdateCurrentWeather = mDb.compileStatement(LocalDbSchema.SQL_UPDATE_CURRENT_WEATHER);
+        }
+        Statement statement = mUpdateCurrentWeather;
+        statement.clearBindings();
+        int index = bindWeather(statement, 1, item);
+        statement.bindLong(index++, lastUpdate);
+        statement.bindLong(index, item.getId());
+        statement.executeUpdateDelete();
+
+        if (mUpdateCity == null) {
+            mUpdateCity = mDb.compileStatement(LocalDbSchema.SQL_UPDATE_CITY);
+        }
+        statement = mUpdateCity;
+        statement.clearBindings();
+        bindString(statement, 1, item.getCityName());
+        bindString(statement, 2, item.getCountry());
+        statement.bindLong(3, item.getId());
+        statement.executeUpdateDelete();
+    }
+
+    /**
+     * Записывает ошибку обновления текущей погоды города.
+     *
+     * @param cityId Идентификатор города.
+     * @param error  Ошибка или null, если ошибки нет.
+     */
+    void updateCurrentWeatherError(int cityId, String error) {
+        if (mUpdateError == null) {
+            mUpdateError = mDb.compileStatement(LocalDbSchema.SQL_UPDATE_CURRENT_WEATHER_ERROR);
+        }
+        mUpdateError.clearBindings();
+        bindString(mUpdateError, 1, error);
+        mUpdateError.bindLong(2, cityId);
+        mUpdateError.executeUpdateDelete();
+    }
+
+    /**
+     * Записывает статус данных. Если время обновления в статусе не задано, то сохраняется прежнее.
+     *
+     * @param dataId Идентификатор данных в метаданных.
+     * @param status Статус данных.
+     */
+    void updateDataStatus(int dataId, DataStatus status) {
+        if (mUpdateDataStatus == null) {
+            mUpdateDataStatus = mDb.compileStatement(LocalDbSchema.SQL_UPDATE_DATA_STATUS);
+        }
+        Statement statement = mUpdateDataStatus;
+        statement.clearBindings();
+        statement.bindLong(1, status.isRefreshing() ? 1 : 0);
+        bindString(statement, 2, status.getError());
+        if (status.getLastUpdate() != null) {
+            statement.bindLong(3, status.getLastUpdate().getTime());
+        }
+        statement.bindLong(4, dataId);
+        statement.executeUpdateDelete();
+    }
+
+    /**
+     * Закрывает скомпилированные запросы.
+     */
+    void close() {
+        Statement[] statements = {mInsertForecast, mUpdateForecast, mUpdateCurrentWeather, mUpdateCity,
+                mDeleteStaleForecast, mInsertCity, mInsertCurrentWeather, mInsertMeta, mUpdateError,
+                mUpdateDataStatus};
+        for (Statement statement : statements) {
+            if (statement != null) {
+                statement.close();
+            }
+        }
+    }
+
+    // Привязывает значения погоды (temp, humidity, wind, pressure, clouds, icon_code),
+    // начиная с параметра index. Пустые значения остаются NULL после clearBindings().
+    // Возвращает индекс следующего параметра.
+    private static int bindWeather(Statement statement, int index, WeatherData item) {
+        bindDouble(statement, index++, item.getTemp());
+        bindDouble(statement, index++, item.getHumidity());
+        bindDouble(statement, index++, item.getWind());
+        bindDouble(statement, index++, item.getPressure());
+        bindDouble(statement, index++, item.getClouds());
+        int iconCode = WeatherIconCodes.encode(item.getWeatherIconId());
+        if (iconCode != WeatherIconCodes.NO_CODE) {
+            statement.bindLong(index, iconCode);
+        }
+        return index + 1;
+    }
+
+    private static void bindString(Statement statement, int index, String value) {
+        if (value != null) {
+            statement.bindString(index, value);
+        }
+    }
+
+    private static void bindDouble(Statement statement, int index, Double value) {
+        if (value != null) {
+            statement.bindDouble(index, value);
+        }
+    }
+}
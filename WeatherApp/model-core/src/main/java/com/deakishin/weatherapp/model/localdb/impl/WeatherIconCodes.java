@@ -0,0 +1,53 @@
+package com.deakishin.weatherapp.model.localdb.impl;
+
+/**
+ * Коды значков погоды для хранения в БД.
+ * Идентификаторы значков OpenWeatherMap имеют вид "NNd" или "NNn", где NN - номер значка,
+ * d - день, n - ночь. Вместо строки в БД хранится код NN * 2 для дня и NN * 2 + 1 для ночи,
+ * который SQLite записывает одним байтом. Строки для всех кодов создаются заранее,
+ * так что при чтении новые строки не создаются.
+ */
+public final class WeatherIconCodes {
+
+    /**
+     * Код для отсутствующего значка или идентификатора другого вида.
+     */
+    public static final int NO_CODE = -1;
+
+    // Идентификаторы значков по кодам.
+    private static final String[] ICON_IDS = new String[100 * 2];
+
+    static {
+        for (int number = 0; number < 100; number++) {
+            String prefix = number < 10 ? "0" + number : String.valueOf(number);
+            ICON_IDS[number * 2] = prefix + "d";
+            ICON_IDS[number * 2 + 1] = prefix + "n";
+        }
+    }
+
+    private WeatherIconCodes() {
+    }
+
+    /**
+     * @param iconId Идентификатор значка, например "10n".
+     * @return Код значка или {@link #NO_CODE}, если идентификатор пустой или другого вида.
+     */
+    public static int encode(String iconId) {
+        if (iconId == null || iconId.length() != 3) {
+            return NO_CODE;
+        }
+        char d1 = iconId.charAt(0), d2 = iconId.charAt(1), period = iconId.charAt(2);
+        if (d1 < '0' || d1 > '9' || d2 < '0' || d2 > '9' || (period != 'd' && period != 'n')) {
+            return NO_CODE;
+        }
+        return ((d1 - '0') * 10 + (d2 - '0')) * 2 + (period == 'n' ? 1 : 0);
+    }
+
+    /**
+     * @param code Код значка.
+     * @return Идентификатор значка или null, если код неизвестен.
+     */
+    public static String decode(int code) {
+        return code >= 0 && code < ICON_IDS.length ? ICON_IDS[code] : null;
+    }
+}
@@ -0,0 +1,148 @@
+package com.deakishin.weatherapp.model.localdb.impl;
+
+import com.deakishin.weatherapp.model.entities.DataStatus;
+import com.deakishin.weatherapp.model.entities.WeatherData;
+import com.deakishin.weatherapp.model.localdb.Row;
+
+import java.util.Date;
+
+/**
+ * Преобразует строки таблицы погоды в объекты {@link WeatherData}.
+ * Индексы столбцов определяются один раз при создании объекта,
+ * поэтому объект используется для строк одного результата.
+ * Столбцы, которых нет в результате, остаются пустыми в данных о погоде.
+ */
+public class WeatherRowMapper {
+
+    /**
+     * Столбцы текущей погоды, которые нужно запрашивать для преобразования.
+     * Название города и страна берутся из таблицы городов, поэтому запрос соединяет таблицы.
+     */
+    public static final String[] PROJECTION = {
+            LocalDbContract.Weathers.COLUMN_NAME_CITY_ID,
+            LocalDbContract.Cities.COLUMN_NAME_CITY_NAME,
+            LocalDbContract.Cities.COLUMN_NAME_COUNTRY,
+            LocalDbContract.Weathers.COLUMN_NAME_TEMP,
+            LocalDbContract.Weathers.COLUMN_NAME_HUMIDITY,
+            LocalDbContract.Weathers.COLUMN_NAME_PRESSURE,
+            LocalDbContract.Weathers.COLUMN_NAME_WIND,
+            LocalDbContract.Weathers.COLUMN_NAME_CLOUDS,
+            LocalDbContract.Weathers.COLUMN_NAME_ICON_CODE,
+            LocalDbContract.Weathers.COLUMN_NAME_LAST_UPDATE,
+            LocalDbContract.Weathers.COLUMN_NAME_ERROR
+    };
+
+    /**
+     * Столбцы прогноза погоды, которые нужно запрашивать для преобразования.
+     * Только из таблицы погоды, без названия города.
+     */
+    public static final String[] FORECAST_PROJECTION = {
+            LocalDbContract.Weathers.COLUMN_NAME_CITY_ID,
+            LocalDbContract.Weathers.COLUMN_NAME_TEMP,
+            LocalDbContract.Weathers.COLUMN_NAME_HUMIDITY,
+            LocalDbContract.Weathers.COLUMN_NAME_PRESSURE,
+            LocalDbContract.Weathers.COLUMN_NAME_WIND,
+            LocalDbContract.Weathers.COLUMN_NAME_CLOUDS,
+            LocalDbContract.Weathers.COLUMN_NAME_ICON_CODE,
+            LocalDbContract.Weathers.COLUMN_NAME_DATE
+    };
+
+    private final int mIdIdx;
+    private final int mCityIdx;
+    private final int mCountryIdx;
+    private final int mTempIdx;
+    private final int mHumidIdx;
+    private final int mPressIdx;
+    private final int mWindIdx;
+    private final int mCloudsIdx;
+    private final int mIconIdx;
+    private final int mDateIdx;
+    private final int mLastUpdIdx;
+    private final int mErrorIdx;
+
+    /**
+     * @param row Строка результата, содержащего столбцы {@link #PROJECTION} или {@link #FORECAST_PROJECTION}.
+     */
+    public WeatherRowMapper(Row row) {
+        mIdIdx = row.getColumnIndex(LocalDbContract.Weathers.COLUMN_NAME_CITY_ID);
+        mCityIdx = row.getColumnIndex(LocalDbContract.Cities.COLUMN_NAME_CITY_NAME);
+        mCountryIdx = row.getColumnIndex(LocalDbContract.Cities.COLUMN_NAME_COUNTRY);
+        mTempIdx = row.getColumnIndex(LocalDbContract.Weathers.COLUMN_NAME_TEMP);
+        mHumidIdx = row.getColumnIndex(LocalDbContract.Weathers.COLUMN_NAME_HUMIDITY);
+        mPressIdx = row.getColumnIndex(LocalDbContract.Weathers.COLUMN_NAME_PRESSURE);
+        mWindIdx = row.getColumnIndex(LocalDbContract.Weathers.COLUMN_NAME_WIND);
+        mCloudsIdx = row.getColumnIndex(LocalDbContract.Weathers.COLUMN_NAME_CLOUDS);
+        mIconIdx = row.getColumnIndex(LocalDbContract.Weathers.COLUMN_NAME_ICON_CODE);
+        mDateIdx = row.getColumnIndex(LocalDbContract.Weathers.COLUMN_NAME_DATE);
+        mLastUpdIdx = row.getColumnIndex(LocalDbContract.Weathers.COLUMN_NAME_LAST_UPDATE);
+        mErrorIdx = row.getColumnIndex(LocalDbContract.Weathers.COLUMN_NAME_ERROR);
+    }
+
+    /**
+     * Преобразует строку в данные о погоде.
+     *
+     * @param row      Строка.
+     * @param forecast True, если строка из прогноза погоды. Тогда заполняется дата.
+     * @return Данные о погоде.
+     */
+    public WeatherData map(Row row, boolean forecast) {
+        WeatherData data = new WeatherData();
+        data.setId(row.isNull(mIdIdx) ? -1 : row.getInt(mIdIdx));
+        data.setCityName(getStringValue(row, mCityIdx));
+        data.setCountry(getStringValue(row, mCountryIdx));
+        data.setTemp(getDoubleValue(row, mTempIdx));
+        data.setHumidity(getDoubleValue(row, mHumidIdx));
+        data.setPressure(getDoubleValue(row, mPressIdx));
+        data.setWind(getDoubleValue(row, mWindIdx));
+        data.setClouds(getDoubleValue(row, mCloudsIdx));
+        data.setWeatherIconId(row.isNull(mIconIdx) ? null : WeatherIconCodes.decode(row.getInt(mIconIdx)));
+        if (forecast) {
+            data.setDate(getDateValue(row, mDateIdx));
+        }
+        return data;
+    }
+
+    /**
+     * Преобразует строку текущей погоды в статус обновления города.
+     *
+     * @param row Строка.
+     * @return Статус обновления.
+     */
+    public DataStatus mapItemStatus(Row row) {
+        DataStatus itemStatus = new DataStatus();
+        itemStatus.setLastUpdate(getDateValue(row, mLastUpdIdx));
+        itemStatus.setError(getStringValue(row, mErrorIdx));
+        return itemStatus;
+    }
+
+    /**
+     * Преобразует строку метаданных из {@link LocalDbSchema#SQL_SELECT_DATA_STATUS} в статус данных.
+     *
+     * @param row Строка.
+     * @return Статус данных.
+     */
+    static DataStatus mapDataStatus(Row row) {
+        int refreshIdx = row.getColumnIndex(LocalDbContract.Meta.COLUMN_REFRESHING);
+        DataStatus dataStatus = new DataStatus();
+        dataStatus.setRefreshing(!row.isNull(refreshIdx) && row.getInt(refreshIdx) > 0);
+        dataStatus.setLastUpdate(getDateValue(row, row.getColumnIndex(LocalDbContract.Meta.COLUMN_LAST_UPDATE)));
+        dataStatus.setError(getStringValue(row, row.getColumnIndex(LocalDbContract.Meta.COLUMN_ERROR)));
+        return dataStatus;
+    }
+
+    // Возвращает строку из row по индексу index или null, если столбца нет в результате.
+    private static String getStringValue(Row row, int index) {
+        return index < 0 ? null : row.getString(index);
+    }
+
+    // Возвращает значение типа Double или null из строки row по индексу index.
+    private static Double getDoubleValue(Row row, int index) {
+        return row.isNull(index) ? null : row.getDouble(index);
+    }
+
+    // Возвращает дату, хранящуюся в мс, или null из строки row по индексу index.
+    // Null также, если столбца нет в результате.
+    private static Date getDateValue(Row row, int index) {
+        return index < 0 || row.isNull(index) ? null : new Date(row.getLong(index));
+    }
+}
@@ -0,0 +1,12 @@
+package com.deakishin.weatherapp.model.rest.restclient;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+
+/**
+ * Конвертер Json в generic. Читает ровно одно JSON значение из потока.
+ */
+public interface JsonConverter<T> {
+    T convert(JsonReader reader) throws IOException;
+}
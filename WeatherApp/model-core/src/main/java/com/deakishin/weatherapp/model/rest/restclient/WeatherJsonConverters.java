@@ -0,0 +1,353 @@
+package com.deakishin.weatherapp.model.rest.restclient;
+
+import com.deakishin.weatherapp.model.entities.WeatherData;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Конвертеры JSON ответов сервера OpenWeatherMap в объекты модели.
+ * Ответы читаются потоково за один проход, без построения промежуточного дерева.
+ * Класс не зависит от Android.
+ */
+public class WeatherJsonConverters {
+
+    // Кодировка ответов сервера.
+    private static final String CHARSET = "UTF-8";
+
+    // Ожидаемое количество элементов в списке текущей погоды для группы городов.
+    private static final int GROUP_LIST_CAPACITY = 20;
+
+    private WeatherJsonConverters() {
+    }
+
+    /**
+     * Распарсивает тело ответа body конвертером converter за один проход, без построения
+     * промежуточного дерева. Если ответ является JSON массивом, то распарсивается его первый элемент.
+     *
+     * @param body      Тело ответа.
+     * @param converter Конвертер.
+     * @return Результат конвертера.
+     * @throws IOException Если тело пустое или не соответствует ожидаемому формату.
+     */
+    public static <T> T decode(byte[] body, JsonConverter<T> converter) throws IOException {
+        if (body == null) {
+            throw new IOException("Empty response body");
+        }
+        JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(body), CHARSET));
+        try {
+            if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                if (!reader.hasNext()) {
+                    throw new MalformedJsonException("Empty JSON array in response");
+                }
+            }
+            return converter.convert(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    // Параметр с сообщением в JSON объекте ошибки.
+    private static final String ERROR_JSON_PARAM_MESSAGE = "message";
+
+    /**
+     * Конвертер JSON объекта ошибки, возвращающий сообщение об ошибке или null.
+     */
+    public static final JsonConverter<String> ERROR_MESSAGE = new JsonConverter<String>() {
+        @Override
+        public String convert(JsonReader reader) throws IOException {
+            return readStringField(reader, ERROR_JSON_PARAM_MESSAGE);
+        }
+    };
+
+    // Параметры для распарсивания текущей погоды из JSON объекта.
+    private static class WEATHER_JSON_PARAMS {
+        static final String ID = "id";
+        static final String CITY = "name";
+        static final String WEATHER = "weather";
+        static final String WEATHER_ICON = "icon";
+        static final String MAIN = "main";
+        static final String MAIN_TEMP = "temp";
+        static final String MAIN_PRESSURE = "pressure";
+        static final String MAIN_HUMIDITY = "humidity";
+        static final String WIND = "wind";
+        static final String WIND_SPEED = "speed";
+        static final String CLOUDS = "clouds";
+        static final String CLOUDS_ALL = "all";
+        static final String SYS = "sys";
+        static final String SYS_COUNTRY = "country";
+    }
+
+    /**
+     * Конвертер JSON объекта, в котором содержатся данные о текущей погоде.
+     * Если в объекте нет идентификатора города, то выбрасывает исключение.
+     */
+    public static final JsonConverter<WeatherData> CURRENT_WEATHER = new JsonConverter<WeatherData>() {
+        @Override
+        public WeatherData convert(JsonReader reader) throws IOException {
+            WeatherData data = readWeatherData(reader);
+            if (data == null) {
+                throw new MalformedJsonException("No city id in the current weather object");
+            }
+            return data;
+        }
+    };
+
+    /**
+     * Конвертер JSON объекта, в котором содержатся данные о текущей погоде.
+     * Если в объекте нет идентификатора города (например, это ответ "город не найден"),
+     * то возвращает null.
+     */
+    public static final JsonConverter<WeatherData> CURRENT_WEATHER_OR_NULL = new JsonConverter<WeatherData>() {
+        @Override
+        public WeatherData convert(JsonReader reader) throws IOException {
+            return readWeatherData(reader);
+        }
+    };
+
+    // Читает объект текущей погоды. Возвращает null, если в объекте нет идентификатора города.
+    private static WeatherData readWeatherData(JsonReader reader) throws IOException {
+        WeatherData data = new WeatherData();
+        boolean hasId = false;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+            } else if (name.equals(WEATHER_JSON_PARAMS.ID)) {
+                data.setId(reader.nextInt());
+                hasId = true;
+            } else if (name.equals(WEATHER_JSON_PARAMS.CITY)) {
+                data.setCityName(reader.nextString());
+            } else if (name.equals(WEATHER_JSON_PARAMS.SYS)) {
+                data.setCountry(readStringField(reader, WEATHER_JSON_PARAMS.SYS_COUNTRY));
+            } else if (name.equals(WEATHER_JSON_PARAMS.MAIN)) {
+                readMain(reader, data);
+            } else if (name.equals(WEATHER_JSON_PARAMS.WIND)) {
+                data.setWind(readDoubleField(reader, WEATHER_JSON_PARAMS.WIND_SPEED));
+            } else if (name.equals(WEATHER_JSON_PARAMS.CLOUDS)) {
+                data.setClouds(readDoubleField(reader, WEATHER_JSON_PARAMS.CLOUDS_ALL));
+            } else if (name.equals(WEATHER_JSON_PARAMS.WEATHER)) {
+                data.setWeatherIconId(readIconId(reader));
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return hasId ? data : null;
+    }
+
+    // Параметры для распарсивания текущей погоды для группы городов из JSON объекта.
+    private static class GROUP_JSON_PARAMS {
+        static final String LIST = "list";
+    }
+
+    /**
+     * Конвертер JSON объекта, в котором содержится список данных о текущей погоде.
+     */
+    public static final JsonConverter<List<WeatherData>> CURRENT_WEATHER_LIST = new JsonConverter<List<WeatherData>>() {
+        @Override
+        public List<WeatherData> convert(JsonReader reader) throws IOException {
+            List<WeatherData> dataList = null;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals(GROUP_JSON_PARAMS.LIST)) {
+                    dataList = new ArrayList<>(GROUP_LIST_CAPACITY);
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        dataList.add(CURRENT_WEATHER.convert(reader));
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (dataList == null) {
+                throw new MalformedJsonException("No list in the group weather object");
+            }
+            return dataList;
+        }
+    };
+
+    // Параметры для распарсивания прогноза погоды из JSON объекта.
+    private static class FORECAST_JSON_PARAMS {
+        static final String CITY = "city";
+        static final String CITY_ID = "id";
+        static final String LIST = "list";
+        static final String LIST_MAIN = "main";
+        static final String LIST_WIND = "wind";
+        static final String LIST_WIND_SPEED = "speed";
+        static final String LIST_WEATHER = "weather";
+        static final String LIST_CLOUDS = "clouds";
+        static final String LIST_CLOUDS_ALL = "all";
+        static final String LIST_DATE = "dt_txt";
+    }
+
+    /**
+     * Конвертер JSON объекта прогноза погоды в список данных о погоде с датами.
+     * Элементам проставляется только идентификатор города: название и страна хранятся
+     * один раз на город вместе с текущей погодой, а не в каждом элементе прогноза.
+     */
+    public static final JsonConverter<List<WeatherData>> FORECAST = new JsonConverter<List<WeatherData>>() {
+        @Override
+        public List<WeatherData> convert(JsonReader reader) throws IOException {
+            List<WeatherData> dataList = new ArrayList<>();
+            DateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.ENGLISH);
+
+            // Идентификатор города в ответе может идти после списка,
+            // поэтому проставляется элементам списка в конце.
+            Integer cityId = null;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals(FORECAST_JSON_PARAMS.LIST)) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        dataList.add(readForecastItem(reader, format));
+                    }
+                    reader.endArray();
+                } else if (name.equals(FORECAST_JSON_PARAMS.CITY)) {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String cityField = reader.nextName();
+                        if (reader.peek() == JsonToken.NULL) {
+                            reader.nextNull();
+                        } else if (cityField.equals(FORECAST_JSON_PARAMS.CITY_ID)) {
+                            cityId = reader.nextInt();
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (cityId == null) {
+                throw new MalformedJsonException("No city id in the forecast object");
+            }
+            for (WeatherData data : dataList) {
+                data.setId(cityId);
+            }
+
+            return dataList;
+        }
+    };
+
+    // Читает элемент списка прогноза погоды. format - формат даты прогноза.
+    // Если дату не удалось распарсить, то она остается пустой.
+    private static WeatherData readForecastItem(JsonReader reader, DateFormat format) throws IOException {
+        WeatherData data = new WeatherData();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+            } else if (name.equals(FORECAST_JSON_PARAMS.LIST_MAIN)) {
+                readMain(reader, data);
+            } else if (name.equals(FORECAST_JSON_PARAMS.LIST_WEATHER)) {
+                data.setWeatherIconId(readIconId(reader));
+            } else if (name.equals(FORECAST_JSON_PARAMS.LIST_CLOUDS)) {
+                data.setClouds(readDoubleField(reader, FORECAST_JSON_PARAMS.LIST_CLOUDS_ALL));
+            } else if (name.equals(FORECAST_JSON_PARAMS.LIST_WIND)) {
+                data.setWind(readDoubleField(reader, FORECAST_JSON_PARAMS.LIST_WIND_SPEED));
+            } else if (name.equals(FORECAST_JSON_PARAMS.LIST_DATE)) {
+                String dateStr = reader.nextString();
+                try {
+                    data.setDate(format.parse(dateStr));
+                } catch (ParseException e) {
+                    // Элемент без даты все равно сохраняется.
+                }
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return data;
+    }
+
+    // Читает объект с основными параметрами погоды (температура, давление, влажность) в data.
+    private static void readMain(JsonReader reader, WeatherData data) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+            } else if (name.equals(WEATHER_JSON_PARAMS.MAIN_TEMP)) {
+                data.setTemp(reader.nextDouble());
+            } else if (name.equals(WEATHER_JSON_PARAMS.MAIN_PRESSURE)) {
+                data.setPressure(reader.nextDouble());
+            } else if (name.equals(WEATHER_JSON_PARAMS.MAIN_HUMIDITY)) {
+                data.setHumidity(reader.nextDouble());
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    // Читает массив погодных условий и возвращает идентификатор иконки первого из них или null.
+    private static String readIconId(JsonReader reader) throws IOException {
+        String iconId = null;
+        reader.beginArray();
+        if (reader.hasNext()) {
+            iconId = readStringField(reader, WEATHER_JSON_PARAMS.WEATHER_ICON);
+        }
+        while (reader.hasNext()) {
+            reader.skipValue();
+        }
+        reader.endArray();
+        return iconId;
+    }
+
+    // Читает объект и возвращает значение его числового поля field или null, если поля нет.
+    private static Double readDoubleField(JsonReader reader, String field) throws IOException {
+        Double value = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals(field) && reader.peek() != JsonToken.NULL) {
+                value = reader.nextDouble();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return value;
+    }
+
+    // Читает объект и возвращает значение его строкового поля field или null, если поля нет.
+    private static String readStringField(JsonReader reader, String field) throws IOException {
+        String value = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals(field) && reader.peek() != JsonToken.NULL) {
+                value = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return value;
+    }
+}
@@ -0,0 +1,66 @@
+package com.deakishin.weatherapp.model.localdb.impl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Тесты согласованного чтения без блокировок {@link CommitSequence}.
+ */
+public class CommitSequenceTest {
+
+    private final CommitSequence mCommits = new CommitSequence();
+
+    /**
+     * Чтение, которое считает попытки и фиксирует запись во время первых commitsDuringRead попыток.
+     */
+    private class CountingRead implements CommitSequence.Read<Integer> {
+        int mAttempts;
+        int mCommitsDuringRead;
+
+        CountingRead(int commitsDuringRead) {
+            mCommitsDuringRead = commitsDuringRead;
+        }
+
+        @Override
+        public Integer read() {
+            mAttempts++;
+            if (mCommitsDuringRead > 0) {
+                mCommitsDuringRead--;
+                mCommits.beginCommit();
+                mCommits.endCommit();
+            }
+            return mAttempts;
+        }
+    }
+
+    @Test
+    public void returnsFirstReadWithoutCommits() {
+        CountingRead read = new CountingRead(0);
+        assertEquals(Integer.valueOf(1), mCommits.readOptimistically(read));
+    }
+
+    @Test
+    public void repeatsReadOverlappingCommit() {
+        CountingRead read = new CountingRead(1);
+        assertEquals(Integer.valueOf(2), mCommits.readOptimistically(read));
+    }
+
+    @Test
+    public void givesUpAfterMaxAttempts() {
+        CountingRead read = new CountingRead(CommitSequence.MAX_OPTIMISTIC_READS);
+        assertNull(mCommits.readOptimistically(read));
+        assertEquals(CommitSequence.MAX_OPTIMISTIC_READS, read.mAttempts);
+    }
+
+    @Test
+    public void doesNotReadWhileCommitIsInProgress() {
+        CountingRead read = new CountingRead(0);
+        mCommits.beginCommit();
+        assertNull(mCommits.readOptimistically(read));
+        assertEquals(0, read.mAttempts);
+
+        mCommits.endCommit();
+        assertEquals(Integer.valueOf(1), mCommits.readOptimistically(read));
+    }
+}
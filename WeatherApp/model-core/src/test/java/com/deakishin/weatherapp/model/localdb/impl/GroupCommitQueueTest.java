@@ -0,0 +1,173 @@
+package com.deakishin.weatherapp.model.localdb.impl;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Тесты очереди записей с объединением транзакций {@link GroupCommitQueue}.
+ */
+public class GroupCommitQueueTest {
+
+    // Журнал транзакций и записей: "begin", имена записей, "commit" или "rollback".
+    private final List<String> mLog = new ArrayList<>();
+    private GroupCommitQueue mQueue;
+
+    @After
+    public void tearDown() {
+        mQueue.close();
+    }
+
+    // Создает очередь, транзакции которой пишутся в журнал.
+    private GroupCommitQueue createQueue(int maxGroupSize) {
+        return new GroupCommitQueue("test writer", new GroupCommitQueue.Transactions() {
+            @Override
+            public void begin() {
+                log("begin");
+            }
+
+            @Override
+            public void end(boolean success) {
+                log(success ? "commit" : "rollback");
+            }
+        }, maxGroupSize, 0);
+    }
+
+    private void log(String entry) {
+        synchronized (mLog) {
+            mLog.add(entry);
+        }
+    }
+
+    private List<String> getLog() {
+        synchronized (mLog) {
+            return new ArrayList<>(mLog);
+        }
+    }
+
+    /**
+     * Запись, которая пишет свое имя в журнал и может ждать разрешения или завершаться ошибкой.
+     */
+    private class LoggingWrite implements GroupCommitQueue.Write {
+        final String mName;
+        // Разрешение на выполнение или null, если ждать не нужно.
+        CountDownLatch mRelease;
+        // Сигнал о начале выполнения.
+        final CountDownLatch mStarted = new CountDownLatch(1);
+        boolean mFail;
+        int mCommitted;
+
+        LoggingWrite(String name) {
+            mName = name;
+        }
+
+        @Override
+        public void write() {
+            mStarted.countDown();
+            if (mRelease != null) {
+                try {
+                    mRelease.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            log(mName);
+            if (mFail) {
+                throw new IllegalStateException(mName + " failed");
+            }
+        }
+
+        @Override
+        public void onCommitted() {
+            mCommitted++;
+        }
+    }
+
+    @Test
+    public void commitsWritesQueuedDuringTransactionTogether() throws Exception {
+        mQueue = createQueue(10);
+        LoggingWrite first = new LoggingWrite("a");
+        first.mRelease = new CountDownLatch(1);
+        Future<Void> firstResult = mQueue.submit(first);
+        assertTrue(first.mStarted.await(5, TimeUnit.SECONDS));
+
+        List<Future<Void>> results = new ArrayList<>();
+        for (String name : new String[]{"b", "c", "d"}) {
+            results.add(mQueue.submit(new LoggingWrite(name)));
+        }
+        first.mRelease.countDown();
+        firstResult.get(5, TimeUnit.SECONDS);
+        for (Future<Void> result : results) {
+            result.get(5, TimeUnit.SECONDS);
+        }
+
+        assertEquals(2, mQueue.getCommitCount());
+        assertEquals(Arrays.asList("begin", "a", "commit", "begin", "b", "c", "d", "commit"), getLog());
+    }
+
+    @Test
+    public void retriesWritesSeparatelyWhenGroupFails() throws Exception {
+        mQueue = createQueue(10);
+        LoggingWrite blocker = new LoggingWrite("a");
+        blocker.mRelease = new CountDownLatch(1);
+        mQueue.submit(blocker);
+        assertTrue(blocker.mStarted.await(5, TimeUnit.SECONDS));
+
+        LoggingWrite good = new LoggingWrite("b");
+        LoggingWrite bad = new LoggingWrite("c");
+        bad.mFail = true;
+        Future<Void> goodResult = mQueue.submit(good);
+        Future<Void> badResult = mQueue.submit(bad);
+        blocker.mRelease.countDown();
+
+        goodResult.get(5, TimeUnit.SECONDS);
+        try {
+            badResult.get(5, TimeUnit.SECONDS);
+            fail("Failed write must complete with its error");
+        } catch (ExecutionException e) {
+            assertEquals("c failed", e.getCause().getMessage());
+        }
+        assertEquals(1, good.mCommitted);
+        assertEquals(0, bad.mCommitted);
+        assertEquals(Arrays.asList("begin", "a", "commit",
+                "begin", "b", "c", "rollback",
+                "begin", "b", "commit",
+                "begin", "c", "rollback"), getLog());
+    }
+
+    @Test
+    public void executeRethrowsWriteError() {
+        mQueue = createQueue(1);
+        LoggingWrite bad = new LoggingWrite("a");
+        bad.mFail = true;
+        try {
+            mQueue.execute(bad);
+            fail("Write error must be rethrown");
+        } catch (IllegalStateException e) {
+            assertEquals("a failed", e.getMessage());
+        }
+    }
+
+    @Test
+    public void runsQueuedWritesBeforeClosing() throws Exception {
+        mQueue = createQueue(1);
+        Future<Void> result = mQueue.submit(new LoggingWrite("a"));
+        mQueue.close();
+        assertTrue(result.isDone());
+        result.get();
+        try {
+            mQueue.submit(new LoggingWrite("b"));
+            fail("Closed queue must not accept writes");
+        } catch (IllegalStateException ignored) {
+        }
+    }
+}